@@ -5,6 +5,7 @@ plugins {
   java
   application
   id("com.github.johnrengelman.shadow") version "8.1.1"
+  id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "ssonin"
@@ -16,8 +17,11 @@ repositories {
 
 val assertjVersion = "3.27.3"
 val flywayVersion = "11.7.2"
+val hdrHistogramVersion = "2.2.2"
 val junitJupiterVersion = "5.9.1"
 val logbackVersion = "1.5.21"
+val micrometerVersion = "1.15.6"
+val openTelemetryVersion = "1.46.0"
 val postgresqlVersion = "42.7.8"
 val slf4jVersion = "2.0.17"
 val systemStubsVersion = "2.1.7"
@@ -26,10 +30,14 @@ val vertxVersion = "5.0.6"
 val wiremockVersion = "3.13.1"
 
 val mainVerticleName = "ssonin.nvstech.App"
-val launcherClassName = "io.vertx.launcher.application.VertxApplication"
+val launcherClassName = "ssonin.nvstech.Launcher"
+
+// The SIMD cosine kernel uses the incubating Vector API; without the module, a scalar kernel is used
+val vectorApiArgs = listOf("--add-modules", "jdk.incubator.vector")
 
 application {
   mainClass.set(launcherClassName)
+  applicationDefaultJvmArgs = vectorApiArgs
 }
 
 dependencies {
@@ -38,16 +46,20 @@ dependencies {
   implementation("io.vertx:vertx-core")
   implementation("io.vertx:vertx-json-schema")
   implementation("io.vertx:vertx-launcher-application")
+  implementation("io.vertx:vertx-micrometer-metrics")
+  implementation("io.vertx:vertx-opentelemetry")
   implementation("io.vertx:vertx-pg-client")
   implementation("io.vertx:vertx-web")
   implementation("io.vertx:vertx-web-client")
   implementation("org.flywaydb:flyway-core:${flywayVersion}")
   implementation("org.flywaydb:flyway-database-postgresql:${flywayVersion}")
+  implementation("io.micrometer:micrometer-registry-prometheus:${micrometerVersion}")
   implementation("org.slf4j:slf4j-api:${slf4jVersion}")
 
   runtimeOnly("org.postgresql:postgresql:${postgresqlVersion}")
 
   testImplementation(platform("org.testcontainers:testcontainers-bom:$testcontainersVersion"))
+  testImplementation("io.opentelemetry:opentelemetry-sdk-testing:${openTelemetryVersion}")
   testImplementation("io.vertx:vertx-junit5")
   testImplementation("io.vertx:vertx-web-client")
   testImplementation("org.assertj:assertj-core:${assertjVersion}")
@@ -61,11 +73,31 @@ dependencies {
   testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
+val loadtest: SourceSet by sourceSets.creating {
+  compileClasspath += sourceSets.main.get().output
+  runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[loadtest.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[loadtest.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
+dependencies {
+  "loadtestImplementation"(platform("org.testcontainers:testcontainers-bom:$testcontainersVersion"))
+  "loadtestImplementation"("org.hdrhistogram:HdrHistogram:${hdrHistogramVersion}")
+  "loadtestImplementation"("org.postgresql:postgresql:${postgresqlVersion}")
+  "loadtestImplementation"("org.testcontainers:postgresql")
+  "loadtestImplementation"("org.wiremock:wiremock:${wiremockVersion}")
+}
+
 java {
   sourceCompatibility = JavaVersion.VERSION_21
   targetCompatibility = JavaVersion.VERSION_21
 }
 
+tasks.withType<JavaCompile> {
+  options.compilerArgs.addAll(vectorApiArgs)
+}
+
 tasks.withType<ShadowJar> {
   archiveClassifier.set("fat")
   manifest {
@@ -74,13 +106,52 @@ tasks.withType<ShadowJar> {
   mergeServiceFiles()
 }
 
+jmh {
+  providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+  profilers.add("gc")
+  resultFormat.set("JSON")
+  jvmArgsAppend.addAll(vectorApiArgs)
+}
+
 tasks.withType<Test> {
   useJUnitPlatform()
+  jvmArgs(vectorApiArgs)
   testLogging {
     events = setOf(PASSED, SKIPPED, FAILED)
   }
 }
 
-tasks.withType<JavaExec> {
+tasks.named<JavaExec>("run") {
   args = listOf(mainVerticleName)
 }
+
+tasks.register<JavaExec>("loadTest") {
+  group = "verification"
+  description = "Runs the application against a pgvector container and drives mixed traffic at a target rate."
+  classpath = loadtest.runtimeClasspath
+  mainClass.set("ssonin.nvstech.loadtest.LoadTest")
+  jvmArgs(vectorApiArgs)
+  systemProperties(providers.gradlePropertiesPrefixedBy("loadtest.").get())
+  systemProperties(providers.gradlePropertiesPrefixedBy("corpus.").get())
+  systemProperty("loadtest.output", providers.gradleProperty("loadtest.output")
+    .getOrElse(layout.buildDirectory.file("results/loadtest/results.json").get().asFile.path))
+}
+
+tasks.register<JavaExec>("generateCorpus") {
+  group = "verification"
+  description = "Streams a reproducible synthetic corpus of clients and documents into PostgreSQL."
+  classpath = loadtest.runtimeClasspath
+  mainClass.set("ssonin.nvstech.loadtest.GenerateCorpus")
+  systemProperties(providers.gradlePropertiesPrefixedBy("corpus.").get())
+}
+
+tasks.register<JavaExec>("vectorBenchmark") {
+  group = "verification"
+  description = "Measures recall against latency of the HNSW document search over a grid of index and query settings."
+  classpath = loadtest.runtimeClasspath
+  mainClass.set("ssonin.nvstech.loadtest.VectorBenchmark")
+  systemProperties(providers.gradlePropertiesPrefixedBy("vectorbench.").get())
+  systemProperties(providers.gradlePropertiesPrefixedBy("corpus.").get())
+  systemProperty("vectorbench.output", providers.gradleProperty("vectorbench.output")
+    .getOrElse(layout.buildDirectory.dir("results/vectorbench").get().asFile.path))
+}
@@ -0,0 +1,112 @@
+package ssonin.nvstech.api;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.VerticleBase;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import org.openjdk.jmh.annotations.*;
+import ssonin.nvstech.eventbus.MessageCodecs;
+import ssonin.nvstech.model.Client;
+import ssonin.nvstech.model.NewClient;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP throughput of {@link ApiVerticle} as the number of deployed instances grows.
+ * {@code POST /clients} is driven with a fixed number of requests in flight, so JSON parsing and
+ * schema validation dominate. The repository is replaced by a stub that replies immediately and is
+ * deployed with the same instance count, so it does not become the bottleneck itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InstanceScalingBenchmark {
+
+  private static final int HTTP_PORT = 18989;
+  private static final int IN_FLIGHT = 256;
+
+  @Param({"1", "2", "4", "8"})
+  int instances;
+
+  private Vertx server;
+  private Vertx client;
+  private WebClient webClient;
+  private Buffer payload;
+
+  @Setup
+  public void setUp() throws Exception {
+    server = Vertx.vertx();
+    final var options = new DeploymentOptions()
+      .setInstances(instances)
+      .setConfig(new JsonObject().put("http.port", HTTP_PORT));
+    server.deployVerticle(StubRepository::new, options)
+      .compose(__ -> server.deployVerticle(ApiVerticle::new, options))
+      .await(30, TimeUnit.SECONDS);
+
+    client = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(2));
+    webClient = WebClient.create(client,
+      new WebClientOptions().setDefaultHost("localhost").setDefaultPort(HTTP_PORT),
+      new PoolOptions().setHttp1MaxSize(IN_FLIGHT));
+    payload = new JsonObject()
+      .put("first_name", "Chandler")
+      .put("last_name", "Bing")
+      .put("email", "chandler.bing@neviswealth.com")
+      .put("description", "Sarcastic, self-deprecating office worker with a sharp sense of humor, "
+        + "known for cracking jokes to deflect awkward situations.")
+      .toBuffer();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    webClient.close();
+    client.close().await(10, TimeUnit.SECONDS);
+    server.close().await(10, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(IN_FLIGHT)
+  public void createClient() throws Exception {
+    final var requests = new ArrayList<Future<?>>(IN_FLIGHT);
+    for (var i = 0; i < IN_FLIGHT; i++) {
+      requests.add(webClient.post("/api/v1/clients")
+        .putHeader("Content-Type", "application/json")
+        .sendBuffer(payload)
+        .map(response -> {
+          if (response.statusCode() != 201) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+          }
+          return response;
+        }));
+    }
+    Future.all(requests).await(30, TimeUnit.SECONDS);
+  }
+
+  public static final class StubRepository extends VerticleBase {
+
+    @Override
+    public Future<?> start() {
+      MessageCodecs.register(vertx.eventBus());
+      vertx.eventBus().consumer("clients.create", this::createClient);
+      return Future.succeededFuture();
+    }
+
+    private void createClient(Message<NewClient> msg) {
+      final var data = msg.body();
+      msg.reply(new Client(UUID.randomUUID(), OffsetDateTime.now(),
+        data.firstName(), data.lastName(), data.email(), data.description()));
+    }
+  }
+}
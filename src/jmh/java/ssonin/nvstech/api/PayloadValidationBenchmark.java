@@ -0,0 +1,65 @@
+package ssonin.nvstech.api;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.json.schema.Validator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and schema validation of request payloads, as done by {@link ApiVerticle} before a
+ * payload is sent to the repository. The invalid payload also pays for formatting the error message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadValidationBenchmark {
+
+  @Param({"1024", "1048576"})
+  int documentSize;
+
+  private Validator clientValidator;
+  private Validator documentValidator;
+  private Buffer validClient;
+  private Buffer invalidClient;
+  private Buffer document;
+
+  @Setup
+  public void setUp() {
+    clientValidator = PayloadValidators.client();
+    documentValidator = PayloadValidators.document();
+    validClient = new JsonObject()
+      .put("first_name", "Chandler")
+      .put("last_name", "Bing")
+      .put("email", "chandler.bing@neviswealth.com")
+      .put("description", "Sarcastic, self-deprecating office worker with a sharp sense of humor.")
+      .toBuffer();
+    invalidClient = new JsonObject()
+      .put("first_name", "")
+      .put("email", "chandler.bing")
+      .toBuffer();
+    document = new JsonObject()
+      .put("title", "Annual Report")
+      .put("content", "Portfolio performance and outlook. ".repeat(documentSize / 35))
+      .toBuffer();
+  }
+
+  @Benchmark
+  public boolean validClient() {
+    return clientValidator.validate(new JsonObject(validClient)).getValid();
+  }
+
+  @Benchmark
+  public String invalidClient() {
+    return PayloadValidators.formatValidationErrors(clientValidator.validate(new JsonObject(invalidClient)));
+  }
+
+  @Benchmark
+  public boolean document() {
+    return documentValidator.validate(new JsonObject(document)).getValid();
+  }
+}
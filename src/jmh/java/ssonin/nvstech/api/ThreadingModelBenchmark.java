@@ -0,0 +1,141 @@
+package ssonin.nvstech.api;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.ThreadingModel;
+import io.vertx.core.VerticleBase;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import org.openjdk.jmh.annotations.*;
+import ssonin.nvstech.eventbus.MessageCodecs;
+import ssonin.nvstech.model.Client;
+import ssonin.nvstech.model.ClientLookup;
+import ssonin.nvstech.model.Document;
+import ssonin.nvstech.model.NewDocument;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Latency of small {@code GET /clients/:id} requests while large JSON documents are being created
+ * in the background, with {@link ApiVerticle} deployed on event loops or on virtual threads.
+ * Parsing and validating the large documents is the CPU-heavy work that competes with the
+ * small requests. The repository is a stub that replies immediately.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ThreadingModelBenchmark {
+
+  private static final int HTTP_PORT = 18990;
+  private static final int LARGE_DOCUMENTS_IN_FLIGHT = 4;
+
+  @Param({"EVENT_LOOP", "VIRTUAL_THREAD"})
+  ThreadingModel threadingModel;
+
+  @Param({"1", "4"})
+  int instances;
+
+  @Param({"1048576"})
+  int largeDocumentSize;
+
+  private Vertx server;
+  private Vertx client;
+  private WebClient webClient;
+  private Buffer largeDocument;
+  private String clientPath;
+  private final AtomicBoolean loadRunning = new AtomicBoolean();
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    server = Vertx.vertx();
+    final var config = new JsonObject().put("http.port", HTTP_PORT);
+    server.deployVerticle(StubRepository::new, new DeploymentOptions().setConfig(config))
+      .compose(__ -> server.deployVerticle(ApiVerticle::new, new DeploymentOptions()
+        .setConfig(config)
+        .setInstances(instances)
+        .setThreadingModel(threadingModel)))
+      .await(30, TimeUnit.SECONDS);
+
+    client = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(2));
+    webClient = WebClient.create(client,
+      new WebClientOptions().setDefaultHost("localhost").setDefaultPort(HTTP_PORT),
+      new PoolOptions().setHttp1MaxSize(LARGE_DOCUMENTS_IN_FLIGHT + 1));
+    largeDocument = new JsonObject()
+      .put("title", "Annual Report")
+      .put("content", "Portfolio performance and outlook. ".repeat(largeDocumentSize / 35))
+      .toBuffer();
+    clientPath = "/api/v1/clients/" + UUID.randomUUID();
+  }
+
+  @Setup(Level.Iteration)
+  public void startBackgroundLoad() {
+    loadRunning.set(true);
+    for (var i = 0; i < LARGE_DOCUMENTS_IN_FLIGHT; i++) {
+      client.runOnContext(__ -> createLargeDocument());
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void stopBackgroundLoad() {
+    loadRunning.set(false);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    webClient.close();
+    client.close().await(10, TimeUnit.SECONDS);
+    server.close().await(10, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  public int getClient() throws Exception {
+    return webClient.get(clientPath)
+      .send()
+      .await(30, TimeUnit.SECONDS)
+      .statusCode();
+  }
+
+  private void createLargeDocument() {
+    if (!loadRunning.get()) {
+      return;
+    }
+    webClient.post(clientPath + "/documents")
+      .putHeader("Content-Type", "application/json")
+      .sendBuffer(largeDocument)
+      .onComplete(__ -> createLargeDocument());
+  }
+
+  public static final class StubRepository extends VerticleBase {
+
+    @Override
+    public Future<?> start() {
+      MessageCodecs.register(vertx.eventBus());
+      vertx.eventBus().consumer("clients.get", this::getClient);
+      vertx.eventBus().consumer("documents.create", this::createDocument);
+      return Future.succeededFuture();
+    }
+
+    private void getClient(Message<ClientLookup> msg) {
+      msg.reply(new Client(msg.body().clientId(), OffsetDateTime.now(),
+        "Chandler", "Bing", "chandler.bing@neviswealth.com", null));
+    }
+
+    private void createDocument(Message<NewDocument> msg) {
+      final var data = msg.body();
+      msg.reply(new Document(UUID.randomUUID(), OffsetDateTime.now(), data.clientId(),
+        data.title(), data.content(), data.contentSha256()));
+    }
+  }
+}
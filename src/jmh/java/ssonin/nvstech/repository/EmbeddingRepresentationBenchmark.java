@@ -0,0 +1,73 @@
+package ssonin.nvstech.repository;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import ssonin.nvstech.model.Embeddings;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An embedding held as a {@code JsonArray} of boxed doubles versus a {@code float[]}, from the
+ * embedding service response to the pgvector literal bound to the document queries.
+ * The {@code jsonArray} methods reproduce the handling before {@link EmbeddingsParser} was introduced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmbeddingRepresentationBenchmark {
+
+  @Param({"384", "1536"})
+  int dimension;
+
+  private Buffer response;
+  private JsonArray jsonVector;
+  private float[] vector;
+
+  @Setup
+  public void setUp() throws Exception {
+    final var random = new SplittableRandom(42);
+    final var values = new JsonArray();
+    for (var i = 0; i < dimension; i++) {
+      values.add((double) (float) random.nextDouble(-1, 1));
+    }
+    response = new JsonObject().put("embeddings", new JsonArray().add(values)).toBuffer();
+    jsonVector = new JsonObject(response).getJsonArray("embeddings").getJsonArray(0);
+    vector = EmbeddingsParser.parse(response).first();
+  }
+
+  @Benchmark
+  public JsonArray jsonArrayParse() {
+    return new JsonObject(response).getJsonArray("embeddings");
+  }
+
+  @Benchmark
+  public Embeddings floatArrayParse() throws Exception {
+    return EmbeddingsParser.parse(response);
+  }
+
+  @Benchmark
+  public String jsonArrayLiteral() {
+    return jsonVector.toString();
+  }
+
+  @Benchmark
+  public String floatArrayLiteral() {
+    return RepositoryVerticle.vectorLiteral(vector);
+  }
+
+  @Benchmark
+  public String jsonArrayParseAndLiteral() {
+    return new JsonObject(response).getJsonArray("embeddings").getJsonArray(0).toString();
+  }
+
+  @Benchmark
+  public String floatArrayParseAndLiteral() throws Exception {
+    return RepositoryVerticle.vectorLiteral(EmbeddingsParser.parse(response).first());
+  }
+}
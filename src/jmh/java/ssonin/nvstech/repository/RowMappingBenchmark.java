@@ -0,0 +1,139 @@
+package ssonin.nvstech.repository;
+
+import io.vertx.pgclient.impl.RowImpl;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.desc.ColumnDescriptor;
+import io.vertx.sqlclient.internal.RowDesc;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.JDBCType;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning result rows into records in {@link RepositoryVerticle}, per row.
+ * The rows are built in memory with the same columns the client and document queries return,
+ * so the numbers cover the column lookups by name and the record allocation, not the wire decoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark {
+
+  private static final int ROWS = 20;
+
+  @Param({"false", "true"})
+  boolean explain;
+
+  private List<Row> clientRows;
+  private List<Row> documentRows;
+
+  @Setup
+  public void setUp() {
+    final var random = new SplittableRandom(42);
+    final var clientColumns = rowDesc("id", "created_at", "first_name", "last_name", "email", "description", "rank");
+    final var documentColumns = rowDesc("id", "created_at", "client_id", "title", "content", "content_sha256",
+      "rank", "fts_rank_pos", "vector_rank_pos", "fts_rrf", "vector_rrf");
+
+    clientRows = new ArrayList<>(ROWS);
+    documentRows = new ArrayList<>(ROWS);
+    for (var i = 0; i < ROWS; i++) {
+      final var client = new RowImpl(clientColumns);
+      client.addValue(UUID.randomUUID());
+      client.addValue(OffsetDateTime.now());
+      client.addValue("Chandler");
+      client.addValue("Bing");
+      client.addValue("chandler.bing%d@neviswealth.com".formatted(i));
+      client.addValue("Sarcastic, self-deprecating office worker.");
+      client.addValue(random.nextDouble());
+      clientRows.add(client);
+
+      final var document = new RowImpl(documentColumns);
+      document.addValue(UUID.randomUUID());
+      document.addValue(OffsetDateTime.now());
+      document.addValue(UUID.randomUUID());
+      document.addValue("Document %d".formatted(i));
+      document.addValue("Quarterly portfolio statement. ".repeat(32));
+      document.addValue("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+      document.addValue(random.nextDouble());
+      document.addValue(i + 1);
+      document.addValue(ROWS - i);
+      document.addValue(random.nextDouble());
+      document.addValue(random.nextDouble());
+      documentRows.add(document);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void clientFromRow(Blackhole blackhole) {
+    for (final var row : clientRows) {
+      blackhole.consume(RepositoryVerticle.clientFromRow(row));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void documentFromRow(Blackhole blackhole) {
+    for (final var row : documentRows) {
+      blackhole.consume(RepositoryVerticle.documentFromRow(row));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void clientSearchResultFromRow(Blackhole blackhole) {
+    for (var i = 0; i < ROWS; i++) {
+      blackhole.consume(RepositoryVerticle.clientSearchResultFromRow(clientRows.get(i), explain ? i + 1 : 0));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void documentSearchResultFromRow(Blackhole blackhole) {
+    for (final var row : documentRows) {
+      blackhole.consume(RepositoryVerticle.documentSearchResultFromRow(row, explain));
+    }
+  }
+
+  private static RowDesc rowDesc(String... names) {
+    final var columns = new ColumnDescriptor[names.length];
+    for (var i = 0; i < names.length; i++) {
+      columns[i] = column(names[i]);
+    }
+    return new RowDesc(columns) {
+    };
+  }
+
+  private static ColumnDescriptor column(String name) {
+    return new ColumnDescriptor() {
+      @Override
+      public String name() {
+        return name;
+      }
+
+      @Override
+      public boolean isArray() {
+        return false;
+      }
+
+      @Override
+      public String typeName() {
+        return null;
+      }
+
+      @Override
+      public JDBCType jdbcType() {
+        return JDBCType.OTHER;
+      }
+    };
+  }
+}
@@ -0,0 +1,59 @@
+package ssonin.nvstech.repository;
+
+import org.openjdk.jmh.annotations.*;
+import ssonin.nvstech.model.Client;
+import ssonin.nvstech.model.Document;
+import ssonin.nvstech.model.SearchHit;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The merge phase of a search: client and document hits, each already ordered by their own query,
+ * combined into a single list sorted by descending rank.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchMergeBenchmark {
+
+  @Param({"5", "50"})
+  int clientHits;
+
+  @Param({"20", "200"})
+  int documentHits;
+
+  private List<SearchHit> clients;
+  private List<SearchHit> documents;
+
+  @Setup
+  public void setUp() {
+    final var random = new SplittableRandom(42);
+    clients = new ArrayList<>(clientHits);
+    for (var i = 0; i < clientHits; i++) {
+      final var client = new Client(UUID.randomUUID(), OffsetDateTime.now(), "Chandler", "Bing",
+        "chandler.bing%d@neviswealth.com".formatted(i), null);
+      clients.add(new SearchHit.ClientHit(client, random.nextDouble()));
+    }
+    documents = new ArrayList<>(documentHits);
+    for (var i = 0; i < documentHits; i++) {
+      final var document = new Document(UUID.randomUUID(), OffsetDateTime.now(), UUID.randomUUID(),
+        "Document %d".formatted(i), "Quarterly portfolio statement.", null);
+      documents.add(new SearchHit.DocumentHit(document, random.nextDouble()));
+    }
+    clients.sort(RepositoryVerticle.BY_RANK_DESCENDING);
+    documents.sort(RepositoryVerticle.BY_RANK_DESCENDING);
+  }
+
+  @Benchmark
+  public List<SearchHit> merge() {
+    return RepositoryVerticle.merge(clients, documents);
+  }
+}
@@ -0,0 +1,79 @@
+package ssonin.nvstech.text;
+
+import org.openjdk.jmh.annotations.*;
+import ssonin.nvstech.model.Client;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client search in the in-process index, from the query lexemes to the ranked matches. Clients get
+ * two name lexemes, three email tokens and a 30-word description, drawn with a Zipf-like skew from a
+ * vocabulary of 20,000 lexemes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Bm25IndexBenchmark {
+
+  private static final int VOCABULARY = 20_000;
+  private static final int DESCRIPTION_WORDS = 30;
+  private static final OffsetDateTime CREATED_AT = OffsetDateTime.of(2026, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+  @Param({"10000", "100000"})
+  int clients;
+
+  private Bm25Index index;
+  private List<String> commonWord;
+  private List<String> rareWord;
+  private List<String> twoWords;
+
+  @Setup
+  public void setUp() {
+    final var random = new SplittableRandom(42);
+    index = new Bm25Index();
+    for (var i = 0; i < clients; i++) {
+      // A tsvector holds each lexeme once, with the labels of all its positions
+      final var labels = new LinkedHashMap<String, String>();
+      for (var j = 0; j < 5 + DESCRIPTION_WORDS; j++) {
+        final var label = j < 2 ? "A" : j < 5 ? "B" : "C";
+        labels.merge(j < 2 ? "name" + random.nextInt(VOCABULARY) : word(random), label, String::concat);
+      }
+      index.add(new Client(new UUID(0, i), CREATED_AT, "First", "Last", "client@example.com", null),
+        labels.keySet().toArray(String[]::new), labels.values().toArray(String[]::new));
+    }
+    commonWord = List.of("w100");
+    rareWord = List.of("w5000");
+    twoWords = List.of("w3", "w10");
+  }
+
+  @Benchmark
+  public List<Bm25Index.Match> commonLexeme() {
+    return index.search(commonWord);
+  }
+
+  @Benchmark
+  public List<Bm25Index.Match> rareLexeme() {
+    return index.search(rareWord);
+  }
+
+  @Benchmark
+  public List<Bm25Index.Match> twoLexemes() {
+    return index.search(twoWords);
+  }
+
+  /**
+   * A lexeme whose index is roughly Zipf-distributed, so that low indexes are common.
+   */
+  private static String word(SplittableRandom random) {
+    return "w" + (int) Math.pow(VOCABULARY, random.nextDouble());
+  }
+}
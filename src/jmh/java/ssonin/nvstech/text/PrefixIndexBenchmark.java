@@ -0,0 +1,73 @@
+package ssonin.nvstech.text;
+
+import org.openjdk.jmh.annotations.*;
+import ssonin.nvstech.model.Suggestion;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typeahead completion of prefixes of growing length, and counting a search for a completion,
+ * over 100,000 completions of two to six words from a vocabulary of 20,000 words.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrefixIndexBenchmark {
+
+  private static final int COMPLETIONS = 100_000;
+  private static final int VOCABULARY = 20_000;
+  private static final int LIMIT = 10;
+
+  @Param({"1", "3", "8"})
+  int prefixLength;
+
+  private PrefixIndex index;
+  private String[] texts;
+  private String[] prefixes;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    final var random = new SplittableRandom(42);
+    final var words = new String[VOCABULARY];
+    for (var i = 0; i < words.length; i++) {
+      final var word = new StringBuilder();
+      final var length = 3 + random.nextInt(8);
+      for (var j = 0; j < length; j++) {
+        word.append((char) ('a' + random.nextInt(26)));
+      }
+      words[i] = word.toString();
+    }
+    index = new PrefixIndex(COMPLETIONS);
+    texts = new String[COMPLETIONS];
+    for (var i = 0; i < COMPLETIONS; i++) {
+      final var text = new StringBuilder();
+      final var length = 2 + random.nextInt(5);
+      for (var j = 0; j < length; j++) {
+        text.append(j == 0 ? "" : " ").append(words[random.nextInt(VOCABULARY)]);
+      }
+      texts[i] = text.toString();
+      index.add(i % 2 == 0 ? "client" : "document", texts[i], 1 + random.nextInt(100));
+    }
+    prefixes = new String[1024];
+    for (var i = 0; i < prefixes.length; i++) {
+      final var word = words[random.nextInt(VOCABULARY)];
+      prefixes[i] = word.substring(0, Math.min(prefixLength, word.length()));
+    }
+  }
+
+  @Benchmark
+  public List<Suggestion> complete() {
+    return index.complete(prefixes[next++ & (prefixes.length - 1)], LIMIT);
+  }
+
+  @Benchmark
+  public void countSearch() {
+    index.used(texts[next++ % COMPLETIONS]);
+  }
+}
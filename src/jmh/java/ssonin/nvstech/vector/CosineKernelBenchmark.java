@@ -0,0 +1,63 @@
+package ssonin.nvstech.vector;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exact nearest-neighbour scan of one client's embeddings with the scalar and the SIMD cosine
+ * kernels, from the query to its top 20 documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CosineKernelBenchmark {
+
+  private static final int K = 20;
+
+  @Param({"384"})
+  int dimension;
+
+  @Param({"500", "2000", "10000"})
+  int documents;
+
+  private final CosineKernel scalar = new ScalarCosineKernel();
+  private final CosineKernel simd = new SimdCosineKernel();
+  private VectorBlock block;
+  private float[] query;
+
+  @Setup
+  public void setUp() {
+    final var random = new SplittableRandom(42);
+    final var builder = VectorBlock.builder(dimension, documents);
+    for (var i = 0; i < documents; i++) {
+      builder.add(new UUID(0, i), i, randomVector(random));
+    }
+    block = builder.build();
+    query = randomVector(random);
+  }
+
+  @Benchmark
+  public List<HnswIndex.Neighbour> scalarScan() {
+    return block.nearest(scalar, query, K, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  @Benchmark
+  public List<HnswIndex.Neighbour> simdScan() {
+    return block.nearest(simd, query, K, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  private float[] randomVector(SplittableRandom random) {
+    final var vector = new float[dimension];
+    for (var i = 0; i < dimension; i++) {
+      vector[i] = (float) random.nextDouble(-1, 1);
+    }
+    return vector;
+  }
+}
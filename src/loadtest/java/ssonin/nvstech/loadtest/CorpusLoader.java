@@ -0,0 +1,130 @@
+package ssonin.nvstech.loadtest;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Streams a {@link SyntheticCorpus} into PostgreSQL with {@code COPY ... FROM STDIN}. Rows are
+ * generated and sent in batches, so memory use does not grow with the size of the corpus.
+ * The HNSW index is dropped for the load and built once at the end, which is much faster than
+ * maintaining it row by row.
+ */
+final class CorpusLoader {
+
+  private static final Logger LOG = getLogger(CorpusLoader.class);
+  private static final int BATCH_BYTES = 4 * 1024 * 1024;
+  private static final long PROGRESS_INTERVAL = 100_000;
+
+  private final SyntheticCorpus corpus;
+  private final CorpusOptions options;
+
+  CorpusLoader(CorpusOptions options) {
+    this.options = options;
+    this.corpus = new SyntheticCorpus(options);
+  }
+
+  SyntheticCorpus corpus() {
+    return corpus;
+  }
+
+  void load(String jdbcUrl, String user, String password) throws SQLException {
+    try (final var connection = DriverManager.getConnection(jdbcUrl, user, password)) {
+      load(connection);
+    }
+  }
+
+  void load(Connection connection) throws SQLException {
+    load(connection, true);
+  }
+
+  /**
+   * Loads the corpus, leaving the documents without an HNSW index unless {@code buildIndex} is set.
+   */
+  void load(Connection connection, boolean buildIndex) throws SQLException {
+    final var startedAt = System.nanoTime();
+    final var copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+
+    copy(copyManager.copyIn("COPY clients (%s) FROM STDIN (FORMAT csv)".formatted(SyntheticCorpus.CLIENT_COLUMNS)),
+      "clients", options.clients(), (csv, index) -> corpus.appendClient(index, csv));
+
+    try (final var statement = connection.createStatement()) {
+      statement.execute("DROP INDEX IF EXISTS documents_embedding_idx");
+      // Monthly partitions for the whole creation time span, so that no document lands in the default one
+      statement.execute("SELECT create_documents_partitions('%s', '%s')"
+        .formatted(options.until().minus(options.span()), options.until().plusSeconds(1)));
+    }
+    // Content is stored apart from the documents, so both tables are filled from a staging copy
+    try (final var statement = connection.createStatement()) {
+      statement.execute("CREATE TEMP TABLE documents_staging (LIKE documents INCLUDING DEFAULTS, content text)");
+    }
+    copy(copyManager.copyIn("COPY documents_staging (%s) FROM STDIN (FORMAT csv)".formatted(SyntheticCorpus.DOCUMENT_COLUMNS)),
+      "documents", options.documents(), (csv, index) -> corpus.appendDocument(index, csv));
+    try (final var statement = connection.createStatement()) {
+      statement.execute("""
+        INSERT INTO documents (id, created_at, client_id, title, content_sha256, embedding, search)
+        SELECT id, created_at, client_id, title, content_sha256, embedding, document_search(title, content)
+        FROM documents_staging
+        """);
+      statement.execute("""
+        INSERT INTO document_contents (document_id, content)
+        SELECT id, content
+        FROM documents_staging
+        """);
+      statement.execute("DROP TABLE documents_staging");
+      // Bulk-loaded documents bypass the insert that keeps the client centroids current
+      statement.execute("SELECT rebuild_client_centroids()");
+    }
+
+    try (final var statement = connection.createStatement()) {
+      if (buildIndex) {
+        LOG.info("Building the HNSW index over {} documents", options.documents());
+        statement.execute("SET maintenance_work_mem = '1GB'");
+        statement.execute("CREATE INDEX documents_embedding_idx ON documents USING hnsw (embedding vector_cosine_ops)");
+      }
+      statement.execute("ANALYZE clients");
+      statement.execute("ANALYZE documents");
+      statement.execute("ANALYZE client_centroids");
+    }
+    LOG.info("Corpus loaded in {}s", (System.nanoTime() - startedAt) / 1_000_000_000);
+  }
+
+  private static void copy(CopyIn copyIn, String table, long rows, RowWriter writer) throws SQLException {
+    try {
+      final var csv = new StringBuilder(BATCH_BYTES + 64 * 1024);
+      for (var index = 0L; index < rows; index++) {
+        writer.append(csv, index);
+        if (csv.length() >= BATCH_BYTES) {
+          write(copyIn, csv);
+        }
+        if ((index + 1) % PROGRESS_INTERVAL == 0) {
+          LOG.info("Copied {} of {} {}", index + 1, rows, table);
+        }
+      }
+      write(copyIn, csv);
+      LOG.info("Copied {} {}", copyIn.endCopy(), table);
+    } finally {
+      if (copyIn.isActive()) {
+        copyIn.cancelCopy();
+      }
+    }
+  }
+
+  private static void write(CopyIn copyIn, StringBuilder csv) throws SQLException {
+    final var bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+    copyIn.writeToCopy(bytes, 0, bytes.length);
+    csv.setLength(0);
+  }
+
+  @FunctionalInterface
+  private interface RowWriter {
+    void append(StringBuilder csv, long index);
+  }
+}
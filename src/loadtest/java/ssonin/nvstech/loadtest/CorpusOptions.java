@@ -0,0 +1,108 @@
+package ssonin.nvstech.loadtest;
+
+import io.vertx.core.json.JsonObject;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static java.util.function.Predicate.not;
+
+/**
+ * Shape of a synthetic corpus, read from {@code corpus.*} system properties. The same options and
+ * seed always produce the same rows.
+ *
+ * @param clients        number of clients
+ * @param documents      number of documents, spread uniformly over the clients
+ * @param seed           seed every row is derived from
+ * @param minWords       shortest document content, in words
+ * @param maxWords       longest document content, in words
+ * @param vocabularySize distinct words the text is drawn from
+ * @param zipfExponent   skew of word frequencies; larger values concentrate text on fewer words
+ * @param clusters       topics; each document belongs to one and its embedding lies near the topic centroid
+ * @param clusterSpread  standard deviation of the embedding noise around a centroid, per dimension
+ * @param topicShare     fraction of words drawn from the document's topic rather than the whole vocabulary
+ * @param clientAffinity fraction of documents on their client's topic rather than a random one; with
+ *                       {@code 0}, topics are independent of clients
+ * @param until          latest creation time; creation times are spread over the preceding {@code span}
+ * @param span           period the creation times are spread over
+ */
+record CorpusOptions(
+  long clients,
+  long documents,
+  long seed,
+  int minWords,
+  int maxWords,
+  int vocabularySize,
+  double zipfExponent,
+  int clusters,
+  double clusterSpread,
+  double topicShare,
+  double clientAffinity,
+  Instant until,
+  Duration span) {
+
+  CorpusOptions {
+    if (clients < 1 && documents > 0) {
+      throw new IllegalArgumentException("Documents need at least one client");
+    }
+    if (minWords < 1 || maxWords < minWords) {
+      throw new IllegalArgumentException("Invalid document length range %d..%d".formatted(minWords, maxWords));
+    }
+    if (clusters < 1 || clusters > vocabularySize) {
+      throw new IllegalArgumentException("Invalid number of clusters: " + clusters);
+    }
+    if (clientAffinity < 0 || clientAffinity > 1) {
+      throw new IllegalArgumentException("Invalid client affinity: " + clientAffinity);
+    }
+  }
+
+  static CorpusOptions fromSystemProperties() {
+    return new CorpusOptions(
+      Long.parseLong(property("clients", "0")),
+      Long.parseLong(property("documents", "0")),
+      Long.parseLong(property("seed", "42")),
+      Integer.parseInt(property("minWords", "50")),
+      Integer.parseInt(property("maxWords", "400")),
+      Integer.parseInt(property("vocabularySize", "20000")),
+      Double.parseDouble(property("zipfExponent", "1.07")),
+      Integer.parseInt(property("clusters", "64")),
+      Double.parseDouble(property("clusterSpread", "0.03")),
+      Double.parseDouble(property("topicShare", "0.3")),
+      Double.parseDouble(property("clientAffinity", "0")),
+      Instant.parse(property("until", "2026-01-01T00:00:00Z")),
+      Duration.ofDays(Long.parseLong(property("spanDays", "365"))));
+  }
+
+  CorpusOptions withSize(long clients, long documents) {
+    return new CorpusOptions(clients, documents, seed, minWords, maxWords, vocabularySize, zipfExponent,
+      clusters, clusterSpread, topicShare, clientAffinity, until, span);
+  }
+
+  boolean isEmpty() {
+    return clients == 0 && documents == 0;
+  }
+
+  JsonObject toJson() {
+    return new JsonObject()
+      .put("clients", clients)
+      .put("documents", documents)
+      .put("seed", seed)
+      .put("min_words", minWords)
+      .put("max_words", maxWords)
+      .put("vocabulary_size", vocabularySize)
+      .put("zipf_exponent", zipfExponent)
+      .put("clusters", clusters)
+      .put("cluster_spread", clusterSpread)
+      .put("topic_share", topicShare)
+      .put("client_affinity", clientAffinity)
+      .put("until", until.toString())
+      .put("span_days", span.toDays());
+  }
+
+  private static String property(String name, String defaultValue) {
+    return Optional.ofNullable(System.getProperty("corpus." + name))
+      .filter(not(String::isBlank))
+      .orElse(defaultValue);
+  }
+}
@@ -0,0 +1,65 @@
+package ssonin.nvstech.loadtest;
+
+import io.vertx.core.json.JsonObject;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Buffer cache hits and reads of the document tables since the statistics were last reset, and
+ * their sizes. Partitions are summed into their table. PostgreSQL counts a block found in shared
+ * buffers as a hit and any other as a read, which the OS page cache may still have served.
+ */
+final class DatabaseStats {
+
+  private static final String STATS = """
+    SELECT
+      relname = 'document_contents' AS contents,
+      sum(heap_blks_hit) AS heap_hit,
+      sum(heap_blks_read) AS heap_read,
+      sum(coalesce(toast_blks_hit, 0)) AS toast_hit,
+      sum(coalesce(toast_blks_read, 0)) AS toast_read,
+      sum(coalesce(idx_blks_hit, 0)) AS index_hit,
+      sum(coalesce(idx_blks_read, 0)) AS index_read,
+      sum(pg_table_size(relid)) AS table_bytes,
+      sum(pg_indexes_size(relid)) AS index_bytes
+    FROM pg_statio_user_tables
+    WHERE relname = 'document_contents' OR relname = 'documents' OR relname LIKE 'documents\\_%'
+    GROUP BY 1
+    """;
+
+  private DatabaseStats() {
+  }
+
+  static void reset(Connection connection) throws SQLException {
+    try (final var statement = connection.createStatement()) {
+      statement.execute("SELECT pg_stat_reset()");
+    }
+  }
+
+  /**
+   * Takes the statistics. Backends report theirs when they exit at the latest, so the application
+   * should be stopped first.
+   */
+  static JsonObject snapshot(Connection connection) throws SQLException {
+    final var stats = new JsonObject();
+    try (final var statement = connection.createStatement();
+         final var rows = statement.executeQuery(STATS)) {
+      while (rows.next()) {
+        final var hit = rows.getLong("heap_hit") + rows.getLong("toast_hit") + rows.getLong("index_hit");
+        final var read = rows.getLong("heap_read") + rows.getLong("toast_read") + rows.getLong("index_read");
+        stats.put(rows.getBoolean("contents") ? "document_contents" : "documents", new JsonObject()
+          .put("heap_blocks_hit", rows.getLong("heap_hit"))
+          .put("heap_blocks_read", rows.getLong("heap_read"))
+          .put("toast_blocks_hit", rows.getLong("toast_hit"))
+          .put("toast_blocks_read", rows.getLong("toast_read"))
+          .put("index_blocks_hit", rows.getLong("index_hit"))
+          .put("index_blocks_read", rows.getLong("index_read"))
+          .put("hit_ratio", hit + read == 0 ? null : (double) hit / (hit + read))
+          .put("table_bytes", rows.getLong("table_bytes"))
+          .put("index_bytes", rows.getLong("index_bytes")));
+      }
+    }
+    return stats;
+  }
+}
@@ -0,0 +1,71 @@
+package ssonin.nvstech.loadtest;
+
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformerV2;
+import com.github.tomakehurst.wiremock.stubbing.ServeEvent;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Random;
+
+import static com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder.responseDefinition;
+
+/**
+ * Stands in for the embedding service. Every text maps to the same unit vector on every run, near
+ * one of the topic centroids of the synthetic corpus, so searches hit the same documents from one
+ * run to the next. Latency and failures are drawn at random around the configured values.
+ */
+final class EmbeddingStub implements ResponseDefinitionTransformerV2 {
+
+  static final String NAME = "deterministic-embeddings";
+  private final int latencyMs;
+  private final int jitterMs;
+  private final double errorRate;
+  private final long seed;
+  private final SyntheticVectors vectors;
+  private final Random random;
+
+  EmbeddingStub(int latencyMs, int jitterMs, double errorRate, long seed, SyntheticVectors vectors) {
+    this.latencyMs = latencyMs;
+    this.jitterMs = jitterMs;
+    this.errorRate = errorRate;
+    this.seed = seed;
+    this.vectors = vectors;
+    this.random = new Random(seed);
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean applyGlobally() {
+    return false;
+  }
+
+  @Override
+  public ResponseDefinition transform(ServeEvent serveEvent) {
+    final var delay = Math.max(0, latencyMs + (jitterMs > 0 ? random.nextInt(-jitterMs, jitterMs + 1) : 0));
+    if (random.nextDouble() < errorRate) {
+      return responseDefinition()
+        .withStatus(503)
+        .withFixedDelay(delay)
+        .build();
+    }
+
+    final var texts = new JsonObject(serveEvent.getRequest().getBodyAsString()).getJsonArray("texts");
+    final var body = new StringBuilder(texts.size() * SyntheticVectors.DIMENSION * 12).append("{\"embeddings\":[");
+    for (var i = 0; i < texts.size(); i++) {
+      if (i > 0) {
+        body.append(',');
+      }
+      SyntheticVectors.appendLiteral(body, vectors.forText(texts.getString(i), seed));
+    }
+    return responseDefinition()
+      .withStatus(200)
+      .withHeader("Content-Type", "application/json")
+      .withBody(body.append("]}").toString())
+      .withFixedDelay(delay)
+      .build();
+  }
+}
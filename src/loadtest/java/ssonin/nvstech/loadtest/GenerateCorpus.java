@@ -0,0 +1,53 @@
+package ssonin.nvstech.loadtest;
+
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+
+import java.util.Optional;
+
+import static java.util.function.Predicate.not;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Migrates the schema of an existing database and loads a synthetic corpus into it. The database
+ * is taken from {@code corpus.jdbcUrl}, {@code corpus.user} and {@code corpus.password}, falling
+ * back to the standard {@code PG*} environment variables. Started by the {@code generateCorpus}
+ * Gradle task.
+ */
+public final class GenerateCorpus {
+
+  private static final Logger LOG = getLogger(GenerateCorpus.class);
+
+  private GenerateCorpus() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    final var options = CorpusOptions.fromSystemProperties();
+    if (options.isEmpty()) {
+      throw new IllegalArgumentException("Set corpus.clients and corpus.documents");
+    }
+    final var jdbcUrl = setting("corpus.jdbcUrl").orElseGet(() -> "jdbc:postgresql://%s:%s/%s".formatted(
+      env("PGHOST").orElse("localhost"), env("PGPORT").orElse("5432"), env("PGDATABASE").orElse("postgres")));
+    final var user = setting("corpus.user").or(() -> env("PGUSER")).orElse("postgres");
+    final var password = setting("corpus.password").or(() -> env("PGPASSWORD")).orElse(null);
+
+    Flyway.configure()
+      .dataSource(jdbcUrl, user, password)
+      .schemas("public")
+      .locations("classpath:db/migration")
+      .validateMigrationNaming(true)
+      .load()
+      .migrate();
+
+    LOG.info("Loading {} clients and {} documents into {}", options.clients(), options.documents(), jdbcUrl);
+    new CorpusLoader(options).load(jdbcUrl, user, password);
+  }
+
+  private static Optional<String> setting(String property) {
+    return Optional.ofNullable(System.getProperty(property)).filter(not(String::isBlank));
+  }
+
+  private static Optional<String> env(String variable) {
+    return Optional.ofNullable(System.getenv(variable)).filter(not(String::isBlank));
+  }
+}
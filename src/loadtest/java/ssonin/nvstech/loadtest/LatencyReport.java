@@ -0,0 +1,69 @@
+package ssonin.nvstech.loadtest;
+
+import io.vertx.core.json.JsonObject;
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies and outcomes of the requests started during the measured part of a run. Latency is
+ * taken from the time a request was scheduled to start, so time spent queued behind slow responses
+ * is counted instead of hidden.
+ */
+final class LatencyReport {
+
+  private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+  private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+  private final Map<Operation, Map<Integer, Long>> statusCodes = new EnumMap<>(Operation.class);
+  private final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+  private final Histogram total = histogram();
+
+  void record(Operation operation, long latencyNanos, int statusCode) {
+    final var micros = Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_TRACKABLE_MICROS);
+    histograms.computeIfAbsent(operation, __ -> histogram()).recordValue(micros);
+    total.recordValue(micros);
+    statusCodes.computeIfAbsent(operation, __ -> new TreeMap<>()).merge(statusCode, 1L, Long::sum);
+    if (statusCode == 0 || statusCode >= 400) {
+      errors.merge(operation, 1L, Long::sum);
+    }
+  }
+
+  JsonObject toJson(double seconds) {
+    final var operations = new JsonObject();
+    histograms.forEach((operation, histogram) -> {
+      final var codes = new JsonObject();
+      statusCodes.get(operation).forEach((code, count) -> codes.put(code == 0 ? "failed" : code.toString(), count));
+      operations.put(operation.label(), summary(histogram, seconds)
+        .put("errors", errors.getOrDefault(operation, 0L))
+        .put("status_codes", codes));
+    });
+    return summary(total, seconds)
+      .put("errors", errors.values().stream().mapToLong(Long::longValue).sum())
+      .put("operations", operations);
+  }
+
+  private static JsonObject summary(Histogram histogram, double seconds) {
+    return new JsonObject()
+      .put("requests", histogram.getTotalCount())
+      .put("throughput_rps", histogram.getTotalCount() / seconds)
+      .put("latency_ms", new JsonObject()
+        .put("p50", millis(histogram.getValueAtPercentile(50)))
+        .put("p95", millis(histogram.getValueAtPercentile(95)))
+        .put("p99", millis(histogram.getValueAtPercentile(99)))
+        .put("p999", millis(histogram.getValueAtPercentile(99.9)))
+        .put("max", millis(histogram.getMaxValue()))
+        .put("mean", histogram.getMean() / 1000));
+  }
+
+  private static double millis(long micros) {
+    return micros / 1000.0;
+  }
+
+  private static Histogram histogram() {
+    return new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+  }
+}
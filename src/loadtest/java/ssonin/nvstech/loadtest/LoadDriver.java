@@ -0,0 +1,160 @@
+package ssonin.nvstech.loadtest;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Starts requests at a fixed rate regardless of how quickly earlier ones complete, choosing each
+ * operation at random according to the traffic mix. Search queries and document text are drawn
+ * from the corpus vocabulary. All state is confined to the context the driver runs on.
+ */
+final class LoadDriver {
+
+  private static final Logger LOG = getLogger(LoadDriver.class);
+  private static final String API_V1 = "/api/v1";
+  private final Vertx vertx;
+  private final WebClient webClient;
+  private final LoadTestOptions options;
+  private final Vocabulary vocabulary;
+  private final SplittableRandom random;
+  private final Operation[] operations;
+  private final int[] cumulativeWeights;
+  private final List<String> clientIds;
+  private final LatencyReport report = new LatencyReport();
+
+  private long startedAt;
+  private long measureFrom;
+  private long stopAt;
+  private long issued;
+  private long inFlight;
+  private long createdClients;
+  private Promise<LatencyReport> completion;
+
+  LoadDriver(Vertx vertx, WebClient webClient, LoadTestOptions options, Vocabulary vocabulary, List<String> clientIds) {
+    this.vertx = vertx;
+    this.webClient = webClient;
+    this.options = options;
+    this.vocabulary = vocabulary;
+    this.random = new SplittableRandom(options.seed());
+    this.clientIds = new ArrayList<>(clientIds);
+    this.operations = options.mix().keySet().toArray(Operation[]::new);
+    this.cumulativeWeights = new int[operations.length];
+    var sum = 0;
+    for (var i = 0; i < operations.length; i++) {
+      sum += options.mix().get(operations[i]);
+      cumulativeWeights[i] = sum;
+    }
+  }
+
+  Future<LatencyReport> run() {
+    final var promise = Promise.<LatencyReport>promise();
+    vertx.runOnContext(__ -> {
+      completion = promise;
+      startedAt = System.nanoTime();
+      measureFrom = startedAt + options.warmup().toNanos();
+      stopAt = measureFrom + options.duration().toNanos();
+      vertx.setPeriodic(1, this::tick);
+    });
+    return promise.future();
+  }
+
+  private void tick(long timerId) {
+    final var now = System.nanoTime();
+    final var due = Math.min(now, stopAt) - startedAt;
+    final var target = due * options.rps() / TimeUnit.SECONDS.toNanos(1);
+    while (issued < target) {
+      final var scheduledAt = startedAt + issued * TimeUnit.SECONDS.toNanos(1) / options.rps();
+      issued++;
+      send(nextOperation(), scheduledAt);
+    }
+    if (now >= stopAt) {
+      vertx.cancelTimer(timerId);
+      LOG.info("Issued {} requests, waiting for {} in flight", issued, inFlight);
+      completeWhenDrained();
+    }
+  }
+
+  private void send(Operation operation, long scheduledAt) {
+    inFlight++;
+    request(operation).onComplete(ar -> {
+      inFlight--;
+      if (scheduledAt >= measureFrom) {
+        final var statusCode = ar.succeeded() ? ar.result().statusCode() : 0;
+        report.record(operation, System.nanoTime() - scheduledAt, statusCode);
+      }
+      if (ar.succeeded() && operation == Operation.CREATE_CLIENT && ar.result().statusCode() == 201) {
+        clientIds.add(ar.result().bodyAsJsonObject().getString("id"));
+      }
+      if (System.nanoTime() >= stopAt) {
+        completeWhenDrained();
+      }
+    });
+  }
+
+  private Future<HttpResponse<Buffer>> request(Operation operation) {
+    return switch (operation) {
+      case CREATE_CLIENT -> {
+        final var n = createdClients++;
+        yield webClient.post(API_V1 + "/clients")
+          .sendJsonObject(new JsonObject()
+            .put("first_name", "Load")
+            .put("last_name", "Test")
+            .put("email", "load.test.%d.%d@neviswealth.com".formatted(options.seed(), n))
+            .put("description", "Client created by the load test."));
+      }
+      case GET_CLIENT -> webClient.get(API_V1 + "/clients/" + randomClientId()).send();
+      case CREATE_DOCUMENT -> webClient.post(API_V1 + "/clients/" + randomClientId() + "/documents")
+        .sendJsonObject(new JsonObject()
+          .put("title", randomText(random.nextInt(3, 7)))
+          .put("content", randomText(random.nextInt(50, 400))));
+      case SEARCH -> webClient.get(API_V1 + "/search")
+        .addQueryParam("q", randomText(random.nextInt(1, 3)))
+        .send();
+    };
+  }
+
+  private void completeWhenDrained() {
+    if (inFlight == 0 && completion != null) {
+      completion.complete(report);
+      completion = null;
+    }
+  }
+
+  private Operation nextOperation() {
+    final var value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+    for (var i = 0; i < cumulativeWeights.length; i++) {
+      if (value < cumulativeWeights[i]) {
+        return operations[i];
+      }
+    }
+    throw new IllegalStateException("Unreachable");
+  }
+
+  private String randomClientId() {
+    return clientIds.get(random.nextInt(clientIds.size()));
+  }
+
+  private String randomText(int words) {
+    final var text = new StringBuilder();
+    for (var i = 0; i < words; i++) {
+      if (i > 0) {
+        text.append(' ');
+      }
+      text.append(vocabulary.sample(random));
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,183 @@
+package ssonin.nvstech.loadtest;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.ThreadingModel;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import org.slf4j.Logger;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+import ssonin.nvstech.App;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.DriverManager;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Runs the application against a pgvector container and an embedding stand-in, optionally loads a
+ * synthetic corpus, drives mixed traffic at a target rate and writes the latency percentiles and
+ * throughput as JSON. Started by the {@code loadTest} Gradle task.
+ */
+public final class LoadTest {
+
+  private static final Logger LOG = getLogger(LoadTest.class);
+  private static final int HTTP_PORT = 18_880;
+  private static final String POSTGRES_IMAGE = "pgvector/pgvector:pg16";
+  private static final long SHARED_MEMORY_BYTES = 2L * 1024 * 1024 * 1024;
+  private static final int SEED_BATCH_SIZE = 16;
+  private static final int CORPUS_CLIENT_SAMPLE = 1000;
+
+  private LoadTest() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    final var options = LoadTestOptions.fromSystemProperties();
+    final var corpusOptions = CorpusOptions.fromSystemProperties();
+    if (options.seedClients() < 1 && corpusOptions.clients() < 1) {
+      throw new IllegalArgumentException("At least one seed or corpus client is required");
+    }
+    final var corpusLoader = new CorpusLoader(corpusOptions);
+    final var corpus = corpusLoader.corpus();
+
+    try (final var postgres = new PostgreSQLContainer<>(DockerImageName.parse(POSTGRES_IMAGE))
+      .withSharedMemorySize(SHARED_MEMORY_BYTES)) {
+      postgres.start();
+      final var embeddings = embeddingService(options, corpus.vectors());
+      final var server = Vertx.vertx();
+      final var client = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(1));
+      try {
+        server.deployVerticle(App::new, new DeploymentOptions().setConfig(appConfig(options, postgres, embeddings)))
+          .await(2, TimeUnit.MINUTES);
+        if (!corpusOptions.isEmpty()) {
+          corpusLoader.load(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        }
+
+        final var webClient = WebClient.create(client,
+          new WebClientOptions().setDefaultHost("localhost").setDefaultPort(HTTP_PORT),
+          new PoolOptions().setHttp1MaxSize(options.maxConnections()));
+        final var clientIds = createSeedClients(webClient, options.seedClients());
+        for (var i = 0L; i < Math.min(corpusOptions.clients(), CORPUS_CLIENT_SAMPLE); i++) {
+          clientIds.add(corpus.clientId(i).toString());
+        }
+
+        LOG.info("Driving {} requests/s for {}s after {}s of warmup",
+          options.rps(), options.duration().toSeconds(), options.warmup().toSeconds());
+        try (final var connection = DriverManager.getConnection(
+          postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())) {
+          DatabaseStats.reset(connection);
+        }
+        final var startedAt = Instant.now();
+        final var report = new LoadDriver(client, webClient, options, corpus.vocabulary(), clientIds)
+          .run()
+          .await(options.warmup().plus(options.duration()).toSeconds() + 120, TimeUnit.SECONDS);
+
+        server.close().await(30, TimeUnit.SECONDS);
+        final JsonObject database;
+        try (final var connection = DriverManager.getConnection(
+          postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())) {
+          database = DatabaseStats.snapshot(connection);
+        }
+        final var result = new JsonObject()
+          .put("started_at", startedAt.toString())
+          .put("options", options.toJson())
+          .put("corpus", corpusOptions.toJson())
+          .mergeIn(report.toJson(options.duration().toNanos() / 1e9))
+          .put("database", database);
+        write(options, result);
+      } finally {
+        client.close().await(30, TimeUnit.SECONDS);
+        server.close().await(30, TimeUnit.SECONDS);
+        embeddings.stop();
+      }
+    }
+  }
+
+  private static WireMockServer embeddingService(LoadTestOptions options, SyntheticVectors vectors) {
+    final var stub = new EmbeddingStub(
+      options.embeddingLatencyMs(), options.embeddingJitterMs(), options.embeddingErrorRate(), options.seed(), vectors);
+    final var server = new WireMockServer(wireMockConfig()
+      .dynamicPort()
+      .containerThreads(64)
+      .asynchronousResponseEnabled(true)
+      .asynchronousResponseThreads(16)
+      .disableRequestJournal()
+      .extensions(stub));
+    server.start();
+    server.stubFor(post(urlEqualTo("/embeddings")).willReturn(aResponse().withTransformers(EmbeddingStub.NAME)));
+    return server;
+  }
+
+  private static JsonObject appConfig(LoadTestOptions options, PostgreSQLContainer<?> postgres, WireMockServer embeddings) {
+    final var deployment = new JsonObject()
+      .put("instances", options.instances())
+      .put("threadingModel", ThreadingModel.EVENT_LOOP.name());
+    return new JsonObject()
+      .put("deployment", new JsonObject()
+        .put("api", deployment.copy())
+        .put("repository", deployment.copy())
+        .put("embedding", deployment.copy()))
+      .put("http.port", HTTP_PORT)
+      .put("http.body-limit.clients", App.DEFAULT_CLIENT_BODY_LIMIT)
+      .put("http.body-limit.documents", App.DEFAULT_DOCUMENT_BODY_LIMIT)
+      .put("db", new JsonObject()
+        .put("host", postgres.getHost())
+        .put("port", postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT))
+        .put("database", postgres.getDatabaseName())
+        .put("user", postgres.getUsername())
+        .put("password", postgres.getPassword()))
+      .put("db.pool", new JsonObject()
+        .put("eventLoopSize", options.instances()))
+      .put("services", new JsonObject()
+        .put("embedding", new JsonObject()
+          .put("host", "localhost")
+          .put("port", embeddings.port())));
+  }
+
+  private static List<String> createSeedClients(WebClient webClient, int count) throws Exception {
+    final var clientIds = new ArrayList<String>(count);
+    final var runId = System.currentTimeMillis();
+    for (var batchStart = 0; batchStart < count; batchStart += SEED_BATCH_SIZE) {
+      final var requests = new ArrayList<Future<String>>(SEED_BATCH_SIZE);
+      for (var i = batchStart; i < Math.min(count, batchStart + SEED_BATCH_SIZE); i++) {
+        requests.add(webClient.post("/api/v1/clients")
+          .sendJsonObject(new JsonObject()
+            .put("first_name", "Seed")
+            .put("last_name", "Client")
+            .put("email", "seed.client.%d.%d@neviswealth.com".formatted(runId, i)))
+          .map(response -> {
+            if (response.statusCode() != 201) {
+              throw new IllegalStateException("Seed client creation failed with " + response.statusCode());
+            }
+            return response.bodyAsJsonObject().getString("id");
+          }));
+      }
+      clientIds.addAll(Future.all(requests)
+        .map(composite -> composite.<String>list())
+        .await(1, TimeUnit.MINUTES));
+    }
+    return clientIds;
+  }
+
+  private static void write(LoadTestOptions options, JsonObject result) throws IOException {
+    final var output = options.output().toAbsolutePath();
+    Files.createDirectories(output.getParent());
+    Files.writeString(output, result.encodePrettily());
+    LOG.info("Load test report written to {}", output);
+  }
+}
@@ -0,0 +1,102 @@
+package ssonin.nvstech.loadtest;
+
+import io.vertx.core.json.JsonObject;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.function.Predicate.not;
+
+/**
+ * Settings of a load test run, read from {@code loadtest.*} system properties.
+ *
+ * @param rps                 requests started per second, independent of how fast responses arrive
+ * @param warmup              time spent at the target rate before latencies are recorded
+ * @param duration            time during which latencies are recorded
+ * @param mix                 relative weight of each operation
+ * @param embeddingLatencyMs  mean latency of the embedding stand-in
+ * @param embeddingJitterMs   maximum deviation from the mean latency, in either direction
+ * @param embeddingErrorRate  fraction of embedding requests answered with 503
+ * @param seed                seed for the traffic and the embedding stand-in
+ * @param maxConnections      connections the load generator opens to the application
+ * @param seedClients         clients created before the run, so reads and document uploads have targets
+ * @param instances           instances of each verticle
+ * @param output              file the JSON report is written to
+ */
+record LoadTestOptions(
+  int rps,
+  Duration warmup,
+  Duration duration,
+  Map<Operation, Integer> mix,
+  int embeddingLatencyMs,
+  int embeddingJitterMs,
+  double embeddingErrorRate,
+  long seed,
+  int maxConnections,
+  int seedClients,
+  int instances,
+  Path output) {
+
+  private static final String DEFAULT_MIX = "create_client=5,get_client=50,create_document=15,search=30";
+
+  static LoadTestOptions fromSystemProperties() {
+    return new LoadTestOptions(
+      Integer.parseInt(property("rps", "200")),
+      Duration.ofSeconds(Long.parseLong(property("warmupSeconds", "10"))),
+      Duration.ofSeconds(Long.parseLong(property("durationSeconds", "60"))),
+      mix(property("mix", DEFAULT_MIX)),
+      Integer.parseInt(property("embeddingLatencyMs", "20")),
+      Integer.parseInt(property("embeddingJitterMs", "10")),
+      Double.parseDouble(property("embeddingErrorRate", "0")),
+      Long.parseLong(property("seed", "42")),
+      Integer.parseInt(property("maxConnections", "256")),
+      Integer.parseInt(property("seedClients", "100")),
+      Integer.parseInt(property("instances", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+      Path.of(property("output", "build/results/loadtest/results.json")));
+  }
+
+  JsonObject toJson() {
+    final var weights = new JsonObject();
+    mix.forEach((operation, weight) -> weights.put(operation.label(), weight));
+    return new JsonObject()
+      .put("rps", rps)
+      .put("warmup_seconds", warmup.toSeconds())
+      .put("duration_seconds", duration.toSeconds())
+      .put("mix", weights)
+      .put("embedding_latency_ms", embeddingLatencyMs)
+      .put("embedding_jitter_ms", embeddingJitterMs)
+      .put("embedding_error_rate", embeddingErrorRate)
+      .put("seed", seed)
+      .put("max_connections", maxConnections)
+      .put("seed_clients", seedClients)
+      .put("instances", instances);
+  }
+
+  private static String property(String name, String defaultValue) {
+    return Optional.ofNullable(System.getProperty("loadtest." + name))
+      .filter(not(String::isBlank))
+      .orElse(defaultValue);
+  }
+
+  private static Map<Operation, Integer> mix(String value) {
+    final var mix = new EnumMap<Operation, Integer>(Operation.class);
+    for (final var entry : value.split(",")) {
+      final var parts = entry.split("=", 2);
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Invalid traffic mix entry: " + entry);
+      }
+      final var weight = Integer.parseInt(parts[1].trim());
+      if (weight < 0) {
+        throw new IllegalArgumentException("Negative weight for " + parts[0]);
+      }
+      mix.put(Operation.fromLabel(parts[0].trim()), weight);
+    }
+    if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+      throw new IllegalArgumentException("Traffic mix has no weight");
+    }
+    return mix;
+  }
+}
@@ -0,0 +1,31 @@
+package ssonin.nvstech.loadtest;
+
+/**
+ * The kinds of request the load test sends, named as they appear in the traffic mix and the report.
+ */
+enum Operation {
+
+  CREATE_CLIENT("create_client"),
+  GET_CLIENT("get_client"),
+  CREATE_DOCUMENT("create_document"),
+  SEARCH("search");
+
+  private final String label;
+
+  Operation(String label) {
+    this.label = label;
+  }
+
+  String label() {
+    return label;
+  }
+
+  static Operation fromLabel(String label) {
+    for (final var operation : values()) {
+      if (operation.label.equals(label)) {
+        return operation;
+      }
+    }
+    throw new IllegalArgumentException("Unknown operation: " + label);
+  }
+}
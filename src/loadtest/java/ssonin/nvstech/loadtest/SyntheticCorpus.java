@@ -0,0 +1,163 @@
+package ssonin.nvstech.loadtest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Generates clients and documents as CSV rows for {@code COPY}. Each row is derived only from the
+ * seed and its index, so rows can be produced in any order and documents can reference clients
+ * without keeping them in memory.
+ */
+final class SyntheticCorpus {
+
+  static final String CLIENT_COLUMNS = "id, created_at, first_name, last_name, email, description";
+  static final String DOCUMENT_COLUMNS = "id, created_at, client_id, title, content, content_sha256, embedding";
+
+  private static final long CLIENT_STREAM = 0x5DEECE66DL;
+  private static final long DOCUMENT_STREAM = 0x2545F4914F6CDD1DL;
+  private static final long CLIENT_TOPIC_STREAM = 0x1B873593L;
+  private static final List<String> FIRST_NAMES = List.of(
+    "Monica", "Rachel", "Phoebe", "Joey", "Chandler", "Ross", "Janice", "Gunther", "Carol", "Susan",
+    "Emily", "Richard", "Mike", "Charlie", "Kathy", "Paolo", "Julie", "Tag", "Erica", "Frank",
+    "Alice", "Ursula", "Jack", "Judy", "Ben", "Emma", "David", "Pete", "Tim", "Eddie");
+  private static final List<String> LAST_NAMES = List.of(
+    "Geller", "Green", "Buffay", "Tribbiani", "Bing", "Hlitstein", "Bunch", "Willick", "Waltham",
+    "Burke", "Hannigan", "Bazida", "Stevens", "Jones", "Hobart", "Knight", "Tyler", "Wheeler", "Lee",
+    "Keller", "Shaw", "Becker", "Martin", "Howard", "Reed", "Lambert", "Doyle", "Parker", "Ellis", "Ward");
+
+  private final CorpusOptions options;
+  private final Vocabulary vocabulary;
+  private final SyntheticVectors vectors;
+  private final int topicSliceSize;
+
+  SyntheticCorpus(CorpusOptions options) {
+    this.options = options;
+    this.vocabulary = new Vocabulary(options.vocabularySize(), options.zipfExponent());
+    this.vectors = new SyntheticVectors(options.clusters(), options.clusterSpread(), options.seed());
+    this.topicSliceSize = options.vocabularySize() / options.clusters();
+  }
+
+  Vocabulary vocabulary() {
+    return vocabulary;
+  }
+
+  SyntheticVectors vectors() {
+    return vectors;
+  }
+
+  UUID clientId(long index) {
+    return uuid(random(CLIENT_STREAM, index));
+  }
+
+  /**
+   * The topic most of a client's documents are on when the corpus has a client affinity.
+   */
+  int clientTopic(long index) {
+    return random(CLIENT_TOPIC_STREAM, index).nextInt(options.clusters());
+  }
+
+  void appendClient(long index, StringBuilder csv) {
+    final var random = random(CLIENT_STREAM, index);
+    final var id = uuid(random);
+    final var firstName = FIRST_NAMES.get(random.nextInt(FIRST_NAMES.size()));
+    final var lastName = LAST_NAMES.get(random.nextInt(LAST_NAMES.size()));
+    field(csv, id.toString()).append(',');
+    field(csv, createdAt(random).toString()).append(',');
+    field(csv, firstName).append(',');
+    field(csv, lastName).append(',');
+    field(csv, "%s.%s.%d@example.com".formatted(firstName, lastName, index).toLowerCase()).append(',');
+    field(csv, text(random, random.nextInt(10, 31), random.nextInt(options.clusters()))).append('\n');
+  }
+
+  void appendDocument(long index, StringBuilder csv) {
+    final var random = random(DOCUMENT_STREAM, index);
+    final var id = uuid(random);
+    var cluster = random.nextInt(options.clusters());
+    final var clientIndex = random.nextLong(options.clients());
+    final var clientId = clientId(clientIndex);
+    // Drawn only with an affinity, so that corpora without one stay as they were
+    if (options.clientAffinity() > 0 && random.nextDouble() < options.clientAffinity()) {
+      cluster = clientTopic(clientIndex);
+    }
+    final var title = capitalise(text(random, random.nextInt(3, 7), cluster));
+    final var content = text(random, random.nextInt(options.minWords(), options.maxWords() + 1), cluster);
+    field(csv, id.toString()).append(',');
+    field(csv, createdAt(random).toString()).append(',');
+    field(csv, clientId.toString()).append(',');
+    field(csv, title).append(',');
+    field(csv, content).append(',');
+    field(csv, sha256(content)).append(',');
+    csv.append('"');
+    SyntheticVectors.appendLiteral(csv, vectors.near(cluster, random));
+    csv.append('"').append('\n');
+  }
+
+  private String text(SplittableRandom random, int words, int cluster) {
+    final var text = new StringBuilder(words * 9);
+    var sentenceLength = 0;
+    for (var i = 0; i < words; i++) {
+      if (i > 0) {
+        text.append(sentenceLength == 0 ? ". " : " ");
+      }
+      text.append(word(random, cluster));
+      sentenceLength = (sentenceLength + 1) % 12;
+    }
+    return text.append('.').toString();
+  }
+
+  private String word(SplittableRandom random, int cluster) {
+    final var rank = vocabulary.sampleRank(random);
+    if (random.nextDouble() >= options.topicShare()) {
+      return vocabulary.word(rank);
+    }
+    return vocabulary.word((cluster * topicSliceSize + rank % topicSliceSize) % vocabulary.size());
+  }
+
+  private OffsetDateTime createdAt(SplittableRandom random) {
+    final var ago = random.nextLong(Math.max(1, options.span().toSeconds()));
+    return options.until().minusSeconds(ago).atOffset(ZoneOffset.UTC);
+  }
+
+  private SplittableRandom random(long stream, long index) {
+    return new SplittableRandom(options.seed() ^ stream ^ (index * 0x9E3779B97F4A7C15L));
+  }
+
+  private static UUID uuid(SplittableRandom random) {
+    final var msb = (random.nextLong() & ~0xF000L) | 0x4000L;
+    final var lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+    return new UUID(msb, lsb);
+  }
+
+  private static StringBuilder field(StringBuilder csv, String value) {
+    csv.append('"');
+    for (var i = 0; i < value.length(); i++) {
+      final var c = value.charAt(i);
+      if (c == '"') {
+        csv.append('"');
+      }
+      csv.append(c);
+    }
+    return csv.append('"');
+  }
+
+  private static String capitalise(String text) {
+    final var trimmed = text.substring(0, text.length() - 1);
+    return Character.toUpperCase(trimmed.charAt(0)) + trimmed.substring(1);
+  }
+
+  private static String sha256(String content) {
+    try {
+      final var digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package ssonin.nvstech.loadtest;
+
+import java.util.SplittableRandom;
+
+/**
+ * Unit vectors grouped around a fixed set of random centroids, standing in for the embeddings of
+ * documents that fall into a limited number of topics.
+ */
+final class SyntheticVectors {
+
+  static final int DIMENSION = 384;
+
+  private final float[][] centroids;
+  private final double spread;
+
+  SyntheticVectors(int clusters, double spread, long seed) {
+    this.spread = spread;
+    this.centroids = new float[clusters][];
+    final var random = new SplittableRandom(seed);
+    for (var i = 0; i < clusters; i++) {
+      final var centroid = new float[DIMENSION];
+      for (var d = 0; d < DIMENSION; d++) {
+        centroid[d] = (float) random.nextGaussian();
+      }
+      centroids[i] = normalise(centroid);
+    }
+  }
+
+  int clusters() {
+    return centroids.length;
+  }
+
+  float[] near(int cluster, SplittableRandom random) {
+    final var centroid = centroids[cluster];
+    final var vector = new float[DIMENSION];
+    for (var d = 0; d < DIMENSION; d++) {
+      vector[d] = (float) (centroid[d] + spread * random.nextGaussian());
+    }
+    return normalise(vector);
+  }
+
+  /**
+   * The vector for an arbitrary text, such as a search query: the same text always lands near the
+   * same centroid.
+   */
+  float[] forText(String text, long seed) {
+    final var random = new SplittableRandom(seed ^ text.hashCode());
+    return near(Math.floorMod(text.hashCode(), centroids.length), random);
+  }
+
+  static void appendLiteral(StringBuilder target, float[] vector) {
+    target.append('[');
+    for (var i = 0; i < vector.length; i++) {
+      if (i > 0) {
+        target.append(',');
+      }
+      target.append(vector[i]);
+    }
+    target.append(']');
+  }
+
+  private static float[] normalise(float[] vector) {
+    var norm = 0.0;
+    for (final var value : vector) {
+      norm += value * value;
+    }
+    final var scale = (float) (1 / Math.sqrt(norm));
+    for (var i = 0; i < vector.length; i++) {
+      vector[i] *= scale;
+    }
+    return vector;
+  }
+}
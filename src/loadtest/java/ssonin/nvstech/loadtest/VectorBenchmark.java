@@ -0,0 +1,352 @@
+package ssonin.nvstech.loadtest;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.HdrHistogram.Histogram;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+import ssonin.nvstech.repository.VectorSearchQueries;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Measures recall against latency for the HNSW search behind the document search. Exact top-k
+ * neighbours are computed first with index scans disabled. Then, for every combination of index
+ * build parameters, {@code hnsw.ef_search} and candidate limit, the production {@code vector_results}
+ * query is run for every query vector and compared with them. Last, the routed {@code vector_results}
+ * query is measured the same way for every number of routing clients. Started by the
+ * {@code vectorBenchmark} Gradle task.
+ */
+public final class VectorBenchmark {
+
+  private static final Logger LOG = getLogger(VectorBenchmark.class);
+  private static final String POSTGRES_IMAGE = "pgvector/pgvector:pg16";
+  private static final long SHARED_MEMORY_BYTES = 2L * 1024 * 1024 * 1024;
+  private static final long DEFAULT_CLIENTS = 1_000;
+  private static final long DEFAULT_DOCUMENTS = 100_000;
+  private static final String INDEX_NAME = "documents_embedding_idx";
+
+  private VectorBenchmark() {
+  }
+
+  record Result(
+    int m,
+    int efConstruction,
+    double buildSeconds,
+    long indexBytes,
+    int candidates,
+    int efSearch,
+    double recall,
+    double p50Millis,
+    double p99Millis) {
+
+    JsonObject toJson() {
+      return new JsonObject()
+        .put("m", m)
+        .put("ef_construction", efConstruction)
+        .put("build_seconds", buildSeconds)
+        .put("index_bytes", indexBytes)
+        .put("candidates", candidates)
+        .put("ef_search", efSearch)
+        .put("recall", recall)
+        .put("p50_ms", p50Millis)
+        .put("p99_ms", p99Millis);
+    }
+  }
+
+  record RoutingResult(int clients, int candidates, double recall, double p50Millis, double p99Millis) {
+
+    JsonObject toJson() {
+      return new JsonObject()
+        .put("clients", clients)
+        .put("candidates", candidates)
+        .put("recall", recall)
+        .put("p50_ms", p50Millis)
+        .put("p99_ms", p99Millis);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    final var options = VectorBenchmarkOptions.fromSystemProperties();
+    final var configuredCorpus = CorpusOptions.fromSystemProperties();
+    final var corpusOptions = configuredCorpus.isEmpty()
+      ? configuredCorpus.withSize(DEFAULT_CLIENTS, DEFAULT_DOCUMENTS)
+      : configuredCorpus;
+    final var corpusLoader = new CorpusLoader(corpusOptions);
+
+    try (final var postgres = new PostgreSQLContainer<>(DockerImageName.parse(POSTGRES_IMAGE))
+      .withSharedMemorySize(SHARED_MEMORY_BYTES)) {
+      postgres.start();
+      Flyway.configure()
+        .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+        .schemas("public")
+        .locations("classpath:db/migration")
+        .validateMigrationNaming(true)
+        .load()
+        .migrate();
+
+      try (final var connection = DriverManager.getConnection(
+        postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())) {
+        corpusLoader.load(connection, false);
+        final var queries = queryVectors(corpusLoader.corpus(), corpusOptions.seed(), options.queries());
+        final var truth = groundTruth(connection, queries, options.k());
+        final var results = new ArrayList<Result>();
+        for (final var m : options.m()) {
+          for (final var efConstruction : options.efConstruction()) {
+            results.addAll(runIndex(connection, options, queries, truth, m, efConstruction));
+          }
+        }
+        final var routingResults = runRouting(connection, options, queries, truth);
+        final var pgvectorVersion = pgvectorVersion(connection);
+        write(options, corpusOptions, pgvectorVersion, results);
+        writeRouting(options, corpusOptions, pgvectorVersion, routingResults);
+      }
+    }
+  }
+
+  private static List<String> queryVectors(SyntheticCorpus corpus, long seed, int count) {
+    final var random = new SplittableRandom(seed + 1);
+    final var vocabulary = corpus.vocabulary();
+    final var queries = new ArrayList<String>(count);
+    for (var i = 0; i < count; i++) {
+      final var text = random.nextBoolean()
+        ? vocabulary.sample(random)
+        : vocabulary.sample(random) + " " + vocabulary.sample(random);
+      final var literal = new StringBuilder();
+      SyntheticVectors.appendLiteral(literal, corpus.vectors().forText(text, seed));
+      queries.add(literal.toString());
+    }
+    return queries;
+  }
+
+  private static List<Set<String>> groundTruth(Connection connection, List<String> queries, int k) throws SQLException {
+    LOG.info("Computing exact top-{} neighbours for {} queries", k, queries.size());
+    final var truth = new ArrayList<Set<String>>(queries.size());
+    try (final var statement = connection.createStatement()) {
+      statement.execute("SET enable_indexscan = off");
+      statement.execute("SET enable_bitmapscan = off");
+    }
+    try (final var query = connection.prepareStatement(
+      "SELECT id FROM documents WHERE embedding IS NOT NULL ORDER BY embedding <=> ?::vector LIMIT " + k)) {
+      for (final var vector : queries) {
+        query.setString(1, vector);
+        final var ids = new HashSet<String>(k * 2);
+        try (final var rows = query.executeQuery()) {
+          while (rows.next()) {
+            ids.add(rows.getString(1));
+          }
+        }
+        truth.add(ids);
+      }
+    }
+    try (final var statement = connection.createStatement()) {
+      statement.execute("RESET enable_indexscan");
+      statement.execute("RESET enable_bitmapscan");
+    }
+    return truth;
+  }
+
+  private static List<Result> runIndex(Connection connection, VectorBenchmarkOptions options, List<String> queries,
+                                       List<Set<String>> truth, int m, int efConstruction) throws SQLException {
+    LOG.info("Building HNSW index with m={} ef_construction={}", m, efConstruction);
+    final var startedAt = System.nanoTime();
+    final long indexBytes;
+    try (final var statement = connection.createStatement()) {
+      statement.execute("DROP INDEX IF EXISTS " + INDEX_NAME);
+      statement.execute("SET maintenance_work_mem = '1GB'");
+      statement.execute("CREATE INDEX %s ON documents USING hnsw (embedding vector_cosine_ops) WITH (m = %d, ef_construction = %d)"
+        .formatted(INDEX_NAME, m, efConstruction));
+      try (final var size = statement.executeQuery(
+        "SELECT sum(pg_relation_size(relid)) FROM pg_partition_tree('%s')".formatted(INDEX_NAME))) {
+        size.next();
+        indexBytes = size.getLong(1);
+      }
+    }
+    final var buildSeconds = (System.nanoTime() - startedAt) / 1e9;
+
+    final var results = new ArrayList<Result>();
+    for (final var candidates : options.candidates()) {
+      final var sql = VectorSearchQueries.vectorResults(candidates).replace("$2", "?");
+      for (final var efSearch : options.efSearch()) {
+        try (final var statement = connection.createStatement()) {
+          statement.execute("SET hnsw.ef_search = " + efSearch);
+        }
+        checkIndexUsed(connection, sql, queries.getFirst());
+        if (options.warmup()) {
+          measure(connection, sql, queries, truth, options.k());
+        }
+        final var measured = measure(connection, sql, queries, truth, options.k());
+        final var result = new Result(m, efConstruction, buildSeconds, indexBytes, candidates, efSearch,
+          measured.recall(), measured.p50Millis(), measured.p99Millis());
+        LOG.info("{}", result);
+        results.add(result);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Measures the routed search against the index last built, with the default {@code hnsw.ef_search}.
+   */
+  private static List<RoutingResult> runRouting(Connection connection, VectorBenchmarkOptions options,
+                                                List<String> queries, List<Set<String>> truth) throws SQLException {
+    try (final var statement = connection.createStatement()) {
+      statement.execute("RESET hnsw.ef_search");
+    }
+    final var candidates = Math.max(options.k(), VectorSearchQueries.CANDIDATES);
+    final var results = new ArrayList<RoutingResult>();
+    for (final var clients : options.routingClients()) {
+      LOG.info("Measuring routed search over the documents of {} clients", clients);
+      final var sql = VectorSearchQueries.routedVectorResults(candidates, clients).replace("$2", "?");
+      if (options.warmup()) {
+        measure(connection, sql, queries, truth, options.k());
+      }
+      final var measured = measure(connection, sql, queries, truth, options.k());
+      final var result = new RoutingResult(clients, candidates, measured.recall(), measured.p50Millis(),
+        measured.p99Millis());
+      LOG.info("{}", result);
+      results.add(result);
+    }
+    return results;
+  }
+
+  private record Measurement(double recall, double p50Millis, double p99Millis) {
+  }
+
+  private static Measurement measure(Connection connection, String sql, List<String> queries,
+                                     List<Set<String>> truth, int k) throws SQLException {
+    final var latencies = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+    var found = 0L;
+    try (final var query = connection.prepareStatement(sql)) {
+      for (var i = 0; i < queries.size(); i++) {
+        bindVector(query, queries.get(i));
+        final var expected = truth.get(i);
+        final var startedAt = System.nanoTime();
+        try (final var rows = query.executeQuery()) {
+          var position = 0;
+          while (rows.next()) {
+            if (position++ < k && expected.contains(rows.getString("id"))) {
+              found++;
+            }
+          }
+        }
+        latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt));
+      }
+    }
+    return new Measurement(
+      (double) found / ((long) queries.size() * k),
+      latencies.getValueAtPercentile(50) / 1000.0,
+      latencies.getValueAtPercentile(99) / 1000.0);
+  }
+
+  private static void checkIndexUsed(Connection connection, String sql, String vector) throws SQLException {
+    final var plan = new StringBuilder();
+    try (final var explain = connection.prepareStatement("EXPLAIN " + sql)) {
+      bindVector(explain, vector);
+      try (final var rows = explain.executeQuery()) {
+        while (rows.next()) {
+          plan.append(rows.getString(1)).append('\n');
+        }
+      }
+    }
+    // Partitions scan indexes of their own, named after the partition and ending like the parent's
+    if (!plan.toString().contains("embedding_idx")) {
+      LOG.warn("The vector query does not use {} or its partitions' indexes:\n{}", INDEX_NAME, plan);
+    }
+  }
+
+  /**
+   * Binds the query vector to every placeholder, as the query refers to it more than once.
+   */
+  private static void bindVector(PreparedStatement statement, String vector) throws SQLException {
+    final var parameters = statement.getParameterMetaData().getParameterCount();
+    for (var i = 1; i <= parameters; i++) {
+      statement.setString(i, vector);
+    }
+  }
+
+  private static String pgvectorVersion(Connection connection) throws SQLException {
+    try (final var statement = connection.createStatement();
+         final var rows = statement.executeQuery("SELECT extversion FROM pg_extension WHERE extname = 'vector'")) {
+      return rows.next() ? rows.getString(1) : "unknown";
+    }
+  }
+
+  private static void write(VectorBenchmarkOptions options, CorpusOptions corpus, String pgvectorVersion,
+                            List<Result> results) throws IOException {
+    final var output = options.output().toAbsolutePath();
+    Files.createDirectories(output);
+
+    final var table = new StringBuilder()
+      .append("// Generated by ./gradlew vectorBenchmark on ").append(Instant.now()).append('\n')
+      .append(".HNSW recall@%d and latency, %d documents in %d topics, %d queries, pgvector %s%n"
+        .formatted(options.k(), corpus.documents(), corpus.clusters(), options.queries(), pgvectorVersion))
+      .append("[cols=\"1,1,1,1,1,1,1,1,1\",options=\"header\"]\n")
+      .append("|===\n")
+      .append("|m |ef_construction |Build (s) |Index (MB) |LIMIT |ef_search |Recall@%d |p50 (ms) |p99 (ms)\n"
+        .formatted(options.k()));
+    for (final var result : results) {
+      table.append(String.format(Locale.ROOT, "%n|%d |%d |%.1f |%.1f |%d |%d |%.3f |%.2f |%.2f%n",
+        result.m(), result.efConstruction(), result.buildSeconds(), result.indexBytes() / (1024.0 * 1024.0),
+        result.candidates(), result.efSearch(), result.recall(), result.p50Millis(), result.p99Millis()));
+    }
+    table.append("|===\n");
+    Files.writeString(output.resolve("hnsw-recall.adoc"), table);
+
+    final var json = new JsonObject()
+      .put("pgvector", pgvectorVersion)
+      .put("queries", options.queries())
+      .put("k", options.k())
+      .put("warmup", options.warmup())
+      .put("corpus", corpus.toJson())
+      .put("results", new JsonArray(results.stream().map(Result::toJson).toList()));
+    Files.writeString(output.resolve("hnsw-recall.json"), json.encodePrettily());
+    LOG.info("Vector benchmark results written to {}", output);
+  }
+
+  private static void writeRouting(VectorBenchmarkOptions options, CorpusOptions corpus, String pgvectorVersion,
+                                   List<RoutingResult> results) throws IOException {
+    final var output = options.output().toAbsolutePath();
+    final var table = new StringBuilder()
+      .append("// Generated by ./gradlew vectorBenchmark on ").append(Instant.now()).append('\n')
+      .append(String.format(Locale.ROOT,
+        ".Centroid routing recall@%d and latency, %d documents of %d clients in %d topics, client affinity %.2f, %d queries, pgvector %s%n",
+        options.k(), corpus.documents(), corpus.clients(), corpus.clusters(), corpus.clientAffinity(),
+        options.queries(), pgvectorVersion))
+      .append("[cols=\"1,1,1,1,1\",options=\"header\"]\n")
+      .append("|===\n")
+      .append("|Clients |LIMIT |Recall@%d |p50 (ms) |p99 (ms)\n".formatted(options.k()));
+    for (final var result : results) {
+      table.append(String.format(Locale.ROOT, "%n|%d |%d |%.3f |%.2f |%.2f%n",
+        result.clients(), result.candidates(), result.recall(), result.p50Millis(), result.p99Millis()));
+    }
+    table.append("|===\n");
+    Files.writeString(output.resolve("centroid-routing.adoc"), table);
+
+    final var json = new JsonObject()
+      .put("pgvector", pgvectorVersion)
+      .put("queries", options.queries())
+      .put("k", options.k())
+      .put("warmup", options.warmup())
+      .put("corpus", corpus.toJson())
+      .put("results", new JsonArray(results.stream().map(RoutingResult::toJson).toList()));
+    Files.writeString(output.resolve("centroid-routing.json"), json.encodePrettily());
+  }
+}
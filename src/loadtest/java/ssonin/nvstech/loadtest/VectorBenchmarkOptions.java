@@ -0,0 +1,68 @@
+package ssonin.nvstech.loadtest;
+
+import ssonin.nvstech.repository.VectorSearchQueries;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.function.Predicate.not;
+
+/**
+ * Settings of the vector search benchmark, read from {@code vectorbench.*} system properties.
+ * Each list property is a comma-separated grid axis.
+ *
+ * @param queries         number of query vectors
+ * @param k               size of the ground truth and of the result prefix that recall is computed on
+ * @param m               HNSW {@code m} values
+ * @param efConstruction  HNSW {@code ef_construction} values
+ * @param efSearch        {@code hnsw.ef_search} values
+ * @param candidates      {@code LIMIT} values of the {@code vector_results} query
+ * @param routingClients  numbers of clients a routed search is limited to, by nearest centroid
+ * @param warmup          whether to run every query once before timing, to measure a warm index
+ * @param output          directory the AsciiDoc table and the JSON results are written to
+ */
+record VectorBenchmarkOptions(
+  int queries,
+  int k,
+  List<Integer> m,
+  List<Integer> efConstruction,
+  List<Integer> efSearch,
+  List<Integer> candidates,
+  List<Integer> routingClients,
+  boolean warmup,
+  Path output) {
+
+  VectorBenchmarkOptions {
+    if (candidates.stream().anyMatch(limit -> limit < k)) {
+      throw new IllegalArgumentException("Every candidate limit must be at least k=" + k);
+    }
+  }
+
+  static VectorBenchmarkOptions fromSystemProperties() {
+    return new VectorBenchmarkOptions(
+      Integer.parseInt(property("queries", "200")),
+      Integer.parseInt(property("k", "10")),
+      integers(property("m", "16")),
+      integers(property("efConstruction", "64")),
+      integers(property("efSearch", "10,20,40,80,160")),
+      integers(property("candidates", String.valueOf(VectorSearchQueries.CANDIDATES))),
+      integers(property("routingClients", "5,10,25,50,100")),
+      Boolean.parseBoolean(property("warmup", "true")),
+      Path.of(property("output", "build/results/vectorbench")));
+  }
+
+  private static String property(String name, String defaultValue) {
+    return Optional.ofNullable(System.getProperty("vectorbench." + name))
+      .filter(not(String::isBlank))
+      .orElse(defaultValue);
+  }
+
+  private static List<Integer> integers(String value) {
+    return Arrays.stream(value.split(","))
+      .map(String::trim)
+      .map(Integer::valueOf)
+      .toList();
+  }
+}
@@ -0,0 +1,81 @@
+package ssonin.nvstech.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Words ranked by frequency, sampled with a Zipf distribution. The most frequent ranks are domain
+ * words so that realistic queries match; the long tail is made of generated pseudo-words.
+ */
+final class Vocabulary {
+
+  private static final List<String> DOMAIN_WORDS = List.of(
+    "portfolio", "retirement", "pension", "dividend", "equities", "bonds", "allocation", "rebalancing",
+    "risk", "appetite", "income", "growth", "inheritance", "estate", "trust", "tax", "allowance",
+    "mortgage", "property", "savings", "liquidity", "volatility", "benchmark", "fund", "index", "yield",
+    "annuity", "drawdown", "valuation", "statement", "review", "quarterly", "annual", "objective",
+    "horizon", "capital", "gains", "losses", "fees", "advisor", "meeting", "proposal", "contribution",
+    "withdrawal", "beneficiary", "guardian", "philanthropy", "charity", "donation", "business", "sale",
+    "succession", "shares", "options", "vesting", "bonus", "salary", "education", "university", "school",
+    "insurance", "protection", "health", "longevity", "inflation", "currency", "hedge", "commodities",
+    "gold", "infrastructure", "sustainable", "environmental", "governance", "impact", "private", "equity",
+    "venture", "credit", "cash", "deposit", "account", "transfer", "consolidation", "wrapper", "isa",
+    "offshore", "jurisdiction", "residency", "relocation", "divorce", "marriage", "children", "grandchildren",
+    "gift", "loan", "leverage", "collateral", "margin", "exposure", "sector", "technology", "healthcare",
+    "energy", "emerging", "markets", "developed", "global", "domestic", "strategy", "mandate", "discretionary",
+    "advisory", "execution", "compliance", "suitability", "questionnaire", "onboarding", "documentation");
+
+  private static final String[] SYLLABLES = {
+    "ka", "lo", "mi", "ra", "te", "vo", "su", "ne", "di", "po", "ba", "ze", "fi", "gu", "ho", "je",
+    "ry", "wa", "xo", "qui", "tra", "ble", "ston", "mar", "ven", "dol", "cri", "sal", "pen", "tor"};
+
+  private final String[] words;
+  private final double[] cumulative;
+
+  Vocabulary(int size, double zipfExponent) {
+    words = new String[size];
+    for (var i = 0; i < size; i++) {
+      words[i] = i < DOMAIN_WORDS.size() ? DOMAIN_WORDS.get(i) : pseudoWord(i);
+    }
+    cumulative = new double[size];
+    var sum = 0.0;
+    for (var i = 0; i < size; i++) {
+      sum += 1 / Math.pow(i + 1, zipfExponent);
+      cumulative[i] = sum;
+    }
+    for (var i = 0; i < size; i++) {
+      cumulative[i] /= sum;
+    }
+  }
+
+  int size() {
+    return words.length;
+  }
+
+  String word(int index) {
+    return words[index];
+  }
+
+  /**
+   * A word rank drawn from the Zipf distribution, 0 being the most frequent.
+   */
+  int sampleRank(SplittableRandom random) {
+    final var index = Arrays.binarySearch(cumulative, random.nextDouble());
+    return Math.min(index >= 0 ? index : -index - 1, words.length - 1);
+  }
+
+  String sample(SplittableRandom random) {
+    return words[sampleRank(random)];
+  }
+
+  private static String pseudoWord(int index) {
+    final var word = new StringBuilder();
+    var remaining = index;
+    do {
+      word.append(SYLLABLES[remaining % SYLLABLES.length]);
+      remaining /= SYLLABLES.length;
+    } while (remaining > 0);
+    return word.append(SYLLABLES[index % 7]).toString();
+  }
+}
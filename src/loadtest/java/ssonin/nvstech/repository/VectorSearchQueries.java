@@ -0,0 +1,31 @@
+package ssonin.nvstech.repository;
+
+/**
+ * Exposes the production vector search query to the benchmarks, which live outside this package.
+ */
+public final class VectorSearchQueries {
+
+  public static final int CANDIDATES = SqlQueries.VECTOR_CANDIDATES;
+
+  private VectorSearchQueries() {
+  }
+
+  /**
+   * The {@code vector_results} part of the document search, with the query embedding bound to {@code $2}
+   * and no creation time range.
+   */
+  public static String vectorResults(int candidates) {
+    return SqlQueries.vectorResults(candidates).replace("$3", "NULL").replace("$4", "NULL");
+  }
+
+  /**
+   * {@link #vectorResults} of a routed search, among the documents of the {@code clients} clients
+   * whose centroids are nearest to the query embedding.
+   */
+  public static String routedVectorResults(int candidates, int clients) {
+    return SqlQueries.routedVectorResults(candidates)
+      .replace("$3", "NULL")
+      .replace("$4", "NULL")
+      .replace("$5", String.valueOf(clients));
+  }
+}
@@ -2,29 +2,121 @@ package ssonin.nvstech;
 
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
+import io.vertx.core.ThreadingModel;
 import io.vertx.core.VerticleBase;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.sqlclient.PoolOptions;
 import org.flywaydb.core.Flyway;
 import org.flywaydb.core.api.output.MigrateResult;
+import org.slf4j.Logger;
 import ssonin.nvstech.api.ApiVerticle;
+import ssonin.nvstech.jdbc.Jdbc;
+import ssonin.nvstech.metrics.EventLoopLagProbe;
 import ssonin.nvstech.repository.EmbeddingVerticle;
 import ssonin.nvstech.repository.RepositoryVerticle;
+import ssonin.nvstech.text.ClientIndex;
+import ssonin.nvstech.text.SuggestionIndex;
+import ssonin.nvstech.vector.ClientVectorCache;
+import ssonin.nvstech.vector.VectorReplica;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.function.Predicate.not;
+import static org.slf4j.LoggerFactory.getLogger;
 
 public final class App extends VerticleBase {
 
   public static final int DEFAULT_HTTP_PORT = 8888;
+  public static final long DEFAULT_CLIENT_BODY_LIMIT = 64 * 1024;
+  public static final long DEFAULT_DOCUMENT_BODY_LIMIT = 10 * 1024 * 1024;
+  public static final double DEFAULT_ACCESS_LOG_SAMPLE_RATE = 1.0;
+  public static final long DEFAULT_PARTITION_MONTHS_AHEAD = 3;
+  public static final long DEFAULT_CLIENT_SCAN_MAX_DOCUMENTS = 10_000;
+  public static final long DEFAULT_VECTOR_REPLICA_REFRESH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+  public static final long DEFAULT_VECTOR_REPLICA_SNAPSHOT_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+  public static final long DEFAULT_VECTOR_REPLICA_RECALL_QUERIES = 20;
+  public static final long DEFAULT_CLIENT_INDEX_REFRESH_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+  public static final long DEFAULT_SUGGEST_REFRESH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
 
+  private static final Logger LOG = getLogger(App.class);
+  private static final long PARTITION_CHECK_INTERVAL_MS = TimeUnit.HOURS.toMillis(24);
+  private static final int VECTOR_REPLICA_RECALL_K = 20;
+
+  /**
+   * The configuration the application was deployed with or, when none was given, the configuration
+   * read from the environment.
+   */
   @Override
   public JsonObject config() {
+    final var deploymentConfig = super.config();
+    return deploymentConfig == null || deploymentConfig.isEmpty() ? configFromEnv() : deploymentConfig;
+  }
+
+  private static JsonObject configFromEnv() {
     final var dbConfig = PgConnectOptions.fromEnv();
+    final var repositoryInstances = instances("REPOSITORY_INSTANCES");
     return new JsonObject()
+      .put("deployment", new JsonObject()
+        .put("api", new JsonObject()
+          .put("instances", instances("API_INSTANCES"))
+          .put("threadingModel", threadingModel("API_THREADING_MODEL")))
+        .put("repository", new JsonObject()
+          .put("instances", repositoryInstances)
+          .put("threadingModel", threadingModel("REPOSITORY_THREADING_MODEL")))
+        .put("embedding", new JsonObject()
+          .put("instances", instances("EMBEDDING_INSTANCES"))))
       .put("http.port", httpPort())
+      .put("http.access-log.sample-rate", accessLogSampleRate())
+      .put("metrics.event-loop-lag-interval-ms", eventLoopLagInterval())
+      .put("http.body-limit.clients", bodyLimit("HTTP_CLIENT_BODY_LIMIT", DEFAULT_CLIENT_BODY_LIMIT))
+      .put("http.body-limit.documents", bodyLimit("HTTP_DOCUMENT_BODY_LIMIT", DEFAULT_DOCUMENT_BODY_LIMIT))
+      .put("http.concurrency", new JsonObject()
+        .put("clients", concurrencyLimit("HTTP_CLIENTS_CONCURRENCY_LIMIT", "HTTP_CLIENTS_LATENCY_THRESHOLD_MS"))
+        .put("documents", concurrencyLimit("HTTP_DOCUMENTS_CONCURRENCY_LIMIT", "HTTP_DOCUMENTS_LATENCY_THRESHOLD_MS"))
+        .put("search", concurrencyLimit("HTTP_SEARCH_CONCURRENCY_LIMIT", "HTTP_SEARCH_LATENCY_THRESHOLD_MS"))
+        .put("suggest", concurrencyLimit("HTTP_SUGGEST_CONCURRENCY_LIMIT", "HTTP_SUGGEST_LATENCY_THRESHOLD_MS")))
       .put("db", dbConfig.toJson())
+      .put("db.shards", shards())
+      .put("db.replicas", replicas())
+      .put("db.replicas.poll-interval-ms", longVariable("PG_REPLICA_POLL_INTERVAL_MS", 100))
+      .put("db.replicas.max-wait-ms", longVariable("PG_REPLICA_MAX_WAIT_MS", 0))
+      .put("db.partitions.months-ahead", longVariable("PG_PARTITION_MONTHS_AHEAD", DEFAULT_PARTITION_MONTHS_AHEAD))
+      .put("search.client-scan.max-documents",
+        longVariable("SEARCH_CLIENT_SCAN_MAX_DOCUMENTS", DEFAULT_CLIENT_SCAN_MAX_DOCUMENTS))
+      .put("search.client-scan.cache-max-vectors",
+        longVariable("SEARCH_CLIENT_SCAN_CACHE_MAX_VECTORS", ClientVectorCache.DEFAULT_MAX_VECTORS))
+      .put("search.client-scan.cache-ttl-ms",
+        longVariable("SEARCH_CLIENT_SCAN_CACHE_TTL_MS", ClientVectorCache.DEFAULT_TTL.toMillis()))
+      .put("search.routing.clients", longVariable("SEARCH_ROUTING_CLIENTS", 0))
+      .put("vector.replica.enabled", booleanVariable("VECTOR_REPLICA_ENABLED"))
+      .put("vector.replica.snapshot-path", System.getenv("VECTOR_REPLICA_SNAPSHOT_PATH"))
+      .put("vector.replica.snapshot-interval-ms",
+        longVariable("VECTOR_REPLICA_SNAPSHOT_INTERVAL_MS", DEFAULT_VECTOR_REPLICA_SNAPSHOT_INTERVAL_MS))
+      .put("vector.replica.refresh-interval-ms",
+        longVariable("VECTOR_REPLICA_REFRESH_INTERVAL_MS", DEFAULT_VECTOR_REPLICA_REFRESH_INTERVAL_MS))
+      .put("vector.replica.ef-search", longVariable("VECTOR_REPLICA_EF_SEARCH", VectorReplica.DEFAULT_EF_SEARCH))
+      .put("vector.replica.recall-check.queries",
+        longVariable("VECTOR_REPLICA_RECALL_QUERIES", DEFAULT_VECTOR_REPLICA_RECALL_QUERIES))
+      .put("client.index.enabled", booleanVariable("CLIENT_INDEX_ENABLED"))
+      .put("client.index.refresh-interval-ms",
+        longVariable("CLIENT_INDEX_REFRESH_INTERVAL_MS", DEFAULT_CLIENT_INDEX_REFRESH_INTERVAL_MS))
+      .put("suggest.enabled", booleanVariable("SUGGEST_ENABLED"))
+      .put("suggest.max-completions",
+        longVariable("SUGGEST_MAX_COMPLETIONS", SuggestionIndex.DEFAULT_MAX_COMPLETIONS))
+      .put("suggest.refresh-interval-ms",
+        longVariable("SUGGEST_REFRESH_INTERVAL_MS", DEFAULT_SUGGEST_REFRESH_INTERVAL_MS))
+      .put("db.pool", new JsonObject()
+        .put("maxSize", poolMaxSize())
+        .put("eventLoopSize", repositoryInstances))
       .put("services", new JsonObject()
         .put("embedding", new JsonObject()
           .put("host", System.getenv("EMBEDDING_SERVICE_HOST"))
@@ -35,26 +127,175 @@ public final class App extends VerticleBase {
   public Future<?> start() {
     final var config = config();
     return vertx.executeBlocking(() -> runDbMigration(config))
+      .compose(__ -> vertx.executeBlocking(() -> createPartitions(config)))
+      .onSuccess(__ -> vertx.setPeriodic(PARTITION_CHECK_INTERVAL_MS, id ->
+        vertx.executeBlocking(() -> createPartitions(config))
+          .onFailure(e -> LOG.error("Failed to create document partitions", e))))
+      .compose(__ -> startVectorReplica(config))
+      .compose(__ -> startClientIndex(config))
+      .compose(__ -> startSuggestions(config))
       .compose(__ -> {
-          final var options = new DeploymentOptions().setConfig(config);
+          final var deployment = config.getJsonObject("deployment");
           return Future.all(
-            vertx.deployVerticle(new ApiVerticle(), options),
-            vertx.deployVerticle(new RepositoryVerticle(), options),
-            vertx.deployVerticle(new EmbeddingVerticle(), options));
+            vertx.deployVerticle(ApiVerticle::new, deploymentOptions(config, deployment.getJsonObject("api"))),
+            vertx.deployVerticle(RepositoryVerticle::new, deploymentOptions(config, deployment.getJsonObject("repository"))),
+            vertx.deployVerticle(EmbeddingVerticle::new, deploymentOptions(config, deployment.getJsonObject("embedding"))));
         }
       );
   }
 
-  private MigrateResult runDbMigration(JsonObject config) {
-    final var db = new PgConnectOptions(config.getJsonObject("db"));
-    final var url = "jdbc:postgresql://%s:%d/%s".formatted(db.getHost(), db.getPort(), db.getDatabase());
-    return Flyway.configure()
-      .dataSource(url, db.getUser(), db.getPassword())
-      .schemas("public")
-      .locations("classpath:db/migration")
-      .validateMigrationNaming(true)
-      .load()
-      .migrate();
+  @Override
+  public Future<?> stop() {
+    final var config = config();
+    final var snapshot = vectorReplicaSnapshot(config);
+    if (!config.getBoolean("vector.replica.enabled", false) || snapshot == null) {
+      return Future.succeededFuture();
+    }
+    return vertx.executeBlocking(() -> saveVectorReplica(snapshot));
+  }
+
+  /**
+   * Loads the in-process vector replica before the repository verticles serve searches from it,
+   * then keeps it current with the documents other processes create and snapshots it periodically.
+   * The recall check runs once in the background, as it searches pgvector exactly.
+   */
+  private Future<?> startVectorReplica(JsonObject config) {
+    if (!config.getBoolean("vector.replica.enabled", false)) {
+      return Future.succeededFuture();
+    }
+    final var replica = VectorReplica.shared();
+    final var databases = RepositoryVerticle.databases(config);
+    final var snapshot = vectorReplicaSnapshot(config);
+    final var efSearch = config.getInteger("vector.replica.ef-search", VectorReplica.DEFAULT_EF_SEARCH);
+    return vertx.executeBlocking(() -> {
+        replica.load(databases, snapshot, VectorReplica.DEFAULT_DIMENSION, efSearch);
+        return null;
+      })
+      .onSuccess(__ -> {
+        final var queries = config.getInteger("vector.replica.recall-check.queries",
+          (int) DEFAULT_VECTOR_REPLICA_RECALL_QUERIES);
+        if (queries > 0) {
+          vertx.executeBlocking(() -> replica.checkRecall(databases, queries, VECTOR_REPLICA_RECALL_K), false)
+            .onFailure(e -> LOG.error("Failed to check the vector replica recall", e));
+        }
+        repeat(config.getLong("vector.replica.refresh-interval-ms", DEFAULT_VECTOR_REPLICA_REFRESH_INTERVAL_MS),
+          () -> {
+            replica.refresh(databases);
+            return null;
+          }, "Failed to refresh the vector replica");
+        if (snapshot != null) {
+          repeat(config.getLong("vector.replica.snapshot-interval-ms", DEFAULT_VECTOR_REPLICA_SNAPSHOT_INTERVAL_MS),
+            () -> saveVectorReplica(snapshot), "Failed to snapshot the vector replica");
+        }
+      });
+  }
+
+  /**
+   * Runs {@code task} off the event loop {@code intervalMs} after the previous run has finished, so
+   * that a run which takes longer than the interval is never overlapped by the next one.
+   */
+  private void repeat(long intervalMs, Callable<?> task, String failure) {
+    vertx.setTimer(intervalMs, id -> vertx.executeBlocking(task, false)
+      .onFailure(e -> LOG.error(failure, e))
+      .onComplete(__ -> repeat(intervalMs, task, failure)));
+  }
+
+  /**
+   * Loads the in-process client index before the repository verticles serve searches from it, then
+   * keeps it current with the clients other processes create.
+   */
+  private Future<?> startClientIndex(JsonObject config) {
+    if (!config.getBoolean("client.index.enabled", false)) {
+      return Future.succeededFuture();
+    }
+    final var index = ClientIndex.shared();
+    final var databases = RepositoryVerticle.databases(config);
+    return vertx.executeBlocking(() -> {
+        index.load(databases);
+        return null;
+      })
+      .onSuccess(__ -> repeat(
+        config.getLong("client.index.refresh-interval-ms", DEFAULT_CLIENT_INDEX_REFRESH_INTERVAL_MS), () -> {
+          index.refresh(databases);
+          return null;
+        }, "Failed to refresh the client index"));
+  }
+
+  /**
+   * Loads the typeahead completions before the repository verticles add to them, then reads them
+   * again periodically for the names and titles other processes create.
+   */
+  private Future<?> startSuggestions(JsonObject config) {
+    if (!config.getBoolean("suggest.enabled", false)) {
+      return Future.succeededFuture();
+    }
+    final var suggestions = SuggestionIndex.shared();
+    final var databases = RepositoryVerticle.databases(config);
+    final var maxCompletions = config.getInteger("suggest.max-completions", SuggestionIndex.DEFAULT_MAX_COMPLETIONS);
+    final Callable<Void> load = () -> {
+      suggestions.load(databases, maxCompletions);
+      return null;
+    };
+    return vertx.executeBlocking(load)
+      .onSuccess(__ -> repeat(config.getLong("suggest.refresh-interval-ms", DEFAULT_SUGGEST_REFRESH_INTERVAL_MS),
+        load, "Failed to reload the suggestions"));
+  }
+
+  private static Path vectorReplicaSnapshot(JsonObject config) {
+    return Optional.ofNullable(config.getString("vector.replica.snapshot-path"))
+      .filter(not(String::isBlank))
+      .map(Path::of)
+      .orElse(null);
+  }
+
+  private static Void saveVectorReplica(Path snapshot) throws IOException {
+    VectorReplica.shared().save(snapshot);
+    return null;
+  }
+
+  private static DeploymentOptions deploymentOptions(JsonObject config, JsonObject deployment) {
+    return new DeploymentOptions(deployment).setConfig(config);
+  }
+
+  /**
+   * Every shard gets the full schema, so that a client and its documents can live on any of them.
+   */
+  private List<MigrateResult> runDbMigration(JsonObject config) {
+    final var results = new ArrayList<MigrateResult>();
+    for (final var db : RepositoryVerticle.databases(config)) {
+      results.add(Flyway.configure()
+        .dataSource(Jdbc.url(db), db.getUser(), db.getPassword())
+        .schemas("public")
+        .locations("classpath:db/migration")
+        .validateMigrationNaming(true)
+        .load()
+        .migrate());
+    }
+    return results;
+  }
+
+  /**
+   * Creates the monthly documents partitions up to {@code db.partitions.months-ahead} months from now
+   * on every shard, so that new documents do not pile up in the default partition.
+   */
+  private static int createPartitions(JsonObject config) throws SQLException {
+    final var monthsAhead = config.getLong("db.partitions.months-ahead", DEFAULT_PARTITION_MONTHS_AHEAD);
+    var created = 0;
+    for (final var db : RepositoryVerticle.databases(config)) {
+      try (final var connection = Jdbc.connect(db);
+           final var statement = connection.prepareStatement(
+             "SELECT create_documents_partitions(now(), now() + make_interval(months => ?))")) {
+        statement.setInt(1, Math.toIntExact(monthsAhead));
+        try (final var rows = statement.executeQuery()) {
+          rows.next();
+          created += rows.getInt(1);
+        }
+      }
+    }
+    if (created > 0) {
+      LOG.info("Created {} document partitions", created);
+    }
+    return created;
   }
 
   private static int httpPort() {
@@ -64,4 +305,120 @@ public final class App extends VerticleBase {
       .map(Integer::parseInt)
       .orElse(DEFAULT_HTTP_PORT);
   }
+
+  private static int instances(String variable) {
+    return Optional.ofNullable(System.getenv(variable))
+      .filter(not(String::isBlank))
+      .map(Integer::parseInt)
+      .orElseGet(() -> Runtime.getRuntime().availableProcessors());
+  }
+
+  private static String threadingModel(String variable) {
+    return Optional.ofNullable(System.getenv(variable))
+      .filter(not(String::isBlank))
+      .map(value -> ThreadingModel.valueOf(value.toUpperCase()))
+      .orElse(ThreadingModel.EVENT_LOOP)
+      .name();
+  }
+
+  private static int poolMaxSize() {
+    return Optional.ofNullable(System.getenv("PG_POOL_MAX_SIZE"))
+      .filter(not(String::isBlank))
+      .map(Integer::parseInt)
+      .orElse(PoolOptions.DEFAULT_MAX_SIZE);
+  }
+
+  private static double accessLogSampleRate() {
+    return Optional.ofNullable(System.getenv("HTTP_ACCESS_LOG_SAMPLE_RATE"))
+      .filter(not(String::isBlank))
+      .map(Double::parseDouble)
+      .orElse(DEFAULT_ACCESS_LOG_SAMPLE_RATE);
+  }
+
+  /**
+   * {@code PG_REPLICA_HOSTS} lists the read replicas as comma-separated {@code host[:port]}; every
+   * other connect option is the primary's.
+   */
+  private static JsonArray replicas() {
+    final var replicas = new JsonArray();
+    Optional.ofNullable(System.getenv("PG_REPLICA_HOSTS"))
+      .filter(not(String::isBlank))
+      .ifPresent(hosts -> {
+        for (final var host : hosts.split(",")) {
+          final var hostAndPort = host.strip().split(":", 2);
+          final var replica = new JsonObject().put("host", hostAndPort[0]);
+          if (hostAndPort.length == 2) {
+            replica.put("port", Integer.parseInt(hostAndPort[1]));
+          }
+          replicas.add(replica);
+        }
+      });
+    return replicas;
+  }
+
+  /**
+   * {@code PG_SHARD_HOSTS} lists the databases after the primary one as comma-separated
+   * {@code host[:port][/database]}; every other connect option is the primary database's.
+   */
+  private static JsonArray shards() {
+    final var shards = new JsonArray();
+    Optional.ofNullable(System.getenv("PG_SHARD_HOSTS"))
+      .filter(not(String::isBlank))
+      .ifPresent(hosts -> {
+        for (final var host : hosts.split(",")) {
+          final var hostAndDatabase = host.strip().split("/", 2);
+          final var hostAndPort = hostAndDatabase[0].split(":", 2);
+          final var shard = new JsonObject().put("host", hostAndPort[0]);
+          if (hostAndPort.length == 2) {
+            shard.put("port", Integer.parseInt(hostAndPort[1]));
+          }
+          if (hostAndDatabase.length == 2) {
+            shard.put("database", hostAndDatabase[1]);
+          }
+          shards.add(shard);
+        }
+      });
+    return shards;
+  }
+
+  private static boolean booleanVariable(String variable) {
+    return Optional.ofNullable(System.getenv(variable))
+      .filter(not(String::isBlank))
+      .map(Boolean::parseBoolean)
+      .orElse(false);
+  }
+
+  private static long longVariable(String variable, long defaultValue) {
+    return Optional.ofNullable(System.getenv(variable))
+      .filter(not(String::isBlank))
+      .map(Long::parseLong)
+      .orElse(defaultValue);
+  }
+
+  private static long eventLoopLagInterval() {
+    return Optional.ofNullable(System.getenv("EVENT_LOOP_LAG_INTERVAL_MS"))
+      .filter(not(String::isBlank))
+      .map(Long::parseLong)
+      .orElse(EventLoopLagProbe.DEFAULT_INTERVAL_MS);
+  }
+
+  private static JsonObject concurrencyLimit(String maxLimitVariable, String latencyThresholdVariable) {
+    final var limit = new JsonObject();
+    Optional.ofNullable(System.getenv(maxLimitVariable))
+      .filter(not(String::isBlank))
+      .map(Integer::parseInt)
+      .ifPresent(maxLimit -> limit.put("maxLimit", maxLimit));
+    Optional.ofNullable(System.getenv(latencyThresholdVariable))
+      .filter(not(String::isBlank))
+      .map(Long::parseLong)
+      .ifPresent(threshold -> limit.put("latencyThresholdMs", threshold));
+    return limit;
+  }
+
+  private static long bodyLimit(String variable, long defaultLimit) {
+    return Optional.ofNullable(System.getenv(variable))
+      .filter(not(String::isBlank))
+      .map(Long::parseLong)
+      .orElse(defaultLimit);
+  }
 }
@@ -0,0 +1,71 @@
+package ssonin.nvstech;
+
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.vertx.launcher.application.HookContext;
+import io.vertx.launcher.application.VertxApplication;
+import io.vertx.launcher.application.VertxApplicationHooks;
+import io.vertx.tracing.opentelemetry.OpenTelemetryOptions;
+import ssonin.nvstech.metrics.BlockedThreadMonitor;
+import ssonin.nvstech.metrics.Metrics;
+import ssonin.nvstech.tracing.FileSpanExporter;
+import ssonin.nvstech.tracing.Tracing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static java.util.function.Predicate.not;
+
+/**
+ * Standard Vert.x application launcher, with Micrometer metrics enabled before Vert.x is created
+ * and blocked-thread reports turned into structured events once it has started.
+ * Tracing is enabled when {@code TRACING_EXPORT_FILE} names a file to append spans to.
+ */
+public final class Launcher implements VertxApplicationHooks {
+
+  private OpenTelemetrySdk openTelemetry;
+
+  public static void main(String[] args) {
+    final var exitCode = new VertxApplication(args, new Launcher()).launch();
+    if (exitCode != 0) {
+      Runtime.getRuntime().exit(exitCode);
+    }
+  }
+
+  @Override
+  public void beforeStartingVertx(HookContext context) {
+    context.vertxOptions().setMetricsOptions(Metrics.options());
+    traceExportFile().ifPresent(file -> {
+      openTelemetry = Tracing.openTelemetry(BatchSpanProcessor.builder(fileSpanExporter(file)).build());
+      context.vertxOptions().setTracingOptions(new OpenTelemetryOptions(openTelemetry));
+    });
+  }
+
+  @Override
+  public void afterVertxStarted(HookContext context) {
+    BlockedThreadMonitor.install(context.vertx());
+  }
+
+  @Override
+  public void afterVertxStopped(HookContext context) {
+    if (openTelemetry != null) {
+      openTelemetry.close();
+    }
+  }
+
+  private static Optional<Path> traceExportFile() {
+    return Optional.ofNullable(System.getenv("TRACING_EXPORT_FILE"))
+      .filter(not(String::isBlank))
+      .map(Path::of);
+  }
+
+  private static FileSpanExporter fileSpanExporter(Path file) {
+    try {
+      return new FileSpanExporter(file);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open trace export file " + file, e);
+    }
+  }
+}
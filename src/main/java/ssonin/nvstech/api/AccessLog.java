@@ -0,0 +1,98 @@
+package ssonin.nvstech.api;
+
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import ssonin.nvstech.metrics.Metrics;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Hands access log entries from the event loops to a single daemon thread that writes them, so that
+ * formatting and appending never run on an event loop. The queue is bounded: when the writer falls
+ * behind, entries are dropped and counted instead of applying back-pressure to requests.
+ */
+final class AccessLog {
+
+  private static final Logger ACCESS = getLogger("ssonin.nvstech.access");
+  private static final int CAPACITY = 8192;
+  private static final int BATCH_SIZE = 256;
+
+  private static AccessLog shared;
+
+  record Entry(
+    long timestampMillis,
+    String method,
+    String path,
+    int status,
+    long durationNanos,
+    long bytesSent,
+    String remoteAddress) {
+  }
+
+  private final BlockingQueue<Entry> queue;
+  private final Counter dropped;
+
+  AccessLog(int capacity, Consumer<Entry> sink) {
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.dropped = Counter.builder("nvstech.accesslog.dropped")
+      .description("Access log entries dropped because the writer fell behind")
+      .register(Metrics.registry());
+    final var writer = new Thread(() -> drain(sink), "nvstech-access-log");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * The writer shared by all instances of the API verticle in this JVM.
+   */
+  static synchronized AccessLog shared() {
+    if (shared == null) {
+      shared = new AccessLog(CAPACITY, AccessLog::write);
+    }
+    return shared;
+  }
+
+  void offer(Entry entry) {
+    if (!queue.offer(entry)) {
+      dropped.increment();
+    }
+  }
+
+  private void drain(Consumer<Entry> sink) {
+    final var batch = new ArrayList<Entry>(BATCH_SIZE);
+    while (true) {
+      try {
+        batch.add(queue.take());
+        queue.drainTo(batch, BATCH_SIZE - 1);
+        for (final var entry : batch) {
+          sink.accept(entry);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        ACCESS.warn("Failed to write access log entry", e);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private static void write(Entry entry) {
+    ACCESS.atInfo()
+      .addKeyValue("at", Instant.ofEpochMilli(entry.timestampMillis()))
+      .addKeyValue("method", entry.method())
+      .addKeyValue("path", entry.path())
+      .addKeyValue("status", entry.status())
+      .addKeyValue("duration_ms", entry.durationNanos() / 1_000_000.0)
+      .addKeyValue("bytes", entry.bytesSent())
+      .addKeyValue("remote", entry.remoteAddress())
+      .log("HTTP request");
+  }
+}
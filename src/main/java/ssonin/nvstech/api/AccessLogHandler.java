@@ -0,0 +1,53 @@
+package ssonin.nvstech.api;
+
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.PlatformHandler;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Records one {@link AccessLog} entry per completed request. Server errors are always recorded;
+ * every other response is recorded with the configured probability, and an unsampled request
+ * allocates nothing beyond its end handler. Only the path is recorded, never the query string,
+ * which carries search terms.
+ */
+final class AccessLogHandler implements PlatformHandler {
+
+  private final double sampleRate;
+  private final AccessLog log;
+
+  AccessLogHandler(double sampleRate, AccessLog log) {
+    if (sampleRate < 0 || sampleRate > 1) {
+      throw new IllegalArgumentException("Access log sample rate must be between 0 and 1, got " + sampleRate);
+    }
+    this.sampleRate = sampleRate;
+    this.log = log;
+  }
+
+  @Override
+  public void handle(RoutingContext ctx) {
+    final var startedAt = System.nanoTime();
+    ctx.addEndHandler(__ -> {
+      final var response = ctx.response();
+      final var status = response.getStatusCode();
+      if (status < 500 && !sampled()) {
+        return;
+      }
+      final var request = ctx.request();
+      final var remoteAddress = request.remoteAddress();
+      log.offer(new AccessLog.Entry(
+        System.currentTimeMillis(),
+        request.method().name(),
+        request.path(),
+        status,
+        System.nanoTime() - startedAt,
+        response.bytesWritten(),
+        remoteAddress == null ? null : remoteAddress.hostAddress()));
+    });
+    ctx.next();
+  }
+
+  private boolean sampled() {
+    return sampleRate >= 1 || sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+}
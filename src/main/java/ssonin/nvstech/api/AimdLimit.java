@@ -0,0 +1,59 @@
+package ssonin.nvstech.api;
+
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency limit that adapts to observed latency using additive increase / multiplicative decrease.
+ * Every request that completes within the latency threshold while the limit is being used grows
+ * the limit by {@code 1 / limit}, i.e. by roughly one per window of requests. Every request that is
+ * slower than the threshold, or that fails with a server error, shrinks it by the backoff ratio.
+ * Instances are shared by all {@code ApiVerticle} instances, so every method is synchronised.
+ */
+final class AimdLimit implements Shareable {
+
+  private static final double BACKOFF_RATIO = 0.9;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final long latencyThresholdNanos;
+  private double limit;
+  private int inFlight;
+
+  AimdLimit(int initialLimit, int minLimit, int maxLimit, long latencyThresholdMillis) {
+    if (minLimit < 1 || minLimit > maxLimit) {
+      throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max");
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+    this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+  }
+
+  synchronized boolean tryAcquire() {
+    if (inFlight >= (int) limit) {
+      return false;
+    }
+    inFlight++;
+    return true;
+  }
+
+  synchronized void release(long latencyNanos, boolean failed) {
+    final var saturated = inFlight * 2 >= (int) limit;
+    inFlight--;
+    if (failed || latencyNanos > latencyThresholdNanos) {
+      limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+    } else if (saturated) {
+      limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+  }
+
+  synchronized int limit() {
+    return (int) limit;
+  }
+
+  synchronized int inFlight() {
+    return inFlight;
+  }
+}
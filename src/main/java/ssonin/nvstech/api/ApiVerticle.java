@@ -1,62 +1,111 @@
 package ssonin.nvstech.api;
 
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.VerticleBase;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.ReplyException;
-import io.vertx.core.json.JsonArray;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.HttpException;
-import io.vertx.ext.web.handler.LoggerHandler;
-import io.vertx.json.schema.*;
+import io.vertx.json.schema.Validator;
+import io.vertx.micrometer.PrometheusScrapingHandler;
 import org.slf4j.Logger;
+import ssonin.nvstech.eventbus.ConsistencyToken;
+import ssonin.nvstech.eventbus.MessageCodecs;
+import ssonin.nvstech.jfr.DocumentIngestEvent;
+import ssonin.nvstech.metrics.EventLoopLagProbe;
+import ssonin.nvstech.metrics.Metrics;
+import ssonin.nvstech.model.*;
+import ssonin.nvstech.text.PrefixIndex;
+import ssonin.nvstech.text.SuggestionIndex;
 
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
 import java.util.UUID;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import static io.vertx.core.Future.failedFuture;
 import static io.vertx.core.Future.succeededFuture;
-import static io.vertx.json.schema.common.dsl.Keywords.minLength;
-import static io.vertx.json.schema.common.dsl.Keywords.pattern;
-import static io.vertx.json.schema.common.dsl.Schemas.objectSchema;
-import static io.vertx.json.schema.common.dsl.Schemas.stringSchema;
 import static org.slf4j.LoggerFactory.getLogger;
 
 public final class ApiVerticle extends VerticleBase {
 
   private static final Logger LOG = getLogger(ApiVerticle.class);
   private static final String API_V_1 = "/api/v1";
+  private static final String CONCURRENCY_LIMITS = "nvstech.api.concurrency-limits";
+  private static final String CONSISTENCY_TOKEN = "Consistency-Token";
 
   private Validator clientValidator;
   private Validator documentValidator;
+  private long clientBodyLimit;
+  private long documentBodyLimit;
 
   @Override
   public Future<?> start() {
-    initialiseValidators();
+    clientValidator = PayloadValidators.client();
+    documentValidator = PayloadValidators.document();
+    MessageCodecs.register(vertx.eventBus());
+    EventLoopLagProbe.start(vertx, "api",
+      config().getLong("metrics.event-loop-lag-interval-ms", EventLoopLagProbe.DEFAULT_INTERVAL_MS));
+    clientBodyLimit = config().getLong("http.body-limit.clients", BodyHandler.DEFAULT_BODY_LIMIT);
+    documentBodyLimit = config().getLong("http.body-limit.documents", BodyHandler.DEFAULT_BODY_LIMIT);
+
+    final var clientsLimit = loadShedding("clients", 64, 1024, 100);
+    final var documentsLimit = loadShedding("documents", 8, 64, 2000);
+    final var searchLimit = loadShedding("search", 16, 128, 1000);
+    final var suggestLimit = loadShedding("suggest", 256, 4096, 50);
 
     final var router = Router.router(vertx);
     router
       .route()
-      .handler(LoggerHandler.create());
-    router
-      .post()
-      .handler(BodyHandler.create());
+      .handler(new AccessLogHandler(config().getDouble("http.access-log.sample-rate", 1.0), AccessLog.shared()));
     router
       .post(API_V_1 + "/clients")
+      .handler(clientsLimit)
+      .handler(BodyHandler.create().setBodyLimit(clientBodyLimit))
       .handler(this::createClient);
     router
       .get(API_V_1 + "/clients/:clientId")
+      .handler(clientsLimit)
       .handler(this::getClient);
     router
       .post(API_V_1 + "/clients/:clientId/documents")
+      .consumes("text/plain")
+      .handler(documentsLimit)
+      .handler(this::uploadDocument);
+    router
+      .post(API_V_1 + "/clients/:clientId/documents")
+      .handler(documentsLimit)
+      .handler(BodyHandler.create().setBodyLimit(documentBodyLimit))
       .handler(this::createDocument);
     router
       .get(API_V_1 + "/search")
+      .handler(searchLimit)
       .handler(this::search);
+    router
+      .get(API_V_1 + "/documents/:documentId/similar")
+      .handler(searchLimit)
+      .handler(this::similarDocuments);
+    router
+      .get(API_V_1 + "/suggest")
+      .handler(suggestLimit)
+      .handler(this::suggest);
+    if (Metrics.registry() instanceof PrometheusMeterRegistry registry) {
+      router
+        .get("/metrics")
+        .handler(PrometheusScrapingHandler.create(registry));
+    }
     router
       .route()
       .failureHandler(this::handleError);
@@ -67,44 +116,34 @@ public final class ApiVerticle extends VerticleBase {
       .onSuccess(httpServer -> LOG.info("HTTP server started on port {}", httpServer.actualPort()));
   }
 
-  private void initialiseValidators() {
-    final var schemaOptions = new JsonSchemaOptions()
-      .setDraft(Draft.DRAFT202012)
-      .setBaseUri("https://nvs-tech.local/schemas");
-
-    final var clientSchemaJson = objectSchema()
-      .requiredProperty("first_name", stringSchema().with(minLength(1)))
-      .requiredProperty("last_name", stringSchema().with(minLength(1)))
-      .requiredProperty("email", stringSchema()
-        .with(minLength(1))
-        .with(pattern(Pattern.compile("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$"))))
-      .optionalProperty("description", stringSchema())
-      .toJson();
-
-    clientValidator = Validator.create(
-      JsonSchema.of(clientSchemaJson),
-      schemaOptions);
-
-    final var documentSchemaJson = objectSchema()
-      .requiredProperty("title", stringSchema().with(minLength(1)))
-      .requiredProperty("content", stringSchema().with(minLength(1)))
-      .toJson();
-
-    documentValidator = Validator.create(
-      JsonSchema.of(documentSchemaJson),
-      schemaOptions);
+  /**
+   * Limits are kept in local shared data so that all instances of this verticle admit requests
+   * against the same per-route-class budget, which is what protects the shared pool and clients.
+   */
+  private LoadSheddingHandler loadShedding(String routeClass, int initialLimit, int maxLimit, long latencyThresholdMs) {
+    final var limitConfig = config()
+      .getJsonObject("http.concurrency", new JsonObject())
+      .getJsonObject(routeClass, new JsonObject());
+    final var limit = vertx.sharedData()
+      .<String, AimdLimit>getLocalMap(CONCURRENCY_LIMITS)
+      .computeIfAbsent(routeClass, __ -> new AimdLimit(
+        limitConfig.getInteger("initialLimit", initialLimit),
+        limitConfig.getInteger("minLimit", 1),
+        limitConfig.getInteger("maxLimit", maxLimit),
+        limitConfig.getLong("latencyThresholdMs", latencyThresholdMs)));
+    return new LoadSheddingHandler(routeClass, limit);
   }
 
   private void createClient(RoutingContext ctx) {
     validatePayload(ctx, clientValidator)
       .compose(payload ->
-        vertx.eventBus().<JsonObject>request("clients.create", payload))
+        Metrics.<Client>timedRequest(vertx.eventBus(), "clients.create", NewClient.fromJson(payload)))
       .onSuccess(reply ->
-        ctx.response()
+        withConsistencyToken(ctx, reply)
           .setStatusCode(201)
-          .putHeader("Location", "%s/%s".formatted(ctx.request().absoluteURI(), reply.body().getString("id")))
+          .putHeader("Location", "%s/%s".formatted(ctx.request().absoluteURI(), reply.body().id()))
           .putHeader("Content-Type", "application/json")
-          .end(reply.body().toString()))
+          .end(reply.body().toJson().encode()))
       .onFailure(ctx::fail);
   }
 
@@ -114,50 +153,250 @@ public final class ApiVerticle extends VerticleBase {
         ctx.response()
           .setStatusCode(200)
           .putHeader("Content-Type", "application/json")
-          .end(reply.body().toString()))
+          .end(reply.body().toJson().encode()))
       .onFailure(ctx::fail);
   }
 
   private void createDocument(RoutingContext ctx) {
+    final var event = new DocumentIngestEvent();
+    event.begin();
     fetchClient(ctx)
       .compose(client ->
         validatePayload(ctx, documentValidator)
-          .map(payload -> payload.put("client_id", client.body().getString("id"))))
-      .compose(payload ->
-        vertx.eventBus().<JsonObject>request("documents.create", payload))
-      .onSuccess(reply ->
-        ctx.response()
-          .setStatusCode(201)
-          .putHeader("Location", "%s/%s".formatted(ctx.request().absoluteURI(), reply.body().getString("id")))
-          .putHeader("Content-Type", "application/json")
-          .end(reply.body().toString()))
+          .map(payload -> new NewDocument(
+            client.body().id(),
+            payload.getString("title"),
+            payload.getString("content"),
+            StreamingUpload.sha256(payload.getString("content")))))
+      .compose(document ->
+        Metrics.<Document>timedRequest(vertx.eventBus(), "documents.create", document))
+      .andThen(ar -> completeIngest(event, "json", ar))
+      .onSuccess(reply -> documentCreated(ctx, reply))
       .onFailure(ctx::fail);
   }
 
+  private void uploadDocument(RoutingContext ctx) {
+    final var title = ctx.request().getParam("title");
+    if (title == null || title.isBlank()) {
+      ctx.fail(new HttpException(400, "title: Required query parameter is missing"));
+      return;
+    }
+    final var event = new DocumentIngestEvent();
+    event.begin();
+    Future.all(fetchClient(ctx), StreamingUpload.read(ctx.request(), documentBodyLimit))
+      .compose(composite -> {
+        final Message<Client> client = composite.resultAt(0);
+        final StreamingUpload.Content content = composite.resultAt(1);
+        final var document = new NewDocument(client.body().id(), title, content.text(), content.sha256());
+        return Metrics.<Document>timedRequest(vertx.eventBus(), "documents.create", document);
+      })
+      .andThen(ar -> completeIngest(event, "stream", ar))
+      .onSuccess(reply -> documentCreated(ctx, reply))
+      .onFailure(ctx::fail);
+  }
+
+  private static void completeIngest(DocumentIngestEvent event, String mode, AsyncResult<Message<Document>> ar) {
+    event.complete(mode, ar.succeeded() ? ar.result().body().content().length() : 0, ar.succeeded());
+  }
+
+  private static void documentCreated(RoutingContext ctx, Message<Document> reply) {
+    final var document = reply.body();
+    withConsistencyToken(ctx, reply)
+      .setStatusCode(201)
+      .putHeader("Location", "%s/%s".formatted(ctx.request().absoluteURI(), document.id()))
+      .putHeader("Content-Type", "application/json")
+      .end(document.toJson().encode());
+  }
+
   private void search(RoutingContext ctx) {
+    final var receivedAt = System.nanoTime();
     final var queryParam = ctx.request().getParam("q");
     if (queryParam == null || queryParam.isBlank()) {
       ctx.response().setStatusCode(400).end("Required query parameter is missing");
       return;
     }
-    final var payload = new JsonObject().put("query", queryParam.toLowerCase());
-    vertx.eventBus()
-      .<JsonArray>request("search", payload)
-      .onSuccess(reply ->
-        ctx.response()
-          .setStatusCode(200)
-          .putHeader("Content-Type", "application/json")
-          .end(reply.body().toString()))
+    final var debug = Boolean.parseBoolean(ctx.request().getParam("debug"));
+    final var withContent = Boolean.parseBoolean(ctx.request().getParam("content"));
+    final OffsetDateTime from;
+    final OffsetDateTime to;
+    final UUID clientId;
+    try {
+      from = timestampParam(ctx, "from");
+      to = timestampParam(ctx, "to");
+      clientId = uuidParam(ctx, "clientId");
+    } catch (HttpException e) {
+      ctx.fail(e);
+      return;
+    }
+    if (from != null && to != null && !from.isBefore(to)) {
+      ctx.fail(new HttpException(400, "from: Must be before to"));
+      return;
+    }
+    final var query = new SearchQuery(queryParam.toLowerCase(), debug, from, to, withContent, clientId);
+    Metrics
+      .<SearchResults>timedRequest(vertx.eventBus(), "search", query, consistencyToken(ctx))
+      .onSuccess(reply -> searchResults(ctx, reply.body(), debug, receivedAt))
+      .onFailure(ctx::fail);
+  }
+
+  private void similarDocuments(RoutingContext ctx) {
+    final var receivedAt = System.nanoTime();
+    final UUID documentId;
+    final OffsetDateTime from;
+    final OffsetDateTime to;
+    final UUID clientId;
+    try {
+      documentId = documentIdPathParam(ctx);
+      from = timestampParam(ctx, "from");
+      to = timestampParam(ctx, "to");
+      clientId = uuidParam(ctx, "clientId");
+    } catch (HttpException e) {
+      ctx.fail(e);
+      return;
+    }
+    if (from != null && to != null && !from.isBefore(to)) {
+      ctx.fail(new HttpException(400, "from: Must be before to"));
+      return;
+    }
+    final var query = new SimilarQuery(documentId, from, to, clientId);
+    Metrics
+      .<SearchResults>timedRequest(vertx.eventBus(), "documents.similar", query, consistencyToken(ctx))
+      .onSuccess(reply -> searchResults(ctx, reply.body(), false, receivedAt))
       .onFailure(ctx::fail);
   }
 
-  private Future<Message<JsonObject>> fetchClient(RoutingContext ctx) {
+  private static void searchResults(RoutingContext ctx, SearchResults results, boolean debug, long receivedAt) {
+    final var serializeStartedAt = System.nanoTime();
+    final var body = debug ? results.toDebugJson().encode() : results.toJson().encode();
+    final var serializedAt = System.nanoTime();
+    ctx.response()
+      .setStatusCode(200)
+      .putHeader("Content-Type", "application/json")
+      .putHeader("Server-Timing", serverTiming(results.phases(),
+        new SearchPhase("serialize", serializedAt - serializeStartedAt),
+        new SearchPhase("total", serializedAt - receivedAt)))
+      .end(body);
+  }
+
+  private void suggest(RoutingContext ctx) {
+    final var prefix = ctx.request().getParam("q");
+    if (prefix == null || prefix.isBlank()) {
+      ctx.response().setStatusCode(400).end("Required query parameter is missing");
+      return;
+    }
+    final int limit;
+    try {
+      limit = limitParam(ctx);
+    } catch (HttpException e) {
+      ctx.fail(e);
+      return;
+    }
+    Metrics
+      .<Suggestions>timedRequest(vertx.eventBus(), "suggest", new SuggestQuery(prefix, limit))
+      .onSuccess(reply -> ctx.response()
+        .setStatusCode(200)
+        .putHeader("Content-Type", "application/json")
+        .end(reply.body().toJson().encode()))
+      .onFailure(ctx::fail);
+  }
+
+  /**
+   * The optional number of suggestions, up to the number the index keeps per prefix.
+   */
+  private static int limitParam(RoutingContext ctx) {
+    final var value = ctx.request().getParam("limit");
+    if (value == null || value.isBlank()) {
+      return SuggestionIndex.DEFAULT_LIMIT;
+    }
+    final var message = "limit: Expected an integer from 1 to " + PrefixIndex.MAX_RESULTS;
+    final int limit;
+    try {
+      limit = Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      LOG.warn("Invalid limit parameter: {}", value);
+      throw new HttpException(400, message, e);
+    }
+    if (limit < 1 || limit > PrefixIndex.MAX_RESULTS) {
+      LOG.warn("Invalid limit parameter: {}", value);
+      throw new HttpException(400, message);
+    }
+    return limit;
+  }
+
+  /**
+   * An optional ISO 8601 date-time query parameter. A bare date stands for midnight UTC.
+   */
+  private static OffsetDateTime timestampParam(RoutingContext ctx, String name) {
+    final var value = ctx.request().getParam(name);
+    if (value == null || value.isBlank()) {
+      return null;
+    }
+    try {
+      return value.indexOf('T') < 0
+        ? LocalDate.parse(value).atStartOfDay().atOffset(ZoneOffset.UTC)
+        : OffsetDateTime.parse(value);
+    } catch (DateTimeParseException e) {
+      LOG.warn("Invalid {} parameter: {}", name, value);
+      throw new HttpException(400, name + ": Expected an ISO 8601 date or date-time", e);
+    }
+  }
+
+  /**
+   * An optional UUID query parameter.
+   */
+  private static UUID uuidParam(RoutingContext ctx, String name) {
+    final var value = ctx.request().getParam(name);
+    if (value == null || value.isBlank()) {
+      return null;
+    }
+    try {
+      return UUID.fromString(value);
+    } catch (IllegalArgumentException e) {
+      LOG.warn("Invalid {} parameter: {}", name, value);
+      throw new HttpException(400, name + ": Expected a UUID", e);
+    }
+  }
+
+  private static String serverTiming(List<SearchPhase> phases, SearchPhase... apiPhases) {
+    final var header = new StringJoiner(", ");
+    for (final var phase : phases) {
+      header.add(serverTimingEntry(phase));
+    }
+    for (final var phase : apiPhases) {
+      header.add(serverTimingEntry(phase));
+    }
+    return header.toString();
+  }
+
+  private static String serverTimingEntry(SearchPhase phase) {
+    return String.format(Locale.ROOT, "%s;dur=%.3f", phase.name(), phase.durationMillis());
+  }
+
+  private Future<Message<Client>> fetchClient(RoutingContext ctx) {
     return uuidPathParam(ctx)
-      .compose(clientId -> {
-        final var payload = new JsonObject().put("clientId", clientId.toString());
-        return vertx.eventBus()
-          .request("clients.get", payload);
-      });
+      .compose(clientId -> Metrics.timedRequest(vertx.eventBus(), "clients.get", new ClientLookup(clientId),
+        consistencyToken(ctx)));
+  }
+
+  /**
+   * Forwards the token a client got from an earlier write, so that the read sees that write even
+   * when it is served by a replica.
+   */
+  private static DeliveryOptions consistencyToken(RoutingContext ctx) {
+    final var options = new DeliveryOptions();
+    final var token = ctx.request().getHeader(CONSISTENCY_TOKEN);
+    if (token != null) {
+      options.addHeader(ConsistencyToken.HEADER, token);
+    }
+    return options;
+  }
+
+  private static HttpServerResponse withConsistencyToken(RoutingContext ctx, Message<?> reply) {
+    final var token = reply.headers().get(ConsistencyToken.HEADER);
+    if (token != null) {
+      ctx.response().putHeader(CONSISTENCY_TOKEN, token);
+    }
+    return ctx.response();
   }
 
   private Future<UUID> uuidPathParam(RoutingContext ctx) {
@@ -170,6 +409,16 @@ public final class ApiVerticle extends VerticleBase {
     }
   }
 
+  private static UUID documentIdPathParam(RoutingContext ctx) {
+    final var documentId = ctx.pathParam("documentId");
+    try {
+      return UUID.fromString(documentId);
+    } catch (IllegalArgumentException e) {
+      LOG.warn("Invalid document ID: {}", documentId);
+      throw new HttpException(400, "Invalid document ID", e);
+    }
+  }
+
   private Future<JsonObject> validatePayload(RoutingContext ctx, Validator validator) {
     final JsonObject payload;
     try {
@@ -188,36 +437,11 @@ public final class ApiVerticle extends VerticleBase {
       return succeededFuture(payload);
     }
 
-    final var errorMessage = formatValidationErrors(result);
+    final var errorMessage = PayloadValidators.formatValidationErrors(result);
     LOG.warn("Payload validation failed: {}", errorMessage);
     return failedFuture(new HttpException(400, errorMessage));
   }
 
-  private String formatValidationErrors(OutputUnit result) {
-    final var errors = result.getErrors();
-    if (errors == null || errors.isEmpty()) {
-      return "Validation failed";
-    }
-
-    return errors.stream()
-      .map(this::formatSingleError)
-      .collect(Collectors.joining("; "));
-  }
-
-  private String formatSingleError(OutputUnit error) {
-    final var instanceLocation = error.getInstanceLocation();
-    final var errorMessage = error.getError();
-
-    if (instanceLocation != null && !instanceLocation.isEmpty() && !"/".equals(instanceLocation)) {
-      final var fieldName = instanceLocation.startsWith("/")
-        ? instanceLocation.substring(1)
-        : instanceLocation;
-      return "%s: %s".formatted(fieldName, errorMessage);
-    }
-
-    return errorMessage != null ? errorMessage : "Validation failed";
-  }
-
   private void handleError(RoutingContext ctx) {
     final var failure = ctx.failure();
     if (failure instanceof ReplyException e) {
@@ -234,6 +458,14 @@ public final class ApiVerticle extends VerticleBase {
         .end(new JsonObject().put("error", e.getPayload()).encode());
       return;
     }
+    if (failure == null) {
+      final var status = HttpResponseStatus.valueOf(ctx.statusCode());
+      ctx.response()
+        .setStatusCode(status.code())
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("error", status.reasonPhrase()).encode());
+      return;
+    }
     LOG.error("Unhandled error", failure);
     ctx.response()
       .setStatusCode(500)
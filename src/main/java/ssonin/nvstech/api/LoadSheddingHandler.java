@@ -0,0 +1,43 @@
+package ssonin.nvstech.api;
+
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.HttpException;
+import io.vertx.ext.web.handler.PlatformHandler;
+import org.slf4j.Logger;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Admits requests while the route class is below its adaptive concurrency limit and rejects the rest
+ * with {@code 503 Service Unavailable} and a {@code Retry-After} hint, instead of letting them queue
+ * on the event bus, the connection pool or the embedding client.
+ * It is a platform handler, like {@code TimeoutHandler}, so that it runs before {@code BodyHandler}
+ * and a rejected request's body is never read.
+ */
+final class LoadSheddingHandler implements PlatformHandler {
+
+  private static final Logger LOG = getLogger(LoadSheddingHandler.class);
+  private static final String RETRY_AFTER_SECONDS = "1";
+
+  private final String routeClass;
+  private final AimdLimit limit;
+
+  LoadSheddingHandler(String routeClass, AimdLimit limit) {
+    this.routeClass = routeClass;
+    this.limit = limit;
+  }
+
+  @Override
+  public void handle(RoutingContext ctx) {
+    if (!limit.tryAcquire()) {
+      LOG.debug("Shedding {} request, concurrency limit {} reached", routeClass, limit.limit());
+      ctx.response().putHeader("Retry-After", RETRY_AFTER_SECONDS);
+      ctx.fail(new HttpException(503, "Service is overloaded, retry later"));
+      return;
+    }
+    final var startedAt = System.nanoTime();
+    ctx.addEndHandler(__ ->
+      limit.release(System.nanoTime() - startedAt, ctx.response().getStatusCode() >= 500));
+    ctx.next();
+  }
+}
@@ -0,0 +1,79 @@
+package ssonin.nvstech.api;
+
+import io.vertx.json.schema.Draft;
+import io.vertx.json.schema.JsonSchema;
+import io.vertx.json.schema.JsonSchemaOptions;
+import io.vertx.json.schema.OutputUnit;
+import io.vertx.json.schema.Validator;
+
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static io.vertx.json.schema.common.dsl.Keywords.minLength;
+import static io.vertx.json.schema.common.dsl.Keywords.pattern;
+import static io.vertx.json.schema.common.dsl.Schemas.objectSchema;
+import static io.vertx.json.schema.common.dsl.Schemas.stringSchema;
+
+/**
+ * JSON schemas for the request payloads and the formatting of their validation errors.
+ */
+final class PayloadValidators {
+
+  private static final JsonSchemaOptions SCHEMA_OPTIONS = new JsonSchemaOptions()
+    .setDraft(Draft.DRAFT202012)
+    .setBaseUri("https://nvs-tech.local/schemas");
+
+  private PayloadValidators() {
+  }
+
+  static Validator client() {
+    final var clientSchemaJson = objectSchema()
+      .requiredProperty("first_name", stringSchema().with(minLength(1)))
+      .requiredProperty("last_name", stringSchema().with(minLength(1)))
+      .requiredProperty("email", stringSchema()
+        .with(minLength(1))
+        .with(pattern(Pattern.compile("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$"))))
+      .optionalProperty("description", stringSchema())
+      .toJson();
+
+    return Validator.create(
+      JsonSchema.of(clientSchemaJson),
+      SCHEMA_OPTIONS);
+  }
+
+  static Validator document() {
+    final var documentSchemaJson = objectSchema()
+      .requiredProperty("title", stringSchema().with(minLength(1)))
+      .requiredProperty("content", stringSchema().with(minLength(1)))
+      .toJson();
+
+    return Validator.create(
+      JsonSchema.of(documentSchemaJson),
+      SCHEMA_OPTIONS);
+  }
+
+  static String formatValidationErrors(OutputUnit result) {
+    final var errors = result.getErrors();
+    if (errors == null || errors.isEmpty()) {
+      return "Validation failed";
+    }
+
+    return errors.stream()
+      .map(PayloadValidators::formatSingleError)
+      .collect(Collectors.joining("; "));
+  }
+
+  private static String formatSingleError(OutputUnit error) {
+    final var instanceLocation = error.getInstanceLocation();
+    final var errorMessage = error.getError();
+
+    if (instanceLocation != null && !instanceLocation.isEmpty() && !"/".equals(instanceLocation)) {
+      final var fieldName = instanceLocation.startsWith("/")
+        ? instanceLocation.substring(1)
+        : instanceLocation;
+      return "%s: %s".formatted(fieldName, errorMessage);
+    }
+
+    return errorMessage != null ? errorMessage : "Validation failed";
+  }
+}
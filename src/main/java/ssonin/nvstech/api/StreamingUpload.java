@@ -0,0 +1,179 @@
+package ssonin.nvstech.api;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.handler.HttpException;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import static io.vertx.core.Future.failedFuture;
+import static io.vertx.core.http.HttpHeaders.CONTENT_LENGTH;
+
+/**
+ * Reads a raw request body chunk by chunk instead of letting {@code BodyHandler} buffer it.
+ * Each chunk is copied into one reused array, hashed and decoded from UTF-8 as it arrives, into one
+ * builder pre-sized from {@code Content-Length}. The raw bytes are never held in full, but the text
+ * is: the builder is copied once more into the {@code String} the document is stored and embedded
+ * from, since the insert and the embedding request both take the content as one value. At its peak,
+ * an upload holds its text twice.
+ */
+final class StreamingUpload {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 8 * 1024;
+  private static final int MAX_INITIAL_CAPACITY = 16 * 1024 * 1024;
+
+  record Content(String text, String sha256) {
+  }
+
+  private StreamingUpload() {
+  }
+
+  static Future<Content> read(HttpServerRequest request, long bodyLimit) {
+    final var declaredLength = declaredLength(request);
+    if (exceedsLimit(declaredLength.orElse(0L), bodyLimit)) {
+      return failedFuture(payloadTooLarge(bodyLimit));
+    }
+
+    final var digest = sha256();
+    final var text = new Utf8Text(declaredLength
+      .map(length -> (int) Math.min(length, MAX_INITIAL_CAPACITY))
+      .orElse(DEFAULT_INITIAL_CAPACITY));
+    final Promise<Content> promise = Promise.promise();
+    final var copy = new ChunkCopy();
+    request
+      .handler(chunk -> {
+        if (promise.future().isComplete()) {
+          return;
+        }
+        if (exceedsLimit(text.bytes() + chunk.length(), bodyLimit)) {
+          promise.tryFail(payloadTooLarge(bodyLimit));
+          return;
+        }
+        final var bytes = copy.of(chunk);
+        digest.update(bytes.duplicate());
+        text.append(bytes);
+      })
+      .exceptionHandler(promise::tryFail)
+      .endHandler(__ -> {
+        if (text.bytes() == 0) {
+          promise.tryFail(new HttpException(400, "Request body is required"));
+          return;
+        }
+        promise.tryComplete(new Content(text.finish(), HexFormat.of().formatHex(digest.digest())));
+      })
+      .resume();
+    return promise.future();
+  }
+
+  static String sha256(String text) {
+    return HexFormat.of().formatHex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static Optional<Long> declaredLength(HttpServerRequest request) {
+    try {
+      return Optional.ofNullable(request.getHeader(CONTENT_LENGTH)).map(Long::parseLong);
+    } catch (NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static boolean exceedsLimit(long length, long bodyLimit) {
+    return bodyLimit >= 0 && length > bodyLimit;
+  }
+
+  private static HttpException payloadTooLarge(long bodyLimit) {
+    return new HttpException(413, "Request body exceeds %d bytes".formatted(bodyLimit));
+  }
+
+  /**
+   * The bytes of one chunk at a time, copied through the public {@link Buffer} API into an array
+   * that is reused, and grown only when a chunk is larger than every one before it.
+   */
+  private static final class ChunkCopy {
+
+    private byte[] bytes = new byte[0];
+
+    ByteBuffer of(Buffer chunk) {
+      final var length = chunk.length();
+      if (bytes.length < length) {
+        bytes = new byte[length];
+      }
+      chunk.getBytes(0, length, bytes, 0);
+      return ByteBuffer.wrap(bytes, 0, length);
+    }
+  }
+
+  /**
+   * UTF-8 text decoded chunk by chunk. A character split across chunks is completed from the next
+   * chunk's first bytes, so no chunk has to be copied to join it to the previous one. Malformed input
+   * is replaced, as {@link Buffer#toString(java.nio.charset.Charset)} does.
+   */
+  static final class Utf8Text {
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(DEFAULT_INITIAL_CAPACITY);
+    // The bytes of a character that the previous chunk ended in the middle of
+    private final ByteBuffer carry = ByteBuffer.allocate(4);
+    private final StringBuilder text;
+    private long bytes;
+
+    Utf8Text(int expectedLength) {
+      text = new StringBuilder(expectedLength);
+    }
+
+    long bytes() {
+      return bytes;
+    }
+
+    void append(ByteBuffer chunk) {
+      bytes += chunk.remaining();
+      while (carry.position() > 0 && chunk.hasRemaining()) {
+        carry.put(chunk.get());
+        carry.flip();
+        decode(carry, false);
+        carry.compact();
+      }
+      decode(chunk, false);
+      carry.put(chunk);
+    }
+
+    String finish() {
+      carry.flip();
+      decode(carry, true);
+      chars.clear();
+      decoder.flush(chars);
+      text.append(chars.flip());
+      return text.toString();
+    }
+
+    private void decode(ByteBuffer in, boolean endOfInput) {
+      CoderResult result;
+      do {
+        chars.clear();
+        result = decoder.decode(in, chars, endOfInput);
+        text.append(chars.flip());
+      } while (result.isOverflow());
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package ssonin.nvstech.eventbus;
+
+/**
+ * Read-your-writes across read replicas. Replies to writes carry the primary's WAL position after
+ * the write in the {@link #HEADER} header. A read that sends the same header back is only served by
+ * a replica that has replayed at least that far.
+ */
+public final class ConsistencyToken {
+
+  public static final String HEADER = "consistency-token";
+
+  private ConsistencyToken() {
+  }
+}
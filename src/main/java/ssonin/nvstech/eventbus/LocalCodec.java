@@ -0,0 +1,43 @@
+package ssonin.nvstech.eventbus;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+/**
+ * Delivers message bodies by reference between verticles of the same Vert.x instance,
+ * skipping the defensive copy the built-in JSON codecs make on local delivery.
+ * Bodies must therefore be treated as immutable once sent.
+ */
+final class LocalCodec<T> implements MessageCodec<T, T> {
+
+  private final Class<T> type;
+
+  LocalCodec(Class<T> type) {
+    this.type = type;
+  }
+
+  @Override
+  public void encodeToWire(Buffer buffer, T body) {
+    throw new UnsupportedOperationException("%s can only be delivered locally".formatted(type.getName()));
+  }
+
+  @Override
+  public T decodeFromWire(int pos, Buffer buffer) {
+    throw new UnsupportedOperationException("%s can only be delivered locally".formatted(type.getName()));
+  }
+
+  @Override
+  public T transform(T body) {
+    return body;
+  }
+
+  @Override
+  public String name() {
+    return "local:" + type.getName();
+  }
+
+  @Override
+  public byte systemCodecID() {
+    return -1;
+  }
+}
@@ -0,0 +1,44 @@
+package ssonin.nvstech.eventbus;
+
+import io.vertx.core.eventbus.EventBus;
+import ssonin.nvstech.model.*;
+
+import java.util.List;
+
+public final class MessageCodecs {
+
+  private static final List<Class<?>> MESSAGE_TYPES = List.of(
+    NewClient.class,
+    ClientLookup.class,
+    Client.class,
+    NewDocument.class,
+    Document.class,
+    SearchQuery.class,
+    SearchResults.class,
+    SimilarQuery.class,
+    SuggestQuery.class,
+    Suggestions.class,
+    EmbeddingRequest.class,
+    Embeddings.class);
+
+  private MessageCodecs() {
+  }
+
+  /**
+   * Registers the local codecs for all message types. Every verticle calls this on start,
+   * so registrations already made by another verticle on the same event bus are skipped.
+   */
+  public static synchronized void register(EventBus eventBus) {
+    for (final var type : MESSAGE_TYPES) {
+      registerDefault(eventBus, type);
+    }
+  }
+
+  private static <T> void registerDefault(EventBus eventBus, Class<T> type) {
+    try {
+      eventBus.registerDefaultCodec(type, new LocalCodec<>(type));
+    } catch (IllegalStateException alreadyRegistered) {
+      // registered by another verticle sharing this event bus
+    }
+  }
+}
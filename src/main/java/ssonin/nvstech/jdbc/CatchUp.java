@@ -0,0 +1,89 @@
+package ssonin.nvstech.jdbc;
+
+import io.vertx.pgclient.PgConnectOptions;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads the rows of a table created since the previous read, database by database, for an
+ * in-process copy of the table that polls for the rows other processes create.
+ * <p>
+ * Each database has its own watermark: the latest {@code created_at} read from it. Only reads move
+ * it, never the rows the process writes itself, so a late or failed read, or a database whose clock
+ * is behind another's, doesn't make the next read skip rows. Each read starts {@link #MARGIN} before
+ * the watermark, for rows whose transaction committed after a later one's, so rows are read more
+ * than once and the copy skips those it already holds.
+ */
+public final class CatchUp {
+
+  public static final Duration MARGIN = Duration.ofMinutes(1);
+
+  private static final int FETCH_SIZE = 1000;
+
+  /**
+   * Takes one row into the copy.
+   */
+  @FunctionalInterface
+  public interface RowHandler {
+
+    /**
+     * @return whether the row was added, rather than already held
+     */
+    boolean handle(ResultSet row) throws SQLException;
+  }
+
+  private final String sql;
+  private final long sinceMillis;
+  private final Map<String, Long> watermarks = new ConcurrentHashMap<>();
+
+  /**
+   * @param sql         a query whose only parameter is the earliest {@code created_at} to read,
+   *                    returning {@code created_at} with the other columns
+   * @param sinceMillis the watermark of a database before its first read, {@link Long#MIN_VALUE}
+   *                    to read every row
+   */
+  public CatchUp(String sql, long sinceMillis) {
+    this.sql = sql;
+    this.sinceMillis = sinceMillis;
+  }
+
+  /**
+   * Reads the rows of every database since its watermark, in one transaction per database. Blocks
+   * until done. Reads must not overlap.
+   *
+   * @return how many rows the handler added
+   */
+  public int read(List<PgConnectOptions> databases, RowHandler handler) throws SQLException {
+    var added = 0;
+    for (final var db : databases) {
+      final var url = Jdbc.url(db);
+      var watermark = watermarks.getOrDefault(url, sinceMillis);
+      final var since = watermark == Long.MIN_VALUE ? new Timestamp(0) : new Timestamp(watermark - MARGIN.toMillis());
+      try (final var connection = Jdbc.connect(db)) {
+        connection.setAutoCommit(false);
+        try (final var statement = connection.prepareStatement(sql)) {
+          statement.setFetchSize(FETCH_SIZE);
+          statement.setTimestamp(1, since);
+          try (final var rows = statement.executeQuery()) {
+            while (rows.next()) {
+              watermark = Math.max(watermark, rows.getTimestamp("created_at").getTime());
+              if (handler.handle(rows)) {
+                added++;
+              }
+            }
+          }
+        } finally {
+          connection.rollback();
+        }
+      }
+      watermarks.put(url, watermark);
+    }
+    return added;
+  }
+}
@@ -0,0 +1,25 @@
+package ssonin.nvstech.jdbc;
+
+import io.vertx.pgclient.PgConnectOptions;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Blocking JDBC connections to the databases the reactive client is configured for, for the work
+ * that reads a whole table at startup or in the background.
+ */
+public final class Jdbc {
+
+  private Jdbc() {
+  }
+
+  public static String url(PgConnectOptions db) {
+    return "jdbc:postgresql://%s:%d/%s".formatted(db.getHost(), db.getPort(), db.getDatabase());
+  }
+
+  public static Connection connect(PgConnectOptions db) throws SQLException {
+    return DriverManager.getConnection(url(db), db.getUser(), db.getPassword());
+  }
+}
@@ -0,0 +1,32 @@
+package ssonin.nvstech.jfr;
+
+import jdk.jfr.*;
+
+@Name("nvstech.DocumentIngest")
+@Label("Document Ingest")
+@Description("Document creation request, from receipt to stored document")
+@Category({"nvs-tech", "Ingest"})
+@StackTrace(false)
+public final class DocumentIngestEvent extends Event {
+
+  @Label("Mode")
+  @Description("json for application/json bodies, stream for text/plain uploads")
+  String mode;
+
+  @Label("Content Length")
+  @Description("Length of the document content in characters")
+  int contentLength;
+
+  @Label("Succeeded")
+  boolean succeeded;
+
+  public void complete(String mode, int contentLength, boolean succeeded) {
+    end();
+    if (shouldCommit()) {
+      this.mode = mode;
+      this.contentLength = contentLength;
+      this.succeeded = succeeded;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package ssonin.nvstech.jfr;
+
+import jdk.jfr.*;
+
+@Name("nvstech.EmbeddingRequest")
+@Label("Embedding Request")
+@Description("HTTP call to the embedding service")
+@Category({"nvs-tech", "Embedding"})
+@StackTrace(false)
+public final class EmbeddingRequestEvent extends Event {
+
+  @Label("Batch Size")
+  int batchSize;
+
+  @Label("Request Size")
+  @DataAmount(DataAmount.BYTES)
+  long requestBytes;
+
+  @Label("Response Size")
+  @DataAmount(DataAmount.BYTES)
+  long responseBytes;
+
+  @Label("Status Code")
+  int statusCode;
+
+  public void complete(int batchSize, long requestBytes, long responseBytes, int statusCode) {
+    end();
+    if (shouldCommit()) {
+      this.batchSize = batchSize;
+      this.requestBytes = requestBytes;
+      this.responseBytes = responseBytes;
+      this.statusCode = statusCode;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package ssonin.nvstech.jfr;
+
+import jdk.jfr.*;
+
+@Name("nvstech.Query")
+@Label("Query")
+@Description("SQL statement executed on a pooled connection")
+@Category({"nvs-tech", "Database"})
+@StackTrace(false)
+public final class QueryEvent extends Event {
+
+  @Label("Statement")
+  String statement;
+
+  @Label("Rows")
+  int rows;
+
+  @Label("Succeeded")
+  boolean succeeded;
+
+  public void complete(String statement, int rows, boolean succeeded) {
+    end();
+    if (shouldCommit()) {
+      this.statement = statement;
+      this.rows = rows;
+      this.succeeded = succeeded;
+      commit();
+    }
+  }
+}
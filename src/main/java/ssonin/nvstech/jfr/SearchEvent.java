@@ -0,0 +1,106 @@
+package ssonin.nvstech.jfr;
+
+import jdk.jfr.*;
+import ssonin.nvstech.model.SearchHit;
+import ssonin.nvstech.model.SearchPhase;
+import ssonin.nvstech.model.SearchResults;
+
+@Name("nvstech.Search")
+@Label("Search")
+@Description("Hybrid search handled by the repository, from embedding lookup to merged hits")
+@Category({"nvs-tech", "Search"})
+@StackTrace(false)
+public final class SearchEvent extends Event {
+
+  @Label("Query Length")
+  @Description("Length of the normalised query in characters")
+  int queryLength;
+
+  @Label("Client Hits")
+  int clientHits;
+
+  @Label("Document Hits")
+  int documentHits;
+
+  @Label("Embedding")
+  @Timespan(Timespan.NANOSECONDS)
+  long embedding;
+
+  @Label("Clients FTS")
+  @Timespan(Timespan.NANOSECONDS)
+  long clientsFts;
+
+  @Label("Clients Hybrid")
+  @Description("Client full-text matches fused with the clients of nearest centroid, instead of Clients FTS")
+  @Timespan(Timespan.NANOSECONDS)
+  long clientsHybrid;
+
+  @Label("Client Vectors")
+  @Description("Reading the embeddings of the client a search is scoped to, from the cache or its shard")
+  @Timespan(Timespan.NANOSECONDS)
+  long clientVectors;
+
+  @Label("Vector Scan")
+  @Description("Exact scan of the embeddings of the client a search is scoped to")
+  @Timespan(Timespan.NANOSECONDS)
+  long vectorScan;
+
+  @Label("Documents Hybrid")
+  @Timespan(Timespan.NANOSECONDS)
+  long documentsHybrid;
+
+  @Label("Vector Replica")
+  @Description("Vector candidates from the in-process replica, within Documents Hybrid")
+  @Timespan(Timespan.NANOSECONDS)
+  long vectorReplica;
+
+  @Label("Merge")
+  @Timespan(Timespan.NANOSECONDS)
+  long merge;
+
+  @Label("Contents")
+  @Description("Reading the content of the returned documents")
+  @Timespan(Timespan.NANOSECONDS)
+  long contents;
+
+  @Label("Succeeded")
+  boolean succeeded;
+
+  public void complete(String query, SearchResults results) {
+    end();
+    if (!shouldCommit()) {
+      return;
+    }
+    queryLength = query.length();
+    succeeded = results != null;
+    if (succeeded) {
+      for (final var hit : results.hits()) {
+        if (hit instanceof SearchHit.ClientHit) {
+          clientHits++;
+        } else {
+          documentHits++;
+        }
+      }
+      for (final var phase : results.phases()) {
+        record(phase);
+      }
+    }
+    commit();
+  }
+
+  private void record(SearchPhase phase) {
+    switch (phase.name()) {
+      case "embedding" -> embedding = phase.durationNanos();
+      case "clients_fts" -> clientsFts = phase.durationNanos();
+      case "clients_hybrid" -> clientsHybrid = phase.durationNanos();
+      case "client_vectors" -> clientVectors = phase.durationNanos();
+      case "vector_scan" -> vectorScan = phase.durationNanos();
+      case "documents_hybrid" -> documentsHybrid = phase.durationNanos();
+      case "vector_replica" -> vectorReplica = phase.durationNanos();
+      case "merge" -> merge = phase.durationNanos();
+      case "contents" -> contents = phase.durationNanos();
+      default -> {
+      }
+    }
+  }
+}
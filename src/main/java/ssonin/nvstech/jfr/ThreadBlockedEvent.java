@@ -0,0 +1,35 @@
+package ssonin.nvstech.jfr;
+
+import jdk.jfr.*;
+
+@Name("nvstech.ThreadBlocked")
+@Label("Thread Blocked")
+@Description("Vert.x event loop or worker thread that ran a single task for longer than its limit")
+@Category({"nvs-tech", "Vert.x"})
+@StackTrace(false)
+public final class ThreadBlockedEvent extends Event {
+
+  @Label("Thread")
+  String thread;
+
+  @Label("Blocked For")
+  @Timespan(Timespan.MILLISECONDS)
+  long blocked;
+
+  @Label("Limit")
+  @Timespan(Timespan.MILLISECONDS)
+  long limit;
+
+  @Label("Blocked Thread Stack")
+  String blockedStack;
+
+  public void complete(String thread, long blockedMillis, long limitMillis, String blockedStack) {
+    if (shouldCommit()) {
+      this.thread = thread;
+      this.blocked = blockedMillis;
+      this.limit = limitMillis;
+      this.blockedStack = blockedStack;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package ssonin.nvstech.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.internal.VertxInternal;
+import io.vertx.core.internal.threadchecker.BlockedThreadEvent;
+import org.slf4j.Logger;
+import ssonin.nvstech.jfr.ThreadBlockedEvent;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Replaces the Vert.x blocked-thread warning with a structured one. Every report increments a
+ * counter, emits a {@link ThreadBlockedEvent} with the blocked thread's stack sampled at that
+ * moment, and logs the thread, the durations and the top of the stack as key-value pairs.
+ */
+public final class BlockedThreadMonitor {
+
+  private static final Logger LOG = getLogger(BlockedThreadMonitor.class);
+  private static final int MAX_FRAMES = 32;
+
+  private BlockedThreadMonitor() {
+  }
+
+  public static void install(Vertx vertx) {
+    install(vertx, Metrics.registry());
+  }
+
+  static void install(Vertx vertx, MeterRegistry registry) {
+    ((VertxInternal) vertx).blockedThreadChecker().setThreadBlockedHandler(event -> report(event, registry));
+  }
+
+  private static void report(BlockedThreadEvent event, MeterRegistry registry) {
+    final var thread = event.thread();
+    final var blockedMillis = TimeUnit.NANOSECONDS.toMillis(event.duration());
+    final var limitMillis = TimeUnit.NANOSECONDS.toMillis(event.maxExecTime());
+    final var stackTrace = Arrays.stream(thread.getStackTrace())
+      .limit(MAX_FRAMES)
+      .map(StackTraceElement::toString)
+      .collect(Collectors.joining("\n"));
+
+    Counter.builder("nvstech.thread.blocked")
+      .description("Times a Vert.x thread was reported as blocked")
+      .tag("thread", thread.getName())
+      .register(registry)
+      .increment();
+    new ThreadBlockedEvent().complete(thread.getName(), blockedMillis, limitMillis, stackTrace);
+
+    final var log = LOG.atWarn()
+      .addKeyValue("thread", thread.getName())
+      .addKeyValue("blocked_ms", blockedMillis)
+      .addKeyValue("limit_ms", limitMillis);
+    if (event.duration() > event.warningExceptionTime()) {
+      log.addKeyValue("stack", stackTrace);
+    }
+    log.log("Thread blocked");
+  }
+}
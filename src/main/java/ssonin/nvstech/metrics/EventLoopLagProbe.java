@@ -0,0 +1,58 @@
+package ssonin.nvstech.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Vertx;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how late a timer fires on the context of the verticle that starts the probe. On an event
+ * loop, the delay is the time the loop spent on other work past the moment the timer was due, so it
+ * grows as the loop saturates. The probe's timer belongs to the verticle and stops when the verticle
+ * is undeployed.
+ */
+public final class EventLoopLagProbe {
+
+  public static final long DEFAULT_INTERVAL_MS = 100;
+
+  private final Vertx vertx;
+  private final long intervalMs;
+  private final Timer lag;
+
+  private EventLoopLagProbe(Vertx vertx, long intervalMs, Timer lag) {
+    this.vertx = vertx;
+    this.intervalMs = intervalMs;
+    this.lag = lag;
+  }
+
+  /**
+   * Starts the probe on the current context. Must be called from the verticle's {@code start}.
+   */
+  public static void start(Vertx vertx, String verticle, long intervalMs) {
+    start(vertx, verticle, intervalMs, Metrics.registry());
+  }
+
+  static void start(Vertx vertx, String verticle, long intervalMs, MeterRegistry registry) {
+    if (intervalMs <= 0) {
+      return;
+    }
+    final var context = vertx.getOrCreateContext();
+    final var thread = context.isEventLoopContext() ? Thread.currentThread().getName() : context.threadingModel().name();
+    final var lag = Timer.builder("nvstech.eventloop.lag")
+      .description("Delay between when a timer was due and when it ran on the verticle's context")
+      .tag("verticle", verticle)
+      .tag("thread", thread)
+      .publishPercentileHistogram()
+      .register(registry);
+    new EventLoopLagProbe(vertx, intervalMs, lag).schedule();
+  }
+
+  private void schedule() {
+    final var dueAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervalMs);
+    vertx.setTimer(intervalMs, __ -> {
+      lag.record(Math.max(0, System.nanoTime() - dueAt), TimeUnit.NANOSECONDS);
+      schedule();
+    });
+  }
+}
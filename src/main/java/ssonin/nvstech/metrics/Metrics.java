@@ -0,0 +1,91 @@
+package ssonin.nvstech.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.micrometer.MicrometerMetricsOptions;
+import io.vertx.micrometer.VertxPrometheusOptions;
+import io.vertx.micrometer.backends.BackendRegistries;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static io.vertx.micrometer.Label.*;
+
+/**
+ * Metrics setup shared by the launcher and the verticles.
+ * Vert.x itself reports HTTP server and client, event bus and pool metrics. The helpers here time
+ * what it can't see: event-bus request/reply round trips, individual SQL queries and embedding calls.
+ * When Vert.x runs without metrics, as in most tests, meters are registered with a registry that
+ * records nothing.
+ */
+public final class Metrics {
+
+  private static final MeterRegistry NOOP_REGISTRY = new CompositeMeterRegistry();
+  private static final Map<TimerKey, Timer> TIMERS = new ConcurrentHashMap<>();
+
+  /**
+   * A timer of {@link #timed}, per registry, since tests start Vert.x instances with registries of
+   * their own.
+   */
+  private record TimerKey(MeterRegistry registry, String name, Tags tags, boolean succeeded) {
+  }
+
+  private Metrics() {
+  }
+
+  public static MicrometerMetricsOptions options() {
+    return new MicrometerMetricsOptions()
+      .setEnabled(true)
+      .setJvmMetricsEnabled(true)
+      .setPrometheusOptions(new VertxPrometheusOptions()
+        .setEnabled(true)
+        .setPublishQuantiles(true))
+      .setLabels(EnumSet.of(
+        HTTP_ROUTE, HTTP_METHOD, HTTP_CODE,
+        EB_ADDRESS, EB_SIDE, EB_FAILURE,
+        POOL_TYPE, POOL_NAME,
+        CLIENT_NAME, NAMESPACE));
+  }
+
+  public static MeterRegistry registry() {
+    return Optional.ofNullable(BackendRegistries.getDefaultNow()).orElse(NOOP_REGISTRY);
+  }
+
+  public static <T> Future<Message<T>> timedRequest(EventBus eventBus, String address, Object body) {
+    return timed("nvstech.eventbus.request", Tags.of("address", address), () -> eventBus.request(address, body));
+  }
+
+  public static <T> Future<Message<T>> timedRequest(EventBus eventBus, String address, Object body,
+                                                    DeliveryOptions options) {
+    return timed("nvstech.eventbus.request", Tags.of("address", address),
+      () -> eventBus.request(address, body, options));
+  }
+
+  public static <T> Future<T> timed(String name, Tags tags, Supplier<Future<T>> operation) {
+    final var startedAt = System.nanoTime();
+    return operation.get().andThen(ar -> timer(name, tags, ar.succeeded())
+      .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS));
+  }
+
+  /**
+   * The timer for an outcome of an operation, registered on first use only, so that recording does
+   * not build and look up a meter id every time.
+   */
+  static Timer timer(String name, Tags tags, boolean succeeded) {
+    return TIMERS.computeIfAbsent(new TimerKey(registry(), name, tags, succeeded), key -> Timer.builder(key.name())
+      .tags(key.tags())
+      .tag("outcome", key.succeeded() ? "success" : "failure")
+      .publishPercentileHistogram()
+      .register(key.registry()));
+  }
+}
@@ -0,0 +1,25 @@
+package ssonin.nvstech.model;
+
+import io.vertx.core.json.JsonObject;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public record Client(
+  UUID id,
+  OffsetDateTime createdAt,
+  String firstName,
+  String lastName,
+  String email,
+  String description) {
+
+  public JsonObject toJson() {
+    return new JsonObject()
+      .put("id", id.toString())
+      .put("created_at", createdAt.toString())
+      .put("first_name", firstName)
+      .put("last_name", lastName)
+      .put("email", email)
+      .put("description", description);
+  }
+}
@@ -0,0 +1,6 @@
+package ssonin.nvstech.model;
+
+import java.util.UUID;
+
+public record ClientLookup(UUID clientId) {
+}
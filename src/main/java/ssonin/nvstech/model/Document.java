@@ -0,0 +1,34 @@
+package ssonin.nvstech.model;
+
+import io.vertx.core.json.JsonObject;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * A document. Search results carry its content only when it was asked for; otherwise it is null.
+ */
+public record Document(
+  UUID id,
+  OffsetDateTime createdAt,
+  UUID clientId,
+  String title,
+  String content,
+  String contentSha256) {
+
+  public Document withContent(String content) {
+    return new Document(id, createdAt, clientId, title, content, contentSha256);
+  }
+
+  public JsonObject toJson() {
+    final var json = new JsonObject()
+      .put("id", id.toString())
+      .put("created_at", createdAt.toString())
+      .put("client_id", clientId.toString())
+      .put("title", title);
+    if (content != null) {
+      json.put("content", content);
+    }
+    return json.put("content_sha256", contentSha256);
+  }
+}
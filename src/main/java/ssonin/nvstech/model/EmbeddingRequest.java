@@ -0,0 +1,6 @@
+package ssonin.nvstech.model;
+
+import java.util.List;
+
+public record EmbeddingRequest(List<String> texts) {
+}
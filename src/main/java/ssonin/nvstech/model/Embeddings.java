@@ -0,0 +1,14 @@
+package ssonin.nvstech.model;
+
+import java.util.List;
+
+/**
+ * Embedding vectors in the order of the texts they were requested for. Vectors are handed over
+ * by reference on the event bus, so neither side may modify them once sent.
+ */
+public record Embeddings(List<float[]> vectors) {
+
+  public float[] first() {
+    return vectors.getFirst();
+  }
+}
@@ -0,0 +1,14 @@
+package ssonin.nvstech.model;
+
+import io.vertx.core.json.JsonObject;
+
+public record NewClient(String firstName, String lastName, String email, String description) {
+
+  public static NewClient fromJson(JsonObject json) {
+    return new NewClient(
+      json.getString("first_name"),
+      json.getString("last_name"),
+      json.getString("email"),
+      json.getString("description"));
+  }
+}
@@ -0,0 +1,26 @@
+package ssonin.nvstech.model;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * How a hit got its rank. Positions are 1-based and {@code null} when the hit was not returned by
+ * that retriever; contributions are the reciprocal-rank-fusion terms that add up to a document's rank.
+ */
+public record RankExplanation(
+  Integer ftsPosition,
+  Integer vectorPosition,
+  Double ftsContribution,
+  Double vectorContribution) {
+
+  public static RankExplanation ftsOnly(int ftsPosition) {
+    return new RankExplanation(ftsPosition, null, null, null);
+  }
+
+  public JsonObject toJson() {
+    return new JsonObject()
+      .put("fts_position", ftsPosition)
+      .put("vector_position", vectorPosition)
+      .put("fts_rrf_contribution", ftsContribution)
+      .put("vector_rrf_contribution", vectorContribution);
+  }
+}
@@ -0,0 +1,43 @@
+package ssonin.nvstech.model;
+
+import io.vertx.core.json.JsonObject;
+
+public sealed interface SearchHit permits SearchHit.ClientHit, SearchHit.DocumentHit {
+
+  double rank();
+
+  /**
+   * Rank breakdown, only present when the query asked for it.
+   */
+  RankExplanation explanation();
+
+  JsonObject toJson();
+
+  record ClientHit(Client client, double rank, RankExplanation explanation) implements SearchHit {
+
+    public ClientHit(Client client, double rank) {
+      this(client, rank, null);
+    }
+
+    @Override
+    public JsonObject toJson() {
+      return client.toJson()
+        .put("type", "client")
+        .put("rank", rank);
+    }
+  }
+
+  record DocumentHit(Document document, double rank, RankExplanation explanation) implements SearchHit {
+
+    public DocumentHit(Document document, double rank) {
+      this(document, rank, null);
+    }
+
+    @Override
+    public JsonObject toJson() {
+      return document.toJson()
+        .put("type", "document")
+        .put("rank", rank);
+    }
+  }
+}
@@ -0,0 +1,8 @@
+package ssonin.nvstech.model;
+
+public record SearchPhase(String name, long durationNanos) {
+
+  public double durationMillis() {
+    return durationNanos / 1_000_000.0;
+  }
+}
@@ -0,0 +1,29 @@
+package ssonin.nvstech.model;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * A search, optionally limited to documents created in {@code [from, to)}. Either bound may be null.
+ * Document hits carry their content only with {@code withContent}. With a {@code clientId}, only the
+ * documents of that client are searched.
+ */
+public record SearchQuery(String query, boolean explain, OffsetDateTime from, OffsetDateTime to, boolean withContent,
+                          UUID clientId) {
+
+  public SearchQuery(String query) {
+    this(query, false);
+  }
+
+  public SearchQuery(String query, boolean explain) {
+    this(query, explain, null, null);
+  }
+
+  public SearchQuery(String query, boolean explain, OffsetDateTime from, OffsetDateTime to) {
+    this(query, explain, from, to, false);
+  }
+
+  public SearchQuery(String query, boolean explain, OffsetDateTime from, OffsetDateTime to, boolean withContent) {
+    this(query, explain, from, to, withContent, null);
+  }
+}
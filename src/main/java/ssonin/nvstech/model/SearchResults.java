@@ -0,0 +1,41 @@
+package ssonin.nvstech.model;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public record SearchResults(List<SearchHit> hits, List<SearchPhase> phases) {
+
+  public SearchResults(List<SearchHit> hits) {
+    this(hits, List.of());
+  }
+
+  public JsonArray toJson() {
+    final var json = new JsonArray(new ArrayList<>(hits.size()));
+    for (final var hit : hits) {
+      json.add(hit.toJson());
+    }
+    return json;
+  }
+
+  /**
+   * Envelope returned for {@code debug=true}: every hit carries its rank breakdown, and the
+   * repository-side phase timings are included in milliseconds.
+   */
+  public JsonObject toDebugJson() {
+    final var results = new JsonArray(new ArrayList<>(hits.size()));
+    for (final var hit : hits) {
+      final var explanation = hit.explanation();
+      results.add(hit.toJson().put("debug", explanation == null ? null : explanation.toJson()));
+    }
+    final var timings = new JsonObject();
+    for (final var phase : phases) {
+      timings.put(phase.name(), phase.durationMillis());
+    }
+    return new JsonObject()
+      .put("results", results)
+      .put("timings", timings);
+  }
+}
@@ -0,0 +1,11 @@
+package ssonin.nvstech.model;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * A search for the documents nearest to a stored one, optionally limited to those created in
+ * {@code [from, to)} and to the documents of {@code clientId}. Any of these may be null.
+ */
+public record SimilarQuery(UUID documentId, OffsetDateTime from, OffsetDateTime to, UUID clientId) {
+}
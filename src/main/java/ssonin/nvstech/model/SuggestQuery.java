@@ -0,0 +1,4 @@
+package ssonin.nvstech.model;
+
+public record SuggestQuery(String prefix, int limit) {
+}
@@ -0,0 +1,13 @@
+package ssonin.nvstech.model;
+
+import io.vertx.core.json.JsonObject;
+
+public record Suggestion(String text, String type, long popularity) {
+
+  public JsonObject toJson() {
+    return new JsonObject()
+      .put("text", text)
+      .put("type", type)
+      .put("popularity", popularity);
+  }
+}
@@ -0,0 +1,17 @@
+package ssonin.nvstech.model;
+
+import io.vertx.core.json.JsonArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public record Suggestions(List<Suggestion> suggestions) {
+
+  public JsonArray toJson() {
+    final var json = new JsonArray(new ArrayList<>(suggestions.size()));
+    for (final var suggestion : suggestions) {
+      json.add(suggestion.toJson());
+    }
+    return json;
+  }
+}
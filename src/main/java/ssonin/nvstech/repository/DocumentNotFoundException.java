@@ -0,0 +1,8 @@
+package ssonin.nvstech.repository;
+
+final class DocumentNotFoundException extends NotFoundException {
+
+  DocumentNotFoundException() {
+    super("Document not found");
+  }
+}
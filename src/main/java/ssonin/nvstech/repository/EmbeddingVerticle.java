@@ -1,12 +1,24 @@
 package ssonin.nvstech.repository;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Tags;
 import io.vertx.core.Future;
 import io.vertx.core.VerticleBase;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.tracing.TracingPolicy;
 import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.ext.web.codec.BodyCodec;
 import org.slf4j.Logger;
+import ssonin.nvstech.eventbus.MessageCodecs;
+import ssonin.nvstech.jfr.EmbeddingRequestEvent;
+import ssonin.nvstech.metrics.EventLoopLagProbe;
+import ssonin.nvstech.metrics.Metrics;
+import ssonin.nvstech.model.EmbeddingRequest;
+
+import java.io.IOException;
 
 import static io.vertx.core.Future.succeededFuture;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -14,10 +26,12 @@ import static org.slf4j.LoggerFactory.getLogger;
 public final class EmbeddingVerticle extends VerticleBase {
 
   private static final Logger LOG = getLogger(EmbeddingVerticle.class);
+  private static final String CLIENT_NAME = "nvs-tech-embedding";
 
   private String host;
   private int port;
   private WebClient webClient;
+  private DistributionSummary batchSize;
 
   @Override
   public Future<?> start() {
@@ -27,21 +41,50 @@ public final class EmbeddingVerticle extends VerticleBase {
     host =  embeddingConfig.getString("host");
     port = embeddingConfig.getInteger("port");
 
-    webClient = WebClient.create(vertx);
+    webClient = WebClient.create(vertx, new WebClientOptions()
+      .setShared(true)
+      .setName(CLIENT_NAME)
+      .setMetricsName(CLIENT_NAME)
+      .setTracingPolicy(TracingPolicy.PROPAGATE));
+    batchSize = DistributionSummary.builder("nvstech.embedding.batch.size")
+      .description("Number of texts sent to the embedding service per request")
+      .baseUnit("texts")
+      .register(Metrics.registry());
+    MessageCodecs.register(vertx.eventBus());
+    EventLoopLagProbe.start(vertx, "embedding",
+      config().getLong("metrics.event-loop-lag-interval-ms", EventLoopLagProbe.DEFAULT_INTERVAL_MS));
     final var eb = vertx.eventBus();
     eb.consumer("embeddings.get", this::getEmbeddings);
     return succeededFuture();
   }
 
-  private void getEmbeddings(Message<JsonObject> msg) {
-    final var body = msg.body();
+  private void getEmbeddings(Message<EmbeddingRequest> msg) {
+    final var texts = msg.body().texts();
     final var request = new JsonObject()
-      .put("texts", body.getJsonArray("texts"));
-    webClient.post(port, host, "/embeddings")
-      .as(BodyCodec.jsonObject())
-      .sendJson(request)
-      .map(response -> response.body()
-        .getJsonArray("embeddings"))
+      .put("texts", new JsonArray(texts))
+      .toBuffer();
+    batchSize.record(texts.size());
+    final var event = new EmbeddingRequestEvent();
+    event.begin();
+    Metrics.timed("nvstech.embedding.request", Tags.empty(), () -> webClient.post(port, host, "/embeddings")
+        .as(BodyCodec.buffer())
+        .putHeader("Content-Type", "application/json")
+        .sendBuffer(request)
+        .andThen(ar -> event.complete(
+          texts.size(),
+          request.length(),
+          ar.succeeded() && ar.result().body() != null ? ar.result().body().length() : 0,
+          ar.succeeded() ? ar.result().statusCode() : 0))
+        .map(response -> {
+          if (response.statusCode() != 200) {
+            throw new IllegalStateException("Embedding service responded with " + response.statusCode());
+          }
+          try {
+            return EmbeddingsParser.parse(response.body());
+          } catch (IOException e) {
+            throw new IllegalStateException("Malformed embedding service response", e);
+          }
+        }))
       .onSuccess(msg::reply)
       .onFailure(e -> {
         final var errorMessage = "Failed to fetch embeddings";
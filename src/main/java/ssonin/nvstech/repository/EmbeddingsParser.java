@@ -0,0 +1,69 @@
+package ssonin.nvstech.repository;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.buffer.Buffer;
+import ssonin.nvstech.model.Embeddings;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams the embedding service response straight into {@code float[]} vectors,
+ * without materialising a {@code JsonArray} of boxed doubles per vector first.
+ */
+final class EmbeddingsParser {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final int INITIAL_DIMENSION = 384;
+
+  private EmbeddingsParser() {
+  }
+
+  static Embeddings parse(Buffer body) throws IOException {
+    try (final var parser = JSON_FACTORY.createParser(body.getBytes())) {
+      expect(parser.nextToken(), JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final var field = parser.currentName();
+        parser.nextToken();
+        if ("embeddings".equals(field)) {
+          return new Embeddings(parseVectors(parser));
+        }
+        parser.skipChildren();
+      }
+      throw new IOException("Response does not contain embeddings");
+    }
+  }
+
+  private static List<float[]> parseVectors(JsonParser parser) throws IOException {
+    expect(parser.currentToken(), JsonToken.START_ARRAY);
+    final var vectors = new ArrayList<float[]>();
+    while (parser.nextToken() == JsonToken.START_ARRAY) {
+      vectors.add(parseVector(parser));
+    }
+    expect(parser.currentToken(), JsonToken.END_ARRAY);
+    return vectors;
+  }
+
+  private static float[] parseVector(JsonParser parser) throws IOException {
+    var vector = new float[INITIAL_DIMENSION];
+    var size = 0;
+    while (parser.nextToken().isNumeric()) {
+      if (size == vector.length) {
+        vector = Arrays.copyOf(vector, size * 2);
+      }
+      vector[size++] = parser.getFloatValue();
+    }
+    expect(parser.currentToken(), JsonToken.END_ARRAY);
+    return size == vector.length ? vector : Arrays.copyOf(vector, size);
+  }
+
+  private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+    if (actual != expected) {
+      throw new IOException("Unexpected token %s, expected %s".formatted(actual, expected));
+    }
+  }
+}
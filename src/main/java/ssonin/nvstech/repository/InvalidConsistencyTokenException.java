@@ -0,0 +1,12 @@
+package ssonin.nvstech.repository;
+
+/**
+ * A read carried a consistency token that is not a WAL position. Like {@link NotFoundException}, it
+ * is the caller's mistake and carries no stack trace.
+ */
+final class InvalidConsistencyTokenException extends RuntimeException {
+
+  InvalidConsistencyTokenException() {
+    super("Invalid consistency token", null, false, false);
+  }
+}
@@ -0,0 +1,30 @@
+package ssonin.nvstech.repository;
+
+/**
+ * PostgreSQL write-ahead log positions, as printed by {@code pg_lsn} ({@code 16/B374D848}), converted
+ * to unsigned 64-bit values so that they can be compared without a round trip to the database.
+ */
+final class Lsn {
+
+  static final long NONE = -1;
+
+  private Lsn() {
+  }
+
+  static long parse(String lsn) {
+    final var separator = lsn.indexOf('/');
+    if (separator < 1 || separator > 8 || lsn.length() - separator - 1 < 1 || lsn.length() - separator - 1 > 8) {
+      throw new IllegalArgumentException("Not a WAL position: " + lsn);
+    }
+    try {
+      final var high = Long.parseLong(lsn, 0, separator, 16);
+      final var low = Long.parseLong(lsn, separator + 1, lsn.length(), 16);
+      if (high < 0 || low < 0) {
+        throw new IllegalArgumentException("Not a WAL position: " + lsn);
+      }
+      return high << 32 | low;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Not a WAL position: " + lsn, e);
+    }
+  }
+}
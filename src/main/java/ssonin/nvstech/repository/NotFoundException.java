@@ -1,8 +1,12 @@
 package ssonin.nvstech.repository;
 
-abstract sealed class NotFoundException extends RuntimeException permits ClientNotFoundException {
+/**
+ * An expected outcome rather than a fault, so it carries no stack trace.
+ */
+abstract sealed class NotFoundException extends RuntimeException
+  permits ClientNotFoundException, DocumentNotFoundException {
 
   NotFoundException(final String message) {
-    super(message);
+    super(message, null, false, false);
   }
 }
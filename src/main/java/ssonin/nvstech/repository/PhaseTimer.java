@@ -0,0 +1,38 @@
+package ssonin.nvstech.repository;
+
+import io.vertx.core.Future;
+import ssonin.nvstech.model.SearchPhase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Records how long each phase of a single request takes. Phases are recorded in completion order.
+ * Instances are confined to the context that handles the request, so phases that run concurrently
+ * still record their results one at a time.
+ */
+final class PhaseTimer {
+
+  private final List<SearchPhase> phases = new ArrayList<>();
+
+  <T> Future<T> time(String phase, Supplier<Future<T>> operation) {
+    final var startedAt = System.nanoTime();
+    return operation.get().andThen(__ -> record(phase, startedAt));
+  }
+
+  <T> T measure(String phase, Supplier<T> operation) {
+    final var startedAt = System.nanoTime();
+    final var result = operation.get();
+    record(phase, startedAt);
+    return result;
+  }
+
+  List<SearchPhase> phases() {
+    return List.copyOf(phases);
+  }
+
+  private void record(String phase, long startedAt) {
+    phases.add(new SearchPhase(phase, System.nanoTime() - startedAt));
+  }
+}
@@ -0,0 +1,243 @@
+package ssonin.nvstech.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.SqlConnection;
+import org.slf4j.Logger;
+import ssonin.nvstech.metrics.Metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+import static io.vertx.core.Future.failedFuture;
+import static io.vertx.core.Future.succeededFuture;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Chooses the pool a read runs on. Reads go to the replicas in turn, and writes always go to the
+ * primary. Each replica's replayed WAL position is polled periodically and kept in memory.
+ * A read that carries a consistency token is sent only to a replica that has replayed past the
+ * token. When every replica is behind, the read either waits up to {@code maxWaitMs} for one of
+ * them or goes to the primary. A replica that cannot be polled is skipped until it can.
+ * <p>
+ * Every verticle instance has a router of its own, over its own pools, but the replayed positions
+ * are kept per shard in local shared data. However many instances there are, each replica is polled
+ * about once per interval, and every instance routes by the same positions.
+ */
+final class ReplicaRouter {
+
+  private static final Logger LOG = getLogger(ReplicaRouter.class);
+  private static final String POSITIONS = "nvstech.db.replica-positions";
+  private static final long WAIT_STEP_MS = 5;
+
+  /**
+   * The replayed positions of one shard's replicas, when they were last polled, and the latest
+   * position a write of this JVM committed at, shared by the routers of every verticle instance.
+   */
+  private static final class Positions implements Shareable {
+
+    private final AtomicLongArray replayed;
+    private final AtomicLong polledAt = new AtomicLong(System.nanoTime());
+    private final AtomicLong written = new AtomicLong(Lsn.NONE);
+
+    private Positions(int replicas) {
+      final var none = new long[replicas];
+      Arrays.fill(none, Lsn.NONE);
+      replayed = new AtomicLongArray(none);
+    }
+
+    /**
+     * Whether the caller is the one to poll now: the first for half an interval.
+     */
+    private boolean due(long intervalNanos) {
+      final var now = System.nanoTime();
+      final var last = polledAt.get();
+      return now - last >= intervalNanos / 2 && polledAt.compareAndSet(last, now);
+    }
+  }
+
+  private record Replica(String name, int index, Pool pool) {
+  }
+
+  private final Vertx vertx;
+  private final Pool primary;
+  private final List<Replica> replicas;
+  private final Positions positions;
+  private final long maxWaitMs;
+  private int next;
+
+  /**
+   * @param name the name of the shard's pool, which identifies the shard within the JVM
+   */
+  ReplicaRouter(Vertx vertx, String name, Pool primary, List<Pool> replicas, long maxWaitMs) {
+    this.vertx = vertx;
+    this.primary = primary;
+    this.replicas = IntStream.range(0, replicas.size())
+      .mapToObj(i -> new Replica("replica-" + i, i, replicas.get(i)))
+      .toList();
+    this.positions = vertx.sharedData()
+      .<String, Positions>getLocalMap(POSITIONS)
+      .compute(name, (__, shared) -> shared != null && shared.replayed.length() == replicas.size()
+        ? shared
+        : new Positions(replicas.size()));
+    this.maxWaitMs = maxWaitMs;
+  }
+
+  /**
+   * Polls every replica once, then keeps polling every {@code pollIntervalMs} unless the router of
+   * another instance has just done so.
+   */
+  Future<Void> start(long pollIntervalMs) {
+    if (replicas.isEmpty()) {
+      return succeededFuture();
+    }
+    final var intervalNanos = TimeUnit.MILLISECONDS.toNanos(pollIntervalMs);
+    vertx.setPeriodic(pollIntervalMs, pollIntervalMs, __ -> {
+      if (positions.due(intervalNanos)) {
+        replicas.forEach(this::poll);
+      }
+    });
+    return Future.join(replicas.stream().map(this::poll).toList()).<Void>mapEmpty().otherwiseEmpty();
+  }
+
+  /**
+   * The primary's WAL insert position once a write on {@code conn} has committed, to be handed back
+   * to the caller as its consistency token, or {@code null} when there are no replicas to be
+   * consistent with.
+   */
+  Future<String> writePosition(SqlConnection conn) {
+    if (replicas.isEmpty()) {
+      return succeededFuture();
+    }
+    return conn.query("SELECT pg_current_wal_insert_lsn()::text")
+      .execute()
+      .map(rows -> rows.iterator().next().getString(0))
+      .andThen(ar -> {
+        if (ar.succeeded()) {
+          positions.written.accumulateAndGet(Lsn.parse(ar.result()), Math::max);
+        }
+      });
+  }
+
+  /**
+   * Whether a read on {@code pool} that starts now sees every write this JVM has committed on the
+   * shard: a read on the primary, or on a replica that had replayed them all when last polled.
+   */
+  boolean seesWrites(Pool pool) {
+    if (pool == primary) {
+      return true;
+    }
+    for (final var replica : replicas) {
+      if (replica.pool() == pool) {
+        final var replayed = replayed(replica);
+        return replayed != Lsn.NONE && replayed >= positions.written.get();
+      }
+    }
+    return false;
+  }
+
+  Future<Pool> readPool(String token) {
+    if (replicas.isEmpty()) {
+      return succeededFuture(primary);
+    }
+    final long position;
+    try {
+      position = token == null ? Lsn.NONE : Lsn.parse(token);
+    } catch (IllegalArgumentException e) {
+      return failedFuture(new InvalidConsistencyTokenException());
+    }
+    final var replica = caughtUp(position);
+    if (replica != null) {
+      return routed("replica", replica.pool());
+    }
+    final var closest = closest();
+    if (closest == null) {
+      return routed("primary_unavailable", primary);
+    }
+    if (maxWaitMs <= 0) {
+      return routed("primary_lagging", primary);
+    }
+    return waitFor(closest, position, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs));
+  }
+
+  private Replica caughtUp(long position) {
+    for (var i = 0; i < replicas.size(); i++) {
+      final var replica = replicas.get(next);
+      next = (next + 1) % replicas.size();
+      final var replayed = replayed(replica);
+      if (replayed != Lsn.NONE && replayed >= position) {
+        return replica;
+      }
+    }
+    return null;
+  }
+
+  private Replica closest() {
+    Replica closest = null;
+    for (final var replica : replicas) {
+      final var replayed = replayed(replica);
+      if (replayed != Lsn.NONE && (closest == null || replayed > replayed(closest))) {
+        closest = replica;
+      }
+    }
+    return closest;
+  }
+
+  private Future<Pool> waitFor(Replica replica, long position, long deadline) {
+    return poll(replica).transform(ar -> {
+      if (ar.failed()) {
+        return routed("primary_unavailable", primary);
+      }
+      if (ar.result() >= position) {
+        return routed("replica_waited", replica.pool());
+      }
+      if (System.nanoTime() >= deadline) {
+        return routed("primary_lagging", primary);
+      }
+      final var promise = Promise.<Pool>promise();
+      vertx.setTimer(WAIT_STEP_MS, __ -> waitFor(replica, position, deadline).onComplete(promise));
+      return promise.future();
+    });
+  }
+
+  private Future<Long> poll(Replica replica) {
+    return replica.pool()
+      .query("SELECT pg_last_wal_replay_lsn()::text")
+      .execute()
+      .map(rows -> {
+        final var replayed = rows.iterator().next().getString(0);
+        if (replayed == null) {
+          throw new IllegalStateException("Replica " + replica.name() + " is not in recovery");
+        }
+        return Lsn.parse(replayed);
+      })
+      .andThen(ar -> {
+        if (ar.succeeded()) {
+          positions.replayed.set(replica.index(), ar.result());
+        } else if (positions.replayed.getAndSet(replica.index(), Lsn.NONE) != Lsn.NONE) {
+          LOG.warn("Replica {} is unavailable for reads: {}", replica.name(), ar.cause().getMessage());
+        }
+      });
+  }
+
+  private long replayed(Replica replica) {
+    return positions.replayed.get(replica.index());
+  }
+
+  private static Future<Pool> routed(String route, Pool pool) {
+    Counter.builder("nvstech.db.reads")
+      .description("Reads by the pool they were routed to and why")
+      .tag("route", route)
+      .register(Metrics.registry())
+      .increment();
+    return succeededFuture(pool);
+  }
+}
@@ -1,22 +1,44 @@
 package ssonin.nvstech.repository;
 
+import io.micrometer.core.instrument.Tags;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.VerticleBase;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.Message;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.pgclient.PgBuilder;
 import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgException;
 import io.vertx.sqlclient.Pool;
-import io.vertx.sqlclient.PoolOptions;
 import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
 import io.vertx.sqlclient.Tuple;
 import org.slf4j.Logger;
+import ssonin.nvstech.eventbus.ConsistencyToken;
+import ssonin.nvstech.eventbus.MessageCodecs;
+import ssonin.nvstech.jfr.QueryEvent;
+import ssonin.nvstech.jfr.SearchEvent;
+import ssonin.nvstech.metrics.EventLoopLagProbe;
+import ssonin.nvstech.metrics.Metrics;
+import ssonin.nvstech.model.*;
+import ssonin.nvstech.text.Bm25Index;
+import ssonin.nvstech.text.ClientIndex;
+import ssonin.nvstech.text.SuggestionIndex;
+import ssonin.nvstech.vector.ClientVectorCache;
+import ssonin.nvstech.vector.HnswIndex;
+import ssonin.nvstech.vector.VectorBlock;
+import ssonin.nvstech.vector.VectorReplica;
 
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.stream.Stream;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
 
 import static io.vertx.core.Future.succeededFuture;
 import static java.util.Comparator.comparingDouble;
@@ -27,177 +49,767 @@ import static ssonin.nvstech.repository.SqlQueries.*;
 public final class RepositoryVerticle extends VerticleBase {
 
   private static final Logger LOG = getLogger(RepositoryVerticle.class);
+  private static final long DEFAULT_REPLICA_POLL_INTERVAL_MS = 100;
+  private static final int DEFAULT_CLIENT_SCAN_MAX_DOCUMENTS = 10_000;
+  static final Comparator<SearchHit> BY_RANK_DESCENDING = comparingDouble(SearchHit::rank).reversed();
 
-  private Pool pool;
+  private Shards shards;
+  private VectorReplica vectorReplica;
+  private ClientIndex clientIndex;
+  private SuggestionIndex suggestionIndex;
+  private ClientVectorCache clientVectorCache;
+  private int clientScanMaxDocuments;
+  private int routingClients;
+
+  /**
+   * The result of a write and the primary's WAL position after it, if there are replicas.
+   */
+  private record Written<T>(T value, String position) {
+  }
+
+  /**
+   * The databases of all shards, in shard order, for schema migrations.
+   */
+  public static List<PgConnectOptions> databases(JsonObject config) {
+    return Shards.databases(config).stream()
+      .map(database -> {
+        final var options = database.copy();
+        options.remove("replicas");
+        return new PgConnectOptions(options);
+      })
+      .toList();
+  }
 
   @Override
   public Future<?> start() {
-    final var dbConfig = new PgConnectOptions(config().getJsonObject("db"));
-    pool = PgBuilder
-      .pool()
-      .connectingTo(dbConfig)
-      .with(new PoolOptions())
-      .using(vertx)
-      .build();
+    shards = Shards.create(vertx, config());
+    vectorReplica = config().getBoolean("vector.replica.enabled", false) ? VectorReplica.shared() : null;
+    clientIndex = config().getBoolean("client.index.enabled", false) ? ClientIndex.shared() : null;
+    suggestionIndex = config().getBoolean("suggest.enabled", false) ? SuggestionIndex.shared() : null;
+    clientVectorCache = ClientVectorCache.shared(
+      config().getLong("search.client-scan.cache-max-vectors", ClientVectorCache.DEFAULT_MAX_VECTORS),
+      Duration.ofMillis(config().getLong("search.client-scan.cache-ttl-ms", ClientVectorCache.DEFAULT_TTL.toMillis())));
+    clientScanMaxDocuments = config().getInteger("search.client-scan.max-documents", DEFAULT_CLIENT_SCAN_MAX_DOCUMENTS);
+    routingClients = config().getInteger("search.routing.clients", 0);
+    MessageCodecs.register(vertx.eventBus());
+    EventLoopLagProbe.start(vertx, "repository",
+      config().getLong("metrics.event-loop-lag-interval-ms", EventLoopLagProbe.DEFAULT_INTERVAL_MS));
     final var eb = vertx.eventBus();
     eb.consumer("clients.create", this::createClient);
     eb.consumer("clients.get", this::getClient);
     eb.consumer("documents.create", this::createDocument);
     eb.consumer("search", this::search);
-    return succeededFuture();
+    eb.consumer("suggest", this::suggest);
+    eb.consumer("documents.similar", this::similar);
+    return shards.start(config().getLong("db.replicas.poll-interval-ms", DEFAULT_REPLICA_POLL_INTERVAL_MS));
   }
 
-  private void createClient(Message<JsonObject> msg) {
+  private void createClient(Message<NewClient> msg) {
     final var data = msg.body();
+    final var shard = shards.forEmail(data.email());
     final var values = Tuple.of(
-      randomUUID(),
-      data.getString("first_name"),
-      data.getString("last_name"),
-      data.getString("email"),
-      data.getString("description"));
-    pool
+      shards.newClientId(shard),
+      data.firstName(),
+      data.lastName(),
+      data.email(),
+      data.description());
+    shard.primary()
       .withConnection(conn ->
-        conn.preparedQuery(insertClient())
-          .execute(values)
-          .map(rows -> clientFromRow(rows.iterator().next())))
-      .onSuccess(msg::reply)
+        timedQuery("insert_client", () -> conn.preparedQuery(insertClient()).execute(values))
+          .map(rows -> {
+            final var row = rows.iterator().next();
+            final var client = clientFromRow(row);
+            if (clientIndex != null) {
+              clientIndex.add(client, row.getArrayOfStrings("lexemes"), row.getArrayOfStrings("lexeme_weights"));
+            }
+            if (suggestionIndex != null) {
+              suggestionIndex.clientCreated(client);
+            }
+            return client;
+          })
+          .compose(client -> shard.router().writePosition(conn)
+            .map(position -> new Written<>(client, shards.token(shard, position)))))
+      .onSuccess(written -> replyWritten(msg, written))
       .onFailure(handleError(msg));
   }
 
-  private void getClient(Message<JsonObject> msg) {
-    final var clientId = msg.body().getString("clientId");
-    pool
-      .withConnection(conn ->
-        conn.preparedQuery(selectClient())
-          .execute(Tuple.of(clientId))
+  private void getClient(Message<ClientLookup> msg) {
+    final var clientId = msg.body().clientId();
+    shards.readPool(shards.forClient(clientId), msg.headers().get(ConsistencyToken.HEADER))
+      .compose(reads -> reads.withConnection(conn ->
+        timedQuery("select_client", () -> conn.preparedQuery(selectClient()).execute(Tuple.of(clientId)))
           .map(rows -> {
             final var it = rows.iterator();
             if (it.hasNext()) {
               return clientFromRow(it.next());
             }
             throw new ClientNotFoundException();
-          }))
+          })))
       .onSuccess(msg::reply)
       .onFailure(handleError(msg));
   }
 
-  private void createDocument(Message<JsonObject> msg) {
+  private void createDocument(Message<NewDocument> msg) {
     final var data = msg.body();
-    fetchEmbeddings(data.getString("content"))
+    final var shard = shards.forClient(data.clientId());
+    fetchEmbeddings(data.content())
       .compose(embeddings -> {
         final var values = Tuple.of(
           randomUUID(),
-          data.getString("client_id"),
-          data.getString("title"),
-          data.getString("content"),
-          embeddings.getJsonArray(0).toString());
-        return pool
+          data.clientId(),
+          data.title(),
+          data.content(),
+          data.contentSha256(),
+          vectorLiteral(embeddings.first()));
+        return shard.primary()
           .withConnection(conn ->
-            conn.preparedQuery(insertDocument())
-              .execute(values)
-              .map(rows -> documentFromRow(rows.iterator().next())));
+            timedQuery("insert_document", () -> conn.preparedQuery(insertDocument()).execute(values))
+              .map(rows -> documentFromRow(rows.iterator().next()))
+              .compose(document -> shard.router().writePosition(conn)
+                .map(position -> new Written<>(document, shards.token(shard, position)))))
+          .onSuccess(written -> {
+            clientVectorCache.invalidate(data.clientId());
+            if (suggestionIndex != null) {
+              suggestionIndex.documentCreated(written.value());
+            }
+            addToVectorReplica(written.value(), embeddings.first());
+          });
       })
+      .onSuccess(written -> replyWritten(msg, written))
+      .onFailure(handleError(msg));
+  }
+
+  /**
+   * Indexes a new document's embedding off the event loop, since it waits for searches in progress.
+   */
+  private void addToVectorReplica(Document document, float[] embedding) {
+    if (vectorReplica != null && vectorReplica.ready()) {
+      vertx.executeBlocking(() -> {
+          vectorReplica.add(document.id(), document.createdAt(), embedding);
+          return null;
+        }, false)
+        .onFailure(e -> LOG.warn("Failed to add document {} to the vector replica", document.id(), e));
+    }
+  }
+
+  private void search(Message<SearchQuery> msg) {
+    final var query = msg.body();
+    final var timer = new PhaseTimer();
+    final var event = new SearchEvent();
+    event.begin();
+    final var token = msg.headers().get(ConsistencyToken.HEADER);
+    if (suggestionIndex != null) {
+      suggestionIndex.searched(query.query());
+    }
+    timer.time("embedding", () -> fetchEmbeddings(query.query()))
+      .compose(embeddings -> query.clientId() == null
+        ? searchAll(query, embeddings.first(), token, timer)
+        : searchClientDocuments(query, embeddings.first(), token, timer))
+      .map(results -> new SearchResults(results, timer.phases()))
+      .andThen(ar -> event.complete(query.query(), ar.result()))
       .onSuccess(msg::reply)
       .onFailure(handleError(msg));
   }
 
-  private void search(Message<JsonObject> msg) {
-    final Comparator<JsonObject> byRank = comparingDouble(it -> it.getDouble("rank"));
-    final var query = msg.body().getString("query");
-    fetchEmbeddings(query)
-      .compose(embeddings -> Future.all(
-        searchClients(query),
-        searchDocuments(query, embeddings)))
-      .map(composite -> {
-        final JsonArray clients = composite.resultAt(0);
-        final JsonArray documents = composite.resultAt(1);
-        final var results = Stream.concat(clients.stream(), documents.stream())
-          .map(it -> (JsonObject) it)
-          .sorted(byRank.reversed())
-          .toList();
-        return new JsonArray(results);
-      })
+  /**
+   * Completes a prefix from memory only, so a keystroke costs neither an embedding nor a query.
+   */
+  private void suggest(Message<SuggestQuery> msg) {
+    if (suggestionIndex == null) {
+      msg.fail(404, "Suggestions are disabled");
+      return;
+    }
+    final var query = msg.body();
+    msg.reply(new Suggestions(suggestionIndex.complete(query.prefix(), query.limit())));
+  }
+
+  /**
+   * Documents nearest to a stored one, ranked by cosine similarity alone. The stored embedding is
+   * read back instead of embedding the text again, and there is no full-text half to fuse.
+   */
+  private void similar(Message<SimilarQuery> msg) {
+    final var query = msg.body();
+    final var timer = new PhaseTimer();
+    final var token = msg.headers().get(ConsistencyToken.HEADER);
+    readPools(token)
+      .compose(reads -> timer.time("document_embedding", () -> documentEmbedding(reads, query.documentId()))
+        .compose(embedding -> {
+          if (embedding == null) {
+            return succeededFuture(List.<SearchHit>of());
+          }
+          return query.clientId() == null
+            ? similarDocuments(reads, query, embedding, token, timer)
+            : similarClientDocuments(reads.get(shards.forClient(query.clientId()).index()), query, embedding, token,
+                timer);
+        }))
+      .map(hits -> new SearchResults(hits, timer.phases()))
       .onSuccess(msg::reply)
       .onFailure(handleError(msg));
   }
 
-  private Future<JsonArray> searchClients(String query) {
-    final var values = Tuple.of(query);
-    return pool
+  /**
+   * The stored embedding of a document, or null when it has none. A document id does not tell which
+   * shard holds it, so every shard is asked.
+   */
+  private static Future<float[]> documentEmbedding(List<Pool> reads, UUID documentId) {
+    final var values = Tuple.of(documentId);
+    return Future.all(reads.stream()
+        .map(shard -> shard.withConnection(conn ->
+          timedQuery("select_document_embedding",
+            () -> conn.preparedQuery(selectDocumentEmbedding()).execute(values))))
+        .toList())
+      .map(composite -> {
+        for (final var rows : composite.<RowSet<Row>>list()) {
+          for (final var row : rows) {
+            final var embedding = row.getArrayOfFloats("embedding");
+            return embedding == null ? null : floats(embedding);
+          }
+        }
+        throw new DocumentNotFoundException();
+      });
+  }
+
+  /**
+   * Neighbours among all documents, from the vector replica when it can answer and from pgvector on
+   * every shard otherwise. Similarities are comparable across shards, so the shards' lists are
+   * simply merged.
+   */
+  private Future<List<SearchHit>> similarDocuments(List<Pool> reads, SimilarQuery query, float[] embedding,
+                                                   String token, PhaseTimer timer) {
+    // One more candidate than returned, since the document itself is usually the nearest
+    final var candidates = replicaCandidates(query.from(), query.to(), token, embedding, VECTOR_CANDIDATES + 1, timer);
+    final var values = vectorSearchValues(query.documentId(), embedding, query.from(), query.to(), candidates);
+    final var sql = SqlQueries.similarDocuments(
+      candidates == null ? vectorResults(VECTOR_CANDIDATES + 1) : providedVectorResults(), CREATED_IN_RANGE);
+    return timer.time("similar_documents", () -> Future.all(reads.stream()
+          .map(shard -> similarDocuments(shard, sql, values))
+          .toList())
+        .map(composite -> {
+          final var hits = new ArrayList<SearchHit>();
+          composite.<List<SearchHit>>list().forEach(hits::addAll);
+          hits.sort(BY_RANK_DESCENDING);
+          return List.copyOf(hits.subList(0, Math.min(hits.size(), VECTOR_CANDIDATES)));
+        }));
+  }
+
+  /**
+   * Neighbours among the documents of the query's client, found by scanning its embeddings as a
+   * client-scoped search does, or by an exact scan in PostgreSQL for clients with too many documents.
+   */
+  private Future<List<SearchHit>> similarClientDocuments(Pool reads, SimilarQuery query, float[] embedding,
+                                                         String token, PhaseTimer timer) {
+    return timer.time("client_vectors", () -> clientVectors(reads, query.clientId(), token))
+      .compose(block -> nearest(block, embedding, VECTOR_CANDIDATES + 1, query.from(), query.to(), timer))
+      .compose(candidates -> {
+        final var values = vectorSearchValues(query.documentId(), embedding, query.from(), query.to(), candidates)
+          .addUUID(query.clientId());
+        final var sql = candidates == null
+          ? SqlQueries.similarDocuments(clientVectorResults(VECTOR_CANDIDATES + 1), clientCreatedInRange(5))
+          : SqlQueries.similarDocuments(providedVectorResults(), clientCreatedInRange(6));
+        return timer.time("similar_documents", () -> similarDocuments(reads, sql, values));
+      });
+  }
+
+  private static Future<List<SearchHit>> similarDocuments(Pool reads, String sql, Tuple values) {
+    return reads
+      .withConnection(conn ->
+        timedQuery("similar_documents", () -> conn.preparedQuery(sql).execute(values))
+          .map(rows -> {
+            final var result = new ArrayList<SearchHit>(rows.size());
+            for (final var row : rows) {
+              result.add(new SearchHit.DocumentHit(documentFromRow(row), row.getDouble("rank")));
+            }
+            return result;
+          }));
+  }
+
+  private Future<List<SearchHit>> searchAll(SearchQuery query, float[] embedding, String token, PhaseTimer timer) {
+    return readPools(token).compose(reads -> Future.all(
+        routingClients > 0
+          ? timer.time("clients_hybrid", () -> searchClientCandidates(reads, query, embedding, routingClients))
+          : timer.time("clients_fts", () -> searchClients(reads, query, token)),
+        timer.time("documents_hybrid", () -> searchDocuments(reads, query, embedding,
+          replicaCandidates(query.from(), query.to(), token, embedding, VECTOR_CANDIDATES, timer), routingClients)))
+      .map(composite -> timer.measure("merge", () -> merge(composite.resultAt(0), composite.resultAt(1))))
+      .compose(hits -> query.withContent()
+        ? timer.time("contents", () -> withContents(reads, hits))
+        : succeededFuture(hits)));
+  }
+
+  /**
+   * Searches the documents of one client, on the shard that holds them. The vector candidates are
+   * found by scanning all of the client's embeddings, which is exact and, for a few thousand
+   * documents, faster than an HNSW search filtered down to them. For clients with more documents
+   * than that, PostgreSQL scans them exactly through the {@code client_id} index.
+   */
+  private Future<List<SearchHit>> searchClientDocuments(SearchQuery query, float[] embedding, String token,
+                                                        PhaseTimer timer) {
+    final var clientId = query.clientId();
+    return shards.readPool(shards.forClient(clientId), token).compose(reads ->
+      timer.time("client_vectors", () -> clientVectors(reads, clientId, token))
+        .compose(block -> nearest(block, embedding, VECTOR_CANDIDATES, query.from(), query.to(), timer))
+        .compose(candidates ->
+          timer.time("documents_hybrid", () -> searchClientDocuments(reads, query, embedding, candidates)))
+        .compose(hits -> query.withContent() && !hits.isEmpty()
+          ? timer.time("contents", () -> selectDocumentContents(reads, documentIds(hits))
+              .map(contents -> withContents(hits, contents)))
+          : succeededFuture(hits)));
+  }
+
+  /**
+   * The {@code k} documents of {@code block} nearest to {@code embedding} within {@code [from, to)},
+   * scanned on a worker thread, or null when the block is oversized and PostgreSQL has to find them.
+   */
+  private Future<List<HnswIndex.Neighbour>> nearest(VectorBlock block, float[] embedding, int k, OffsetDateTime from,
+                                                    OffsetDateTime to, PhaseTimer timer) {
+    if (block.isOversized()) {
+      return succeededFuture();
+    }
+    return timer.time("vector_scan", () -> vertx.executeBlocking(() -> block.nearest(embedding, k,
+      from == null ? Long.MIN_VALUE : from.toInstant().toEpochMilli(),
+      to == null ? Long.MAX_VALUE : to.toInstant().toEpochMilli()), false));
+  }
+
+  /**
+   * The client's embeddings from the cache or, on a miss, from its shard. A read with a consistency
+   * token skips the cache, which may have been filled before the token's write. A block is only
+   * cached when {@code reads} had replayed every document this process created on the shard, so
+   * that a lagging replica cannot keep a document created here out of the cache until it expires.
+   */
+  private Future<VectorBlock> clientVectors(Pool reads, UUID clientId, String token) {
+    final var cached = token == null ? clientVectorCache.get(clientId) : null;
+    if (cached != null) {
+      return succeededFuture(cached);
+    }
+    final var generation = clientVectorCache.generation(clientId);
+    final var cacheable = shards.forClient(clientId).router().seesWrites(reads);
+    final var values = Tuple.of(clientId, clientScanMaxDocuments + 1);
+    return reads
+      .withConnection(conn ->
+        timedQuery("select_client_embeddings",
+          () -> conn.preparedQuery(selectClientEmbeddings()).execute(values)))
+      .map(rows -> {
+        final var block = rows.size() > clientScanMaxDocuments ? VectorBlock.oversized() : vectorBlockFromRows(rows);
+        if (cacheable) {
+          clientVectorCache.put(clientId, generation, block);
+        }
+        return block;
+      });
+  }
+
+  static VectorBlock vectorBlockFromRows(RowSet<Row> rows) {
+    VectorBlock.Builder builder = null;
+    for (final var row : rows) {
+      final var vector = floats(row.getArrayOfFloats("embedding"));
+      if (builder == null) {
+        builder = VectorBlock.builder(vector.length, rows.size());
+      }
+      builder.add(row.getUUID("id"), row.getOffsetDateTime("created_at").toInstant().toEpochMilli(), vector);
+    }
+    return builder == null ? VectorBlock.builder(0, 0).build() : builder.build();
+  }
+
+  private static float[] floats(Float[] components) {
+    final var floats = new float[components.length];
+    for (var i = 0; i < floats.length; i++) {
+      floats[i] = components[i];
+    }
+    return floats;
+  }
+
+  static List<SearchHit> merge(List<SearchHit> clients, List<SearchHit> documents) {
+    final var results = new ArrayList<SearchHit>(clients.size() + documents.size());
+    results.addAll(clients);
+    results.addAll(documents);
+    results.sort(BY_RANK_DESCENDING);
+    return results;
+  }
+
+  /**
+   * One pool per shard for a search, which reads from every shard.
+   */
+  private Future<List<Pool>> readPools(String token) {
+    return Future.all(shards.all().stream().map(shard -> shards.readPool(shard, token)).toList())
+      .map(composite -> composite.<Pool>list());
+  }
+
+  /**
+   * Client hits from the in-process index once it is loaded, and from every shard otherwise. A
+   * search with a consistency token goes to the shards, since the index may not hold a client that
+   * another instance has just created.
+   */
+  private Future<List<SearchHit>> searchClients(List<Pool> reads, SearchQuery query, String token) {
+    if (clientIndex == null || !clientIndex.ready() || token != null) {
+      return searchClients(reads, query);
+    }
+    return queryLexemes(reads.getFirst(), query.query())
+      .map(lexemes -> clientHits(clientIndex.search(lexemes), query.explain()));
+  }
+
+  /**
+   * The lexemes of the query's words, from the index's cache or, for the words it has not seen,
+   * from {@code to_tsvector}, so that they are stemmed exactly as the indexed ones were.
+   */
+  private Future<List<String>> queryLexemes(Pool reads, String query) {
+    final var words = query.strip().split("\\s+");
+    final var unresolved = new LinkedHashSet<String>();
+    for (final var word : words) {
+      if (!word.isEmpty() && clientIndex.lexemes(word) == null) {
+        unresolved.add(word);
+      }
+    }
+    if (unresolved.isEmpty()) {
+      return succeededFuture(lexemesOf(words, Map.of()));
+    }
+    final var values = Tuple.of(unresolved.toArray(String[]::new));
+    return reads
+      .withConnection(conn ->
+        timedQuery("select_word_lexemes", () -> conn.preparedQuery(selectWordLexemes()).execute(values)))
+      .map(rows -> {
+        final var resolved = new HashMap<String, List<String>>();
+        for (final var row : rows) {
+          final var lexemes = List.of(row.getArrayOfStrings("lexemes"));
+          resolved.put(row.getString("word"), lexemes);
+          clientIndex.resolved(row.getString("word"), lexemes);
+        }
+        return lexemesOf(words, resolved);
+      });
+  }
+
+  private List<String> lexemesOf(String[] words, Map<String, List<String>> resolved) {
+    final var lexemes = new ArrayList<String>();
+    for (final var word : words) {
+      final var cached = clientIndex.lexemes(word);
+      lexemes.addAll(cached != null ? cached : resolved.getOrDefault(word, List.of()));
+    }
+    return lexemes;
+  }
+
+  /**
+   * Client hits ranked by their BM25 score mapped to {@code score / (1 + score)}. This keeps the
+   * order and brings the scores, which grow without bound, into {@code [0, 1)} like {@code ts_rank}.
+   */
+  static List<SearchHit> clientHits(List<Bm25Index.Match> matches, boolean explain) {
+    final var hits = new ArrayList<SearchHit>(matches.size());
+    for (final var match : matches) {
+      final var explanation = explain ? RankExplanation.ftsOnly(hits.size() + 1) : null;
+      hits.add(new SearchHit.ClientHit(match.client(), match.score() / (1 + match.score()), explanation));
+    }
+    return hits;
+  }
+
+  private static Future<List<SearchHit>> searchClients(List<Pool> reads, SearchQuery query) {
+    if (reads.size() == 1) {
+      return searchClients(reads.getFirst(), query);
+    }
+    return Future.all(reads.stream().map(shard -> searchClients(shard, query)).toList())
+      .map(composite -> ScatterGather.mergeClients(composite.list(), query.explain()));
+  }
+
+  /**
+   * Client hits of a routed search, which adds the clients of nearest centroid to the full-text
+   * matches.
+   */
+  private static Future<List<SearchHit>> searchClientCandidates(List<Pool> reads, SearchQuery query, float[] embedding,
+                                                                int routingClients) {
+    final var centroidCandidates = Math.min(routingClients, VECTOR_CANDIDATES);
+    final var values = Tuple.of(query.query(), vectorLiteral(embedding), centroidCandidates);
+    return Future.all(reads.stream().map(shard -> searchClientCandidates(shard, values)).toList())
+      .map(composite -> ScatterGather.fuseClients(composite.list(), centroidCandidates, query.explain()));
+  }
+
+  private static Future<List<ScatterGather.ClientCandidate>> searchClientCandidates(Pool reads, Tuple values) {
+    return reads
       .withConnection(conn ->
-        conn.preparedQuery(SqlQueries.searchClients())
-          .execute(values)
+        timedQuery("search_client_candidates",
+          () -> conn.preparedQuery(SqlQueries.searchClientCandidates()).execute(values))
           .map(rows -> {
-            final var result = new JsonArray();
+            final var result = new ArrayList<ScatterGather.ClientCandidate>(rows.size());
             for (final var row : rows) {
-              result.add(clientSearchResultFromRow(row));
+              result.add(clientCandidateFromRow(row));
             }
             return result;
           }));
   }
 
-  private Future<JsonArray> searchDocuments(String query, JsonArray embeddings) {
-    final var values = Tuple.of(query, embeddings.getJsonArray(0).toString());
-    return pool
+  /**
+   * The vector candidates from the in-process replica, or null when pgvector has to find them: when
+   * the replica is off or not loaded yet, when the search is limited to a creation time range, which
+   * pgvector answers from the partitions covering it, or when it carries a consistency token, since
+   * the replica may not hold a document that another instance has just created.
+   */
+  private List<HnswIndex.Neighbour> replicaCandidates(OffsetDateTime from, OffsetDateTime to, String token,
+                                                      float[] embedding, int count, PhaseTimer timer) {
+    if (vectorReplica == null || !vectorReplica.ready() || from != null || to != null || token != null) {
+      return null;
+    }
+    return timer.measure("vector_replica", () -> vectorReplica.search(embedding, count));
+  }
+
+  private static Future<List<SearchHit>> searchDocuments(List<Pool> reads, SearchQuery query, float[] embedding,
+                                                         List<HnswIndex.Neighbour> replicaCandidates,
+                                                         int routingClients) {
+    if (reads.size() == 1) {
+      return searchDocuments(reads.getFirst(), query, embedding, replicaCandidates, routingClients);
+    }
+    final var values = documentSearchValues(query, embedding, replicaCandidates, routingClients);
+    final var sql = SqlQueries.searchDocumentCandidates(documentVectorResults(replicaCandidates, routingClients));
+    return Future.all(reads.stream().map(shard -> searchDocumentCandidates(shard, sql, values)).toList())
+      .map(composite -> ScatterGather.fuseDocuments(composite.list(), query.explain()));
+  }
+
+  /**
+   * The vector half of a global document search: the replica's candidates if there are any, else
+   * pgvector's, among the documents of the {@code routingClients} clients of nearest centroid when
+   * routing and among all documents otherwise.
+   */
+  private static String documentVectorResults(List<HnswIndex.Neighbour> replicaCandidates, int routingClients) {
+    if (replicaCandidates != null) {
+      return providedVectorResults();
+    }
+    return routingClients > 0 ? routedVectorResults(VECTOR_CANDIDATES) : vectorResults(VECTOR_CANDIDATES);
+  }
+
+  private static Tuple documentSearchValues(SearchQuery query, float[] embedding,
+                                            List<HnswIndex.Neighbour> replicaCandidates, int routingClients) {
+    final var values = documentSearchValues(query, embedding, replicaCandidates);
+    return replicaCandidates == null && routingClients > 0 ? values.addInteger(routingClients) : values;
+  }
+
+  /**
+   * The parameters of a document search. With replica candidates, {@code $2} holds their ids instead
+   * of the query embedding and {@code $5} their distances. A routed search binds the number of
+   * clients to {@code $5}.
+   */
+  private static Tuple documentSearchValues(SearchQuery query, float[] embedding,
+                                            List<HnswIndex.Neighbour> replicaCandidates) {
+    return vectorSearchValues(query.query(), embedding, query.from(), query.to(), replicaCandidates);
+  }
+
+  /**
+   * {@code first}, then the embedding or the ids of the {@code candidates} found in the JVM, the
+   * creation time range, and the candidates' distances, bound as {@code $1} to {@code $5}.
+   */
+  private static Tuple vectorSearchValues(Object first, float[] embedding, OffsetDateTime from, OffsetDateTime to,
+                                          List<HnswIndex.Neighbour> candidates) {
+    if (candidates == null) {
+      return Tuple.of(first, vectorLiteral(embedding), from, to);
+    }
+    return Tuple.tuple()
+      .addValue(first)
+      .addArrayOfUUID(candidates.stream().map(HnswIndex.Neighbour::id).toArray(UUID[]::new))
+      .addOffsetDateTime(from)
+      .addOffsetDateTime(to)
+      .addArrayOfDouble(candidates.stream().map(neighbour -> (double) neighbour.distance()).toArray(Double[]::new));
+  }
+
+  private static Future<List<ScatterGather.Candidate>> searchDocumentCandidates(Pool reads, String sql, Tuple values) {
+    return reads
+      .withConnection(conn ->
+        timedQuery("search_document_candidates", () -> conn.preparedQuery(sql).execute(values))
+          .map(rows -> {
+            final var result = new ArrayList<ScatterGather.Candidate>(rows.size());
+            for (final var row : rows) {
+              result.add(documentCandidateFromRow(row));
+            }
+            return result;
+          }));
+  }
+
+  private static Future<List<SearchHit>> searchClients(Pool reads, SearchQuery query) {
+    final var values = Tuple.of(query.query());
+    return reads
       .withConnection(conn ->
-        conn.preparedQuery(SqlQueries.searchDocuments())
-          .execute(values)
+        timedQuery("search_clients", () -> conn.preparedQuery(SqlQueries.searchClients()).execute(values))
           .map(rows -> {
-            final var result = new JsonArray();
+            final var result = new ArrayList<SearchHit>(rows.size());
             for (final var row : rows) {
-              result.add(documentSearchResutFromRow(row));
+              result.add(clientSearchResultFromRow(row, query.explain() ? result.size() + 1 : 0));
             }
             return result;
           }));
   }
 
-  private Future<JsonArray> fetchEmbeddings(String... texts) {
-    final var message = new JsonObject()
-      .put("texts", JsonArray.of(texts));
-    return vertx.eventBus()
-      .<JsonArray>request("embeddings.get", message)
+  private static Future<List<SearchHit>> searchDocuments(Pool reads, SearchQuery query, float[] embedding,
+                                                         List<HnswIndex.Neighbour> replicaCandidates,
+                                                         int routingClients) {
+    final var values = documentSearchValues(query, embedding, replicaCandidates, routingClients);
+    final var sql = SqlQueries.searchDocuments(documentVectorResults(replicaCandidates, routingClients));
+    return searchDocuments(reads, "search_documents", sql, values, query.explain());
+  }
+
+  /**
+   * {@link #searchDocuments(Pool, SearchQuery, float[], List, int)} over the documents of the query's
+   * client, which is bound after the other parameters.
+   */
+  private static Future<List<SearchHit>> searchClientDocuments(Pool reads, SearchQuery query, float[] embedding,
+                                                               List<HnswIndex.Neighbour> scanCandidates) {
+    final var values = documentSearchValues(query, embedding, scanCandidates).addUUID(query.clientId());
+    final var sql = scanCandidates == null
+      ? SqlQueries.searchDocuments(clientVectorResults(VECTOR_CANDIDATES), clientCreatedInRange(5))
+      : SqlQueries.searchDocuments(providedVectorResults(), clientCreatedInRange(6));
+    return searchDocuments(reads, "search_client_documents", sql, values, query.explain());
+  }
+
+  private static Future<List<SearchHit>> searchDocuments(Pool reads, String name, String sql, Tuple values,
+                                                         boolean explain) {
+    return reads
+      .withConnection(conn ->
+        timedQuery(name, () -> conn.preparedQuery(sql).execute(values))
+          .map(rows -> {
+            final var result = new ArrayList<SearchHit>(rows.size());
+            for (final var row : rows) {
+              result.add(documentSearchResultFromRow(row, explain));
+            }
+            return result;
+          }));
+  }
+
+  /**
+   * Fills in the content of the document hits, read from the shard each document is stored on.
+   */
+  private Future<List<SearchHit>> withContents(List<Pool> reads, List<SearchHit> hits) {
+    final var idsByShard = new HashMap<Integer, List<UUID>>();
+    for (final var hit : hits) {
+      if (hit instanceof SearchHit.DocumentHit documentHit) {
+        final var document = documentHit.document();
+        idsByShard.computeIfAbsent(shards.forClient(document.clientId()).index(), __ -> new ArrayList<>())
+          .add(document.id());
+      }
+    }
+    if (idsByShard.isEmpty()) {
+      return succeededFuture(hits);
+    }
+    return Future.all(idsByShard.entrySet().stream()
+        .map(entry -> selectDocumentContents(reads.get(entry.getKey()), entry.getValue()))
+        .toList())
+      .map(composite -> {
+        final var contents = new HashMap<UUID, String>();
+        composite.<Map<UUID, String>>list().forEach(contents::putAll);
+        return withContents(hits, contents);
+      });
+  }
+
+  private static List<SearchHit> withContents(List<SearchHit> hits, Map<UUID, String> contents) {
+    return hits.stream()
+      .map(hit -> hit instanceof SearchHit.DocumentHit documentHit
+        ? new SearchHit.DocumentHit(documentHit.document().withContent(contents.get(documentHit.document().id())),
+            documentHit.rank(), documentHit.explanation())
+        : hit)
+      .toList();
+  }
+
+  private static List<UUID> documentIds(List<SearchHit> hits) {
+    return hits.stream()
+      .map(hit -> ((SearchHit.DocumentHit) hit).document().id())
+      .toList();
+  }
+
+  private static Future<Map<UUID, String>> selectDocumentContents(Pool reads, List<UUID> documentIds) {
+    final var values = Tuple.tuple().addArrayOfUUID(documentIds.toArray(UUID[]::new));
+    return reads
+      .withConnection(conn ->
+        timedQuery("select_document_contents",
+          () -> conn.preparedQuery(SqlQueries.selectDocumentContents()).execute(values))
+          .map(rows -> {
+            final var contents = new HashMap<UUID, String>(rows.size() * 2);
+            for (final var row : rows) {
+              contents.put(row.getUUID("document_id"), row.getString("content"));
+            }
+            return contents;
+          }));
+  }
+
+  private Future<Embeddings> fetchEmbeddings(String... texts) {
+    return Metrics
+      .<Embeddings>timedRequest(vertx.eventBus(), "embeddings.get", new EmbeddingRequest(List.of(texts)))
       .map(Message::body);
   }
 
-  private JsonObject clientFromRow(Row row) {
-    return new JsonObject()
-      .put("id", row.getUUID("id").toString())
-      .put("created_at", row.getOffsetDateTime("created_at").toString())
-      .put("first_name", row.getString("first_name"))
-      .put("last_name", row.getString("last_name"))
-      .put("email", row.getString("email"))
-      .put("description", row.getString("description"));
+  private static Future<RowSet<Row>> timedQuery(String name, Supplier<Future<RowSet<Row>>> query) {
+    final var event = new QueryEvent();
+    event.begin();
+    return Metrics.timed("nvstech.db.query", Tags.of("query", name), query)
+      .andThen(ar -> event.complete(name, ar.succeeded() ? ar.result().size() : 0, ar.succeeded()));
+  }
+
+  static String vectorLiteral(float[] vector) {
+    final var literal = new StringBuilder(vector.length * 12).append('[');
+    for (var i = 0; i < vector.length; i++) {
+      if (i > 0) {
+        literal.append(',');
+      }
+      literal.append(vector[i]);
+    }
+    return literal.append(']').toString();
+  }
+
+  static Client clientFromRow(Row row) {
+    return new Client(
+      row.getUUID("id"),
+      row.getOffsetDateTime("created_at"),
+      row.getString("first_name"),
+      row.getString("last_name"),
+      row.getString("email"),
+      row.getString("description"));
   }
 
-  private JsonObject documentFromRow(Row row) {
-    return new JsonObject()
-      .put("id", row.getUUID("id").toString())
-      .put("created_at", row.getOffsetDateTime("created_at").toString())
-      .put("client_id", row.getUUID("client_id").toString())
-      .put("title", row.getString("title"))
-      .put("content", row.getString("content"));
+  static Document documentFromRow(Row row) {
+    return new Document(
+      row.getUUID("id"),
+      row.getOffsetDateTime("created_at"),
+      row.getUUID("client_id"),
+      row.getString("title"),
+      // search rows leave the content out; it is read separately when asked for
+      row.getColumnIndex("content") < 0 ? null : row.getString("content"),
+      row.getString("content_sha256"));
   }
 
-  private JsonObject clientSearchResultFromRow(Row row) {
-    return clientFromRow(row)
-      .put("type", row.getString("type"))
-      .put("rank", row.getDouble("rank"));
+  static SearchHit clientSearchResultFromRow(Row row, int ftsPosition) {
+    final var explanation = ftsPosition > 0 ? RankExplanation.ftsOnly(ftsPosition) : null;
+    return new SearchHit.ClientHit(clientFromRow(row), row.getDouble("rank"), explanation);
   }
 
-  private JsonObject documentSearchResutFromRow(Row row) {
-    return documentFromRow(row)
-      .put("type", row.getString("type"))
-      .put("rank", row.getDouble("rank"));
+  static ScatterGather.ClientCandidate clientCandidateFromRow(Row row) {
+    return new ScatterGather.ClientCandidate(clientFromRow(row), row.getDouble("fts_score"), row.getDouble("centroid_distance"));
+  }
+
+  static ScatterGather.Candidate documentCandidateFromRow(Row row) {
+    return new ScatterGather.Candidate(documentFromRow(row), row.getDouble("fts_score"), row.getDouble("vector_distance"));
+  }
+
+  static SearchHit documentSearchResultFromRow(Row row, boolean explain) {
+    final var explanation = explain
+      ? new RankExplanation(
+          row.getInteger("fts_rank_pos"),
+          row.getInteger("vector_rank_pos"),
+          row.getDouble("fts_rrf"),
+          row.getDouble("vector_rrf"))
+      : null;
+    return new SearchHit.DocumentHit(documentFromRow(row), row.getDouble("rank"), explanation);
+  }
+
+  private static void replyWritten(Message<?> msg, Written<?> written) {
+    final var options = new DeliveryOptions();
+    if (written.position() != null) {
+      options.addHeader(ConsistencyToken.HEADER, written.position());
+    }
+    msg.reply(written.value(), options);
   }
 
-  private static Handler<Throwable> handleError(Message<JsonObject> msg) {
+  private static Handler<Throwable> handleError(Message<?> msg) {
     return e -> {
-      LOG.error("Failed to execute query", e);
       if (duplicateKeyInsert(e)) {
+        LOG.debug("Rejected duplicate key: {}", e.getMessage());
         msg.fail(409, "Email is already in use");
       } else if (e instanceof NotFoundException) {
+        LOG.debug("{}", e.getMessage());
         msg.fail(404, e.getMessage());
+      } else if (e instanceof InvalidConsistencyTokenException) {
+        LOG.debug("{}", e.getMessage());
+        msg.fail(400, e.getMessage());
       } else {
+        LOG.error("Failed to execute query", e);
         msg.fail(500, "Something went wrong");
       }
     };
@@ -0,0 +1,124 @@
+package ssonin.nvstech.repository;
+
+import ssonin.nvstech.model.Client;
+import ssonin.nvstech.model.Document;
+import ssonin.nvstech.model.RankExplanation;
+import ssonin.nvstech.model.SearchHit;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import static java.util.Comparator.comparingDouble;
+
+/**
+ * Combines the search results of several shards into the ranking one database holding all rows
+ * would have produced. Client ranks come from {@code ts_rank}, which depends only on the row, so
+ * they are compared as they are. Document ranks are positions in each retriever's top list, so
+ * every shard returns its top candidates with their raw scores instead. The candidates are ranked
+ * again per retriever across shards, and reciprocal rank fusion is applied to those global positions.
+ * A routed search ranks clients the same way, by full-text score and centroid distance.
+ */
+final class ScatterGather {
+
+  static final int RRF_K = 60;
+  static final int FTS_CANDIDATES = 20;
+  static final int DOCUMENT_RESULTS = 20;
+
+  record Candidate(Document document, Double ftsScore, Double vectorDistance) {
+  }
+
+  record ClientCandidate(Client client, Double ftsScore, Double centroidDistance) {
+  }
+
+  private ScatterGather() {
+  }
+
+  static List<SearchHit> mergeClients(List<List<SearchHit>> perShard, boolean explain) {
+    final var merged = new ArrayList<SearchHit>();
+    perShard.forEach(merged::addAll);
+    merged.sort(RepositoryVerticle.BY_RANK_DESCENDING);
+    if (explain) {
+      for (var i = 0; i < merged.size(); i++) {
+        final var hit = (SearchHit.ClientHit) merged.get(i);
+        merged.set(i, new SearchHit.ClientHit(hit.client(), hit.rank(), RankExplanation.ftsOnly(i + 1)));
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Fuses the full-text matches, all of which are kept as without routing, with the
+   * {@code centroidCandidates} clients of nearest centroid.
+   */
+  static List<SearchHit> fuseClients(List<List<ClientCandidate>> perShard, int centroidCandidates, boolean explain) {
+    final var candidates = new ArrayList<ClientCandidate>();
+    perShard.forEach(candidates::addAll);
+    final var ftsPositions = positions(candidates.stream()
+      .filter(candidate -> candidate.ftsScore() != null)
+      .sorted(comparingDouble(ClientCandidate::ftsScore).reversed())
+      .toList());
+    final var centroidPositions = positions(candidates.stream()
+      .filter(candidate -> candidate.centroidDistance() != null)
+      .sorted(comparingDouble(ClientCandidate::centroidDistance))
+      .limit(centroidCandidates)
+      .toList());
+
+    final var hits = new ArrayList<SearchHit>();
+    for (final var candidate : candidates) {
+      final var ftsPosition = ftsPositions.get(candidate);
+      final var centroidPosition = centroidPositions.get(candidate);
+      if (ftsPosition == null && centroidPosition == null) {
+        continue;
+      }
+      final var ftsRrf = ftsPosition == null ? 0 : 1.0 / (RRF_K + ftsPosition);
+      final var centroidRrf = centroidPosition == null ? 0 : 1.0 / (RRF_K + centroidPosition);
+      final var explanation = explain
+        ? new RankExplanation(ftsPosition, centroidPosition, ftsRrf, centroidRrf)
+        : null;
+      hits.add(new SearchHit.ClientHit(candidate.client(), ftsRrf + centroidRrf, explanation));
+    }
+    hits.sort(RepositoryVerticle.BY_RANK_DESCENDING);
+    return hits;
+  }
+
+  static List<SearchHit> fuseDocuments(List<List<Candidate>> perShard, boolean explain) {
+    final var candidates = new ArrayList<Candidate>();
+    perShard.forEach(candidates::addAll);
+    final var ftsPositions = positions(candidates.stream()
+      .filter(candidate -> candidate.ftsScore() != null)
+      .sorted(comparingDouble(Candidate::ftsScore).reversed())
+      .limit(FTS_CANDIDATES)
+      .toList());
+    final var vectorPositions = positions(candidates.stream()
+      .filter(candidate -> candidate.vectorDistance() != null)
+      .sorted(comparingDouble(Candidate::vectorDistance))
+      .limit(SqlQueries.VECTOR_CANDIDATES)
+      .toList());
+
+    final var hits = new ArrayList<SearchHit>();
+    for (final var candidate : candidates) {
+      final var ftsPosition = ftsPositions.get(candidate);
+      final var vectorPosition = vectorPositions.get(candidate);
+      if (ftsPosition == null && vectorPosition == null) {
+        continue;
+      }
+      final var ftsRrf = ftsPosition == null ? 0 : 1.0 / (RRF_K + ftsPosition);
+      final var vectorRrf = vectorPosition == null ? 0 : 1.0 / (RRF_K + vectorPosition);
+      final var explanation = explain
+        ? new RankExplanation(ftsPosition, vectorPosition, ftsRrf, vectorRrf)
+        : null;
+      hits.add(new SearchHit.DocumentHit(candidate.document(), ftsRrf + vectorRrf, explanation));
+    }
+    hits.sort(RepositoryVerticle.BY_RANK_DESCENDING);
+    return hits.size() > DOCUMENT_RESULTS ? new ArrayList<>(hits.subList(0, DOCUMENT_RESULTS)) : hits;
+  }
+
+  private static <T> IdentityHashMap<T, Integer> positions(List<T> ranked) {
+    final var positions = new IdentityHashMap<T, Integer>(ranked.size() * 2);
+    for (var i = 0; i < ranked.size(); i++) {
+      positions.put(ranked.get(i), i + 1);
+    }
+    return positions;
+  }
+}
@@ -0,0 +1,159 @@
+package ssonin.nvstech.repository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.tracing.TracingPolicy;
+import io.vertx.pgclient.PgBuilder;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.PoolOptions;
+import ssonin.nvstech.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static io.vertx.core.Future.failedFuture;
+
+/**
+ * The databases clients and their documents are spread over. Shard 0 is {@code db}; each entry of
+ * {@code db.shards} adds one more, with its connect options merged over {@code db}'s.
+ * A client lives on the shard its email hashes to. Its id is drawn until it hashes to the same
+ * shard, so that lookups by id find it without a directory, the unique email index still holds,
+ * and the client's documents are stored next to it. The number of shards cannot change once data
+ * has been written.
+ */
+final class Shards {
+
+  private static final String POOL_NAME = "nvs-tech-pg";
+
+  record Shard(int index, Pool primary, ReplicaRouter router) {
+  }
+
+  private final List<Shard> shards;
+
+  private Shards(List<Shard> shards) {
+    this.shards = shards;
+  }
+
+  /**
+   * The connect options of every shard, in shard order, each with a {@code replicas} array of its
+   * read replicas' options merged over its own.
+   */
+  static List<JsonObject> databases(JsonObject config) {
+    final var primary = config.getJsonObject("db");
+    final var databases = new ArrayList<JsonObject>();
+    databases.add(primary.copy().put("replicas", config.getJsonArray("db.replicas", new JsonArray()).copy()));
+    for (final var shard : config.getJsonArray("db.shards", new JsonArray())) {
+      databases.add(primary.copy().mergeIn((JsonObject) shard));
+    }
+    for (final var database : databases) {
+      final var replicas = new JsonArray();
+      for (final var replica : database.getJsonArray("replicas", new JsonArray())) {
+        replicas.add(database.copy().mergeIn((JsonObject) replica).put("replicas", new JsonArray()));
+      }
+      database.put("replicas", replicas);
+    }
+    return databases;
+  }
+
+  static Shards create(Vertx vertx, JsonObject config) {
+    final var poolOptions = new PoolOptions(config.getJsonObject("db.pool", new JsonObject())).setShared(true);
+    final var maxWaitMs = config.getLong("db.replicas.max-wait-ms", 0L);
+    final var databases = databases(config);
+    final var shards = new ArrayList<Shard>(databases.size());
+    for (var i = 0; i < databases.size(); i++) {
+      final var database = databases.get(i);
+      final var name = i == 0 ? POOL_NAME : POOL_NAME + "-shard-" + i;
+      final var primary = pool(vertx, database, new PoolOptions(poolOptions).setName(name));
+      Gauge.builder("nvstech.db.pool.connections", primary, Pool::size)
+        .description("Connections currently open by the shared pool, in use or idle")
+        .tag("pool_name", name)
+        .register(Metrics.registry());
+      final var replicas = new ArrayList<Pool>();
+      for (var j = 0; j < database.getJsonArray("replicas").size(); j++) {
+        replicas.add(pool(vertx, database.getJsonArray("replicas").getJsonObject(j),
+          new PoolOptions(poolOptions).setName(name + "-replica-" + j)));
+      }
+      shards.add(new Shard(i, primary, new ReplicaRouter(vertx, name, primary, replicas, maxWaitMs)));
+    }
+    return new Shards(List.copyOf(shards));
+  }
+
+  private static Pool pool(Vertx vertx, JsonObject database, PoolOptions poolOptions) {
+    final var options = database.copy();
+    options.remove("replicas");
+    return PgBuilder
+      .pool()
+      .connectingTo(new PgConnectOptions(options).setTracingPolicy(TracingPolicy.PROPAGATE))
+      .with(poolOptions)
+      .using(vertx)
+      .build();
+  }
+
+  Future<Void> start(long replicaPollIntervalMs) {
+    return Future.all(shards.stream().map(shard -> shard.router().start(replicaPollIntervalMs)).toList()).mapEmpty();
+  }
+
+  List<Shard> all() {
+    return shards;
+  }
+
+  boolean sharded() {
+    return shards.size() > 1;
+  }
+
+  Shard forClient(UUID clientId) {
+    return shards.get(Math.floorMod(clientId.hashCode(), shards.size()));
+  }
+
+  Shard forEmail(String email) {
+    return shards.get(Math.floorMod(email.toLowerCase(Locale.ROOT).hashCode(), shards.size()));
+  }
+
+  /**
+   * A random client id that {@link #forClient} maps to {@code shard}, found after as many draws as
+   * there are shards on average.
+   */
+  UUID newClientId(Shard shard) {
+    while (true) {
+      final var id = UUID.randomUUID();
+      if (forClient(id) == shard) {
+        return id;
+      }
+    }
+  }
+
+  /**
+   * The consistency token for a write on {@code shard}. With more than one shard it is qualified by
+   * the shard, since WAL positions of different databases cannot be compared.
+   */
+  String token(Shard shard, String position) {
+    if (position == null || !sharded()) {
+      return position;
+    }
+    return shard.index() + ":" + position;
+  }
+
+  /**
+   * The pool a read on {@code shard} runs on. A token issued by another shard says nothing about
+   * this one and is ignored.
+   */
+  Future<Pool> readPool(Shard shard, String token) {
+    if (token == null || !sharded()) {
+      return shard.router().readPool(token);
+    }
+    final var separator = token.indexOf(':');
+    final int issuedBy;
+    try {
+      issuedBy = Integer.parseInt(token, 0, Math.max(separator, 0), 10);
+    } catch (NumberFormatException e) {
+      return failedFuture(new InvalidConsistencyTokenException());
+    }
+    return shard.router().readPool(issuedBy == shard.index() ? token.substring(separator + 1) : null);
+  }
+}
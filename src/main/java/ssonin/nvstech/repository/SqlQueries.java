@@ -2,11 +2,36 @@ package ssonin.nvstech.repository;
 
 interface SqlQueries {
 
+  int VECTOR_CANDIDATES = 20;
+
+  /**
+   * Limits documents to the {@code created_at} range bound to {@code $3} (inclusive) and {@code $4}
+   * (exclusive), either of which may be null. Repeated on every scan of documents so that each one
+   * is pruned to the partitions covering the range.
+   */
+  String CREATED_IN_RANGE =
+    "created_at >= COALESCE($3::timestamptz, '-infinity') AND created_at < COALESCE($4::timestamptz, 'infinity')";
+
+  /**
+   * {@link #CREATED_IN_RANGE} limited to the documents of the client bound to {@code $n}.
+   */
+  static String clientCreatedInRange(int n) {
+    return "client_id = $%d AND %s".formatted(n, CREATED_IN_RANGE);
+  }
+
   static String insertClient() {
     return """
       INSERT INTO clients (id, first_name, last_name, email, description)
       VALUES ($1, $2, $3, $4, $5)
-      RETURNING id, created_at, first_name, last_name, email, description;
+      RETURNING
+        id,
+        created_at,
+        first_name,
+        last_name,
+        email,
+        description,
+        ARRAY(SELECT lexeme FROM unnest(search)) AS lexemes,
+        ARRAY(SELECT array_to_string(weights, '') FROM unnest(search)) AS lexeme_weights;
       """;
   }
 
@@ -20,9 +45,58 @@ interface SqlQueries {
 
   static String insertDocument() {
     return """
-      INSERT INTO documents (id, client_id, title, content, embedding)
-      VALUES ($1, $2, $3, $4, $5::vector)
-      RETURNING id, created_at, client_id, title, content;
+      WITH document AS (
+        INSERT INTO documents (id, client_id, title, content_sha256, embedding, search)
+        VALUES ($1, $2, $3, $5, $6::vector, document_search($3, $4))
+        RETURNING id, created_at, client_id, title, content_sha256
+      ),
+      content AS (
+        INSERT INTO document_contents (document_id, content)
+        SELECT id, $4 FROM document
+      ),
+      centroid AS (
+        INSERT INTO client_centroids (client_id, embedding, documents)
+        SELECT client_id, $6::vector, 1 FROM document
+        ON CONFLICT (client_id) DO UPDATE
+          SET embedding = client_centroids.embedding + EXCLUDED.embedding,
+              documents = client_centroids.documents + 1,
+              updated_at = now()
+      )
+      SELECT id, created_at, client_id, title, $4::text AS content, content_sha256
+      FROM document;
+      """;
+  }
+
+  /**
+   * Up to {@code $2} embeddings of the client bound to {@code $1}, as {@code real[]}, which the
+   * client decodes from binary without parsing text.
+   */
+  static String selectClientEmbeddings() {
+    return """
+      SELECT id, created_at, embedding::real[] AS embedding
+      FROM documents
+      WHERE client_id = $1 AND embedding IS NOT NULL
+      LIMIT $2;
+      """;
+  }
+
+  /**
+   * The client and the embedding, as {@code real[]}, of the document bound to {@code $1}. Its id
+   * alone does not tell which partition holds it, so every partition's key is probed.
+   */
+  static String selectDocumentEmbedding() {
+    return """
+      SELECT client_id, embedding::real[] AS embedding
+      FROM documents
+      WHERE id = $1;
+      """;
+  }
+
+  static String selectDocumentContents() {
+    return """
+      SELECT document_id, content
+      FROM document_contents
+      WHERE document_id = ANY($1);
       """;
   }
 
@@ -43,25 +117,89 @@ interface SqlQueries {
       """;
   }
 
+  /**
+   * The lexemes {@code plainto_tsquery} makes of each of the words bound to {@code $1}, none for a
+   * stop word.
+   */
+  static String selectWordLexemes() {
+    return """
+      SELECT word, ARRAY(SELECT lexeme FROM unnest(to_tsvector('english', word))) AS lexemes
+      FROM unnest($1::text[]) AS word;
+      """;
+  }
+
+  /**
+   * Client candidates of a routed search: the full-text matches with their {@code ts_rank} and the
+   * {@code $3} clients whose centroids are nearest to the query embedding bound to {@code $2}, with
+   * their cosine distance. Either score is null for a client only the other found.
+   */
+  static String searchClientCandidates() {
+    return """
+      WITH fts_results AS (
+        SELECT id, ts_rank(search, query) AS fts_score
+        FROM clients, plainto_tsquery('english', $1) query
+        WHERE search @@ query
+      ),
+      centroid_results AS (
+        SELECT client_id AS id, embedding <=> $2::vector AS centroid_distance
+        FROM client_centroids
+        ORDER BY embedding <=> $2::vector
+        LIMIT $3
+      ),
+      combined AS (
+        SELECT id, fts.fts_score, centroid.centroid_distance
+        FROM fts_results fts
+        FULL OUTER JOIN centroid_results centroid USING (id)
+      )
+    SELECT
+      'client' AS type,
+      c.id,
+      c.created_at,
+      c.first_name,
+      c.last_name,
+      c.email,
+      c.description,
+      combined.fts_score,
+      combined.centroid_distance
+    FROM combined
+    JOIN clients c USING (id);
+    """;
+  }
+
   static String searchDocuments() {
+    return searchDocuments(vectorResults(VECTOR_CANDIDATES));
+  }
+
+  /**
+   * Fuses the full-text matches with {@code vectorResults}, which yields {@code id} and
+   * {@code rank_pos} of the vector candidates.
+   */
+  static String searchDocuments(String vectorResults) {
+    return searchDocuments(vectorResults, CREATED_IN_RANGE);
+  }
+
+  /**
+   * {@link #searchDocuments(String)} over the documents matching {@code documentFilter}, a condition
+   * on columns of {@code documents}.
+   */
+  static String searchDocuments(String vectorResults, String documentFilter) {
     return """
       WITH fts_results AS (
         SELECT id, ROW_NUMBER() OVER (ORDER BY ts_rank(search, plainto_tsquery('english', $1)) DESC) AS rank_pos
         FROM documents
-        WHERE search @@ plainto_tsquery('english', $1)
+        WHERE search @@ plainto_tsquery('english', $1) AND %s
         LIMIT 20
       ),
       vector_results AS (
-        SELECT id, ROW_NUMBER() OVER (ORDER BY embedding <=> $2::vector) AS rank_pos
-        FROM documents
-        WHERE embedding IS NOT NULL
-        ORDER BY embedding <=> $2::vector
-        LIMIT 20
+    %s
       ),
       combined AS (
         SELECT
           id,
-          COALESCE(1.0 / (60 + fts.rank_pos), 0) + COALESCE(1.0 / (60 + vec.rank_pos), 0) AS rrf_score
+          fts.rank_pos AS fts_rank_pos,
+          vec.rank_pos AS vector_rank_pos,
+          COALESCE(1.0 / (60 + fts.rank_pos), 0) AS fts_rrf,
+          COALESCE(1.0 / (60 + vec.rank_pos), 0) AS vector_rrf
         FROM fts_results fts
         FULL OUTER JOIN vector_results vec USING (id)
       )
@@ -71,12 +209,156 @@ interface SqlQueries {
       d.created_at,
       d.client_id,
       d.title,
-      d.content,
-      c.rrf_score as rank
+      d.content_sha256,
+      c.fts_rrf + c.vector_rrf AS rank,
+      c.fts_rank_pos,
+      c.vector_rank_pos,
+      c.fts_rrf,
+      c.vector_rrf
     FROM combined c
     JOIN documents d ON d.id = c.id
-    ORDER BY c.rrf_score DESC
+    WHERE d.%s
+    ORDER BY rank DESC
     LIMIT 20;
-    """;
+    """.formatted(documentFilter, vectorResults.indent(4).stripTrailing(), documentFilter);
+  }
+
+  /**
+   * The candidates {@link #searchDocuments()} fuses, with the scores they were ranked by instead of
+   * their local positions, so that candidates from several shards can be ranked against each other.
+   */
+  static String searchDocumentCandidates() {
+    return searchDocumentCandidates(vectorResults(VECTOR_CANDIDATES));
+  }
+
+  static String searchDocumentCandidates(String vectorResults) {
+    return """
+      WITH fts_results AS (
+        SELECT id, ts_rank(search, query) AS fts_score
+        FROM documents, plainto_tsquery('english', $1) query
+        WHERE search @@ query AND %s
+        ORDER BY fts_score DESC
+        LIMIT 20
+      ),
+      vector_results AS (
+    %s
+      ),
+      combined AS (
+        SELECT id, fts.fts_score, vec.distance AS vector_distance
+        FROM fts_results fts
+        FULL OUTER JOIN vector_results vec USING (id)
+      )
+    SELECT
+      'document' AS type,
+      d.id,
+      d.created_at,
+      d.client_id,
+      d.title,
+      d.content_sha256,
+      c.fts_score,
+      c.vector_distance
+    FROM combined c
+    JOIN documents d ON d.id = c.id
+    WHERE d.%s;
+    """.formatted(CREATED_IN_RANGE, vectorResults.indent(4).stripTrailing(), CREATED_IN_RANGE);
+  }
+
+  /**
+   * The documents among {@code vectorResults}, which yields {@code id} and {@code distance} of the
+   * vector candidates, that match {@code documentFilter}, with their cosine similarity as their rank.
+   * The document bound to {@code $1}, which the candidates were found for, is left out.
+   */
+  static String similarDocuments(String vectorResults, String documentFilter) {
+    return """
+      WITH vector_results AS (
+    %s
+      )
+    SELECT
+      'document' AS type,
+      d.id,
+      d.created_at,
+      d.client_id,
+      d.title,
+      d.content_sha256,
+      1 - v.distance AS rank
+    FROM vector_results v
+    JOIN documents d ON d.id = v.id
+    WHERE d.id <> $1 AND d.%s
+    ORDER BY v.distance
+    LIMIT %d;
+    """.formatted(vectorResults.indent(4).stripTrailing(), documentFilter, VECTOR_CANDIDATES);
+  }
+
+  /**
+   * Nearest documents to the query embedding bound to {@code $2} within {@link #CREATED_IN_RANGE},
+   * answered by the HNSW index of each partition the range covers and merged in distance order.
+   */
+  static String vectorResults(int candidates) {
+    return """
+      SELECT id, ROW_NUMBER() OVER (ORDER BY embedding <=> $2::vector) AS rank_pos, embedding <=> $2::vector AS distance
+      FROM documents
+      WHERE embedding IS NOT NULL AND %s
+      ORDER BY embedding <=> $2::vector
+      LIMIT %d""".formatted(CREATED_IN_RANGE, candidates);
+  }
+
+  /**
+   * Nearest documents to the query embedding bound to {@code $2} within {@link #CREATED_IN_RANGE}
+   * among the documents of the client bound to {@code $5}, read through the {@code client_id} index
+   * and ranked exactly, as {@link #routedVectorResults} ranks each client's documents.
+   */
+  static String clientVectorResults(int candidates) {
+    return """
+      SELECT id, ROW_NUMBER() OVER (ORDER BY distance) AS rank_pos, distance
+      FROM (
+        SELECT id, embedding <=> $2::vector AS distance
+        FROM documents
+        WHERE embedding IS NOT NULL AND %s
+        OFFSET 0
+      ) client_documents
+      ORDER BY distance
+      LIMIT %d""".formatted(clientCreatedInRange(5), candidates);
+  }
+
+  /**
+   * Nearest documents to the query embedding bound to {@code $2} within {@link #CREATED_IN_RANGE}
+   * among the documents of the {@code $5} clients whose centroids are nearest to it. Each client's
+   * documents are read through the {@code client_id} index and ranked exactly: the {@code OFFSET 0}
+   * keeps the planner from answering the inner ordering with the HNSW index, which would apply the
+   * client filter only after collecting its {@code ef_search} candidates and return few or none.
+   */
+  static String routedVectorResults(int candidates) {
+    return """
+      SELECT id, ROW_NUMBER() OVER (ORDER BY distance) AS rank_pos, distance
+      FROM (
+        SELECT client_id
+        FROM client_centroids
+        ORDER BY embedding <=> $2::vector
+        LIMIT $5
+      ) nearest
+      CROSS JOIN LATERAL (
+        SELECT id, distance
+        FROM (
+          SELECT id, embedding <=> $2::vector AS distance
+          FROM documents
+          WHERE client_id = nearest.client_id AND embedding IS NOT NULL AND %s
+          OFFSET 0
+        ) client_documents
+        ORDER BY distance
+        LIMIT %d
+      ) client_candidates
+      ORDER BY distance
+      LIMIT %d""".formatted(CREATED_IN_RANGE, candidates, candidates);
+  }
+
+  /**
+   * The vector candidates found in the JVM instead of by pgvector, by the replica or by scanning a
+   * client's vectors, as document ids bound to {@code $2} and their cosine distances bound to
+   * {@code $5}, nearest first.
+   */
+  static String providedVectorResults() {
+    return """
+      SELECT id, rank_pos, distance
+      FROM unnest($2::uuid[], $5::float8[]) WITH ORDINALITY AS provided(id, distance, rank_pos)""";
   }
 }
@@ -0,0 +1,216 @@
+package ssonin.nvstech.text;
+
+import ssonin.nvstech.model.Client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inverted index of clients by the lexemes of their {@code search} tsvector, ranked with BM25.
+ * Each posting holds a client's ordinal and the lexeme's frequency in it, counted with the weight of
+ * the field it appeared in, as {@code ts_rank} weighs {@code setweight} labels: names ({@code A})
+ * count 1, email tokens ({@code B}) 0.4 and the description ({@code C}) 0.2. Clients get increasing
+ * ordinals, so every posting list is sorted.
+ * <p>
+ * A search matches the clients holding every query lexeme, as {@code plainto_tsquery} does.
+ * Reads share a lock that adding a client takes exclusively.
+ */
+public final class Bm25Index {
+
+  static final double K1 = 1.2;
+  static final double B = 0.75;
+
+  private static final int INITIAL_POSTINGS = 4;
+
+  public record Match(Client client, double score) {
+  }
+
+  /**
+   * The clients a lexeme appears in, in ordinal order, with its weighted frequency in each.
+   */
+  private static final class Postings {
+
+    private int[] clients = new int[INITIAL_POSTINGS];
+    private float[] frequencies = new float[INITIAL_POSTINGS];
+    private int size;
+
+    void add(int client, float frequency) {
+      if (size == clients.length) {
+        clients = Arrays.copyOf(clients, size * 2);
+        frequencies = Arrays.copyOf(frequencies, size * 2);
+      }
+      clients[size] = client;
+      frequencies[size] = frequency;
+      size++;
+    }
+
+    /**
+     * The position of {@code client} in this list, searched from {@code from}, or a negative value
+     * when it is not there. Gallops before searching, since the next client is usually close.
+     */
+    int find(int client, int from) {
+      var bound = 1;
+      while (from + bound < size && clients[from + bound] < client) {
+        bound <<= 1;
+      }
+      return Arrays.binarySearch(clients, from + bound / 2, Math.min(from + bound + 1, size), client);
+    }
+  }
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Postings> postings = new HashMap<>();
+  private final Map<UUID, Integer> ordinals = new HashMap<>();
+  private final List<Client> clients = new ArrayList<>();
+  private float[] lengths = new float[INITIAL_POSTINGS];
+  private double totalLength;
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return clients.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int lexemes() {
+    lock.readLock().lock();
+    try {
+      return postings.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Indexes {@code client} under {@code lexemes}, the lexemes of its tsvector, each with the
+   * {@code setweight} labels of its positions in {@code weights}, e.g. {@code "AAC"}. Returns false
+   * when the client is already indexed.
+   */
+  public boolean add(Client client, String[] lexemes, String[] weights) {
+    if (lexemes.length != weights.length) {
+      throw new IllegalArgumentException("Expected weights for %d lexemes, got %d".formatted(lexemes.length, weights.length));
+    }
+    lock.writeLock().lock();
+    try {
+      if (ordinals.containsKey(client.id())) {
+        return false;
+      }
+      final var ordinal = clients.size();
+      ordinals.put(client.id(), ordinal);
+      clients.add(client);
+      var length = 0f;
+      for (var i = 0; i < lexemes.length; i++) {
+        final var frequency = frequency(weights[i]);
+        postings.computeIfAbsent(lexemes[i], __ -> new Postings()).add(ordinal, frequency);
+        length += frequency;
+      }
+      if (ordinal == lengths.length) {
+        lengths = Arrays.copyOf(lengths, ordinal * 2);
+      }
+      lengths[ordinal] = length;
+      totalLength += length;
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * The clients holding every one of {@code lexemes}, best first. None match when there are no
+   * lexemes, e.g. when the query held stop words only.
+   */
+  public List<Match> search(List<String> lexemes) {
+    final var distinct = List.copyOf(new LinkedHashSet<>(lexemes));
+    if (distinct.isEmpty()) {
+      return List.of();
+    }
+    lock.readLock().lock();
+    try {
+      final var lists = new Postings[distinct.size()];
+      for (var i = 0; i < lists.length; i++) {
+        lists[i] = postings.get(distinct.get(i));
+        if (lists[i] == null) {
+          return List.of();
+        }
+      }
+      // Walks the rarest list and looks its clients up in the others
+      Arrays.sort(lists, (left, right) -> Integer.compare(left.size, right.size));
+      final var idfs = new double[lists.length];
+      for (var i = 0; i < lists.length; i++) {
+        idfs[i] = idf(lists[i].size);
+      }
+      final var averageLength = totalLength / clients.size();
+      final var cursors = new int[lists.length];
+      final var rarest = lists[0];
+      // Scores are positive, so their float bits sort like them, with the client in the low half
+      final var ranked = new long[rarest.size];
+      var matched = 0;
+      candidates:
+      for (var p = 0; p < rarest.size; p++) {
+        final var client = rarest.clients[p];
+        final var lengthNorm = K1 * (1 - B + B * lengths[client] / averageLength);
+        var score = idfs[0] * termScore(rarest.frequencies[p], lengthNorm);
+        for (var i = 1; i < lists.length; i++) {
+          final var found = lists[i].find(client, cursors[i]);
+          if (found < 0) {
+            cursors[i] = -found - 1;
+            continue candidates;
+          }
+          cursors[i] = found + 1;
+          score += idfs[i] * termScore(lists[i].frequencies[found], lengthNorm);
+        }
+        ranked[matched++] = (long) Float.floatToIntBits((float) score) << 32 | client;
+      }
+      Arrays.sort(ranked, 0, matched);
+      final var matches = new ArrayList<Match>(matched);
+      for (var i = matched - 1; i >= 0; i--) {
+        matches.add(new Match(clients.get((int) ranked[i]), Float.intBitsToFloat((int) (ranked[i] >>> 32))));
+      }
+      return matches;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private double idf(int documentFrequency) {
+    return Math.log(1 + (clients.size() - documentFrequency + 0.5) / (documentFrequency + 0.5));
+  }
+
+  private static double termScore(float frequency, double lengthNorm) {
+    return frequency * (K1 + 1) / (frequency + lengthNorm);
+  }
+
+  /**
+   * The weighted frequency of a lexeme with the labels of its positions. A lexeme without positions,
+   * as in a stripped tsvector, counts once with the default label {@code D}.
+   */
+  static float frequency(String weights) {
+    if (weights == null || weights.isEmpty()) {
+      return weight('D');
+    }
+    var frequency = 0f;
+    for (var i = 0; i < weights.length(); i++) {
+      frequency += weight(weights.charAt(i));
+    }
+    return frequency;
+  }
+
+  /**
+   * The default weights of {@code ts_rank}.
+   */
+  private static float weight(char label) {
+    return switch (label) {
+      case 'A' -> 1.0f;
+      case 'B' -> 0.4f;
+      case 'C' -> 0.2f;
+      default -> 0.1f;
+    };
+  }
+}
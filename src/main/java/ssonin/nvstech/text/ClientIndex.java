@@ -0,0 +1,156 @@
+package ssonin.nvstech.text;
+
+import io.micrometer.core.instrument.Gauge;
+import io.vertx.pgclient.PgConnectOptions;
+import org.slf4j.Logger;
+import ssonin.nvstech.jdbc.CatchUp;
+import ssonin.nvstech.metrics.Metrics;
+import ssonin.nvstech.model.Client;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * An in-process full-text index of the clients of every shard, which serves client search without a
+ * round trip to PostgreSQL. PostgreSQL stays the source of truth: the index is loaded from the
+ * {@code search} tsvectors on startup, follows the clients this process creates, and polls for the
+ * ones other processes create. Clients are never deleted, so the index only ever grows.
+ * <p>
+ * Stemming stays in PostgreSQL too. Each query word is turned into lexemes by {@code to_tsvector}
+ * once, and the result is cached, so that a search for words seen before needs no database.
+ */
+public final class ClientIndex {
+
+  static final int MAX_CACHED_WORDS = 100_000;
+
+  private static final Logger LOG = getLogger(ClientIndex.class);
+  private static final ClientIndex SHARED = new ClientIndex();
+  private static final String CATCH_UP_SQL = """
+    SELECT
+      id,
+      created_at,
+      first_name,
+      last_name,
+      email,
+      description,
+      ARRAY(SELECT lexeme FROM unnest(search)) AS lexemes,
+      ARRAY(SELECT array_to_string(weights, '') FROM unnest(search)) AS lexeme_weights
+    FROM clients
+    WHERE created_at >= ?
+    ORDER BY created_at
+    """;
+
+  private final Map<String, List<String>> wordLexemes = new ConcurrentHashMap<>();
+  private volatile Bm25Index index;
+  private volatile CatchUp catchUp;
+
+  private ClientIndex() {
+    Gauge.builder("nvstech.client_index.size", this, clientIndex -> clientIndex.index == null ? 0 : clientIndex.index.size())
+      .description("Clients held by the in-process client search index")
+      .register(Metrics.registry());
+    Gauge.builder("nvstech.client_index.lexemes", this, clientIndex -> clientIndex.index == null ? 0 : clientIndex.index.lexemes())
+      .description("Distinct lexemes of the in-process client search index")
+      .register(Metrics.registry());
+  }
+
+  /**
+   * The index of this JVM, shared by every verticle instance.
+   */
+  public static ClientIndex shared() {
+    return SHARED;
+  }
+
+  /**
+   * Whether the index has been loaded and can serve searches.
+   */
+  public boolean ready() {
+    return index != null;
+  }
+
+  /**
+   * Loads every client of {@code databases}. Blocks until done.
+   */
+  public void load(List<PgConnectOptions> databases) throws SQLException {
+    final var startedAt = System.nanoTime();
+    final var loaded = new Bm25Index();
+    final var catchUp = new CatchUp(CATCH_UP_SQL, Long.MIN_VALUE);
+    catchUp(catchUp, loaded, databases);
+    this.catchUp = catchUp;
+    index = loaded;
+    LOG.info("Client index ready with {} clients and {} lexemes in {}ms",
+      loaded.size(), loaded.lexemes(), (System.nanoTime() - startedAt) / 1_000_000);
+  }
+
+  /**
+   * Adds the clients other processes created since the previous refresh. Refreshes must not overlap.
+   */
+  public void refresh(List<PgConnectOptions> databases) throws SQLException {
+    final var current = index;
+    if (current != null) {
+      final var added = catchUp(catchUp, current, databases);
+      if (added > 0) {
+        LOG.debug("Added {} clients to the client index", added);
+      }
+    }
+  }
+
+  public void add(Client client, String[] lexemes, String[] weights) {
+    final var current = index;
+    if (current != null) {
+      current.add(client, lexemes, weights);
+    }
+  }
+
+  /**
+   * The clients holding every one of {@code lexemes}, best first.
+   */
+  public List<Bm25Index.Match> search(List<String> lexemes) {
+    final var current = index;
+    return current == null ? List.of() : current.search(lexemes);
+  }
+
+  /**
+   * The lexemes of {@code word}, or null when it has not been resolved yet. Stop words have none.
+   */
+  public List<String> lexemes(String word) {
+    return wordLexemes.get(word);
+  }
+
+  /**
+   * Remembers the lexemes {@code to_tsvector} turned {@code word} into. Words past the first
+   * {@link #MAX_CACHED_WORDS} are resolved again on every search.
+   */
+  public void resolved(String word, List<String> lexemes) {
+    if (wordLexemes.size() < MAX_CACHED_WORDS) {
+      wordLexemes.put(word, List.copyOf(lexemes));
+    }
+  }
+
+  private static int catchUp(CatchUp catchUp, Bm25Index index, List<PgConnectOptions> databases)
+    throws SQLException {
+    return catchUp.read(databases, row ->
+      index.add(clientFromRow(row), strings(row, "lexemes"), strings(row, "lexeme_weights")));
+  }
+
+  private static Client clientFromRow(ResultSet rows) throws SQLException {
+    return new Client(
+      rows.getObject("id", UUID.class),
+      rows.getTimestamp("created_at").toInstant().atOffset(ZoneOffset.UTC),
+      rows.getString("first_name"),
+      rows.getString("last_name"),
+      rows.getString("email"),
+      rows.getString("description"));
+  }
+
+  private static String[] strings(ResultSet rows, String column) throws SQLException {
+    final var array = rows.getArray(column);
+    return array == null ? new String[0] : (String[]) array.getArray();
+  }
+}
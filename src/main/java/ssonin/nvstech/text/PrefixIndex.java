@@ -0,0 +1,324 @@
+package ssonin.nvstech.text;
+
+import ssonin.nvstech.model.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Completions of typed prefixes, in a radix tree keyed by every word start of every completion, so
+ * that "bi" completes "Chandler Bing". Each node keeps the {@link #MAX_RESULTS} most popular
+ * completions under it, best first, so a lookup only walks the prefix and copies that list.
+ * Popularity only grows, so a completion can only enter a node's list when its own popularity does,
+ * and the lists are kept exact by offering the completion to the nodes on its keys' paths.
+ * <p>
+ * Reads share a lock that adding a completion or counting a use takes exclusively.
+ */
+public final class PrefixIndex {
+
+  public static final int MAX_RESULTS = 20;
+
+  /**
+   * Word starts indexed per completion, from the first, which bounds the keys a long title adds.
+   */
+  static final int MAX_KEYS = 8;
+
+  private static final char[] NO_LABEL = new char[0];
+  private static final Node[] NO_CHILDREN = new Node[0];
+  private static final Entry[] NO_ENTRIES = new Entry[0];
+  private static final Comparator<Entry> BY_POPULARITY = Comparator
+    .comparingLong((Entry entry) -> entry.popularity).reversed()
+    .thenComparing(entry -> entry.key);
+
+  private static final class Entry {
+
+    private final String type;
+    private final String text;
+    private final String key;
+    private long popularity;
+
+    private Entry(String type, String text, String key) {
+      this.type = type;
+      this.text = text;
+      this.key = key;
+    }
+  }
+
+  /**
+   * A node reached by its edge {@code label}, with its children in the order of their labels'
+   * first characters.
+   */
+  private static final class Node {
+
+    private char[] label;
+    private char[] firsts = NO_LABEL;
+    private Node[] children = NO_CHILDREN;
+    private Entry[] top = NO_ENTRIES;
+
+    private Node(char[] label) {
+      this.label = label;
+    }
+
+    private int childIndex(char first) {
+      return Arrays.binarySearch(firsts, first);
+    }
+
+    private void putChild(Node child) {
+      final var index = childIndex(child.label[0]);
+      if (index >= 0) {
+        children[index] = child;
+        return;
+      }
+      final var at = -index - 1;
+      final var newFirsts = new char[firsts.length + 1];
+      final var newChildren = new Node[children.length + 1];
+      System.arraycopy(firsts, 0, newFirsts, 0, at);
+      System.arraycopy(children, 0, newChildren, 0, at);
+      newFirsts[at] = child.label[0];
+      newChildren[at] = child;
+      System.arraycopy(firsts, at, newFirsts, at + 1, firsts.length - at);
+      System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+      firsts = newFirsts;
+      children = newChildren;
+    }
+
+    /**
+     * Puts {@code entry}, whose popularity has just grown, in its place among the best entries.
+     */
+    private void offer(Entry entry) {
+      var at = -1;
+      for (var i = 0; i < top.length; i++) {
+        if (top[i] == entry) {
+          at = i;
+          break;
+        }
+      }
+      if (at < 0) {
+        if (top.length < MAX_RESULTS) {
+          top = Arrays.copyOf(top, top.length + 1);
+        } else if (BY_POPULARITY.compare(entry, top[top.length - 1]) >= 0) {
+          return;
+        }
+        at = top.length - 1;
+        top[at] = entry;
+      }
+      while (at > 0 && BY_POPULARITY.compare(top[at], top[at - 1]) < 0) {
+        final var previous = top[at - 1];
+        top[at - 1] = top[at];
+        top[at] = previous;
+        at--;
+      }
+    }
+  }
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Node root = new Node(NO_LABEL);
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final Map<String, List<Entry>> byKey = new HashMap<>();
+  private final int maxCompletions;
+  private int nodes = 1;
+
+  /**
+   * @param maxCompletions distinct completions kept; once reached, new ones are ignored while the
+   *                       popularity of the kept ones still grows
+   */
+  public PrefixIndex(int maxCompletions) {
+    this.maxCompletions = maxCompletions;
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int nodes() {
+    lock.readLock().lock();
+    try {
+      return nodes;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds {@code uses} to the popularity of the completion {@code text} of {@code type}, adding the
+   * completion when it is new. Returns false when the text has no words or there is no room for it.
+   */
+  public boolean add(String type, String text, long uses) {
+    if (text == null) {
+      return false;
+    }
+    final var key = normalize(text);
+    if (key.isEmpty() || uses <= 0) {
+      return false;
+    }
+    lock.writeLock().lock();
+    try {
+      var entry = entries.get(type + '\0' + key);
+      if (entry == null) {
+        if (entries.size() >= maxCompletions) {
+          return false;
+        }
+        entry = new Entry(type, text.strip(), key);
+        entries.put(type + '\0' + key, entry);
+        byKey.computeIfAbsent(key, __ -> new ArrayList<>(1)).add(entry);
+        entry.popularity = uses;
+        for (final var start : wordStarts(key)) {
+          insert(key, start, entry);
+        }
+      } else {
+        entry.popularity += uses;
+        for (final var start : wordStarts(key)) {
+          offer(key, start, entry);
+        }
+      }
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Counts a use of the completions of any type whose text is {@code text}, e.g. a search for it.
+   */
+  public void used(String text) {
+    final var key = normalize(text);
+    lock.readLock().lock();
+    try {
+      if (!byKey.containsKey(key)) {
+        return;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    lock.writeLock().lock();
+    try {
+      for (final var entry : byKey.getOrDefault(key, List.of())) {
+        entry.popularity++;
+        for (final var start : wordStarts(key)) {
+          offer(key, start, entry);
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * The {@code limit} most popular completions with a word starting with {@code prefix}.
+   */
+  public List<Suggestion> complete(String prefix, int limit) {
+    final var key = normalize(prefix).toCharArray();
+    if (key.length == 0) {
+      return List.of();
+    }
+    lock.readLock().lock();
+    try {
+      var node = root;
+      var i = 0;
+      while (i < key.length) {
+        final var index = node.childIndex(key[i]);
+        if (index < 0) {
+          return List.of();
+        }
+        node = node.children[index];
+        final var matched = Math.min(node.label.length, key.length - i);
+        if (!Arrays.equals(node.label, 0, matched, key, i, i + matched)) {
+          return List.of();
+        }
+        i += matched;
+      }
+      final var count = Math.min(limit, node.top.length);
+      final var completions = new ArrayList<Suggestion>(count);
+      for (var j = 0; j < count; j++) {
+        final var entry = node.top[j];
+        completions.add(new Suggestion(entry.text, entry.type, entry.popularity));
+      }
+      return completions;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void insert(String key, int start, Entry entry) {
+    var node = root;
+    var i = start;
+    while (i < key.length()) {
+      final var index = node.childIndex(key.charAt(i));
+      if (index < 0) {
+        final var leaf = new Node(key.substring(i).toCharArray());
+        leaf.offer(entry);
+        node.putChild(leaf);
+        nodes++;
+        return;
+      }
+      var child = node.children[index];
+      final var common = commonPrefix(child.label, key, i);
+      if (common < child.label.length) {
+        // Splits the edge where the key leaves it; the new node has the same completions below it
+        final var middle = new Node(Arrays.copyOf(child.label, common));
+        middle.top = child.top.clone();
+        child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+        middle.putChild(child);
+        node.putChild(middle);
+        nodes++;
+        child = middle;
+      }
+      child.offer(entry);
+      node = child;
+      i += common;
+    }
+  }
+
+  /**
+   * Offers {@code entry} to the nodes on the path of its key from {@code start}, which exists.
+   */
+  private void offer(String key, int start, Entry entry) {
+    var node = root;
+    var i = start;
+    while (i < key.length()) {
+      node = node.children[node.childIndex(key.charAt(i))];
+      node.offer(entry);
+      i += node.label.length;
+    }
+  }
+
+  private static int commonPrefix(char[] label, String key, int from) {
+    var common = 0;
+    while (common < label.length && from + common < key.length() && label[common] == key.charAt(from + common)) {
+      common++;
+    }
+    return common;
+  }
+
+  /**
+   * The positions of the first {@link #MAX_KEYS} words of a normalized text.
+   */
+  static List<Integer> wordStarts(String key) {
+    final var starts = new ArrayList<Integer>();
+    starts.add(0);
+    for (var i = 1; i < key.length() && starts.size() < MAX_KEYS; i++) {
+      if (key.charAt(i - 1) == ' ') {
+        starts.add(i);
+      }
+    }
+    return starts;
+  }
+
+  /**
+   * Lower case, with runs of whitespace collapsed into one space and none at either end.
+   */
+  static String normalize(String text) {
+    return text.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,111 @@
+package ssonin.nvstech.text;
+
+import io.micrometer.core.instrument.Gauge;
+import io.vertx.pgclient.PgConnectOptions;
+import org.slf4j.Logger;
+import ssonin.nvstech.jdbc.Jdbc;
+import ssonin.nvstech.metrics.Metrics;
+import ssonin.nvstech.model.Client;
+import ssonin.nvstech.model.Document;
+import ssonin.nvstech.model.Suggestion;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Typeahead completions of client names and document titles, held in memory so that a keystroke
+ * needs neither an embedding nor the database. The completions are loaded from every shard on
+ * startup, with the number of clients or documents carrying each as its popularity. Clients and
+ * documents this process creates add to it, and so does every search for a completion's text.
+ * Those counts are not stored: a restart starts from the database's again.
+ */
+public final class SuggestionIndex {
+
+  public static final int DEFAULT_MAX_COMPLETIONS = 100_000;
+  public static final int DEFAULT_LIMIT = 10;
+
+  static final String CLIENT = "client";
+  static final String DOCUMENT = "document";
+
+  private static final Logger LOG = getLogger(SuggestionIndex.class);
+  private static final SuggestionIndex SHARED = new SuggestionIndex();
+
+  private volatile PrefixIndex index = new PrefixIndex(DEFAULT_MAX_COMPLETIONS);
+
+  private SuggestionIndex() {
+    Gauge.builder("nvstech.suggestions.completions", this, suggestions -> suggestions.index.size())
+      .description("Client names and document titles the typeahead index completes")
+      .register(Metrics.registry());
+  }
+
+  /**
+   * The index of this JVM, shared by every verticle instance.
+   */
+  public static SuggestionIndex shared() {
+    return SHARED;
+  }
+
+  /**
+   * Replaces the completions with the client names and the {@code maxCompletions} most common
+   * document titles of {@code databases}. Blocks until done.
+   */
+  public void load(List<PgConnectOptions> databases, int maxCompletions) throws SQLException {
+    final var startedAt = System.nanoTime();
+    final var loaded = new PrefixIndex(maxCompletions);
+    for (final var db : databases) {
+      try (final var connection = Jdbc.connect(db)) {
+        load(connection, loaded, CLIENT, """
+          SELECT first_name || ' ' || last_name AS text, count(*) AS uses
+          FROM clients
+          GROUP BY 1
+          ORDER BY uses DESC
+          LIMIT ?
+          """, maxCompletions);
+        load(connection, loaded, DOCUMENT, """
+          SELECT title AS text, count(*) AS uses
+          FROM documents
+          GROUP BY title
+          ORDER BY uses DESC
+          LIMIT ?
+          """, maxCompletions);
+      }
+    }
+    index = loaded;
+    LOG.info("Suggestion index ready with {} completions in {} nodes in {}ms",
+      loaded.size(), loaded.nodes(), (System.nanoTime() - startedAt) / 1_000_000);
+  }
+
+  public void clientCreated(Client client) {
+    index.add(CLIENT, client.firstName() + ' ' + client.lastName(), 1);
+  }
+
+  public void documentCreated(Document document) {
+    index.add(DOCUMENT, document.title(), 1);
+  }
+
+  /**
+   * Counts a search for {@code query} towards the popularity of the completions it equals.
+   */
+  public void searched(String query) {
+    index.used(query);
+  }
+
+  public List<Suggestion> complete(String prefix, int limit) {
+    return index.complete(prefix, limit);
+  }
+
+  private static void load(Connection connection, PrefixIndex index, String type, String sql, int limit)
+    throws SQLException {
+    try (final var statement = connection.prepareStatement(sql)) {
+      statement.setInt(1, limit);
+      try (final var rows = statement.executeQuery()) {
+        while (rows.next()) {
+          index.add(type, rows.getString("text"), rows.getLong("uses"));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package ssonin.nvstech.tracing;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Appends finished spans to a local file, one JSON object per line, so traces can be inspected
+ * without running a collector.
+ */
+public final class FileSpanExporter implements SpanExporter {
+
+  private static final Logger LOG = getLogger(FileSpanExporter.class);
+
+  private final BufferedWriter writer;
+
+  public FileSpanExporter(Path path) throws IOException {
+    writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, CREATE, APPEND);
+  }
+
+  @Override
+  public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+    try {
+      for (final var span : spans) {
+        writer.write(toJson(span).encode());
+        writer.newLine();
+      }
+      writer.flush();
+      return CompletableResultCode.ofSuccess();
+    } catch (IOException e) {
+      LOG.warn("Failed to export {} spans", spans.size(), e);
+      return CompletableResultCode.ofFailure();
+    }
+  }
+
+  @Override
+  public synchronized CompletableResultCode flush() {
+    try {
+      writer.flush();
+      return CompletableResultCode.ofSuccess();
+    } catch (IOException e) {
+      return CompletableResultCode.ofFailure();
+    }
+  }
+
+  @Override
+  public synchronized CompletableResultCode shutdown() {
+    try {
+      writer.close();
+      return CompletableResultCode.ofSuccess();
+    } catch (IOException e) {
+      return CompletableResultCode.ofFailure();
+    }
+  }
+
+  static JsonObject toJson(SpanData span) {
+    final var attributes = new JsonObject();
+    span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), value));
+    final var parent = span.getParentSpanContext();
+    return new JsonObject()
+      .put("trace_id", span.getTraceId())
+      .put("span_id", span.getSpanId())
+      .put("parent_span_id", parent.isValid() ? parent.getSpanId() : null)
+      .put("name", span.getName())
+      .put("kind", span.getKind().name())
+      .put("start_epoch_nanos", span.getStartEpochNanos())
+      .put("duration_micros", (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1_000)
+      .put("status", span.getStatus().getStatusCode().name())
+      .put("attributes", attributes);
+  }
+}
@@ -0,0 +1,37 @@
+package ssonin.nvstech.tracing;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+/**
+ * OpenTelemetry setup for Vert.x tracing.
+ * Spans are created for HTTP server requests, event-bus messages, pg queries and {@code WebClient}
+ * calls. The W3C trace context travels in event-bus headers and in the {@code traceparent} header
+ * sent to the embedding service.
+ */
+public final class Tracing {
+
+  public static final String SERVICE_NAME = "nvs-tech";
+
+  private Tracing() {
+  }
+
+  public static OpenTelemetrySdk openTelemetry(SpanProcessor spanProcessor) {
+    final var resource = Resource.getDefault()
+      .merge(Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), SERVICE_NAME)));
+    final var tracerProvider = SdkTracerProvider.builder()
+      .setResource(resource)
+      .addSpanProcessor(spanProcessor)
+      .build();
+    return OpenTelemetrySdk.builder()
+      .setTracerProvider(tracerProvider)
+      .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+      .build();
+  }
+}
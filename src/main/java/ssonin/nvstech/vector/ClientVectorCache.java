@@ -0,0 +1,126 @@
+package ssonin.nvstech.vector;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import ssonin.nvstech.metrics.Metrics;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The vector blocks of recently searched clients, least recently used evicted first once they hold
+ * more than a set number of vectors, and reloaded once older than a set age so that documents other
+ * processes created show up. Shared by every verticle instance of the JVM.
+ *
+ * <p>Loading is left to the caller: {@link #generation} before reading a client's vectors, then
+ * {@link #put} with that generation. {@link #invalidate} moves the generation on, so a block read
+ * before a document was created is not cached after it.
+ */
+public final class ClientVectorCache {
+
+  public static final long DEFAULT_MAX_VECTORS = 100_000;
+  public static final Duration DEFAULT_TTL = Duration.ofMinutes(1);
+
+  private static final int GENERATION_STRIPES = 64;
+  private static volatile ClientVectorCache shared;
+
+  private record Entry(VectorBlock block, long loadedAtNanos) {
+  }
+
+  private final long maxVectors;
+  private final long ttlNanos;
+  private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+  private final Counter hits;
+  private final Counter misses;
+  private long vectors;
+
+  ClientVectorCache(long maxVectors, Duration ttl) {
+    this.maxVectors = maxVectors;
+    this.ttlNanos = ttl.toNanos();
+    hits = Counter.builder("nvstech.vector.client_cache.requests")
+      .description("Client vector block lookups")
+      .tag("outcome", "hit")
+      .register(Metrics.registry());
+    misses = Counter.builder("nvstech.vector.client_cache.requests")
+      .description("Client vector block lookups")
+      .tag("outcome", "miss")
+      .register(Metrics.registry());
+  }
+
+  /**
+   * The cache of this JVM, holding up to {@code maxVectors} embeddings. The first call decides its
+   * size and TTL.
+   */
+  public static ClientVectorCache shared(long maxVectors, Duration ttl) {
+    var cache = shared;
+    if (cache == null) {
+      synchronized (ClientVectorCache.class) {
+        cache = shared;
+        if (cache == null) {
+          cache = new ClientVectorCache(maxVectors, ttl);
+          Gauge.builder("nvstech.vector.client_cache.vectors", cache, ClientVectorCache::vectors)
+            .description("Document embeddings held by the cached client vector blocks")
+            .register(Metrics.registry());
+          shared = cache;
+        }
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * The cached block of {@code clientId}, or null when it has to be loaded.
+   */
+  public synchronized VectorBlock get(UUID clientId) {
+    final var entry = entries.get(clientId);
+    if (entry == null || System.nanoTime() - entry.loadedAtNanos() > ttlNanos) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.block();
+  }
+
+  public long generation(UUID clientId) {
+    return generations.get(stripe(clientId));
+  }
+
+  /**
+   * Caches a block read after {@link #generation} returned {@code generation}, unless the client has
+   * been invalidated since or the block alone exceeds the cache.
+   */
+  public synchronized void put(UUID clientId, long generation, VectorBlock block) {
+    if (generation != generation(clientId) || block.size() > maxVectors) {
+      return;
+    }
+    final var replaced = entries.put(clientId, new Entry(block, System.nanoTime()));
+    vectors += block.size() - (replaced == null ? 0 : replaced.block().size());
+    final var it = entries.values().iterator();
+    while (vectors > maxVectors && it.hasNext()) {
+      vectors -= it.next().block().size();
+      it.remove();
+    }
+  }
+
+  /**
+   * Drops the block of a client whose documents changed.
+   */
+  public synchronized void invalidate(UUID clientId) {
+    generations.incrementAndGet(stripe(clientId));
+    final var removed = entries.remove(clientId);
+    if (removed != null) {
+      vectors -= removed.block().size();
+    }
+  }
+
+  synchronized long vectors() {
+    return vectors;
+  }
+
+  private static int stripe(UUID clientId) {
+    return clientId.hashCode() & (GENERATION_STRIPES - 1);
+  }
+}
@@ -0,0 +1,27 @@
+package ssonin.nvstech.vector;
+
+/**
+ * Scores unit-length vectors against a query, whose cosine similarity is then their dot product.
+ */
+interface CosineKernel {
+
+  String VECTOR_MODULE = "jdk.incubator.vector";
+
+  /**
+   * The dot product of {@code length} components of {@code block} from {@code offset} and of
+   * {@code query} from 0.
+   */
+  float dot(float[] block, int offset, float[] query, int length);
+
+  String name();
+
+  /**
+   * The SIMD kernel when the JVM was started with {@code --add-modules jdk.incubator.vector}, the
+   * scalar one otherwise.
+   */
+  static CosineKernel preferred() {
+    return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()
+      ? new SimdCosineKernel()
+      : new ScalarCosineKernel();
+  }
+}
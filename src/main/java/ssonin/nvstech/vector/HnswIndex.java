@@ -0,0 +1,711 @@
+package ssonin.nvstech.vector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Comparator.comparingDouble;
+
+/**
+ * A hierarchical navigable small world graph over unit-length vectors, ranked by cosine distance
+ * like pgvector's {@code vector_cosine_ops}, and built with pgvector's default {@code m} and
+ * {@code ef_construction}.
+ * <p>
+ * Vectors, ids, creation times and level-0 neighbour lists, nearly all of the index, are kept in
+ * direct buffers outside the Java heap, in chunks of {@value #CHUNK_NODES} nodes so that the index
+ * grows without copying and is not bound by the 2 GiB limit of a single buffer. The neighbour lists
+ * of the few nodes above level 0 are kept on the heap.
+ * <p>
+ * Searches take no lock. An addition writes and links its node in full before it raises the node
+ * count that publishes it, and only then links its neighbours back to it. A search reads the count
+ * once and skips links to nodes beyond it, so it never reaches a node that is still being written.
+ * Neighbour lists are only appended to or overwritten in place, so a search reading one while it
+ * changes sees old or new neighbours, never a node that is not indexed. Additions are serialised
+ * with each other only. Saving copies the published nodes the same way, without holding off either.
+ */
+public final class HnswIndex {
+
+  public static final int M = 16;
+  public static final int EF_CONSTRUCTION = 64;
+
+  private static final int M0 = 2 * M;
+  private static final double LEVEL_MULTIPLIER = 1 / Math.log(M);
+  private static final int MAX_LEVEL = 16;
+  private static final int CHUNK_BITS = 14;
+  private static final int CHUNK_NODES = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_NODES - 1;
+  private static final int MAGIC = 0x4e565348;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 32;
+  private static final ThreadLocal<Visited> VISITED = ThreadLocal.withInitial(Visited::new);
+
+  public record Neighbour(UUID id, long createdAtMillis, float distance) {
+  }
+
+  private record Scored(int node, float distance) {
+  }
+
+  private record Top(int node, int level) {
+
+    static final Top EMPTY = new Top(-1, -1);
+  }
+
+  /**
+   * Storage of {@value #CHUNK_NODES} consecutive nodes. A level-0 neighbour list is its length
+   * followed by up to {@link #M0} node numbers.
+   */
+  private static final class Chunk {
+
+    final FloatBuffer vectors;
+    final IntBuffer links;
+    final LongBuffer ids;
+    final LongBuffer createdAt;
+    final ByteBuffer levels;
+
+    Chunk(int dimension) {
+      vectors = direct((long) CHUNK_NODES * dimension * Float.BYTES).asFloatBuffer();
+      links = direct((long) CHUNK_NODES * (M0 + 1) * Integer.BYTES).asIntBuffer();
+      ids = direct((long) CHUNK_NODES * 2 * Long.BYTES).asLongBuffer();
+      createdAt = direct((long) CHUNK_NODES * Long.BYTES).asLongBuffer();
+      levels = direct(CHUNK_NODES);
+    }
+
+    private static ByteBuffer direct(long bytes) {
+      return ByteBuffer.allocateDirect(Math.toIntExact(bytes)).order(ByteOrder.nativeOrder());
+    }
+  }
+
+  private final int dimension;
+  private final ReentrantLock additions = new ReentrantLock();
+  // Written by additions only. Chunks and upper links are published before the size, the size before
+  // the top, so that a reader reading them in the opposite order sees everything it needs.
+  private volatile Chunk[] chunks = new Chunk[0];
+  private volatile int[][][] upperLinks = new int[0][][];
+  private volatile int size;
+  private volatile Top top = Top.EMPTY;
+  private volatile long latestCreatedAt = Long.MIN_VALUE;
+  // Node numbers plus one, by id: probed linearly, at most half full. Read and written by additions only.
+  private int[] nodesById = new int[16];
+
+  public HnswIndex(int dimension) {
+    if (dimension < 1) {
+      throw new IllegalArgumentException("Dimension must be positive: " + dimension);
+    }
+    this.dimension = dimension;
+  }
+
+  public int dimension() {
+    return dimension;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * The latest creation time of the indexed vectors, or {@link Long#MIN_VALUE} when there are none.
+   */
+  public long latestCreatedAtMillis() {
+    return latestCreatedAt;
+  }
+
+  public UUID id(int node) {
+    checkNode(node);
+    final var chunk = chunk(node);
+    final var offset = (node & CHUNK_MASK) * 2;
+    return new UUID(chunk.ids.get(offset), chunk.ids.get(offset + 1));
+  }
+
+  public float[] vector(int node) {
+    checkNode(node);
+    return read(node);
+  }
+
+  /**
+   * Adds a vector, normalised to unit length. A vector already indexed under the same id is skipped,
+   * so that catching up over a range of documents that overlaps the indexed ones adds each once.
+   *
+   * @return whether the vector was added
+   */
+  public boolean add(UUID id, long createdAtMillis, float[] vector) {
+    final var query = normalised(vector);
+    additions.lock();
+    try {
+      if (indexed(id)) {
+        return false;
+      }
+      final var level = randomLevel();
+      final var node = size;
+      final var top = this.top;
+      if (node == 0) {
+        write(0, id, createdAtMillis, query, level);
+        remember(0);
+        size = 1;
+        this.top = new Top(0, level);
+        return true;
+      }
+
+      var entry = new Scored(top.node(), distance(query, top.node()));
+      for (var l = top.level(); l > level; l--) {
+        entry = greedy(query, entry, l, node);
+      }
+      final var linked = Math.min(level, top.level());
+      final var selected = new ArrayList<List<Scored>>(linked + 1);
+      var entries = List.of(entry);
+      for (var l = linked; l >= 0; l--) {
+        final var found = searchLayer(query, entries, EF_CONSTRUCTION, l, node);
+        selected.addFirst(selectNeighbours(found, M));
+        entries = found;
+      }
+
+      write(node, id, createdAtMillis, query, level);
+      remember(node);
+      for (var l = 0; l <= linked; l++) {
+        for (final var neighbour : selected.get(l)) {
+          append(node, l, neighbour.node());
+        }
+      }
+      size = node + 1;
+      for (var l = 0; l <= linked; l++) {
+        for (final var neighbour : selected.get(l)) {
+          connect(neighbour.node(), node, neighbour.distance(), l);
+        }
+      }
+      if (level > top.level()) {
+        this.top = new Top(node, level);
+      }
+      return true;
+    } finally {
+      additions.unlock();
+    }
+  }
+
+  /**
+   * The {@code k} nearest indexed vectors to {@code vector}, nearest first, found with a candidate
+   * list of {@code ef}, which trades recall for speed like pgvector's {@code hnsw.ef_search}.
+   */
+  public List<Neighbour> search(float[] vector, int k, int ef) {
+    final var query = normalised(vector);
+    final var top = this.top;
+    if (top.node() < 0) {
+      return List.of();
+    }
+    final var size = this.size;
+    var entry = new Scored(top.node(), distance(query, top.node()));
+    for (var l = top.level(); l > 0; l--) {
+      entry = greedy(query, entry, l, size);
+    }
+    final var found = searchLayer(query, List.of(entry), Math.max(ef, k), 0, size);
+    final var neighbours = new ArrayList<Neighbour>(k);
+    final var seen = new HashSet<UUID>();
+    for (final var scored : found) {
+      if (neighbours.size() == k) {
+        break;
+      }
+      final var chunk = chunk(scored.node());
+      final var offset = scored.node() & CHUNK_MASK;
+      final var id = new UUID(chunk.ids.get(offset * 2), chunk.ids.get(offset * 2 + 1));
+      if (seen.add(id)) {
+        neighbours.add(new Neighbour(id, chunk.createdAt.get(offset), scored.distance()));
+      }
+    }
+    return neighbours;
+  }
+
+  /**
+   * Writes the index to {@code path} through memory-mapped regions of a temporary file that then
+   * replaces it. The nodes published when the save starts are copied while searches and additions
+   * go on, leaving out links to nodes added since.
+   */
+  public void save(Path path) throws IOException {
+    final var top = this.top;
+    final var size = top.node() < 0 ? 0 : this.size;
+    final var chunks = this.chunks;
+    final var upperLinks = this.upperLinks;
+    final var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    final var mapped = new ArrayList<MappedByteBuffer>();
+    try (final var channel = FileChannel.open(temporary, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+      final var header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES, mapped);
+      header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(M)
+        .putInt(size).putInt(top.node()).putInt(top.level());
+      var position = (long) HEADER_BYTES;
+      for (var c = 0; c * CHUNK_NODES < size; c++) {
+        final var chunk = chunks[c];
+        final var nodes = Math.min(CHUNK_NODES, size - c * CHUNK_NODES);
+        position = copyOut(channel, position, chunk.ids, nodes * 2, mapped);
+        position = copyOut(channel, position, chunk.createdAt, nodes, mapped);
+        position = copyOut(channel, position, chunk.levels, nodes, mapped);
+        position = copyOut(channel, position, chunk.vectors, nodes * dimension, mapped);
+        final var links = map(channel, FileChannel.MapMode.READ_WRITE, position,
+          (long) nodes * (M0 + 1) * Integer.BYTES, mapped).asIntBuffer();
+        for (var i = 0; i < nodes; i++) {
+          copyLinks(chunk.links, i * (M0 + 1), M0, links, i * (M0 + 1), size);
+        }
+        position += (long) nodes * (M0 + 1) * Integer.BYTES;
+      }
+      final var upper = map(channel, FileChannel.MapMode.READ_WRITE, position,
+        upperLinkBytes(upperLinks, size), mapped).asIntBuffer();
+      var offset = 0;
+      for (var node = 0; node < size; node++) {
+        if (upperLinks[node] != null) {
+          for (final var links : upperLinks[node]) {
+            copyLinks(IntBuffer.wrap(links), 0, M, upper, offset, size);
+            offset += M + 1;
+          }
+        }
+      }
+      for (final var buffer : mapped) {
+        buffer.force();
+      }
+    }
+    Files.move(temporary, path, ATOMIC_MOVE, REPLACE_EXISTING);
+  }
+
+  /**
+   * Reads an index written by {@link #save}, copying the memory-mapped file into the index's own
+   * buffers instead of building the graph again.
+   */
+  public static HnswIndex load(Path path) throws IOException {
+    try (final var channel = FileChannel.open(path, READ)) {
+      final var header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES, null);
+      if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+        throw new IOException("Not an HNSW index snapshot: " + path);
+      }
+      final var index = new HnswIndex(header.getInt());
+      if (header.getInt() != M) {
+        throw new IOException("Snapshot was built with another m: " + path);
+      }
+      final var size = header.getInt();
+      final var top = new Top(header.getInt(), header.getInt());
+      final var upperLinks = new int[Math.max(size, 1)][][];
+      index.chunks = new Chunk[(size + CHUNK_MASK) >> CHUNK_BITS];
+
+      var position = (long) HEADER_BYTES;
+      for (var c = 0; c * CHUNK_NODES < size; c++) {
+        final var chunk = new Chunk(index.dimension);
+        index.chunks[c] = chunk;
+        final var nodes = Math.min(CHUNK_NODES, size - c * CHUNK_NODES);
+        position = copyIn(channel, position, chunk.ids, nodes * 2);
+        position = copyIn(channel, position, chunk.createdAt, nodes);
+        position = copyIn(channel, position, chunk.levels, nodes);
+        position = copyIn(channel, position, chunk.vectors, nodes * index.dimension);
+        position = copyIn(channel, position, chunk.links, nodes * (M0 + 1));
+        for (var i = 0; i < nodes; i++) {
+          index.latestCreatedAt = Math.max(index.latestCreatedAt, chunk.createdAt.get(i));
+        }
+      }
+      final var upper = map(channel, FileChannel.MapMode.READ_ONLY, position, channel.size() - position, null)
+        .asIntBuffer();
+      for (var node = 0; node < size; node++) {
+        final var level = index.chunk(node).levels.get(node & CHUNK_MASK);
+        if (level > 0) {
+          upperLinks[node] = new int[level][M + 1];
+          for (final var links : upperLinks[node]) {
+            upper.get(links);
+          }
+        }
+      }
+      for (var node = 0; node < size; node++) {
+        index.remember(node);
+      }
+      index.upperLinks = upperLinks;
+      index.size = size;
+      index.top = top;
+      return index;
+    }
+  }
+
+  /**
+   * Searches a layer among the first {@code nodes} nodes, those published when the search started.
+   */
+  private List<Scored> searchLayer(float[] query, List<Scored> entries, int ef, int level, int nodes) {
+    final var visited = VISITED.get().reset(nodes);
+    final var candidates = new PriorityQueue<Scored>(comparingDouble(Scored::distance));
+    final var results = new PriorityQueue<Scored>(comparingDouble(Scored::distance).reversed());
+    for (final var entry : entries) {
+      if (visited.add(entry.node())) {
+        candidates.add(entry);
+        results.add(entry);
+        if (results.size() > ef) {
+          results.poll();
+        }
+      }
+    }
+    while (!candidates.isEmpty()) {
+      final var candidate = candidates.poll();
+      if (results.size() >= ef && candidate.distance() > results.peek().distance()) {
+        break;
+      }
+      final var count = linkCount(candidate.node(), level);
+      for (var i = 0; i < count; i++) {
+        final var neighbour = link(candidate.node(), level, i);
+        if (neighbour >= nodes || !visited.add(neighbour)) {
+          continue;
+        }
+        final var distance = distance(query, neighbour);
+        if (results.size() < ef || distance < results.peek().distance()) {
+          final var scored = new Scored(neighbour, distance);
+          candidates.add(scored);
+          results.add(scored);
+          if (results.size() > ef) {
+            results.poll();
+          }
+        }
+      }
+    }
+    final var sorted = new ArrayList<>(results);
+    sorted.sort(comparingDouble(Scored::distance));
+    return sorted;
+  }
+
+  private Scored greedy(float[] query, Scored entry, int level, int nodes) {
+    var closest = entry;
+    var changed = true;
+    while (changed) {
+      changed = false;
+      final var node = closest.node();
+      final var count = linkCount(node, level);
+      for (var i = 0; i < count; i++) {
+        final var neighbour = link(node, level, i);
+        if (neighbour >= nodes) {
+          continue;
+        }
+        final var distance = distance(query, neighbour);
+        if (distance < closest.distance()) {
+          closest = new Scored(neighbour, distance);
+          changed = true;
+        }
+      }
+    }
+    return closest;
+  }
+
+  /**
+   * Keeps the candidates, nearest first, that are closer to the query than to any candidate kept
+   * before them, so that the links point in different directions, then fills up with the rest.
+   */
+  private List<Scored> selectNeighbours(List<Scored> candidates, int m) {
+    final var selected = new ArrayList<Scored>(m);
+    final var pruned = new ArrayList<Scored>();
+    for (final var candidate : candidates) {
+      if (selected.size() == m) {
+        break;
+      }
+      final var vector = read(candidate.node());
+      var diverse = true;
+      for (final var kept : selected) {
+        if (distance(vector, kept.node()) < candidate.distance()) {
+          diverse = false;
+          break;
+        }
+      }
+      (diverse ? selected : pruned).add(candidate);
+    }
+    for (var i = 0; i < pruned.size() && selected.size() < m; i++) {
+      selected.add(pruned.get(i));
+    }
+    return selected;
+  }
+
+  private void connect(int node, int neighbour, float distance, int level) {
+    final var max = level == 0 ? M0 : M;
+    final var count = linkCount(node, level);
+    if (count < max) {
+      append(node, level, neighbour);
+      return;
+    }
+    final var vector = read(node);
+    final var candidates = new ArrayList<Scored>(count + 1);
+    for (var i = 0; i < count; i++) {
+      final var linked = link(node, level, i);
+      candidates.add(new Scored(linked, distance(vector, linked)));
+    }
+    candidates.add(new Scored(neighbour, distance));
+    candidates.sort(comparingDouble(Scored::distance));
+    // Overwritten in place: a full list stays full, so a concurrent search never sees it shorter.
+    final var kept = selectNeighbours(candidates, max);
+    for (var i = 0; i < kept.size(); i++) {
+      setLink(node, level, i, kept.get(i).node());
+    }
+  }
+
+  private boolean indexed(UUID id) {
+    final var mask = nodesById.length - 1;
+    for (var slot = slot(id.getMostSignificantBits(), id.getLeastSignificantBits(), mask); nodesById[slot] != 0;
+         slot = (slot + 1) & mask) {
+      final var node = nodesById[slot] - 1;
+      final var chunk = chunk(node);
+      final var offset = (node & CHUNK_MASK) * 2;
+      if (chunk.ids.get(offset) == id.getMostSignificantBits()
+        && chunk.ids.get(offset + 1) == id.getLeastSignificantBits()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Enters a written node into {@link #nodesById}, doubling the table when it would be more than half full.
+   */
+  private void remember(int node) {
+    if ((node + 1) * 2 > nodesById.length) {
+      final var grown = new int[nodesById.length * 2];
+      for (final var entry : nodesById) {
+        if (entry != 0) {
+          insert(grown, entry - 1);
+        }
+      }
+      nodesById = grown;
+    }
+    insert(nodesById, node);
+  }
+
+  private void insert(int[] table, int node) {
+    final var chunk = chunk(node);
+    final var offset = (node & CHUNK_MASK) * 2;
+    final var mask = table.length - 1;
+    var slot = slot(chunk.ids.get(offset), chunk.ids.get(offset + 1), mask);
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = node + 1;
+  }
+
+  private static int slot(long mostSignificantBits, long leastSignificantBits, int mask) {
+    final var hash = (mostSignificantBits * 0x9E3779B97F4A7C15L + leastSignificantBits) * 0x9E3779B97F4A7C15L;
+    return (int) (hash >>> 32) & mask;
+  }
+
+  private void write(int node, UUID id, long createdAtMillis, float[] vector, int level) {
+    if (node >> CHUNK_BITS == chunks.length) {
+      final var grown = Arrays.copyOf(chunks, chunks.length + 1);
+      grown[chunks.length] = new Chunk(dimension);
+      chunks = grown;
+    }
+    if (node == upperLinks.length) {
+      upperLinks = Arrays.copyOf(upperLinks, Math.max(16, node * 2));
+    }
+    final var chunk = chunk(node);
+    final var offset = node & CHUNK_MASK;
+    chunk.vectors.put(offset * dimension, vector);
+    chunk.ids.put(offset * 2, id.getMostSignificantBits());
+    chunk.ids.put(offset * 2 + 1, id.getLeastSignificantBits());
+    chunk.createdAt.put(offset, createdAtMillis);
+    chunk.levels.put(offset, (byte) level);
+    chunk.links.put(offset * (M0 + 1), 0);
+    upperLinks[node] = level == 0 ? null : new int[level][M + 1];
+    latestCreatedAt = Math.max(latestCreatedAt, createdAtMillis);
+  }
+
+  private int linkCount(int node, int level) {
+    if (level == 0) {
+      return chunk(node).links.get((node & CHUNK_MASK) * (M0 + 1));
+    }
+    return upperLinks[node][level - 1][0];
+  }
+
+  private int link(int node, int level, int i) {
+    if (level == 0) {
+      return chunk(node).links.get((node & CHUNK_MASK) * (M0 + 1) + 1 + i);
+    }
+    return upperLinks[node][level - 1][1 + i];
+  }
+
+  private void setLink(int node, int level, int i, int neighbour) {
+    if (level == 0) {
+      chunk(node).links.put((node & CHUNK_MASK) * (M0 + 1) + 1 + i, neighbour);
+    } else {
+      upperLinks[node][level - 1][1 + i] = neighbour;
+    }
+  }
+
+  private void setLinkCount(int node, int level, int count) {
+    if (level == 0) {
+      chunk(node).links.put((node & CHUNK_MASK) * (M0 + 1), count);
+    } else {
+      upperLinks[node][level - 1][0] = count;
+    }
+  }
+
+  private void append(int node, int level, int neighbour) {
+    final var count = linkCount(node, level);
+    setLink(node, level, count, neighbour);
+    setLinkCount(node, level, count + 1);
+  }
+
+  private float distance(float[] query, int node) {
+    final var vectors = chunk(node).vectors;
+    final var base = (node & CHUNK_MASK) * dimension;
+    var dot = 0f;
+    for (var i = 0; i < dimension; i++) {
+      dot += query[i] * vectors.get(base + i);
+    }
+    return 1 - dot;
+  }
+
+  private float[] read(int node) {
+    final var vector = new float[dimension];
+    chunk(node).vectors.get((node & CHUNK_MASK) * dimension, vector);
+    return vector;
+  }
+
+  private Chunk chunk(int node) {
+    return chunks[node >>> CHUNK_BITS];
+  }
+
+  private void checkNode(int node) {
+    final var size = this.size;
+    if (node < 0 || node >= size) {
+      throw new IndexOutOfBoundsException("Node %d of %d".formatted(node, size));
+    }
+  }
+
+  private static long upperLinkBytes(int[][][] upperLinks, int size) {
+    var ints = 0L;
+    for (var node = 0; node < size; node++) {
+      if (upperLinks[node] != null) {
+        ints += (long) upperLinks[node].length * (M + 1);
+      }
+    }
+    return ints * Integer.BYTES;
+  }
+
+  private float[] normalised(float[] vector) {
+    if (vector.length != dimension) {
+      throw new IllegalArgumentException("Expected %d dimensions, got %d".formatted(dimension, vector.length));
+    }
+    var norm = 0.0;
+    for (final var component : vector) {
+      norm += component * component;
+    }
+    final var scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+    final var normalised = new float[dimension];
+    for (var i = 0; i < dimension; i++) {
+      normalised[i] = vector[i] * scale;
+    }
+    return normalised;
+  }
+
+  private static int randomLevel() {
+    final var uniform = 1 - ThreadLocalRandom.current().nextDouble();
+    return (int) Math.min(MAX_LEVEL, Math.floor(-Math.log(uniform) * LEVEL_MULTIPLIER));
+  }
+
+  private static ByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long bytes,
+                                List<MappedByteBuffer> mapped) throws IOException {
+    final var buffer = channel.map(mode, position, bytes);
+    if (mapped != null) {
+      mapped.add(buffer);
+    }
+    return buffer.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Copies the neighbour list at {@code from} without the neighbours at or beyond {@code nodes}. The
+   * list may be changing, so its length is bounded by {@code max} as well.
+   */
+  private static void copyLinks(IntBuffer source, int from, int max, IntBuffer target, int to, int nodes) {
+    final var count = Math.min(source.get(from), max);
+    var kept = 0;
+    for (var i = 0; i < count; i++) {
+      final var neighbour = source.get(from + 1 + i);
+      if (neighbour < nodes) {
+        target.put(to + 1 + kept++, neighbour);
+      }
+    }
+    target.put(to, kept);
+  }
+
+  private static long copyOut(FileChannel channel, long position, FloatBuffer source, int length,
+                              List<MappedByteBuffer> mapped) throws IOException {
+    map(channel, FileChannel.MapMode.READ_WRITE, position, (long) length * Float.BYTES, mapped)
+      .asFloatBuffer().put(0, source, 0, length);
+    return position + (long) length * Float.BYTES;
+  }
+
+  private static long copyOut(FileChannel channel, long position, LongBuffer source, int length,
+                              List<MappedByteBuffer> mapped) throws IOException {
+    map(channel, FileChannel.MapMode.READ_WRITE, position, (long) length * Long.BYTES, mapped)
+      .asLongBuffer().put(0, source, 0, length);
+    return position + (long) length * Long.BYTES;
+  }
+
+  private static long copyOut(FileChannel channel, long position, ByteBuffer source, int length,
+                              List<MappedByteBuffer> mapped) throws IOException {
+    map(channel, FileChannel.MapMode.READ_WRITE, position, length, mapped).put(0, source, 0, length);
+    return position + length;
+  }
+
+  private static long copyIn(FileChannel channel, long position, FloatBuffer target, int length) throws IOException {
+    target.put(0, map(channel, FileChannel.MapMode.READ_ONLY, position, (long) length * Float.BYTES, null)
+      .asFloatBuffer(), 0, length);
+    return position + (long) length * Float.BYTES;
+  }
+
+  private static long copyIn(FileChannel channel, long position, IntBuffer target, int length) throws IOException {
+    target.put(0, map(channel, FileChannel.MapMode.READ_ONLY, position, (long) length * Integer.BYTES, null)
+      .asIntBuffer(), 0, length);
+    return position + (long) length * Integer.BYTES;
+  }
+
+  private static long copyIn(FileChannel channel, long position, LongBuffer target, int length) throws IOException {
+    target.put(0, map(channel, FileChannel.MapMode.READ_ONLY, position, (long) length * Long.BYTES, null)
+      .asLongBuffer(), 0, length);
+    return position + (long) length * Long.BYTES;
+  }
+
+  private static long copyIn(FileChannel channel, long position, ByteBuffer target, int length) throws IOException {
+    target.put(0, map(channel, FileChannel.MapMode.READ_ONLY, position, length, null), 0, length);
+    return position + length;
+  }
+
+  /**
+   * Marks the nodes one search has visited. Reset by advancing the mark instead of clearing.
+   */
+  private static final class Visited {
+
+    private int[] marks = new int[0];
+    private int mark;
+
+    Visited reset(int nodes) {
+      if (marks.length < nodes) {
+        marks = new int[Math.max(nodes, marks.length * 2)];
+        mark = 0;
+      }
+      if (++mark == 0) {
+        Arrays.fill(marks, 0);
+        mark = 1;
+      }
+      return this;
+    }
+
+    boolean add(int node) {
+      if (marks[node] == mark) {
+        return false;
+      }
+      marks[node] = mark;
+      return true;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package ssonin.nvstech.vector;
+
+final class ScalarCosineKernel implements CosineKernel {
+
+  @Override
+  public float dot(float[] block, int offset, float[] query, int length) {
+    var sum = 0f;
+    for (var i = 0; i < length; i++) {
+      sum += block[offset + i] * query[i];
+    }
+    return sum;
+  }
+
+  @Override
+  public String name() {
+    return "scalar";
+  }
+}
@@ -0,0 +1,153 @@
+package ssonin.nvstech.vector;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The document embeddings of one client, normalised to unit length and laid out back to back in a
+ * single {@code float[]}, for exact nearest-neighbour search by scanning all of them. An oversized
+ * block holds no vectors and stands for a client with too many documents to scan.
+ */
+public final class VectorBlock {
+
+  private static final Logger LOG = getLogger(VectorBlock.class);
+  private static final CosineKernel KERNEL = CosineKernel.preferred();
+  private static final VectorBlock OVERSIZED = new VectorBlock(0, new UUID[0], new long[0], new float[0]);
+
+  static {
+    LOG.info("Scanning client vectors with the {} cosine kernel", KERNEL.name());
+  }
+
+  private final int dimension;
+  private final UUID[] ids;
+  private final long[] createdAtMillis;
+  private final float[] vectors;
+
+  private VectorBlock(int dimension, UUID[] ids, long[] createdAtMillis, float[] vectors) {
+    this.dimension = dimension;
+    this.ids = ids;
+    this.createdAtMillis = createdAtMillis;
+    this.vectors = vectors;
+  }
+
+  public static VectorBlock oversized() {
+    return OVERSIZED;
+  }
+
+  public static Builder builder(int dimension, int expectedSize) {
+    return new Builder(dimension, expectedSize);
+  }
+
+  public boolean isOversized() {
+    return this == OVERSIZED;
+  }
+
+  public int size() {
+    return ids.length;
+  }
+
+  /**
+   * The {@code k} documents created in {@code [fromMillis, toMillis)} with the nearest embeddings,
+   * nearest first.
+   */
+  public List<HnswIndex.Neighbour> nearest(float[] query, int k, long fromMillis, long toMillis) {
+    return nearest(KERNEL, query, k, fromMillis, toMillis);
+  }
+
+  List<HnswIndex.Neighbour> nearest(CosineKernel kernel, float[] query, int k, long fromMillis, long toMillis) {
+    if (size() == 0 || k < 1) {
+      return List.of();
+    }
+    final var normalisedQuery = normalised(query, dimension);
+    final var similarities = new float[size()];
+    // Smallest similarity on top, so it is the one dropped once k are kept
+    final var nearest = new PriorityQueue<Integer>(k + 1, (a, b) -> Float.compare(similarities[a], similarities[b]));
+    for (var i = 0; i < ids.length; i++) {
+      if (createdAtMillis[i] < fromMillis || createdAtMillis[i] >= toMillis) {
+        continue;
+      }
+      similarities[i] = kernel.dot(vectors, i * dimension, normalisedQuery, dimension);
+      if (nearest.size() < k) {
+        nearest.add(i);
+      } else if (similarities[i] > similarities[nearest.peek()]) {
+        nearest.poll();
+        nearest.add(i);
+      }
+    }
+    final var result = new ArrayList<HnswIndex.Neighbour>(nearest.size());
+    while (!nearest.isEmpty()) {
+      final int i = nearest.poll();
+      result.add(new HnswIndex.Neighbour(ids[i], createdAtMillis[i], 1 - similarities[i]));
+    }
+    return result.reversed();
+  }
+
+  private static float[] normalised(float[] vector, int dimension) {
+    if (vector.length != dimension) {
+      throw new IllegalArgumentException("Expected %d dimensions, got %d".formatted(dimension, vector.length));
+    }
+    var norm = 0.0;
+    for (final var component : vector) {
+      norm += component * component;
+    }
+    final var scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+    final var normalised = new float[dimension];
+    for (var i = 0; i < dimension; i++) {
+      normalised[i] = vector[i] * scale;
+    }
+    return normalised;
+  }
+
+  public static final class Builder {
+
+    private final int dimension;
+    private UUID[] ids;
+    private long[] createdAtMillis;
+    private float[] vectors;
+    private int size;
+
+    private Builder(int dimension, int expectedSize) {
+      this.dimension = dimension;
+      final var capacity = Math.max(expectedSize, 1);
+      ids = new UUID[capacity];
+      createdAtMillis = new long[capacity];
+      vectors = new float[capacity * dimension];
+    }
+
+    /**
+     * Adds a document embedding, normalised to unit length. Embeddings of another dimension are
+     * skipped.
+     */
+    public Builder add(UUID id, long createdAtMillis, float[] vector) {
+      if (vector.length != dimension) {
+        return this;
+      }
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+        this.createdAtMillis = Arrays.copyOf(this.createdAtMillis, size * 2);
+        vectors = Arrays.copyOf(vectors, size * 2 * dimension);
+      }
+      System.arraycopy(normalised(vector, dimension), 0, vectors, size * dimension, dimension);
+      ids[size] = id;
+      this.createdAtMillis[size] = createdAtMillis;
+      size++;
+      return this;
+    }
+
+    public VectorBlock build() {
+      if (size < ids.length) {
+        ids = Arrays.copyOf(ids, size);
+        createdAtMillis = Arrays.copyOf(createdAtMillis, size);
+        vectors = Arrays.copyOf(vectors, size * dimension);
+      }
+      return new VectorBlock(dimension, ids, createdAtMillis, vectors);
+    }
+  }
+}
@@ -0,0 +1,256 @@
+package ssonin.nvstech.vector;
+
+import io.micrometer.core.instrument.Gauge;
+import io.vertx.pgclient.PgConnectOptions;
+import org.slf4j.Logger;
+import ssonin.nvstech.jdbc.CatchUp;
+import ssonin.nvstech.jdbc.Jdbc;
+import ssonin.nvstech.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.Comparator.comparingDouble;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * An in-process copy of the document embeddings of every shard, which serves the vector half of
+ * search without a round trip to PostgreSQL. PostgreSQL stays the source of truth: the copy is
+ * loaded from it on startup, from a snapshot plus the documents created since when there is one,
+ * follows the documents this process creates, and polls for the ones other processes create.
+ * Documents are never deleted, so the copy only ever grows.
+ */
+public final class VectorReplica {
+
+  public static final int DEFAULT_DIMENSION = 384;
+  public static final int DEFAULT_EF_SEARCH = 40;
+
+  private static final Logger LOG = getLogger(VectorReplica.class);
+  private static final VectorReplica SHARED = new VectorReplica();
+  private static final String CATCH_UP_SQL = """
+    SELECT id, created_at, embedding::text AS embedding
+    FROM documents
+    WHERE embedding IS NOT NULL AND created_at >= ?
+    """;
+
+  private volatile CatchUp catchUp;
+  private volatile HnswIndex index;
+  private volatile int efSearch = DEFAULT_EF_SEARCH;
+  private volatile double recall = Double.NaN;
+
+  private VectorReplica() {
+    Gauge.builder("nvstech.vector.replica.size", this, replica -> replica.index == null ? 0 : replica.index.size())
+      .description("Document embeddings held by the in-process vector replica")
+      .register(Metrics.registry());
+    Gauge.builder("nvstech.vector.replica.recall", this, replica -> replica.recall)
+      .description("Share of the exact nearest documents the replica also returned in the last recall check")
+      .register(Metrics.registry());
+  }
+
+  /**
+   * The replica of this JVM, shared by every verticle instance.
+   */
+  public static VectorReplica shared() {
+    return SHARED;
+  }
+
+  /**
+   * Whether the replica has been loaded and can serve searches.
+   */
+  public boolean ready() {
+    return index != null;
+  }
+
+  /**
+   * Loads the replica from {@code snapshot}, if it exists, and every document of {@code databases}
+   * created since. Blocks until done.
+   */
+  public void load(List<PgConnectOptions> databases, Path snapshot, int dimension, int efSearch)
+    throws IOException, SQLException {
+    this.efSearch = efSearch;
+    final var startedAt = System.nanoTime();
+    final HnswIndex loaded;
+    if (snapshot != null && Files.exists(snapshot)) {
+      loaded = HnswIndex.load(snapshot);
+      LOG.info("Loaded {} document embeddings from {}", loaded.size(), snapshot);
+    } else {
+      loaded = new HnswIndex(dimension);
+    }
+    // Without a snapshot, everything is read. With one, every database is first read from the
+    // snapshot's latest creation time, which its own catch-up watermarks were not saved with.
+    final var catchUp = new CatchUp(CATCH_UP_SQL, loaded.latestCreatedAtMillis());
+    final var added = catchUp(catchUp, loaded, databases);
+    this.catchUp = catchUp;
+    index = loaded;
+    LOG.info("Vector replica ready with {} document embeddings, {} added from the database, in {}ms",
+      loaded.size(), added, (System.nanoTime() - startedAt) / 1_000_000);
+  }
+
+  /**
+   * Adds the documents other processes created since the previous refresh. Refreshes must not
+   * overlap.
+   */
+  public void refresh(List<PgConnectOptions> databases) throws SQLException {
+    final var current = index;
+    if (current != null) {
+      final var added = catchUp(catchUp, current, databases);
+      if (added > 0) {
+        LOG.debug("Added {} document embeddings to the vector replica", added);
+      }
+    }
+  }
+
+  public void add(UUID documentId, OffsetDateTime createdAt, float[] embedding) {
+    final var current = index;
+    if (current != null) {
+      current.add(documentId, createdAt.toInstant().toEpochMilli(), embedding);
+    }
+  }
+
+  /**
+   * The {@code k} documents with the nearest embeddings, nearest first.
+   */
+  public List<HnswIndex.Neighbour> search(float[] embedding, int k) {
+    final var current = index;
+    return current == null ? List.of() : current.search(embedding, k, efSearch);
+  }
+
+  public void save(Path snapshot) throws IOException {
+    final var current = index;
+    if (current != null) {
+      final var startedAt = System.nanoTime();
+      current.save(snapshot);
+      LOG.info("Saved {} document embeddings to {} in {}ms",
+        current.size(), snapshot, (System.nanoTime() - startedAt) / 1_000_000);
+    }
+  }
+
+  /**
+   * Searches the replica and, exactly, every database for the embeddings of {@code queries} random
+   * indexed documents and returns the share of the exact {@code k} nearest documents the replica also
+   * returned. Also published as the {@code nvstech.vector.replica.recall} gauge.
+   */
+  public double checkRecall(List<PgConnectOptions> databases, int queries, int k) throws SQLException {
+    final var current = index;
+    if (current == null || current.size() == 0) {
+      return Double.NaN;
+    }
+    final var connections = new ArrayList<Connection>(databases.size());
+    try {
+      for (final var db : databases) {
+        connections.add(exactScanConnection(db));
+      }
+      var expected = 0;
+      var found = 0;
+      for (var q = 0; q < queries; q++) {
+        final var embedding = current.vector(ThreadLocalRandom.current().nextInt(current.size()));
+        final var replicaIds = new HashSet<UUID>();
+        current.search(embedding, k, efSearch).forEach(neighbour -> replicaIds.add(neighbour.id()));
+        for (final var id : exactNearest(connections, embedding, k)) {
+          expected++;
+          if (replicaIds.contains(id)) {
+            found++;
+          }
+        }
+      }
+      recall = expected == 0 ? Double.NaN : (double) found / expected;
+    } finally {
+      for (final var connection : connections) {
+        try (connection) {
+          connection.rollback();
+        }
+      }
+    }
+    LOG.info("Vector replica recall@{} against an exact scan over {} queries: {}", k, queries, recall);
+    return recall;
+  }
+
+  /**
+   * A connection in a transaction that cannot use indexes, so that nearest neighbour queries scan
+   * every embedding instead of asking pgvector's HNSW indexes, which are approximate themselves.
+   */
+  private static Connection exactScanConnection(PgConnectOptions db) throws SQLException {
+    final var connection = Jdbc.connect(db);
+    try (final var statement = connection.createStatement()) {
+      connection.setAutoCommit(false);
+      statement.execute("SET LOCAL enable_indexscan = off");
+      statement.execute("SET LOCAL enable_bitmapscan = off");
+      return connection;
+    } catch (SQLException e) {
+      connection.close();
+      throw e;
+    }
+  }
+
+  private static List<UUID> exactNearest(List<Connection> connections, float[] embedding, int k)
+    throws SQLException {
+    final var nearest = new ArrayList<Map.Entry<UUID, Double>>();
+    for (final var connection : connections) {
+      try (final var statement = connection.prepareStatement("""
+             SELECT id, embedding <=> ?::vector AS distance
+             FROM documents
+             WHERE embedding IS NOT NULL
+             ORDER BY embedding <=> ?::vector
+             LIMIT ?
+             """)) {
+        final var literal = vectorLiteral(embedding);
+        statement.setString(1, literal);
+        statement.setString(2, literal);
+        statement.setInt(3, k);
+        try (final var rows = statement.executeQuery()) {
+          while (rows.next()) {
+            nearest.add(Map.entry(rows.getObject("id", UUID.class), rows.getDouble("distance")));
+          }
+        }
+      }
+    }
+    return nearest.stream()
+      .sorted(comparingDouble(Map.Entry::getValue))
+      .limit(k)
+      .map(Map.Entry::getKey)
+      .toList();
+  }
+
+  private static int catchUp(CatchUp catchUp, HnswIndex index, List<PgConnectOptions> databases)
+    throws SQLException {
+    return catchUp.read(databases, row -> {
+      final var embedding = parseVector(row.getString("embedding"));
+      return embedding.length == index.dimension()
+        && index.add(row.getObject("id", UUID.class), row.getTimestamp("created_at").getTime(), embedding);
+    });
+  }
+
+  static float[] parseVector(String text) {
+    final var body = text.substring(1, text.length() - 1);
+    if (body.isEmpty()) {
+      return new float[0];
+    }
+    final var components = body.split(",");
+    final var vector = new float[components.length];
+    for (var i = 0; i < components.length; i++) {
+      vector[i] = Float.parseFloat(components[i]);
+    }
+    return vector;
+  }
+
+  private static String vectorLiteral(float[] vector) {
+    final var literal = new StringBuilder(vector.length * 12).append('[');
+    for (var i = 0; i < vector.length; i++) {
+      if (i > 0) {
+        literal.append(',');
+      }
+      literal.append(vector[i]);
+    }
+    return literal.append(']').toString();
+  }
+}
@@ -0,0 +1,2 @@
+ALTER TABLE documents
+  ADD COLUMN content_sha256 text;
@@ -0,0 +1,103 @@
+-- Range-partitions documents by created_at, one partition per calendar month (UTC), so that searches
+-- limited to a date range only touch the partitions and per-partition indexes that cover it.
+--
+-- Existing rows are not copied: the current table is attached as one partition covering everything
+-- created before this migration, and its FTS and HNSW indexes are attached to the new partitioned
+-- indexes instead of being rebuilt. Only its primary key is rebuilt, since the key of a partitioned
+-- table has to include created_at. On a database without documents the old table is dropped.
+
+ALTER TABLE documents RENAME TO documents_legacy;
+ALTER INDEX documents_client_id_idx RENAME TO documents_legacy_client_id_idx;
+ALTER INDEX documents_search_idx RENAME TO documents_legacy_search_idx;
+ALTER INDEX IF EXISTS documents_embedding_idx RENAME TO documents_legacy_embedding_idx;
+ALTER TABLE documents_legacy DROP CONSTRAINT documents_pkey;
+ALTER TABLE documents_legacy ADD CONSTRAINT documents_legacy_pkey PRIMARY KEY (id, created_at);
+
+CREATE TABLE documents
+(
+  LIKE documents_legacy INCLUDING DEFAULTS INCLUDING GENERATED
+) PARTITION BY RANGE (created_at);
+
+ALTER TABLE documents
+  ADD CONSTRAINT documents_pkey PRIMARY KEY (id, created_at);
+
+-- Catches rows no monthly partition covers yet. create_documents_partitions moves them out.
+CREATE TABLE documents_default PARTITION OF documents DEFAULT;
+
+-- Creates the monthly partitions covering [since, until) that do not exist yet, moving any rows the
+-- default partition holds for those months into them. Months covered by the attached pre-partitioning
+-- table, or created concurrently by another caller, are skipped. Returns the number of partitions created.
+CREATE FUNCTION create_documents_partitions(since timestamptz, until timestamptz)
+  RETURNS integer
+  LANGUAGE plpgsql
+AS
+$$
+DECLARE
+  month_start    timestamp := date_trunc('month', since AT TIME ZONE 'UTC');
+  lower_bound    timestamptz;
+  upper_bound    timestamptz;
+  partition_name text;
+  created        integer   := 0;
+BEGIN
+  WHILE month_start AT TIME ZONE 'UTC' < until
+    LOOP
+      lower_bound := month_start AT TIME ZONE 'UTC';
+      upper_bound := (month_start + INTERVAL '1 month') AT TIME ZONE 'UTC';
+      partition_name := 'documents_' || to_char(month_start, 'YYYY_MM');
+      month_start := month_start + INTERVAL '1 month';
+      CONTINUE WHEN to_regclass(partition_name) IS NOT NULL;
+      BEGIN
+        EXECUTE format('CREATE TABLE %I (LIKE documents INCLUDING DEFAULTS INCLUDING GENERATED)', partition_name);
+        EXECUTE format(
+          'WITH moved AS (
+             DELETE FROM documents_default
+             WHERE created_at >= %1$L AND created_at < %2$L
+             RETURNING id, created_at, updated_at, state, client_id, title, content, embedding, content_sha256
+           )
+           INSERT INTO %3$I (id, created_at, updated_at, state, client_id, title, content, embedding, content_sha256)
+           SELECT * FROM moved',
+          lower_bound, upper_bound, partition_name);
+        EXECUTE format('ALTER TABLE documents ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, lower_bound, upper_bound);
+        created := created + 1;
+      EXCEPTION
+        WHEN invalid_object_definition THEN
+          RAISE NOTICE 'Skipping %, its range overlaps an existing partition', partition_name;
+        WHEN duplicate_table THEN
+          RAISE NOTICE 'Skipping %, it has just been created', partition_name;
+      END;
+    END LOOP;
+  RETURN created;
+END
+$$;
+
+DO
+$$
+  DECLARE
+    cutover timestamptz;
+  BEGIN
+    IF EXISTS (SELECT 1 FROM documents_legacy) THEN
+      cutover := greatest(now(), (SELECT max(created_at) + INTERVAL '1 microsecond' FROM documents_legacy));
+      EXECUTE format('ALTER TABLE documents ATTACH PARTITION documents_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+                     cutover);
+      EXECUTE format('CREATE TABLE %I PARTITION OF documents FOR VALUES FROM (%L) TO (%L)',
+                     'documents_' || to_char(cutover AT TIME ZONE 'UTC', 'YYYY_MM'),
+                     cutover,
+                     (date_trunc('month', cutover AT TIME ZONE 'UTC') + INTERVAL '1 month') AT TIME ZONE 'UTC');
+    ELSE
+      DROP TABLE documents_legacy;
+    END IF;
+  END
+$$;
+
+SELECT create_documents_partitions(now(), now() + INTERVAL '3 months');
+
+-- Created on every partition; the pre-partitioning table's matching indexes are attached, not rebuilt.
+CREATE INDEX documents_client_id_idx
+  ON documents (client_id);
+
+CREATE INDEX documents_search_idx
+  ON documents USING GIN (search);
+
+CREATE INDEX documents_embedding_idx
+  ON documents USING hnsw (embedding vector_cosine_ops);
@@ -0,0 +1,78 @@
+-- Moves document content out of documents into document_contents, compressed with lz4, so that the
+-- pages searches read hold ids, metadata, the tsvector and the embedding only. Content is read by id
+-- for the documents a caller asks it for.
+--
+-- search can no longer be generated from a column of another table. It becomes a plain column that
+-- writers fill with document_search(title, content); existing values are kept.
+--
+-- Dropping the column does not shrink the existing rows: their content stays on disk until they are
+-- rewritten, e.g. by VACUUM FULL or pg_repack on each partition.
+
+CREATE TABLE document_contents
+(
+  document_id uuid PRIMARY KEY,
+  content     text COMPRESSION lz4 NOT NULL
+);
+
+INSERT INTO document_contents (document_id, content)
+SELECT id, content
+FROM documents;
+
+CREATE FUNCTION document_search(title text, content text)
+  RETURNS tsvector
+  LANGUAGE sql
+  IMMUTABLE
+  PARALLEL SAFE
+RETURN setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+       to_tsvector('english', coalesce(content, ''));
+
+ALTER TABLE documents
+  ALTER COLUMN search DROP EXPRESSION;
+
+ALTER TABLE documents
+  DROP COLUMN content;
+
+-- Same as in V004, with the columns documents has now.
+CREATE OR REPLACE FUNCTION create_documents_partitions(since timestamptz, until timestamptz)
+  RETURNS integer
+  LANGUAGE plpgsql
+AS
+$$
+DECLARE
+  month_start    timestamp := date_trunc('month', since AT TIME ZONE 'UTC');
+  lower_bound    timestamptz;
+  upper_bound    timestamptz;
+  partition_name text;
+  created        integer   := 0;
+BEGIN
+  WHILE month_start AT TIME ZONE 'UTC' < until
+    LOOP
+      lower_bound := month_start AT TIME ZONE 'UTC';
+      upper_bound := (month_start + INTERVAL '1 month') AT TIME ZONE 'UTC';
+      partition_name := 'documents_' || to_char(month_start, 'YYYY_MM');
+      month_start := month_start + INTERVAL '1 month';
+      CONTINUE WHEN to_regclass(partition_name) IS NOT NULL;
+      BEGIN
+        EXECUTE format('CREATE TABLE %I (LIKE documents INCLUDING DEFAULTS)', partition_name);
+        EXECUTE format(
+          'WITH moved AS (
+             DELETE FROM documents_default
+             WHERE created_at >= %1$L AND created_at < %2$L
+             RETURNING id, created_at, updated_at, state, client_id, title, embedding, content_sha256, search
+           )
+           INSERT INTO %3$I (id, created_at, updated_at, state, client_id, title, embedding, content_sha256, search)
+           SELECT * FROM moved',
+          lower_bound, upper_bound, partition_name);
+        EXECUTE format('ALTER TABLE documents ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, lower_bound, upper_bound);
+        created := created + 1;
+      EXCEPTION
+        WHEN invalid_object_definition THEN
+          RAISE NOTICE 'Skipping %, its range overlaps an existing partition', partition_name;
+        WHEN duplicate_table THEN
+          RAISE NOTICE 'Skipping %, it has just been created', partition_name;
+      END;
+    END LOOP;
+  RETURN created;
+END
+$$;
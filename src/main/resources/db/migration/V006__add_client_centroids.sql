@@ -0,0 +1,39 @@
+-- One embedding per client summarising its documents, for routing a semantic search to the clients
+-- whose documents are most likely to match before searching those documents only.
+--
+-- The stored vector is the sum of the client's document embeddings rather than their mean. Both
+-- point the same way, so they rank clients alike by cosine distance, but a sum is updated with a
+-- single addition per new document, while pgvector has no operator to rescale a mean.
+
+CREATE TABLE client_centroids
+(
+  client_id  uuid PRIMARY KEY,
+  embedding  vector(384) NOT NULL,
+  documents  integer     NOT NULL,
+  updated_at timestamptz NOT NULL DEFAULT now()
+);
+
+-- Recomputes every centroid from documents, e.g. after bulk-loading documents without them.
+CREATE FUNCTION rebuild_client_centroids()
+  RETURNS integer
+  LANGUAGE sql
+AS
+$$
+WITH rebuilt AS (
+  INSERT INTO client_centroids (client_id, embedding, documents)
+    SELECT client_id, sum(embedding), count(*)
+    FROM documents
+    WHERE embedding IS NOT NULL
+    GROUP BY client_id
+    ON CONFLICT (client_id) DO UPDATE
+      SET embedding = EXCLUDED.embedding, documents = EXCLUDED.documents, updated_at = now()
+    RETURNING 1
+)
+SELECT count(*)::integer
+FROM rebuilt;
+$$;
+
+SELECT rebuild_client_centroids();
+
+CREATE INDEX client_centroids_embedding_idx
+  ON client_centroids USING hnsw (embedding vector_cosine_ops);
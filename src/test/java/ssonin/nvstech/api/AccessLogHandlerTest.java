@@ -0,0 +1,102 @@
+package ssonin.nvstech.api;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.Router;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccessLogHandlerTest {
+
+  private final LinkedBlockingQueue<AccessLog.Entry> entries = new LinkedBlockingQueue<>();
+  private Vertx vertx;
+  private HttpClient client;
+  private int port;
+
+  @AfterEach
+  void tearDown() throws Exception {
+    if (vertx != null) {
+      vertx.close().await(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  @DisplayName("records every request when the sample rate is one")
+  void records_all_requests() throws Exception {
+    start(1.0);
+
+    assertThat(get("/ok?q=secret")).isEqualTo(200);
+    assertThat(get("/missing")).isEqualTo(404);
+
+    var ok = entries.poll(5, TimeUnit.SECONDS);
+    assertThat(ok).isNotNull();
+    assertThat(ok.method()).isEqualTo("GET");
+    assertThat(ok.path()).isEqualTo("/ok");
+    assertThat(ok.status()).isEqualTo(200);
+    assertThat(ok.bytesSent()).isEqualTo(2);
+    assertThat(ok.durationNanos()).isPositive();
+    assertThat(ok.remoteAddress()).isEqualTo("127.0.0.1");
+    var missing = entries.poll(5, TimeUnit.SECONDS);
+    assertThat(missing).isNotNull();
+    assertThat(missing.status()).isEqualTo(404);
+  }
+
+  @Test
+  @DisplayName("records server errors even when no other request is sampled")
+  void always_records_server_errors() throws Exception {
+    start(0.0);
+
+    for (var i = 0; i < 10; i++) {
+      assertThat(get("/ok")).isEqualTo(200);
+      assertThat(get("/missing")).isEqualTo(404);
+    }
+    assertThat(get("/fail")).isEqualTo(500);
+
+    var failure = entries.poll(5, TimeUnit.SECONDS);
+    assertThat(failure).isNotNull();
+    assertThat(failure.path()).isEqualTo("/fail");
+    assertThat(failure.status()).isEqualTo(500);
+    assertThat(entries.poll(200, TimeUnit.MILLISECONDS)).isNull();
+  }
+
+  @Test
+  @DisplayName("rejects sample rates outside [0, 1]")
+  void rejects_invalid_sample_rate() {
+    var log = new AccessLog(1, __ -> {
+    });
+
+    assertThatThrownBy(() -> new AccessLogHandler(1.5, log)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new AccessLogHandler(-0.1, log)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private void start(double sampleRate) throws Exception {
+    vertx = Vertx.vertx();
+    var router = Router.router(vertx);
+    router.route().handler(new AccessLogHandler(sampleRate, new AccessLog(16, entries::add)));
+    router.get("/ok").handler(ctx -> ctx.end("ok"));
+    router.get("/fail").handler(ctx -> ctx.fail(500));
+    var server = vertx.createHttpServer()
+      .requestHandler(router)
+      .listen(0)
+      .await(10, TimeUnit.SECONDS);
+    client = vertx.createHttpClient();
+    port = server.actualPort();
+  }
+
+  private int get(String uri) throws Exception {
+    return client.request(HttpMethod.GET, port, "localhost", uri)
+      .compose(HttpClientRequest::send)
+      .map(HttpClientResponse::statusCode)
+      .await(10, TimeUnit.SECONDS);
+  }
+}
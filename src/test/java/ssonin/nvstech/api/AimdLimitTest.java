@@ -0,0 +1,86 @@
+package ssonin.nvstech.api;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AimdLimitTest {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+  @Test
+  @DisplayName("rejects acquisitions once the limit is in flight")
+  void rejects_when_limit_reached() {
+    var limit = new AimdLimit(2, 1, 10, 100);
+
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.tryAcquire()).isFalse();
+
+    limit.release(FAST, false);
+    assertThat(limit.tryAcquire()).isTrue();
+  }
+
+  @Test
+  @DisplayName("grows additively while fast responses saturate the limit")
+  void grows_on_fast_responses() {
+    var limit = new AimdLimit(4, 1, 10, 100);
+
+    for (var i = 0; i < 20; i++) {
+      while (limit.tryAcquire()) {
+      }
+      var inFlight = limit.inFlight();
+      for (var j = 0; j < inFlight; j++) {
+        limit.release(FAST, false);
+      }
+    }
+
+    assertThat(limit.limit()).isEqualTo(10);
+  }
+
+  @Test
+  @DisplayName("does not grow when the limit is not being used")
+  void does_not_grow_when_underused() {
+    var limit = new AimdLimit(8, 1, 100, 100);
+
+    for (var i = 0; i < 100; i++) {
+      limit.tryAcquire();
+      limit.release(FAST, false);
+    }
+
+    assertThat(limit.limit()).isEqualTo(8);
+  }
+
+  @Test
+  @DisplayName("shrinks multiplicatively on slow or failed responses, down to the minimum")
+  void shrinks_on_slow_or_failed_responses() {
+    var limit = new AimdLimit(100, 2, 100, 100);
+
+    limit.tryAcquire();
+    limit.release(SLOW, false);
+    assertThat(limit.limit()).isEqualTo(90);
+
+    limit.tryAcquire();
+    limit.release(FAST, true);
+    assertThat(limit.limit()).isEqualTo(81);
+
+    for (var i = 0; i < 100; i++) {
+      limit.tryAcquire();
+      limit.release(SLOW, false);
+    }
+    assertThat(limit.limit()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("clamps the initial limit and rejects inconsistent bounds")
+  void validates_bounds() {
+    assertThat(new AimdLimit(1000, 1, 10, 100).limit()).isEqualTo(10);
+    assertThatThrownBy(() -> new AimdLimit(1, 0, 10, 100)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new AimdLimit(1, 10, 5, 100)).isInstanceOf(IllegalArgumentException.class);
+  }
+}
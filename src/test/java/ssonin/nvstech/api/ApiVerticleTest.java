@@ -22,10 +22,12 @@ import org.testcontainers.utility.DockerImageName;
 import ssonin.nvstech.repository.EmbeddingVerticle;
 import ssonin.nvstech.repository.RepositoryVerticle;
 
+import java.util.List;
 import java.util.UUID;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 @Testcontainers
 @ExtendWith(VertxExtension.class)
@@ -37,6 +39,7 @@ class ApiVerticleTest {
   private static final int HTTP_PORT = 18888;
   private static final String API_V1 = "/api/v1";
   private static final String EMBEDDINGS_ENDPOINT = "/embeddings";
+  private static final int DOCUMENT_BODY_LIMIT = 4096;
 
   @Container
   private static final PostgreSQLContainer<?> postgres =
@@ -74,6 +77,8 @@ class ApiVerticleTest {
     var config = new JsonObject()
       .put("db", dbConfig)
       .put("http.port", HTTP_PORT)
+      .put("http.body-limit.documents", DOCUMENT_BODY_LIMIT)
+      .put("suggest.enabled", true)
       .put("services", servicesConfig);
 
     var options = new DeploymentOptions().setConfig(config);
@@ -315,6 +320,76 @@ class ApiVerticleTest {
       })));
   }
 
+  @Test
+  @Order(24)
+  @DisplayName("POST /clients/:id/documents: streams text/plain body and returns 201 with content digest")
+  void uploads_plain_text_document(VertxTestContext ctx) {
+    var content = "Streamed content for document upload";
+
+    webClient.post(API_V1 + "/clients/" + createdClientId + "/documents")
+      .addQueryParam("title", "Streamed Document")
+      .putHeader("Content-Type", "text/plain")
+      .sendBuffer(Buffer.buffer(content))
+      .onComplete(ctx.succeeding(response -> ctx.verify(() -> {
+        assertThat(response.statusCode()).isEqualTo(201);
+        assertThat(response.getHeader("Location")).isNotNull();
+
+        var document = response.bodyAsJsonObject();
+        assertThat(document.getString("title")).isEqualTo("Streamed Document");
+        assertThat(document.getString("content")).isEqualTo(content);
+        assertThat(document.getString("content_sha256"))
+          .isEqualTo("60776b5780c7cb62887ff2bdeb11859b83e8fa50f0b8e86da3754b5dcf457f61");
+
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(25)
+  @DisplayName("POST /clients/:id/documents: returns 400 when text/plain upload has no title")
+  void returns_400_when_plain_text_upload_has_no_title(VertxTestContext ctx) {
+    webClient.post(API_V1 + "/clients/" + createdClientId + "/documents")
+      .putHeader("Content-Type", "text/plain")
+      .sendBuffer(Buffer.buffer("Content without a title"))
+      .onComplete(ctx.succeeding(response -> ctx.verify(() -> {
+        assertThat(response.statusCode()).isEqualTo(400);
+        assertThat(response.bodyAsJsonObject().getString("error")).contains("title");
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(26)
+  @DisplayName("POST /clients/:id/documents: returns 413 when text/plain upload exceeds body limit")
+  void returns_413_when_plain_text_upload_too_large(VertxTestContext ctx) {
+    webClient.post(API_V1 + "/clients/" + createdClientId + "/documents")
+      .addQueryParam("title", "Too Large")
+      .putHeader("Content-Type", "text/plain")
+      .sendBuffer(Buffer.buffer("x".repeat(DOCUMENT_BODY_LIMIT + 1)))
+      .onComplete(ctx.succeeding(response -> ctx.verify(() -> {
+        assertThat(response.statusCode()).isEqualTo(413);
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(27)
+  @DisplayName("POST /clients/:id/documents: returns 413 when JSON body exceeds body limit")
+  void returns_413_when_json_document_too_large(VertxTestContext ctx) {
+    var documentData = new JsonObject()
+      .put("title", "Too Large")
+      .put("content", "x".repeat(DOCUMENT_BODY_LIMIT + 1));
+
+    webClient.post(API_V1 + "/clients/" + createdClientId + "/documents")
+      .putHeader("Content-Type", "application/json")
+      .sendJsonObject(documentData)
+      .onComplete(ctx.succeeding(response -> ctx.verify(() -> {
+        assertThat(response.statusCode()).isEqualTo(413);
+        assertThat(response.getHeader("Content-Type")).isEqualTo("application/json");
+        ctx.completeNow();
+      })));
+  }
+
   @Test
   @Order(30)
   @DisplayName("GET /search: returns 400 when query parameter missing")
@@ -371,6 +446,138 @@ class ApiVerticleTest {
       })));
   }
 
+  @Test
+  @Order(35)
+  @DisplayName("GET /search: returns Server-Timing header and debug envelope when debug=true")
+  void returns_debug_envelope_with_server_timing(VertxTestContext ctx) {
+    webClient.get(API_V1 + "/search")
+      .addQueryParam("q", "Monica")
+      .addQueryParam("debug", "true")
+      .send()
+      .onComplete(ctx.succeeding(response -> ctx.verify(() -> {
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.getHeader("Server-Timing"))
+          .contains("embedding;dur=", "clients_fts;dur=", "documents_hybrid;dur=", "merge;dur=",
+            "serialize;dur=", "total;dur=");
+
+        var body = response.bodyAsJsonObject();
+        assertThat(body.getJsonObject("timings").fieldNames())
+          .contains("embedding", "clients_fts", "documents_hybrid", "merge");
+        var results = body.getJsonArray("results");
+        assertThat(results).isNotEmpty();
+        results.stream()
+          .map(JsonObject.class::cast)
+          .forEach(hit -> assertThat(hit.getJsonObject("debug")).isNotNull());
+
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(36)
+  @DisplayName("GET /search: returns 400 when clientId is not a UUID")
+  void returns_400_when_search_client_id_invalid(VertxTestContext ctx) {
+    webClient.get(API_V1 + "/search")
+      .addQueryParam("q", "bill")
+      .addQueryParam("clientId", "not-a-uuid")
+      .send()
+      .onComplete(ctx.succeeding(response -> ctx.verify(() -> {
+        assertThat(response.statusCode()).isEqualTo(400);
+        assertThat(response.bodyAsJsonObject().getString("error")).isEqualTo("clientId: Expected a UUID");
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(37)
+  @DisplayName("GET /suggest: completes client names and document titles by word prefix")
+  void suggests_completions(VertxTestContext ctx) {
+    webClient.get(API_V1 + "/suggest")
+      .addQueryParam("q", "gel")
+      .send()
+      .compose(names -> webClient.get(API_V1 + "/suggest")
+        .addQueryParam("q", "Streamed D")
+        .addQueryParam("limit", "1")
+        .send()
+        .map(titles -> List.of(names, titles)))
+      .onComplete(ctx.succeeding(responses -> ctx.verify(() -> {
+        var names = responses.get(0);
+        assertThat(names.statusCode()).isEqualTo(200);
+        assertThat(names.getHeader("Content-Type")).isEqualTo("application/json");
+        assertThat(names.bodyAsJsonArray().stream().map(JsonObject.class::cast))
+          .anySatisfy(suggestion -> {
+            assertThat(suggestion.getString("text")).isEqualTo("Monica Geller");
+            assertThat(suggestion.getString("type")).isEqualTo("client");
+            assertThat(suggestion.getLong("popularity")).isPositive();
+          });
+
+        var titles = responses.get(1).bodyAsJsonArray();
+        assertThat(titles).hasSize(1);
+        assertThat(titles.getJsonObject(0).getString("text")).isEqualTo("Streamed Document");
+        assertThat(titles.getJsonObject(0).getString("type")).isEqualTo("document");
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(38)
+  @DisplayName("GET /suggest: returns 400 when limit is out of range")
+  void returns_400_when_suggest_limit_invalid(VertxTestContext ctx) {
+    webClient.get(API_V1 + "/suggest")
+      .addQueryParam("q", "mon")
+      .addQueryParam("limit", "0")
+      .send()
+      .onComplete(ctx.succeeding(response -> ctx.verify(() -> {
+        assertThat(response.statusCode()).isEqualTo(400);
+        assertThat(response.bodyAsJsonObject().getString("error")).isEqualTo("limit: Expected an integer from 1 to 20");
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(39)
+  @DisplayName("GET /documents/:id/similar: returns nearest documents from the stored embedding")
+  void finds_similar_documents(VertxTestContext ctx) {
+    var documentData = new JsonObject()
+      .put("title", "Similarity Source")
+      .put("content", "Annual statement of a balanced portfolio");
+
+    webClient.post(API_V1 + "/clients/" + createdClientId + "/documents")
+      .putHeader("Content-Type", "application/json")
+      .sendJsonObject(documentData)
+      .compose(created -> {
+        var documentId = created.bodyAsJsonObject().getString("id");
+        return webClient.get(API_V1 + "/documents/" + documentId + "/similar")
+          .addQueryParam("clientId", createdClientId)
+          .send()
+          .compose(similar -> webClient.get(API_V1 + "/documents/" + UUID.randomUUID() + "/similar")
+            .send()
+            .map(missing -> List.of(created, similar, missing)));
+      })
+      .onComplete(ctx.succeeding(responses -> ctx.verify(() -> {
+        var documentId = responses.get(0).bodyAsJsonObject().getString("id");
+        var similar = responses.get(1);
+        assertThat(similar.statusCode()).isEqualTo(200);
+        assertThat(similar.getHeader("Server-Timing")).contains("document_embedding;dur=");
+        assertThat(similar.bodyAsJsonArray().stream().map(JsonObject.class::cast))
+          .isNotEmpty()
+          .allSatisfy(hit -> {
+            assertThat(hit.getString("type")).isEqualTo("document");
+            assertThat(hit.getString("id")).isNotEqualTo(documentId);
+            assertThat(hit.getString("client_id")).isEqualTo(createdClientId);
+            // every document has the same mock embedding
+            assertThat(hit.getDouble("rank")).isCloseTo(1.0, within(1e-6));
+          });
+        // only the document creation called the embedding service
+        verify(1, postRequestedFor(urlEqualTo(EMBEDDINGS_ENDPOINT)));
+
+        var missing = responses.get(2);
+        assertThat(missing.statusCode()).isEqualTo(404);
+        assertThat(missing.bodyAsJsonObject().getString("error")).isEqualTo("Document not found");
+        ctx.completeNow();
+      })));
+  }
+
   @Test
   @Order(40)
   @DisplayName("GET /search: returns 500 when embedding service unavailable")
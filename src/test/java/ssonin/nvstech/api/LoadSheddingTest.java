@@ -0,0 +1,85 @@
+package ssonin.nvstech.api;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ssonin.nvstech.model.Client;
+import ssonin.nvstech.model.ClientLookup;
+import ssonin.nvstech.model.SearchQuery;
+import ssonin.nvstech.model.SearchResults;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the API against stand-in repository consumers on a Vert.x instance of its own, so that its
+ * search concurrency limit of one is not shared with other tests, and a search is held in flight
+ * for exactly as long as the test needs.
+ */
+class LoadSheddingTest {
+
+  private static final int HTTP_PORT = 18892;
+  private static final String API_V1 = "/api/v1";
+
+  private Vertx vertx;
+  private WebClient webClient;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    vertx = Vertx.vertx();
+    var config = new JsonObject()
+      .put("http.port", HTTP_PORT)
+      .put("http.concurrency", new JsonObject()
+        .put("search", new JsonObject()
+          .put("initialLimit", 1)
+          .put("maxLimit", 1)));
+    vertx.deployVerticle(new ApiVerticle(), new DeploymentOptions().setConfig(config)).await(10, TimeUnit.SECONDS);
+    webClient = WebClient.create(vertx, new WebClientOptions()
+      .setDefaultHost("localhost")
+      .setDefaultPort(HTTP_PORT));
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    if (vertx != null) {
+      vertx.close().await(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  @DisplayName("GET /search: returns 503 with Retry-After when concurrency limit reached, client lookups unaffected")
+  void returns_503_when_search_concurrency_limit_reached() throws Exception {
+    var received = Promise.<Message<SearchQuery>>promise();
+    vertx.eventBus().<SearchQuery>consumer("search", received::tryComplete);
+    vertx.eventBus().<ClientLookup>consumer("clients.get", msg -> msg.reply(new Client(msg.body().clientId(),
+      OffsetDateTime.now(), "Monica", "Geller", "monica.geller@neviswealth.com", null)));
+
+    var heldSearch = webClient.get(API_V1 + "/search").addQueryParam("q", "Monica").send();
+    // the first search holds the only permit until its reply is sent below
+    var search = received.future().await(10, TimeUnit.SECONDS);
+    var shed = webClient.get(API_V1 + "/search").addQueryParam("q", "Monica").send()
+      .await(10, TimeUnit.SECONDS);
+    var lookup = webClient.get(API_V1 + "/clients/" + UUID.randomUUID()).send()
+      .await(10, TimeUnit.SECONDS);
+    search.reply(new SearchResults(List.of()));
+    var completed = heldSearch.await(10, TimeUnit.SECONDS);
+
+    assertThat(shed.statusCode()).isEqualTo(503);
+    assertThat(shed.getHeader("Retry-After")).isEqualTo("1");
+    assertThat(shed.bodyAsJsonObject().getString("error")).isNotBlank();
+    assertThat(lookup.statusCode()).isEqualTo(200);
+    assertThat(completed.statusCode()).isEqualTo(200);
+  }
+}
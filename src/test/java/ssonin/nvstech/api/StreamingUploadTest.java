@@ -0,0 +1,41 @@
+package ssonin.nvstech.api;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingUploadTest {
+
+  @Test
+  @DisplayName("decodes characters split across chunks at any byte")
+  void decodes_split_characters() {
+    var text = "Bilan annuel — 2026 € 💼 fin";
+    var bytes = text.getBytes(StandardCharsets.UTF_8);
+    for (var first = 0; first <= bytes.length; first++) {
+      for (var second = first; second <= bytes.length; second++) {
+        var decoded = new StreamingUpload.Utf8Text(4);
+        decoded.append(ByteBuffer.wrap(bytes, 0, first));
+        decoded.append(ByteBuffer.wrap(bytes, first, second - first));
+        decoded.append(ByteBuffer.wrap(bytes, second, bytes.length - second));
+
+        assertThat(decoded.bytes()).isEqualTo(bytes.length);
+        assertThat(decoded.finish()).as("split at %d and %d", first, second).isEqualTo(text);
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("replaces malformed and truncated input as a String would")
+  void replaces_malformed_input() {
+    var bytes = new byte[]{'a', (byte) 0xFF, 'b', (byte) 0xE2, (byte) 0x82};
+    var decoded = new StreamingUpload.Utf8Text(4);
+    decoded.append(ByteBuffer.wrap(bytes, 0, 4));
+    decoded.append(ByteBuffer.wrap(bytes, 4, 1));
+
+    assertThat(decoded.finish()).isEqualTo(new String(bytes, StandardCharsets.UTF_8));
+  }
+}
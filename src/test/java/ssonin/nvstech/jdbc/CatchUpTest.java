@@ -0,0 +1,94 @@
+package ssonin.nvstech.jdbc;
+
+import io.vertx.pgclient.PgConnectOptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Testcontainers
+class CatchUpTest {
+
+  private static final String SQL = "SELECT id, created_at FROM items WHERE created_at >= ? ORDER BY created_at";
+
+  @Container
+  private static final PostgreSQLContainer<?> postgres =
+    new PostgreSQLContainer<>(DockerImageName.parse("pgvector/pgvector:pg16"))
+      .withDatabaseName("nvs_tech_test")
+      .withUsername("test_user")
+      .withPassword("test_password");
+
+  private static List<PgConnectOptions> databases;
+
+  @BeforeAll
+  static void setUp() throws SQLException {
+    databases = List.of(new PgConnectOptions()
+      .setHost(postgres.getHost())
+      .setPort(postgres.getMappedPort(5432))
+      .setDatabase(postgres.getDatabaseName())
+      .setUser(postgres.getUsername())
+      .setPassword(postgres.getPassword()));
+    execute("CREATE TABLE items (id integer PRIMARY KEY, created_at timestamptz NOT NULL)");
+  }
+
+  @Test
+  @DisplayName("reads from its own watermark less the margin, whatever the copy already holds")
+  void reads_from_the_watermark() throws Exception {
+    execute("TRUNCATE items");
+    execute("INSERT INTO items VALUES (1, now() - interval '1 hour'), (2, now() - interval '10 minutes')");
+    var held = new HashSet<Integer>();
+    var catchUp = new CatchUp(SQL, Long.MIN_VALUE);
+
+    assertThat(catchUp.read(databases, row -> held.add(row.getInt("id")))).isEqualTo(2);
+
+    // Written by this process, so in the copy but not read by the catch-up.
+    held.add(3);
+    execute("INSERT INTO items VALUES (3, now())");
+    // Committed late by another process, within the margin of the watermark.
+    execute("INSERT INTO items VALUES (4, now() - interval '10 minutes' - interval '30 seconds')");
+    // Committed by another process since the last read, but older than anything this process wrote.
+    execute("INSERT INTO items VALUES (5, now() - interval '5 minutes')");
+    var read = new HashSet<Integer>();
+
+    assertThat(catchUp.read(databases, row -> read.add(row.getInt("id")) && held.add(row.getInt("id"))))
+      .isEqualTo(2);
+    assertThat(read).isEqualTo(Set.of(2, 3, 4, 5));
+    assertThat(held).containsExactlyInAnyOrder(1, 2, 3, 4, 5);
+  }
+
+  @Test
+  @DisplayName("keeps its watermark when a read fails")
+  void keeps_the_watermark_on_failure() throws Exception {
+    execute("TRUNCATE items");
+    execute("INSERT INTO items VALUES (1, now() - interval '10 minutes')");
+    var catchUp = new CatchUp(SQL, Long.MIN_VALUE);
+    catchUp.read(databases, row -> true);
+    execute("INSERT INTO items VALUES (2, now() - interval '5 minutes'), (3, now())");
+
+    assertThatThrownBy(() -> catchUp.read(databases, row -> {
+      throw new SQLException("failed");
+    })).isInstanceOf(SQLException.class);
+    var read = new HashSet<Integer>();
+    catchUp.read(databases, row -> read.add(row.getInt("id")));
+
+    assertThat(read).containsExactlyInAnyOrder(1, 2, 3);
+  }
+
+  private static void execute(String sql) throws SQLException {
+    try (var connection = Jdbc.connect(databases.getFirst());
+         var statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+}
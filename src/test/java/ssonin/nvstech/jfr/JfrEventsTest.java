@@ -0,0 +1,210 @@
+package ssonin.nvstech.jfr;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import ssonin.nvstech.api.ApiVerticle;
+import ssonin.nvstech.repository.EmbeddingVerticle;
+import ssonin.nvstech.repository.RepositoryVerticle;
+
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+@ExtendWith(VertxExtension.class)
+@WireMockTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class JfrEventsTest {
+
+  private static final int HTTP_PORT = 18891;
+  private static final String API_V1 = "/api/v1";
+  private static final String EMBEDDINGS_ENDPOINT = "/embeddings";
+
+  @Container
+  private static final PostgreSQLContainer<?> postgres =
+    new PostgreSQLContainer<>(DockerImageName.parse("pgvector/pgvector:pg16"))
+      .withDatabaseName("nvs_tech_test")
+      .withUsername("test_user")
+      .withPassword("test_password");
+
+  private WebClient webClient;
+
+  @BeforeAll
+  void setup(Vertx vertx, VertxTestContext ctx, WireMockRuntimeInfo wmRuntimeInfo) {
+    Flyway.configure()
+      .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+      .schemas("public")
+      .locations("classpath:db/migration")
+      .validateMigrationNaming(true)
+      .load()
+      .migrate();
+
+    var config = new JsonObject()
+      .put("db", new JsonObject()
+        .put("host", postgres.getHost())
+        .put("port", postgres.getMappedPort(5432))
+        .put("database", postgres.getDatabaseName())
+        .put("user", postgres.getUsername())
+        .put("password", postgres.getPassword()))
+      .put("http.port", HTTP_PORT)
+      .put("services", new JsonObject()
+        .put("embedding", new JsonObject()
+          .put("host", "localhost")
+          .put("port", wmRuntimeInfo.getHttpPort())));
+    var options = new DeploymentOptions().setConfig(config);
+
+    webClient = WebClient.create(vertx, new WebClientOptions()
+      .setDefaultHost("localhost")
+      .setDefaultPort(HTTP_PORT));
+
+    vertx.deployVerticle(new RepositoryVerticle(), options)
+      .compose(__ -> vertx.deployVerticle(new EmbeddingVerticle(), options))
+      .compose(__ -> vertx.deployVerticle(new ApiVerticle(), options))
+      .onComplete(ctx.succeedingThenComplete());
+  }
+
+  @BeforeEach
+  void stubEmbeddingService() {
+    stubFor(post(urlEqualTo(EMBEDDINGS_ENDPOINT))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withHeader("Content-Type", "application/json")
+        .withBody(new JsonObject()
+          .put("embeddings", new JsonArray().add(generateMockEmbedding()))
+          .encode())));
+  }
+
+  @AfterAll
+  void tearDown() {
+    webClient.close();
+  }
+
+  private JsonArray generateMockEmbedding() {
+    var embedding = new JsonArray();
+    for (var i = 0; i < 384; i++) {
+      embedding.add(Math.sin(i * 0.1) * 0.5);
+    }
+    return embedding;
+  }
+
+  @Test
+  @DisplayName("emits search, embedding, query and ingest events with the shipped JFC profile")
+  void emits_events(@TempDir Path dir) throws Exception {
+    var dump = dir.resolve("nvs-tech.jfr");
+    try (var recording = new Recording(profile())) {
+      recording.start();
+
+      var clientId = webClient.post(API_V1 + "/clients")
+        .sendJsonObject(new JsonObject()
+          .put("first_name", "Joey")
+          .put("last_name", "Tribbiani")
+          .put("email", "joey.tribbiani@neviswealth.com"))
+        .await()
+        .bodyAsJsonObject()
+        .getString("id");
+      webClient.post(API_V1 + "/clients/" + clientId + "/documents")
+        .sendJsonObject(new JsonObject()
+          .put("title", "Acting income")
+          .put("content", "Residuals from the soap opera"))
+        .await();
+      webClient.post(API_V1 + "/clients/" + clientId + "/documents")
+        .addQueryParam("title", "Sandwich budget")
+        .putHeader("Content-Type", "text/plain")
+        .sendBuffer(Buffer.buffer("Meatball sub allowance"))
+        .await();
+      var search = webClient.get(API_V1 + "/search")
+        .addQueryParam("q", "soap opera")
+        .send()
+        .await();
+      assertThat(search.statusCode()).isEqualTo(200);
+      var clientSearch = webClient.get(API_V1 + "/search")
+        .addQueryParam("q", "sandwich")
+        .addQueryParam("clientId", clientId)
+        .addQueryParam("content", "true")
+        .send()
+        .await();
+      assertThat(clientSearch.statusCode()).isEqualTo(200);
+
+      recording.stop();
+      recording.dump(dump);
+    }
+
+    var events = RecordingFile.readAllEvents(dump);
+
+    var searches = named(events, "nvstech.Search");
+    assertThat(searches).hasSize(2);
+    var searchEvent = searches.stream()
+      .filter(event -> event.getInt("queryLength") == "soap opera".length())
+      .findFirst()
+      .orElseThrow();
+    assertThat(searchEvent.getInt("queryLength")).isEqualTo("soap opera".length());
+    assertThat(searchEvent.getInt("documentHits")).isPositive();
+    assertThat(searchEvent.getLong("documentsHybrid")).isPositive();
+    assertThat(searchEvent.getBoolean("succeeded")).isTrue();
+    var clientSearchEvent = searches.stream()
+      .filter(event -> event.getInt("queryLength") == "sandwich".length())
+      .findFirst()
+      .orElseThrow();
+    assertThat(clientSearchEvent.getLong("clientVectors")).isPositive();
+    assertThat(clientSearchEvent.getLong("vectorScan")).isPositive();
+    assertThat(clientSearchEvent.getLong("documentsHybrid")).isPositive();
+    assertThat(clientSearchEvent.getLong("contents")).isPositive();
+
+    var embeddingCalls = named(events, "nvstech.EmbeddingRequest");
+    assertThat(embeddingCalls).hasSize(4);
+    assertThat(embeddingCalls).allSatisfy(event -> {
+      assertThat(event.getInt("batchSize")).isEqualTo(1);
+      assertThat(event.getLong("requestBytes")).isPositive();
+      assertThat(event.getLong("responseBytes")).isPositive();
+      assertThat(event.getInt("statusCode")).isEqualTo(200);
+    });
+
+    assertThat(named(events, "nvstech.Query"))
+      .extracting(event -> event.getString("statement"))
+      .contains("insert_client", "select_client", "insert_document", "search_clients", "search_documents");
+    assertThat(named(events, "nvstech.Query"))
+      .filteredOn(event -> event.getString("statement").equals("insert_document"))
+      .allSatisfy(event -> assertThat(event.getInt("rows")).isEqualTo(1));
+
+    assertThat(named(events, "nvstech.DocumentIngest"))
+      .extracting(event -> event.getString("mode"))
+      .containsExactlyInAnyOrder("json", "stream");
+  }
+
+  private static Configuration profile() throws Exception {
+    try (var stream = JfrEventsTest.class.getResourceAsStream("/jfr/nvs-tech.jfc")) {
+      return Configuration.create(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    }
+  }
+
+  private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+    return events.stream()
+      .filter(event -> event.getEventType().getName().equals(name))
+      .toList();
+  }
+}
@@ -0,0 +1,109 @@
+package ssonin.nvstech.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.VerticleBase;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventLoopMonitoringTest {
+
+  private Vertx vertx;
+
+  @AfterEach
+  void tearDown() throws Exception {
+    if (vertx != null) {
+      vertx.close().await(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  @DisplayName("Lag probe records the delay caused by a blocked event loop, tagged with the verticle and loop")
+  void records_event_loop_lag() throws Exception {
+    vertx = Vertx.vertx();
+    var registry = new SimpleMeterRegistry();
+
+    vertx.deployVerticle(new VerticleBase() {
+      @Override
+      public Future<?> start() {
+        EventLoopLagProbe.start(vertx, "test", 10, registry);
+        vertx.setTimer(50, __ -> busyFor(200));
+        return Future.succeededFuture();
+      }
+    }).await(10, TimeUnit.SECONDS);
+    Thread.sleep(500);
+
+    var lag = registry.get("nvstech.eventloop.lag").tag("verticle", "test").timer();
+    assertThat(lag.getId().getTag("thread")).startsWith("vert.x-eventloop-thread-");
+    assertThat(lag.count()).isGreaterThan(1);
+    assertThat(lag.max(TimeUnit.MILLISECONDS)).isGreaterThan(100);
+  }
+
+  @Test
+  @DisplayName("Lag probe is not started when the interval is zero")
+  void disabled_probe_records_nothing() throws Exception {
+    vertx = Vertx.vertx();
+    var registry = new SimpleMeterRegistry();
+
+    vertx.deployVerticle(new VerticleBase() {
+      @Override
+      public Future<?> start() {
+        EventLoopLagProbe.start(vertx, "test", 0, registry);
+        return Future.succeededFuture();
+      }
+    }).await(10, TimeUnit.SECONDS);
+
+    assertThat(registry.find("nvstech.eventloop.lag").timer()).isNull();
+  }
+
+  @Test
+  @DisplayName("Blocked thread reports are counted per thread and recorded with the blocked thread's stack")
+  void reports_blocked_threads(@TempDir Path dir) throws Exception {
+    vertx = Vertx.vertx(new VertxOptions()
+      .setBlockedThreadCheckInterval(20)
+      .setBlockedThreadCheckIntervalUnit(TimeUnit.MILLISECONDS)
+      .setMaxEventLoopExecuteTime(50)
+      .setMaxEventLoopExecuteTimeUnit(TimeUnit.MILLISECONDS));
+    var registry = new SimpleMeterRegistry();
+    BlockedThreadMonitor.install(vertx, registry);
+
+    var dump = dir.resolve("blocked.jfr");
+    try (var recording = new Recording()) {
+      recording.enable("nvstech.ThreadBlocked");
+      recording.start();
+      vertx.getOrCreateContext().runOnContext(__ -> busyFor(300));
+      Thread.sleep(500);
+      recording.stop();
+      recording.dump(dump);
+    }
+
+    var blocked = registry.get("nvstech.thread.blocked").counter();
+    assertThat(blocked.getId().getTag("thread")).startsWith("vert.x-eventloop-thread-");
+    assertThat(blocked.count()).isGreaterThanOrEqualTo(1);
+
+    var events = RecordingFile.readAllEvents(dump);
+    assertThat(events).isNotEmpty();
+    var event = events.getFirst();
+    assertThat(event.getString("thread")).startsWith("vert.x-eventloop-thread-");
+    assertThat(event.getLong("blocked")).isGreaterThan(event.getLong("limit"));
+    assertThat(event.getString("blockedStack")).contains("busyFor");
+  }
+
+  private static void busyFor(long millis) {
+    var until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    while (System.nanoTime() < until) {
+      Thread.onSpinWait();
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package ssonin.nvstech.metrics;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import io.micrometer.core.instrument.Tags;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import ssonin.nvstech.api.ApiVerticle;
+import ssonin.nvstech.repository.EmbeddingVerticle;
+import ssonin.nvstech.repository.RepositoryVerticle;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+@ExtendWith(VertxExtension.class)
+@WireMockTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MetricsTest {
+
+  private static final int HTTP_PORT = 18889;
+  private static final String API_V1 = "/api/v1";
+  private static final String EMBEDDINGS_ENDPOINT = "/embeddings";
+
+  @Container
+  private static final PostgreSQLContainer<?> postgres =
+    new PostgreSQLContainer<>(DockerImageName.parse("pgvector/pgvector:pg16"))
+      .withDatabaseName("nvs_tech_test")
+      .withUsername("test_user")
+      .withPassword("test_password");
+
+  private Vertx vertx;
+  private WebClient webClient;
+
+  @BeforeAll
+  void setup(VertxTestContext ctx, WireMockRuntimeInfo wmRuntimeInfo) {
+    Flyway.configure()
+      .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+      .schemas("public")
+      .locations("classpath:db/migration")
+      .validateMigrationNaming(true)
+      .load()
+      .migrate();
+
+    var config = new JsonObject()
+      .put("db", new JsonObject()
+        .put("host", postgres.getHost())
+        .put("port", postgres.getMappedPort(5432))
+        .put("database", postgres.getDatabaseName())
+        .put("user", postgres.getUsername())
+        .put("password", postgres.getPassword()))
+      .put("http.port", HTTP_PORT)
+      .put("services", new JsonObject()
+        .put("embedding", new JsonObject()
+          .put("host", "localhost")
+          .put("port", wmRuntimeInfo.getHttpPort())));
+    var options = new DeploymentOptions().setConfig(config);
+
+    stubFor(post(urlEqualTo(EMBEDDINGS_ENDPOINT))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withHeader("Content-Type", "application/json")
+        .withBody(new JsonObject()
+          .put("embeddings", new JsonArray().add(generateMockEmbedding()))
+          .encode())));
+
+    vertx = Vertx.vertx(new VertxOptions().setMetricsOptions(Metrics.options()));
+    webClient = WebClient.create(vertx, new WebClientOptions()
+      .setDefaultHost("localhost")
+      .setDefaultPort(HTTP_PORT));
+
+    vertx.deployVerticle(new RepositoryVerticle(), options)
+      .compose(__ -> vertx.deployVerticle(new EmbeddingVerticle(), options))
+      .compose(__ -> vertx.deployVerticle(new ApiVerticle(), options))
+      .compose(__ -> webClient.post(API_V1 + "/clients")
+        .sendJsonObject(new JsonObject()
+          .put("first_name", "Rachel")
+          .put("last_name", "Green")
+          .put("email", "rachel.green@neviswealth.com")))
+      .compose(created -> webClient.post(API_V1 + "/clients/" + created.bodyAsJsonObject().getString("id") + "/documents")
+        .sendJsonObject(new JsonObject()
+          .put("title", "Fashion portfolio")
+          .put("content", "Investment plan for a career in fashion")))
+      .compose(__ -> webClient.get(API_V1 + "/search").addQueryParam("q", "fashion").send())
+      .onComplete(ctx.succeedingThenComplete());
+  }
+
+  @AfterAll
+  void tearDown() throws Exception {
+    webClient.close();
+    vertx.close().await(10, TimeUnit.SECONDS);
+  }
+
+  private JsonArray generateMockEmbedding() {
+    var embedding = new JsonArray();
+    for (var i = 0; i < 384; i++) {
+      embedding.add(Math.sin(i * 0.1) * 0.5);
+    }
+    return embedding;
+  }
+
+  @Test
+  @DisplayName("GET /metrics: exposes HTTP, event bus, pool, query and embedding metrics")
+  void exposes_metrics(VertxTestContext ctx) {
+    webClient.get("/metrics")
+      .send()
+      .onComplete(ctx.succeeding(response -> ctx.verify(() -> {
+        assertThat(response.statusCode()).isEqualTo(200);
+        var metrics = response.bodyAsString();
+
+        assertThat(series(metrics, "vertx_http_server_response_time_seconds_bucket", "route=\"/api/v1/clients\"", "code=\"201\"")).isTrue();
+        assertThat(series(metrics, "vertx_http_server_response_time_seconds_bucket", "route=\"/api/v1/search\"", "code=\"200\"")).isTrue();
+        assertThat(series(metrics, "nvstech_eventbus_request_seconds_count", "address=\"clients.get\"", "outcome=\"success\"")).isTrue();
+        assertThat(series(metrics, "nvstech_eventbus_request_seconds_count", "address=\"embeddings.get\"")).isTrue();
+        assertThat(series(metrics, "vertx_pool_queue_time_seconds_count", "pool_name=\"nvs-tech-pg\"")).isTrue();
+        assertThat(series(metrics, "vertx_pool_in_use", "pool_name=\"nvs-tech-pg\"")).isTrue();
+        assertThat(series(metrics, "nvstech_db_pool_connections", "pool_name=\"nvs-tech-pg\"")).isTrue();
+        assertThat(series(metrics, "nvstech_db_query_seconds_count", "query=\"insert_client\"")).isTrue();
+        assertThat(series(metrics, "nvstech_db_query_seconds_count", "query=\"search_documents\"")).isTrue();
+        assertThat(series(metrics, "nvstech_embedding_request_seconds_count", "outcome=\"success\"")).isTrue();
+        assertThat(series(metrics, "nvstech_embedding_batch_size_texts_count")).isTrue();
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @DisplayName("timed operations reuse one timer per name, tags and outcome")
+  void reuses_timers(VertxTestContext ctx) {
+    var tags = Tags.of("query", "reused_timer");
+    Metrics.timed("nvstech.db.query", tags, () -> Future.succeededFuture())
+      .compose(__ -> Metrics.timed("nvstech.db.query", Tags.of("query", "reused_timer"), () -> Future.succeededFuture()))
+      .onComplete(ctx.succeeding(__ -> ctx.verify(() -> {
+        var timer = Metrics.timer("nvstech.db.query", tags, true);
+        assertThat(Metrics.timer("nvstech.db.query", Tags.of("query", "reused_timer"), true)).isSameAs(timer);
+        assertThat(Metrics.timer("nvstech.db.query", tags, false)).isNotSameAs(timer);
+        assertThat(timer.count()).isEqualTo(2);
+        ctx.completeNow();
+      })));
+  }
+
+  private static boolean series(String metrics, String name, String... labels) {
+    return metrics.lines()
+      .filter(line -> line.startsWith(name + "{") || line.startsWith(name + " "))
+      .anyMatch(line -> Arrays.stream(labels).allMatch(line::contains));
+  }
+}
@@ -12,7 +12,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import ssonin.nvstech.model.EmbeddingRequest;
+import ssonin.nvstech.model.Embeddings;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
@@ -65,16 +68,15 @@ class EmbeddingVerticleTest {
           .put("embeddings", expectedEmbeddings)
           .encode())));
 
-    var request = new JsonObject()
-      .put("texts", inputTexts);
+    var request = new EmbeddingRequest(List.of("hello world", "test embedding"));
 
-    vertx.eventBus().<JsonArray>request(EMBEDDINGS_ADDRESS, request)
+    vertx.eventBus().<Embeddings>request(EMBEDDINGS_ADDRESS, request)
       .onComplete(testContext.succeeding(reply -> testContext.verify(() -> {
-        assertThat(reply.body())
+        assertThat(reply.body().vectors())
           .isNotNull()
-          .isEqualTo(expectedEmbeddings);
+          .containsExactly(new float[]{0.1f, 0.2f, 0.3f}, new float[]{0.4f, 0.5f, 0.6f});
 
-        assertThat(reply.body().size())
+        assertThat(reply.body().vectors().size())
           .isEqualTo(2);
 
         verify(postRequestedFor(urlEqualTo(EMBEDDINGS_ENDPOINT))
@@ -104,12 +106,11 @@ class EmbeddingVerticleTest {
           .put("embeddings", emptyEmbeddings)
           .encode())));
 
-    var request = new JsonObject()
-      .put("texts", new JsonArray());
+    var request = new EmbeddingRequest(List.of());
 
-    vertx.eventBus().<JsonArray>request(EMBEDDINGS_ADDRESS, request)
+    vertx.eventBus().<Embeddings>request(EMBEDDINGS_ADDRESS, request)
       .onComplete(testContext.succeeding(reply -> testContext.verify(() -> {
-        assertThat(reply.body())
+        assertThat(reply.body().vectors())
           .isNotNull()
           .isEmpty();
 
@@ -130,10 +131,9 @@ class EmbeddingVerticleTest {
       .willReturn(serverError()
         .withBody("Internal Server Error")));
 
-    var request = new JsonObject()
-      .put("texts", new JsonArray().add("test"));
+    var request = new EmbeddingRequest(List.of("test"));
 
-    vertx.eventBus().<JsonArray>request(EMBEDDINGS_ADDRESS, request)
+    vertx.eventBus().<Embeddings>request(EMBEDDINGS_ADDRESS, request)
       .onComplete(testContext.failing(error -> testContext.verify(() -> {
         assertThat(error)
           .isInstanceOf(io.vertx.core.eventbus.ReplyException.class);
@@ -163,10 +163,9 @@ class EmbeddingVerticleTest {
         .withStatus(503)
         .withBody("Service Unavailable")));
 
-    var request = new JsonObject()
-      .put("texts", new JsonArray().add("test"));
+    var request = new EmbeddingRequest(List.of("test"));
 
-    vertx.eventBus().<JsonArray>request(EMBEDDINGS_ADDRESS, request)
+    vertx.eventBus().<Embeddings>request(EMBEDDINGS_ADDRESS, request)
       .onComplete(testContext.failing(error -> testContext.verify(() -> {
         assertThat(error)
           .isInstanceOf(io.vertx.core.eventbus.ReplyException.class);
@@ -188,7 +187,6 @@ class EmbeddingVerticleTest {
     Vertx vertx,
     VertxTestContext testContext
   ) throws InterruptedException {
-    var singleText = new JsonArray().add("single text");
     var singleEmbedding = new JsonArray()
       .add(new JsonArray().add(0.7).add(0.8).add(0.9));
 
@@ -200,18 +198,17 @@ class EmbeddingVerticleTest {
           .put("embeddings", singleEmbedding)
           .encode())));
 
-    var request = new JsonObject()
-      .put("texts", singleText);
+    var request = new EmbeddingRequest(List.of("single text"));
 
-    vertx.eventBus().<JsonArray>request(EMBEDDINGS_ADDRESS, request)
+    vertx.eventBus().<Embeddings>request(EMBEDDINGS_ADDRESS, request)
       .onComplete(testContext.succeeding(reply -> testContext.verify(() -> {
-        assertThat(reply.body())
+        assertThat(reply.body().vectors())
           .isNotNull()
           .hasSize(1);
 
-        var firstEmbedding = reply.body().getJsonArray(0);
+        var firstEmbedding = reply.body().first();
         assertThat(firstEmbedding)
-          .containsExactly(0.7, 0.8, 0.9);
+          .containsExactly(0.7f, 0.8f, 0.9f);
 
         testContext.completeNow();
       })));
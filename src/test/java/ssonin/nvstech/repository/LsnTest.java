@@ -0,0 +1,29 @@
+package ssonin.nvstech.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LsnTest {
+
+  @Test
+  @DisplayName("parses pg_lsn text into a comparable position")
+  void parses_positions() {
+    assertThat(Lsn.parse("0/0")).isZero();
+    assertThat(Lsn.parse("16/B374D848")).isEqualTo(0x16_B374D848L);
+    assertThat(Lsn.parse("1/0")).isGreaterThan(Lsn.parse("0/FFFFFFFF"));
+    assertThat(Lsn.parse("0/3000060")).isGreaterThan(Lsn.parse("0/300005F"));
+  }
+
+  @Test
+  @DisplayName("rejects anything that is not a WAL position")
+  void rejects_malformed_positions() {
+    for (var malformed : new String[] {"", "/", "0/", "/0", "16B374D848", "G/0", "-1/0", "123456789/0", "0/0/0"}) {
+      assertThatThrownBy(() -> Lsn.parse(malformed))
+        .as(malformed)
+        .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package ssonin.nvstech.repository;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import ssonin.nvstech.eventbus.MessageCodecs;
+import ssonin.nvstech.model.*;
+
+import java.sql.DriverManager;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Migrates a database holding documents to the partitioned table, then checks that searches with a
+ * creation time range are pruned to the partitions covering it.
+ */
+@Testcontainers
+@ExtendWith(VertxExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PartitioningTest {
+
+  private static final int EMBEDDING_DIMENSION = 384;
+  private static final UUID LEGACY_DOCUMENT_ID = UUID.randomUUID();
+
+  @Container
+  private static final PostgreSQLContainer<?> postgres =
+    new PostgreSQLContainer<>(DockerImageName.parse("pgvector/pgvector:pg16"))
+      .withDatabaseName("nvs_tech_test")
+      .withUsername("test_user")
+      .withPassword("test_password");
+
+  private final YearMonth currentMonth = YearMonth.now(ZoneOffset.UTC);
+
+  @BeforeAll
+  void setup(Vertx vertx) throws Exception {
+    migrate("3");
+    execute("""
+      INSERT INTO documents (id, created_at, client_id, title, content)
+      VALUES ('%s', '2024-03-15T12:00:00Z', '%s', 'Portfolio review 2024', 'Annual portfolio review')
+      """.formatted(LEGACY_DOCUMENT_ID, UUID.randomUUID()));
+    migrate("latest");
+
+    MessageCodecs.register(vertx.eventBus());
+    vertx.eventBus().<EmbeddingRequest>consumer("embeddings.get", msg ->
+      msg.reply(new Embeddings(msg.body().texts().stream().map(PartitioningTest::embedding).toList())));
+    var config = new JsonObject().put("db", new JsonObject()
+      .put("host", postgres.getHost())
+      .put("port", postgres.getMappedPort(5432))
+      .put("database", postgres.getDatabaseName())
+      .put("user", postgres.getUsername())
+      .put("password", postgres.getPassword()));
+    vertx.deployVerticle(new RepositoryVerticle(), new DeploymentOptions().setConfig(config))
+      .await(30, TimeUnit.SECONDS);
+  }
+
+  @Test
+  @Order(1)
+  @DisplayName("the existing table becomes a partition and the coming months get partitions of their own")
+  void partitions_existing_table() throws Exception {
+    assertThat(partitions()).contains("documents_legacy", "documents_default", partitionName(currentMonth),
+      partitionName(currentMonth.plusMonths(1)), partitionName(currentMonth.plusMonths(3)));
+    assertThat(query("SELECT tableoid::regclass::text FROM documents WHERE id = '%s'".formatted(LEGACY_DOCUMENT_ID)))
+      .containsExactly("documents_legacy");
+    assertThat(query("""
+      SELECT count(*) FROM pg_partition_tree('documents_embedding_idx') WHERE relid::text = 'documents_legacy_embedding_idx'
+      """))
+      .containsExactly("1");
+  }
+
+  @Test
+  @Order(2)
+  @DisplayName("create_documents_partitions moves the default partition's rows for the month it creates")
+  void moves_rows_out_of_default_partition() throws Exception {
+    var month = currentMonth.plusMonths(12);
+    var monthStart = month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+    var id = UUID.randomUUID();
+    execute("""
+      INSERT INTO documents (id, created_at, client_id, title, search)
+      VALUES ('%s', '%s', '%s', 'Scheduled', document_search('Scheduled', 'Scheduled review'))
+      """.formatted(id, monthStart.plusDays(3), UUID.randomUUID()));
+    assertThat(query("SELECT tableoid::regclass::text FROM documents WHERE id = '%s'".formatted(id)))
+      .containsExactly("documents_default");
+
+    assertThat(query("SELECT create_documents_partitions('%s', '%s')".formatted(monthStart, monthStart.plusDays(1))))
+      .containsExactly("1");
+    assertThat(query("SELECT create_documents_partitions('%s', '%s')".formatted(monthStart, monthStart.plusDays(1))))
+      .containsExactly("0");
+    assertThat(query("SELECT tableoid::regclass::text FROM documents WHERE id = '%s'".formatted(id)))
+      .containsExactly(partitionName(month));
+  }
+
+  @Test
+  @Order(3)
+  @DisplayName("search returns documents of every partition, or only those created in the given range")
+  void filters_search_by_creation_time(Vertx vertx) throws Exception {
+    var clientId = vertx.eventBus()
+      .<Client>request("clients.create", new NewClient("Janice", "Hosenstein", "janice@neviswealth.com", null))
+      .await(30, TimeUnit.SECONDS)
+      .body()
+      .id();
+    var created = vertx.eventBus()
+      .<Document>request("documents.create", new NewDocument(clientId, "Portfolio review 2026",
+        "Quarterly portfolio review", null))
+      .await(30, TimeUnit.SECONDS)
+      .body();
+
+    assertThat(documentIds(vertx, new SearchQuery("portfolio review")))
+      .containsExactlyInAnyOrder(LEGACY_DOCUMENT_ID, created.id());
+    var monthStart = currentMonth.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+    assertThat(documentIds(vertx, new SearchQuery("portfolio review", false, monthStart, null)))
+      .containsExactly(created.id());
+    assertThat(documentIds(vertx, new SearchQuery("portfolio review", false, null, monthStart)))
+      .containsExactly(LEGACY_DOCUMENT_ID);
+  }
+
+  @Test
+  @Order(4)
+  @DisplayName("a creation time range prunes the partitions outside it")
+  void prunes_partitions() throws Exception {
+    var month = currentMonth.plusMonths(1);
+    var from = month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+    var to = from.plusMonths(1);
+    var plan = String.join("\n", query("EXPLAIN SELECT id FROM documents WHERE " + SqlQueries.CREATED_IN_RANGE
+      .replace("$3", "'%s'".formatted(from))
+      .replace("$4", "'%s'".formatted(to))));
+
+    assertThat(plan).contains(partitionName(month));
+    assertThat(plan).doesNotContain("documents_legacy", "documents_default", partitionName(currentMonth),
+      partitionName(month.plusMonths(1)));
+  }
+
+  private static String partitionName(YearMonth month) {
+    return "documents_%d_%02d".formatted(month.getYear(), month.getMonthValue());
+  }
+
+  private static List<UUID> documentIds(Vertx vertx, SearchQuery query) throws Exception {
+    return vertx.eventBus()
+      .<SearchResults>request("search", query)
+      .await(30, TimeUnit.SECONDS)
+      .body()
+      .hits()
+      .stream()
+      .filter(hit -> hit instanceof SearchHit.DocumentHit)
+      .map(hit -> ((SearchHit.DocumentHit) hit).document().id())
+      .toList();
+  }
+
+  private static List<String> partitions() throws Exception {
+    return query("SELECT relid::text FROM pg_partition_tree('documents') WHERE isleaf");
+  }
+
+  private static void migrate(String target) {
+    Flyway.configure()
+      .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+      .schemas("public")
+      .locations("classpath:db/migration")
+      .validateMigrationNaming(true)
+      .target(target)
+      .load()
+      .migrate();
+  }
+
+  private static void execute(String sql) throws Exception {
+    try (var connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+         var statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+
+  private static List<String> query(String sql) throws Exception {
+    try (var connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+         var statement = connection.createStatement();
+         var rows = statement.executeQuery(sql)) {
+      var values = new ArrayList<String>();
+      while (rows.next()) {
+        values.add(rows.getString(1));
+      }
+      return values;
+    }
+  }
+
+  private static float[] embedding(String text) {
+    var random = new Random(text.toLowerCase(Locale.ROOT).hashCode());
+    var embedding = new float[EMBEDDING_DIMENSION];
+    var norm = 0.0;
+    for (var i = 0; i < embedding.length; i++) {
+      embedding[i] = (float) random.nextGaussian();
+      norm += embedding[i] * embedding[i];
+    }
+    for (var i = 0; i < embedding.length; i++) {
+      embedding[i] /= (float) Math.sqrt(norm);
+    }
+    return embedding;
+  }
+}
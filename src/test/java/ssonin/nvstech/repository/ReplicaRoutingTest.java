@@ -0,0 +1,229 @@
+package ssonin.nvstech.repository;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import ssonin.nvstech.eventbus.ConsistencyToken;
+import ssonin.nvstech.eventbus.MessageCodecs;
+import ssonin.nvstech.model.*;
+
+import java.sql.DriverManager;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the repository against a primary and a streaming replica. Replay on the replica is paused
+ * to create lag on demand, which makes it visible where a read was served: a row written after the
+ * pause exists only on the primary.
+ */
+@Testcontainers
+@ExtendWith(VertxExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReplicaRoutingTest {
+
+  private static final DockerImageName IMAGE = DockerImageName.parse("pgvector/pgvector:pg16");
+  private static final int EMBEDDING_DIMENSION = 384;
+  private static final String REPLICATION_SETUP = """
+    #!/bin/bash
+    set -e
+    psql -v ON_ERROR_STOP=1 -U "$POSTGRES_USER" -d "$POSTGRES_DB" \\
+      -c "CREATE ROLE replicator WITH REPLICATION LOGIN PASSWORD 'replicator'"
+    echo "host replication replicator all scram-sha-256" >> "$PGDATA/pg_hba.conf"
+    """;
+  private static final String REPLICA_START = """
+    set -e
+    mkdir -p "$PGDATA" && chown postgres:postgres "$PGDATA" && chmod 700 "$PGDATA"
+    until gosu postgres pg_basebackup -h primary -U replicator -D "$PGDATA" -R -X stream; do
+      rm -rf "$PGDATA"/*
+      sleep 1
+    done
+    exec gosu postgres postgres
+    """;
+
+  private static final Network network = Network.newNetwork();
+
+  @Container
+  private static final PostgreSQLContainer<?> primary = new PostgreSQLContainer<>(IMAGE)
+    .withDatabaseName("nvs_tech_test")
+    .withUsername("test_user")
+    .withPassword("test_password")
+    .withNetwork(network)
+    .withNetworkAliases("primary")
+    .withCopyToContainer(Transferable.of(REPLICATION_SETUP, 0755), "/docker-entrypoint-initdb.d/10-replication.sh");
+
+  @Container
+  private static final GenericContainer<?> replica = new GenericContainer<>(IMAGE)
+    .withNetwork(network)
+    .withEnv("PGPASSWORD", "replicator")
+    .withExposedPorts(5432)
+    .withCommand("bash", "-c", REPLICA_START)
+    .waitingFor(Wait.forLogMessage(".*database system is ready to accept read-only connections.*\\n", 1))
+    .dependsOn(primary);
+
+  private String deploymentId;
+
+  @BeforeAll
+  void setup(Vertx vertx) throws Exception {
+    Flyway.configure()
+      .dataSource(primary.getJdbcUrl(), primary.getUsername(), primary.getPassword())
+      .schemas("public")
+      .locations("classpath:db/migration")
+      .validateMigrationNaming(true)
+      .load()
+      .migrate();
+
+    MessageCodecs.register(vertx.eventBus());
+    vertx.eventBus().<EmbeddingRequest>consumer("embeddings.get", msg -> {
+      var embeddings = msg.body().texts().stream()
+        .map(text -> {
+          var embedding = new float[EMBEDDING_DIMENSION];
+          Arrays.fill(embedding, 1f / (float) Math.sqrt(EMBEDDING_DIMENSION));
+          return embedding;
+        })
+        .toList();
+      msg.reply(new Embeddings(embeddings));
+    });
+    deploy(vertx, 0);
+  }
+
+  @Test
+  @Order(1)
+  @DisplayName("writes return the primary's WAL position as a consistency token")
+  void writes_return_token(Vertx vertx) throws Exception {
+    var reply = vertx.eventBus()
+      .<Client>request("clients.create", newClient("monica.geller@neviswealth.com"))
+      .await(30, TimeUnit.SECONDS);
+
+    assertThat(reply.headers().get(ConsistencyToken.HEADER)).matches("[0-9A-F]+/[0-9A-F]+");
+  }
+
+  @Test
+  @Order(2)
+  @DisplayName("reads without a token go to the replica, even when it lags")
+  void reads_without_token_go_to_replica(Vertx vertx) throws Exception {
+    replay("pause");
+    var created = vertx.eventBus()
+      .<Client>request("clients.create", newClient("phoebe.buffay@neviswealth.com"))
+      .await(30, TimeUnit.SECONDS);
+
+    assertThatThrownBy(() -> vertx.eventBus()
+      .<Client>request("clients.get", new ClientLookup(created.body().id()))
+      .await(30, TimeUnit.SECONDS))
+      .isInstanceOfSatisfying(ReplyException.class, e -> assertThat(e.failureCode()).isEqualTo(404));
+
+    var results = vertx.eventBus()
+      .<SearchResults>request("search", new SearchQuery("phoebe"))
+      .await(30, TimeUnit.SECONDS);
+    assertThat(results.body().hits()).isEmpty();
+  }
+
+  @Test
+  @Order(3)
+  @DisplayName("reads with a token the replica has not reached go to the primary")
+  void reads_with_newer_token_go_to_primary(Vertx vertx) throws Exception {
+    var created = vertx.eventBus()
+      .<Client>request("clients.create", newClient("rachel.green@neviswealth.com"))
+      .await(30, TimeUnit.SECONDS);
+    var token = withToken(created.headers().get(ConsistencyToken.HEADER));
+
+    var client = vertx.eventBus()
+      .<Client>request("clients.get", new ClientLookup(created.body().id()), token)
+      .await(30, TimeUnit.SECONDS);
+    assertThat(client.body().email()).isEqualTo("rachel.green@neviswealth.com");
+
+    var results = vertx.eventBus()
+      .<SearchResults>request("search", new SearchQuery("rachel"), token)
+      .await(30, TimeUnit.SECONDS);
+    assertThat(results.body().hits()).isNotEmpty();
+  }
+
+  @Test
+  @Order(4)
+  @DisplayName("reads with a token wait for the replica to catch up when a wait is configured")
+  void reads_with_token_wait_for_replica(Vertx vertx) throws Exception {
+    vertx.undeploy(deploymentId).await(30, TimeUnit.SECONDS);
+    deploy(vertx, 10_000);
+    var created = vertx.eventBus()
+      .<Client>request("clients.create", newClient("ross.geller@neviswealth.com"))
+      .await(30, TimeUnit.SECONDS);
+    var token = withToken(created.headers().get(ConsistencyToken.HEADER));
+
+    var startedAt = System.nanoTime();
+    vertx.setTimer(500, __ -> vertx.executeBlocking(() -> {
+      replay("resume");
+      return null;
+    }));
+    var client = vertx.eventBus()
+      .<Client>request("clients.get", new ClientLookup(created.body().id()), token)
+      .await(30, TimeUnit.SECONDS);
+
+    assertThat(client.body().email()).isEqualTo("ross.geller@neviswealth.com");
+    assertThat(System.nanoTime() - startedAt).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(400));
+  }
+
+  @Test
+  @Order(5)
+  @DisplayName("reads with a malformed token are rejected")
+  void rejects_malformed_token(Vertx vertx) {
+    assertThatThrownBy(() -> vertx.eventBus()
+      .<Client>request("clients.get", new ClientLookup(UUID.randomUUID()), withToken("not-a-position"))
+      .await(30, TimeUnit.SECONDS))
+      .isInstanceOfSatisfying(ReplyException.class, e -> assertThat(e.failureCode()).isEqualTo(400));
+  }
+
+  private void deploy(Vertx vertx, long maxWaitMs) throws Exception {
+    var config = new JsonObject()
+      .put("db", new JsonObject()
+        .put("host", primary.getHost())
+        .put("port", primary.getMappedPort(5432))
+        .put("database", primary.getDatabaseName())
+        .put("user", primary.getUsername())
+        .put("password", primary.getPassword()))
+      .put("db.replicas", new JsonArray()
+        .add(new JsonObject()
+          .put("host", replica.getHost())
+          .put("port", replica.getMappedPort(5432))))
+      .put("db.replicas.poll-interval-ms", 50)
+      .put("db.replicas.max-wait-ms", maxWaitMs);
+    deploymentId = vertx.deployVerticle(new RepositoryVerticle(), new DeploymentOptions().setConfig(config))
+      .await(30, TimeUnit.SECONDS);
+  }
+
+  private static void replay(String action) throws Exception {
+    var url = "jdbc:postgresql://%s:%d/%s".formatted(
+      replica.getHost(), replica.getMappedPort(5432), primary.getDatabaseName());
+    try (var connection = DriverManager.getConnection(url, primary.getUsername(), primary.getPassword());
+         var statement = connection.createStatement()) {
+      statement.execute("SELECT pg_wal_replay_" + action + "()");
+    }
+  }
+
+  private static NewClient newClient(String email) {
+    var name = email.substring(0, email.indexOf('@')).split("\\.");
+    return new NewClient(name[0], name[1], email, null);
+  }
+
+  private static DeliveryOptions withToken(String token) {
+    return new DeliveryOptions().addHeader(ConsistencyToken.HEADER, token);
+  }
+}
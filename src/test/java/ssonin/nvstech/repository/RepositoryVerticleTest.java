@@ -7,6 +7,7 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import io.vertx.pgclient.PgConnectOptions;
 import org.flywaydb.core.Flyway;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,10 +15,20 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
-
+import ssonin.nvstech.eventbus.MessageCodecs;
+import ssonin.nvstech.model.*;
+import ssonin.nvstech.text.ClientIndex;
+
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
 
 @Testcontainers
 @ExtendWith(VertxExtension.class)
@@ -34,6 +45,7 @@ class RepositoryVerticleTest {
       .withUsername("test_user")
       .withPassword("test_password");
 
+  private JsonObject config;
   private String createdClientId;
 
   @BeforeAll
@@ -47,15 +59,8 @@ class RepositoryVerticleTest {
       .load()
       .migrate();
 
-    vertx.eventBus().<JsonObject>consumer("embeddings.get", msg -> {
-      var texts = msg.body().getJsonArray("texts");
-      var embeddings = new JsonArray();
-      for (int i = 0; i < texts.size(); i++) {
-        var text = texts.getString(i);
-        embeddings.add(generateDeterministicEmbedding(text));
-      }
-      msg.reply(embeddings);
-    });
+    MessageCodecs.register(vertx.eventBus());
+    serveEmbeddings(vertx);
 
     var dbConfig = new JsonObject()
       .put("host", postgres.getHost())
@@ -64,7 +69,7 @@ class RepositoryVerticleTest {
       .put("user", postgres.getUsername())
       .put("password", postgres.getPassword());
 
-    var config = new JsonObject().put("db", dbConfig);
+    config = new JsonObject().put("db", dbConfig);
     var options = new DeploymentOptions().setConfig(config);
 
     vertx.deployVerticle(new RepositoryVerticle(), options)
@@ -75,16 +80,16 @@ class RepositoryVerticleTest {
   @Order(1)
   @DisplayName("createClient: must create a new client successfully")
   void creates_client(Vertx vertx, VertxTestContext ctx) {
-    var clientData = new JsonObject()
-      .put("first_name", "Chandler")
-      .put("last_name", "Bing")
-      .put("email", "chandler.bing@neviswealth.com")
-      .put("description", "Sarcastic, self-deprecating office worker with a sharp sense of humor, " +
+    var clientData = new NewClient(
+      "Chandler",
+      "Bing",
+      "chandler.bing@neviswealth.com",
+      "Sarcastic, self-deprecating office worker with a sharp sense of humor, " +
         "known for cracking jokes to deflect awkward situations.");
 
-    vertx.eventBus().<JsonObject>request("clients.create", clientData)
+    vertx.eventBus().<Client>request("clients.create", clientData)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var client = reply.body();
+        var client = reply.body().toJson();
 
         assertThat(client.getString("id"))
           .as("Client ID must be present")
@@ -107,13 +112,13 @@ class RepositoryVerticleTest {
   @Order(2)
   @DisplayName("createClient: must return 409 when email already exists")
   void returns_409_when_attempt_to_create_client_with_duplicate_email(Vertx vertx, VertxTestContext ctx) {
-    var duplicateClient = new JsonObject()
-      .put("first_name", "Another")
-      .put("last_name", "Chandler")
-      .put("email", "chandler.bing@neviswealth.com")
-      .put("description", "Trying to impersonate Chandler");
+    var duplicateClient = new NewClient(
+      "Another",
+      "Chandler",
+      "chandler.bing@neviswealth.com",
+      "Trying to impersonate Chandler");
 
-    vertx.eventBus().<JsonObject>request("clients.create", duplicateClient)
+    vertx.eventBus().<Client>request("clients.create", duplicateClient)
       .onComplete(ctx.failing(err -> ctx.verify(() -> {
         assertThat(err).isInstanceOf(ReplyException.class);
         var replyException = (ReplyException) err;
@@ -128,11 +133,11 @@ class RepositoryVerticleTest {
   @Order(3)
   @DisplayName("getClient: must return client when found")
   void gets_clients(Vertx vertx, VertxTestContext ctx) {
-    var request = new JsonObject().put("clientId", createdClientId);
+    var request = new ClientLookup(UUID.fromString(createdClientId));
 
-    vertx.eventBus().<JsonObject>request("clients.get", request)
+    vertx.eventBus().<Client>request("clients.get", request)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var client = reply.body();
+        var client = reply.body().toJson();
 
         assertThat(client.getString("id")).isEqualTo(createdClientId);
         assertThat(client.getString("first_name")).isEqualTo("Chandler");
@@ -147,9 +152,9 @@ class RepositoryVerticleTest {
   @Order(4)
   @DisplayName("getClient: must return 404 when client not found")
   void returns_404_for_non_existent_client(Vertx vertx, VertxTestContext ctx) {
-    var request = new JsonObject().put("clientId", "00000000-0000-0000-0000-000000000000");
+    var request = new ClientLookup(UUID.fromString("00000000-0000-0000-0000-000000000000"));
 
-    vertx.eventBus().<JsonObject>request("clients.get", request)
+    vertx.eventBus().<Client>request("clients.get", request)
       .onComplete(ctx.failing(err -> ctx.verify(() -> {
         assertThat(err).isInstanceOf(ReplyException.class);
         var replyException = (ReplyException) err;
@@ -164,18 +169,19 @@ class RepositoryVerticleTest {
   @Order(5)
   @DisplayName("createDocument: must create a new document successfully")
   void creates_document(Vertx vertx, VertxTestContext ctx) {
-    var documentData = new JsonObject()
-      .put("client_id", createdClientId)
-      .put("title", "Chandler Bing's Utility Bill of Awkwardness")
-      .put("content", "This official-looking utility bill details the excessive energy I've wasted " +
+    var documentData = new NewDocument(
+      UUID.fromString(createdClientId),
+      "Chandler Bing's Utility Bill of Awkwardness",
+      "This official-looking utility bill details the excessive energy I've wasted " +
         "trying to explain my job to my parents and the high emotional charges from every failed " +
         "relationship since Janice. It also includes a surprise late fee for that one time I " +
         "accidentally proposed, because apparently sarcasm doesn't show up on the meter. " +
-        "Could this BE any more expensive?");
+        "Could this BE any more expensive?",
+      null);
 
-    vertx.eventBus().<JsonObject>request("documents.create", documentData)
+    vertx.eventBus().<Document>request("documents.create", documentData)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var document = reply.body();
+        var document = reply.body().toJson();
 
         assertThat(document.getString("id"))
           .as("Document ID must be present")
@@ -195,11 +201,11 @@ class RepositoryVerticleTest {
   @Order(6)
   @DisplayName("search: Direct Term Match - 'utility bill' must return document")
   void searches_by_direct_match(Vertx vertx, VertxTestContext ctx) {
-    var query = new JsonObject().put("query", "utility bill");
+    var query = new SearchQuery("utility bill");
 
-    vertx.eventBus().<JsonArray>request("search", query)
+    vertx.eventBus().<SearchResults>request("search", query)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var results = reply.body();
+        var results = reply.body().toJson();
 
         assertThat(results)
           .as("Must find at least one result")
@@ -222,11 +228,11 @@ class RepositoryVerticleTest {
   @Order(7)
   @DisplayName("search: Synonym Match (Thesaurus) - 'address proof' must return document with 'utility bill'")
   void searches_by_synonym_match(Vertx vertx, VertxTestContext ctx) {
-    var query = new JsonObject().put("query", "address proof");
+    var query = new SearchQuery("address proof");
 
-    vertx.eventBus().<JsonArray>request("search", query)
+    vertx.eventBus().<SearchResults>request("search", query)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var results = reply.body();
+        var results = reply.body().toJson();
 
         assertThat(results)
           .as("Must find results via thesaurus synonym mapping")
@@ -249,11 +255,11 @@ class RepositoryVerticleTest {
   @Order(8)
   @DisplayName("search: 'Chandler' must return both client (by first name) and document (by title)")
   void searches_across_clients_and_documents(Vertx vertx, VertxTestContext ctx) {
-    var query = new JsonObject().put("query", "Chandler");
+    var query = new SearchQuery("Chandler");
 
-    vertx.eventBus().<JsonArray>request("search", query)
+    vertx.eventBus().<SearchResults>request("search", query)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var results = reply.body();
+        var results = reply.body().toJson();
 
         assertThat(results)
           .as("Must find at least 2 results (client and document)")
@@ -293,11 +299,11 @@ class RepositoryVerticleTest {
   @Order(10)
   @DisplayName("search: 'neviswealth' must return client by email domain")
   void searches_by_email(Vertx vertx, VertxTestContext ctx) {
-    var query = new JsonObject().put("query", "neviswealth");
+    var query = new SearchQuery("neviswealth");
 
-    vertx.eventBus().<JsonArray>request("search", query)
+    vertx.eventBus().<SearchResults>request("search", query)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var results = reply.body();
+        var results = reply.body().toJson();
 
         assertThat(results)
           .as("Must find client by email domain")
@@ -320,11 +326,11 @@ class RepositoryVerticleTest {
   @Order(12)
   @DisplayName("search: results must be sorted by rank in descending order")
   void returns_search_results_sorted_by_rank(Vertx vertx, VertxTestContext ctx) {
-    var query = new JsonObject().put("query", "Chandler");
+    var query = new SearchQuery("Chandler");
 
-    vertx.eventBus().<JsonArray>request("search", query)
+    vertx.eventBus().<SearchResults>request("search", query)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var results = reply.body();
+        var results = reply.body().toJson();
 
         assertThat(results)
           .as("Must have multiple results to verify sorting")
@@ -347,11 +353,11 @@ class RepositoryVerticleTest {
   @Order(13)
   @DisplayName("search: each result must contain type and rank fields")
   void returns_search_results_with_type_and_rank(Vertx vertx, VertxTestContext ctx) {
-    var query = new JsonObject().put("query", "Chandler");
+    var query = new SearchQuery("Chandler");
 
-    vertx.eventBus().<JsonArray>request("search", query)
+    vertx.eventBus().<SearchResults>request("search", query)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var results = reply.body();
+        var results = reply.body().toJson();
 
         for (var i = 0; i < results.size(); i++) {
           var result = results.getJsonObject(i);
@@ -372,15 +378,16 @@ class RepositoryVerticleTest {
   @Order(14)
   @DisplayName("createDocument: must store embedding for vector search")
   void creates_document_and_stores_embedding(Vertx vertx, VertxTestContext ctx) {
-    var documentData = new JsonObject()
-      .put("client_id", createdClientId)
-      .put("title", "Investment Portfolio Analysis")
-      .put("content", "A comprehensive review of wealth management strategies " +
-        "including portfolio diversification and risk assessment.");
-
-    vertx.eventBus().<JsonObject>request("documents.create", documentData)
+    var documentData = new NewDocument(
+      UUID.fromString(createdClientId),
+      "Investment Portfolio Analysis",
+      "A comprehensive review of wealth management strategies " +
+        "including portfolio diversification and risk assessment.",
+      null);
+
+    vertx.eventBus().<Document>request("documents.create", documentData)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var document = reply.body();
+        var document = reply.body().toJson();
 
         assertThat(document.getString("id")).isNotNull();
         assertThat(document.getString("title")).isEqualTo("Investment Portfolio Analysis");
@@ -393,11 +400,11 @@ class RepositoryVerticleTest {
   @Order(15)
   @DisplayName("search: Semantic Match - 'wealth management' must find 'Investment Portfolio' via vector similarity")
   void searches_for_semantic_match_for_wealth_management(Vertx vertx, VertxTestContext ctx) {
-    var query = new JsonObject().put("query", "wealth management");
+    var query = new SearchQuery("wealth management");
 
-    vertx.eventBus().<JsonArray>request("search", query)
+    vertx.eventBus().<SearchResults>request("search", query)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var results = reply.body();
+        var results = reply.body().toJson();
 
         var hasInvestmentDocument = results.stream()
           .map(o -> (JsonObject) o)
@@ -416,11 +423,11 @@ class RepositoryVerticleTest {
   @Order(16)
   @DisplayName("search: Semantic Match - 'financial planning' must find documents via embedding similarity")
   void searches_for_semantic_match_for_financial_planning(Vertx vertx, VertxTestContext ctx) {
-    var query = new JsonObject().put("query", "financial planning");
+    var query = new SearchQuery("financial planning");
 
-    vertx.eventBus().<JsonArray>request("search", query)
+    vertx.eventBus().<SearchResults>request("search", query)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var results = reply.body();
+        var results = reply.body().toJson();
 
         var documentResults = results.stream()
           .map(o -> (JsonObject) o)
@@ -439,19 +446,20 @@ class RepositoryVerticleTest {
   @Order(17)
   @DisplayName("search: Hybrid ranking - exact FTS match should rank higher than vector-only match")
   void ranks_fts_results_higher(Vertx vertx, VertxTestContext ctx) {
-    var documentData = new JsonObject()
-      .put("client_id", createdClientId)
-      .put("title", "Retirement Planning Guide")
-      .put("content", "This retirement guide covers pension options, 401k strategies, " +
-        "and social security benefits for long-term financial security.");
-
-    vertx.eventBus().<JsonObject>request("documents.create", documentData)
+    var documentData = new NewDocument(
+      UUID.fromString(createdClientId),
+      "Retirement Planning Guide",
+      "This retirement guide covers pension options, 401k strategies, " +
+        "and social security benefits for long-term financial security.",
+      null);
+
+    vertx.eventBus().<Document>request("documents.create", documentData)
       .compose(created -> {
-        var query = new JsonObject().put("query", "retirement");
-        return vertx.eventBus().<JsonArray>request("search", query);
+        var query = new SearchQuery("retirement");
+        return vertx.eventBus().<SearchResults>request("search", query);
       })
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var results = reply.body();
+        var results = reply.body().toJson();
 
         var retirementDoc = results.stream()
           .map(o -> (JsonObject) o)
@@ -472,19 +480,20 @@ class RepositoryVerticleTest {
   @Order(18)
   @DisplayName("search: Vector search should find documents when FTS has no match")
   void returns_only_vector_search_results_when_no_fts_match(Vertx vertx, VertxTestContext ctx) {
-    var documentData = new JsonObject()
-      .put("client_id", createdClientId)
-      .put("title", "Asset Allocation Strategy")
-      .put("content", "Diversifying investments across stocks, bonds, and real estate " +
-        "to optimize returns while managing portfolio risk exposure.");
-
-    vertx.eventBus().<JsonObject>request("documents.create", documentData)
+    var documentData = new NewDocument(
+      UUID.fromString(createdClientId),
+      "Asset Allocation Strategy",
+      "Diversifying investments across stocks, bonds, and real estate " +
+        "to optimize returns while managing portfolio risk exposure.",
+      null);
+
+    vertx.eventBus().<Document>request("documents.create", documentData)
       .compose(created -> {
-        var query = new JsonObject().put("query", "investment diversification");
-        return vertx.eventBus().<JsonArray>request("search", query);
+        var query = new SearchQuery("investment diversification");
+        return vertx.eventBus().<SearchResults>request("search", query);
       })
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var results = reply.body();
+        var results = reply.body().toJson();
 
         assertThat(results)
           .as("Vector search should return results for semantic queries")
@@ -498,11 +507,11 @@ class RepositoryVerticleTest {
   @Order(20)
   @DisplayName("search: Vector search limit should cap results at 20")
   void limits_vector_search_results(Vertx vertx, VertxTestContext ctx) {
-    var query = new JsonObject().put("query", "general document search");
+    var query = new SearchQuery("general document search");
 
-    vertx.eventBus().<JsonArray>request("search", query)
+    vertx.eventBus().<SearchResults>request("search", query)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var results = reply.body();
+        var results = reply.body().toJson();
 
         var documentCount = results.stream()
           .map(o -> (JsonObject) o)
@@ -521,14 +530,15 @@ class RepositoryVerticleTest {
   @Order(21)
   @DisplayName("createDocument: must fail gracefully when embeddings service is unavailable")
   void fails_to_create_document_if_embedding_service_call_fails(Vertx vertx, VertxTestContext ctx) {
-    var documentData = new JsonObject()
-      .put("client_id", createdClientId)
-      .put("title", "Test Document")
-      .put("content", "");
+    var documentData = new NewDocument(
+      UUID.fromString(createdClientId),
+      "Test Document",
+      "",
+      null);
 
-    vertx.eventBus().<JsonObject>request("documents.create", documentData)
+    vertx.eventBus().<Document>request("documents.create", documentData)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var document = reply.body();
+        var document = reply.body().toJson();
         assertThat(document.getString("id")).isNotNull();
         ctx.completeNow();
       })));
@@ -538,11 +548,11 @@ class RepositoryVerticleTest {
   @Order(22)
   @DisplayName("search: must handle documents without embeddings gracefully")
   void searches_documents_without_embedding(Vertx vertx, VertxTestContext ctx) {
-    var query = new JsonObject().put("query", "Chandler Bing");
+    var query = new SearchQuery("Chandler Bing");
 
-    vertx.eventBus().<JsonArray>request("search", query)
+    vertx.eventBus().<SearchResults>request("search", query)
       .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
-        var results = reply.body();
+        var results = reply.body().toJson();
 
         assertThat(results)
           .as("FTS should still work regardless of embedding state")
@@ -552,7 +562,343 @@ class RepositoryVerticleTest {
       })));
   }
 
-  private JsonArray generateDeterministicEmbedding(String text) {
+  @Test
+  @Order(23)
+  @DisplayName("search: explains ranks and reports phase timings when asked to")
+  void explains_ranks_when_requested(Vertx vertx, VertxTestContext ctx) {
+    var query = new SearchQuery("financial planning", true);
+
+    vertx.eventBus().<SearchResults>request("search", query)
+      .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
+        var results = reply.body();
+
+        assertThat(results.phases())
+          .extracting(SearchPhase::name)
+          .containsExactlyInAnyOrder("embedding", "clients_fts", "documents_hybrid", "merge");
+
+        var documents = results.hits().stream()
+          .filter(hit -> hit instanceof SearchHit.DocumentHit)
+          .toList();
+        assertThat(documents).isNotEmpty();
+        for (var hit : documents) {
+          var explanation = hit.explanation();
+          assertThat(explanation).isNotNull();
+          assertThat(explanation.ftsPosition() != null || explanation.vectorPosition() != null).isTrue();
+          assertThat(explanation.ftsContribution() + explanation.vectorContribution())
+            .isCloseTo(hit.rank(), offset(1e-9));
+        }
+
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(24)
+  @DisplayName("search: omits rank explanations by default")
+  void omits_explanations_by_default(Vertx vertx, VertxTestContext ctx) {
+    var query = new SearchQuery("financial planning");
+
+    vertx.eventBus().<SearchResults>request("search", query)
+      .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
+        assertThat(reply.body().hits())
+          .isNotEmpty()
+          .allMatch(hit -> hit.explanation() == null);
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(25)
+  @DisplayName("search: leaves document content out unless asked for it")
+  void omits_content_by_default(Vertx vertx, VertxTestContext ctx) {
+    var query = new SearchQuery("utility bill");
+
+    vertx.eventBus().<SearchResults>request("search", query)
+      .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
+        var documents = reply.body().hits().stream()
+          .filter(hit -> hit instanceof SearchHit.DocumentHit)
+          .map(hit -> ((SearchHit.DocumentHit) hit).document())
+          .toList();
+        assertThat(documents).isNotEmpty().allMatch(document -> document.content() == null);
+        assertThat(documents.getFirst().toJson().containsKey("content")).isFalse();
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(26)
+  @DisplayName("search: reads document content from its side table when asked for it")
+  void includes_content_when_requested(Vertx vertx, VertxTestContext ctx) {
+    var query = new SearchQuery("utility bill", false, null, null, true);
+
+    vertx.eventBus().<SearchResults>request("search", query)
+      .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
+        var results = reply.body();
+        var documents = results.hits().stream()
+          .filter(hit -> hit instanceof SearchHit.DocumentHit)
+          .map(hit -> ((SearchHit.DocumentHit) hit).document())
+          .toList();
+        assertThat(documents).isNotEmpty().allMatch(document -> document.content() != null);
+        assertThat(documents).anyMatch(document -> document.content().contains("Could this BE any more expensive?"));
+        assertThat(results.phases()).extracting(SearchPhase::name).contains("contents");
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(27)
+  @DisplayName("createDocument: stores large content compressed with lz4")
+  void compresses_content_with_lz4(Vertx vertx, VertxTestContext ctx) {
+    var content = "Quarterly rebalancing notes for the Geller portfolio. ".repeat(200);
+
+    vertx.eventBus().<Document>request("documents.create",
+        new NewDocument(UUID.fromString(createdClientId), "Rebalancing notes", content, null))
+      .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
+        assertThat(reply.body().content()).isEqualTo(content);
+        try (var connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             var statement = connection.createStatement();
+             var rows = statement.executeQuery(
+               "SELECT pg_column_compression(content) FROM document_contents WHERE document_id = '%s'"
+                 .formatted(reply.body().id()))) {
+          assertThat(rows.next()).isTrue();
+          assertThat(rows.getString(1)).isEqualTo("lz4");
+        }
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(28)
+  @DisplayName("search: scoped to a client, scans its vectors and returns only its documents")
+  void scans_client_vectors(Vertx vertx, VertxTestContext ctx) {
+    var clientId = UUID.fromString(createdClientId);
+    var query = new SearchQuery("utility bill", true, null, null, false, clientId);
+
+    vertx.eventBus().<SearchResults>request("search", query)
+      .onComplete(ctx.succeeding(reply -> ctx.verify(() -> {
+        var results = reply.body();
+        assertThat(results.hits()).isNotEmpty().allMatch(hit -> hit instanceof SearchHit.DocumentHit);
+        assertThat(results.hits())
+          .map(hit -> ((SearchHit.DocumentHit) hit).document().clientId())
+          .containsOnly(clientId);
+        assertThat(results.hits()).anyMatch(hit -> hit.explanation().vectorPosition() != null);
+        assertThat(results.phases()).extracting(SearchPhase::name).contains("client_vectors", "vector_scan");
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(29)
+  @DisplayName("search: scoped to a client, finds a document created after its vectors were cached")
+  void refreshes_client_vectors_on_create(Vertx vertx, VertxTestContext ctx) {
+    var clientId = UUID.fromString(createdClientId);
+    var query = new SearchQuery("sarcastic joke", false, null, null, false, clientId);
+    var eb = vertx.eventBus();
+
+    eb.<SearchResults>request("search", query)
+      .compose(__ -> eb.<Document>request("documents.create",
+        new NewDocument(clientId, "Sarcastic joke", "A sarcastic joke about the coffee shop bill.", null)))
+      .compose(created -> eb.<SearchResults>request("search", query)
+        .map(reply -> Map.entry(created.body().id(), reply.body())))
+      .onComplete(ctx.succeeding(result -> ctx.verify(() -> {
+        assertThat(result.getValue().hits())
+          .map(hit -> ((SearchHit.DocumentHit) hit).document().id())
+          .contains(result.getKey());
+        ctx.completeNow();
+      })));
+  }
+
+  @Test
+  @Order(30)
+  @DisplayName("createDocument: adds each new document's embedding to its client's centroid, routed or not")
+  void maintains_client_centroids() throws Exception {
+    try (var connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+         var statement = connection.createStatement();
+         var rows = statement.executeQuery(
+           "SELECT count(*) FROM documents WHERE client_id = '%s'".formatted(createdClientId))) {
+      assertThat(rows.next()).isTrue();
+      assertThat(rows.getInt(1)).isGreaterThan(1);
+      assertCentroidSumsDocuments(UUID.fromString(createdClientId), rows.getInt(1));
+    }
+  }
+
+  @Test
+  @Order(31)
+  @DisplayName("client index: must match the same clients as PostgreSQL full-text search")
+  void client_index_matches_postgres_fts() throws Exception {
+    var index = ClientIndex.shared();
+    index.load(List.of(database()));
+
+    try (var connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+         var lexemeQuery = connection.prepareStatement("SELECT lexeme FROM unnest(to_tsvector('english', ?))");
+         var ftsQuery = connection.prepareStatement("SELECT id FROM clients WHERE search @@ plainto_tsquery('english', ?)")) {
+      for (var query : List.of("Chandler", "neviswealth", "sarcastic jokes", "office humor Bing", "unmatched")) {
+        var lexemes = new ArrayList<String>();
+        lexemeQuery.setString(1, query);
+        try (var rows = lexemeQuery.executeQuery()) {
+          while (rows.next()) {
+            lexemes.add(rows.getString(1));
+          }
+        }
+        var expected = new ArrayList<UUID>();
+        ftsQuery.setString(1, query);
+        try (var rows = ftsQuery.executeQuery()) {
+          while (rows.next()) {
+            expected.add(rows.getObject(1, UUID.class));
+          }
+        }
+
+        var matches = index.search(lexemes).stream().map(match -> match.client().id()).toList();
+
+        assertThat(matches).as(query).containsExactlyInAnyOrderElementsOf(expected);
+        if (!query.equals("unmatched")) {
+          assertThat(matches).as(query).contains(UUID.fromString(createdClientId));
+        }
+      }
+    }
+  }
+
+  @Test
+  @Order(32)
+  @DisplayName("search: routed to the clients of nearest centroid, keeps their centroids and returns their documents")
+  void routes_vector_search_to_nearest_clients() throws Exception {
+    var routed = Vertx.vertx();
+    try {
+      MessageCodecs.register(routed.eventBus());
+      serveEmbeddings(routed);
+      routed.deployVerticle(new RepositoryVerticle(),
+          new DeploymentOptions().setConfig(config.copy().put("search.routing.clients", 5)))
+        .await(30, TimeUnit.SECONDS);
+      var eb = routed.eventBus();
+      var client = eb.<Client>request("clients.create", new NewClient("Joey", "Tribbiani",
+          "joey.tribbiani@neviswealth.com", "Actor"))
+        .await(30, TimeUnit.SECONDS).body();
+      eb.<Document>request("documents.create", new NewDocument(client.id(),
+          "Lines", "Lines to learn before the shoot.", null))
+        .await(30, TimeUnit.SECONDS);
+      var document = eb.<Document>request("documents.create", new NewDocument(client.id(),
+          "Audition notes", "A joke for the audition, told twice.", null))
+        .await(30, TimeUnit.SECONDS).body();
+      assertCentroidSumsDocuments(client.id(), 2);
+
+      // "sarcastic" is not in the document, so only the vector half can find it.
+      var results = eb.<SearchResults>request("search", new SearchQuery("sarcastic", true))
+        .await(30, TimeUnit.SECONDS).body();
+
+      assertThat(results.phases()).extracting(SearchPhase::name).contains("clients_hybrid");
+      assertThat(results.hits())
+        .filteredOn(hit -> hit instanceof SearchHit.DocumentHit documentHit
+          && documentHit.document().id().equals(document.id()))
+        .singleElement()
+        .satisfies(hit -> assertThat(hit.explanation().vectorPosition()).isNotNull());
+    } finally {
+      routed.close().await(30, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  @Order(33)
+  @DisplayName("search: places client matches from the client index among documents like those from PostgreSQL")
+  void ranks_indexed_clients_like_postgres(Vertx vertx) throws Exception {
+    ClientIndex.shared().load(List.of(database()));
+    var indexed = Vertx.vertx();
+    try {
+      MessageCodecs.register(indexed.eventBus());
+      serveEmbeddings(indexed);
+      indexed.deployVerticle(new RepositoryVerticle(),
+          new DeploymentOptions().setConfig(config.copy().put("client.index.enabled", true)))
+        .await(30, TimeUnit.SECONDS);
+
+      // Each query matches one client, which BM25 and ts_rank cannot order differently.
+      for (var text : List.of("Chandler", "sarcastic jokes")) {
+        var query = new SearchQuery(text, true);
+        var fromPostgres = vertx.eventBus().<SearchResults>request("search", query)
+          .await(30, TimeUnit.SECONDS).body().hits();
+        var fromIndex = indexed.eventBus().<SearchResults>request("search", query)
+          .await(30, TimeUnit.SECONDS).body().hits();
+
+        assertThat(fromPostgres).as(text).anyMatch(hit -> hit instanceof SearchHit.ClientHit);
+        assertThat(fromPostgres).as(text).anyMatch(hit -> hit instanceof SearchHit.DocumentHit);
+        assertThat(fromIndex).as(text).map(RepositoryVerticleTest::hitId)
+          .containsExactlyElementsOf(fromPostgres.stream().map(RepositoryVerticleTest::hitId).toList());
+        assertThat(fromIndex).as(text).filteredOn(hit -> hit instanceof SearchHit.ClientHit)
+          .allSatisfy(hit -> assertThat(hit.rank()).isStrictlyBetween(0.0, 1.0));
+        assertThat(fromIndex).as(text).filteredOn(hit -> hit instanceof SearchHit.DocumentHit).map(SearchHit::rank)
+          .containsExactlyElementsOf(fromPostgres.stream()
+            .filter(hit -> hit instanceof SearchHit.DocumentHit).map(SearchHit::rank).toList());
+      }
+    } finally {
+      indexed.close().await(30, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  @Order(34)
+  @DisplayName("search: scoped to a client with too many documents to scan, finds the same documents in PostgreSQL")
+  void scans_oversized_clients_in_postgres(Vertx vertx) throws Exception {
+    var oversized = Vertx.vertx();
+    try {
+      MessageCodecs.register(oversized.eventBus());
+      serveEmbeddings(oversized);
+      oversized.deployVerticle(new RepositoryVerticle(),
+          new DeploymentOptions().setConfig(config.copy().put("search.client-scan.max-documents", 0)))
+        .await(30, TimeUnit.SECONDS);
+      var query = new SearchQuery("utility bill", true, null, null, false, UUID.fromString(createdClientId));
+
+      var scanned = vertx.eventBus().<SearchResults>request("search", query).await(30, TimeUnit.SECONDS).body();
+      var fromPostgres = oversized.eventBus().<SearchResults>request("search", query)
+        .await(30, TimeUnit.SECONDS).body();
+
+      assertThat(fromPostgres.phases()).extracting(SearchPhase::name).doesNotContain("vector_scan");
+      assertThat(fromPostgres.hits()).isNotEmpty().map(RepositoryVerticleTest::hitId)
+        .containsExactlyElementsOf(scanned.hits().stream().map(RepositoryVerticleTest::hitId).toList());
+    } finally {
+      oversized.close().await(30, TimeUnit.SECONDS);
+    }
+  }
+
+  private static UUID hitId(SearchHit hit) {
+    return switch (hit) {
+      case SearchHit.ClientHit client -> client.client().id();
+      case SearchHit.DocumentHit document -> document.document().id();
+    };
+  }
+
+  private PgConnectOptions database() {
+    return new PgConnectOptions()
+      .setHost(postgres.getHost())
+      .setPort(postgres.getMappedPort(5432))
+      .setDatabase(postgres.getDatabaseName())
+      .setUser(postgres.getUsername())
+      .setPassword(postgres.getPassword());
+  }
+
+  private void assertCentroidSumsDocuments(UUID clientId, int documents) throws Exception {
+    try (var connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+         var statement = connection.createStatement();
+         var rows = statement.executeQuery("""
+           SELECT c.documents, count(d.id) AS expected, c.embedding <=> sum(d.embedding) AS drift
+           FROM client_centroids c
+           JOIN documents d ON d.client_id = c.client_id
+           WHERE c.client_id = '%s'
+           GROUP BY c.client_id, c.documents, c.embedding
+           """.formatted(clientId))) {
+      assertThat(rows.next()).isTrue();
+      assertThat(rows.getInt("documents")).isEqualTo(rows.getInt("expected")).isEqualTo(documents);
+      assertThat(rows.getDouble("drift")).isCloseTo(0, offset(1e-6));
+    }
+  }
+
+  private void serveEmbeddings(Vertx vertx) {
+    vertx.eventBus().<EmbeddingRequest>consumer("embeddings.get", msg -> {
+      var embeddings = msg.body().texts().stream()
+        .map(this::generateDeterministicEmbedding)
+        .toList();
+      msg.reply(new Embeddings(embeddings));
+    });
+  }
+
+  private float[] generateDeterministicEmbedding(String text) {
     var embedding = new JsonArray();
     var lowerText = text.toLowerCase();
     var hash = lowerText.hashCode();
@@ -582,15 +928,15 @@ class RepositoryVerticleTest {
     embedding.set(index, embedding.getDouble(index) + boost);
   }
 
-  private JsonArray normalizeEmbedding(JsonArray embedding) {
+  private float[] normalizeEmbedding(JsonArray embedding) {
     double norm = 0;
     for (int i = 0; i < embedding.size(); i++) {
       norm += Math.pow(embedding.getDouble(i), 2);
     }
     norm = Math.sqrt(norm);
-    var normalized = new JsonArray();
+    var normalized = new float[embedding.size()];
     for (int i = 0; i < embedding.size(); i++) {
-      normalized.add(embedding.getDouble(i) / norm);
+      normalized[i] = (float) (embedding.getDouble(i) / norm);
     }
     return normalized;
   }
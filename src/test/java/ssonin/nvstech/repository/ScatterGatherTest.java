@@ -0,0 +1,108 @@
+package ssonin.nvstech.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ssonin.nvstech.model.Client;
+import ssonin.nvstech.model.Document;
+import ssonin.nvstech.model.SearchHit;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class ScatterGatherTest {
+
+  @Test
+  @DisplayName("fuses documents by their positions across all shards, not within each shard")
+  void fuses_by_global_positions() {
+    var a = candidate("a", 0.9, 0.40);
+    var b = candidate("b", 0.5, null);
+    var c = candidate("c", null, 0.10);
+    var d = candidate("d", 0.7, 0.20);
+
+    var hits = ScatterGather.fuseDocuments(List.of(List.of(a, b), List.of(c, d)), true);
+
+    assertThat(hits).extracting(hit -> ((SearchHit.DocumentHit) hit).document().title())
+      .containsExactly("a", "d", "c", "b");
+    var first = hits.getFirst();
+    assertThat(first.explanation().ftsPosition()).isEqualTo(1);
+    assertThat(first.explanation().vectorPosition()).isEqualTo(3);
+    assertThat(first.rank()).isCloseTo(1.0 / 61 + 1.0 / 63, offset(1e-12));
+    var last = hits.getLast();
+    assertThat(last.explanation().ftsPosition()).isEqualTo(3);
+    assertThat(last.explanation().vectorPosition()).isNull();
+    assertThat(last.explanation().vectorContribution()).isZero();
+  }
+
+  @Test
+  @DisplayName("keeps only each retriever's global top candidates and the top documents")
+  void keeps_global_top_candidates() {
+    var shards = new ArrayList<List<ScatterGather.Candidate>>();
+    for (var shard = 0; shard < 3; shard++) {
+      var candidates = new ArrayList<ScatterGather.Candidate>();
+      for (var i = 0; i < 20; i++) {
+        candidates.add(candidate(shard + "-" + i, 1.0 - shard * 0.3 - i * 0.01, null));
+      }
+      shards.add(candidates);
+    }
+
+    var hits = ScatterGather.fuseDocuments(shards, false);
+
+    assertThat(hits).hasSize(ScatterGather.DOCUMENT_RESULTS);
+    assertThat(hits).extracting(hit -> ((SearchHit.DocumentHit) hit).document().title())
+      .allMatch(title -> title.startsWith("0-"));
+    assertThat(hits).allMatch(hit -> hit.explanation() == null);
+  }
+
+  @Test
+  @DisplayName("merges client hits by rank and renumbers their positions")
+  void merges_clients() {
+    var hits = ScatterGather.mergeClients(List.of(
+      List.of(clientHit("Monica", 0.6), clientHit("Ross", 0.2)),
+      List.of(clientHit("Rachel", 0.4))), true);
+
+    assertThat(hits).extracting(hit -> ((SearchHit.ClientHit) hit).client().firstName())
+      .containsExactly("Monica", "Rachel", "Ross");
+    assertThat(hits).extracting(hit -> hit.explanation().ftsPosition())
+      .containsExactly(1, 2, 3);
+  }
+
+  @Test
+  @DisplayName("fuses client full-text matches with the clients of nearest centroid across shards")
+  void fuses_clients_with_centroids() {
+    var monica = clientCandidate("Monica", 0.6, 0.30);
+    var ross = clientCandidate("Ross", 0.2, null);
+    var rachel = clientCandidate("Rachel", null, 0.10);
+    var joey = clientCandidate("Joey", null, 0.50);
+
+    var hits = ScatterGather.fuseClients(List.of(List.of(monica, ross), List.of(rachel, joey)), 2, true);
+
+    assertThat(hits).extracting(hit -> ((SearchHit.ClientHit) hit).client().firstName())
+      .containsExactly("Monica", "Rachel", "Ross");
+    var first = hits.getFirst();
+    assertThat(first.explanation().ftsPosition()).isEqualTo(1);
+    assertThat(first.explanation().vectorPosition()).isEqualTo(2);
+    assertThat(first.rank()).isCloseTo(1.0 / 61 + 1.0 / 62, offset(1e-12));
+    assertThat(hits.get(1).explanation().ftsPosition()).isNull();
+  }
+
+  private static ScatterGather.ClientCandidate clientCandidate(String firstName, Double ftsScore,
+                                                               Double centroidDistance) {
+    var client = new Client(UUID.randomUUID(), OffsetDateTime.now(), firstName, "Geller", firstName + "@example.com", null);
+    return new ScatterGather.ClientCandidate(client, ftsScore, centroidDistance);
+  }
+
+  private static ScatterGather.Candidate candidate(String title, Double ftsScore, Double vectorDistance) {
+    var document = new Document(UUID.randomUUID(), OffsetDateTime.now(), UUID.randomUUID(), title, title, null);
+    return new ScatterGather.Candidate(document, ftsScore, vectorDistance);
+  }
+
+  private static SearchHit clientHit(String firstName, double rank) {
+    var client = new Client(UUID.randomUUID(), OffsetDateTime.now(), firstName, "Geller", firstName + "@example.com", null);
+    return new SearchHit.ClientHit(client, rank, null);
+  }
+}
@@ -0,0 +1,195 @@
+package ssonin.nvstech.repository;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import ssonin.nvstech.eventbus.MessageCodecs;
+import ssonin.nvstech.model.*;
+
+import java.sql.DriverManager;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the repository over two databases. Emails are picked so that one client lands on each shard.
+ */
+@Testcontainers
+@ExtendWith(VertxExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ShardingTest {
+
+  private static final DockerImageName IMAGE = DockerImageName.parse("pgvector/pgvector:pg16");
+  private static final int EMBEDDING_DIMENSION = 384;
+
+  @Container
+  private static final PostgreSQLContainer<?> shard0 = new PostgreSQLContainer<>(IMAGE)
+    .withDatabaseName("nvs_tech_test")
+    .withUsername("test_user")
+    .withPassword("test_password");
+
+  @Container
+  private static final PostgreSQLContainer<?> shard1 = new PostgreSQLContainer<>(IMAGE)
+    .withDatabaseName("nvs_tech_test")
+    .withUsername("test_user")
+    .withPassword("test_password");
+
+  private final String[] emails = new String[2];
+  private final UUID[] clientIds = new UUID[2];
+  private final UUID[] documentIds = new UUID[2];
+
+  @BeforeAll
+  void setup(Vertx vertx) throws Exception {
+    var config = new JsonObject()
+      .put("db", connectOptions(shard0))
+      .put("db.shards", new JsonArray().add(new JsonObject()
+        .put("host", shard1.getHost())
+        .put("port", shard1.getMappedPort(5432))));
+    for (var db : RepositoryVerticle.databases(config)) {
+      Flyway.configure()
+        .dataSource("jdbc:postgresql://%s:%d/%s".formatted(db.getHost(), db.getPort(), db.getDatabase()),
+          db.getUser(), db.getPassword())
+        .schemas("public")
+        .locations("classpath:db/migration")
+        .validateMigrationNaming(true)
+        .load()
+        .migrate();
+    }
+
+    for (var i = 0; emails[0] == null || emails[1] == null; i++) {
+      var email = "client.%d@neviswealth.com".formatted(i);
+      emails[Math.floorMod(email.toLowerCase(Locale.ROOT).hashCode(), 2)] = email;
+    }
+
+    MessageCodecs.register(vertx.eventBus());
+    vertx.eventBus().<EmbeddingRequest>consumer("embeddings.get", msg ->
+      msg.reply(new Embeddings(msg.body().texts().stream().map(ShardingTest::embedding).toList())));
+    vertx.deployVerticle(new RepositoryVerticle(), new DeploymentOptions().setConfig(config))
+      .await(30, TimeUnit.SECONDS);
+  }
+
+  @Test
+  @Order(1)
+  @DisplayName("clients are stored on the shard their email hashes to and found there by id")
+  void places_clients_by_email(Vertx vertx) throws Exception {
+    for (var shard = 0; shard < 2; shard++) {
+      var created = vertx.eventBus()
+        .<Client>request("clients.create", new NewClient("Portfolio", "Owner" + shard, emails[shard], null))
+        .await(30, TimeUnit.SECONDS);
+      clientIds[shard] = created.body().id();
+
+      assertThat(count(shard, "clients")).isEqualTo(1);
+      var found = vertx.eventBus()
+        .<Client>request("clients.get", new ClientLookup(clientIds[shard]))
+        .await(30, TimeUnit.SECONDS);
+      assertThat(found.body().email()).isEqualTo(emails[shard]);
+    }
+  }
+
+  @Test
+  @Order(2)
+  @DisplayName("a duplicate email is rejected on its shard, whatever its case")
+  void rejects_duplicate_email(Vertx vertx) {
+    assertThatThrownBy(() -> vertx.eventBus()
+      .<Client>request("clients.create", new NewClient("Another", "Owner", emails[1].toUpperCase(Locale.ROOT), null))
+      .await(30, TimeUnit.SECONDS))
+      .isInstanceOfSatisfying(ReplyException.class, e -> assertThat(e.failureCode()).isEqualTo(409));
+  }
+
+  @Test
+  @Order(3)
+  @DisplayName("documents are stored on their client's shard")
+  void places_documents_with_their_client(Vertx vertx) throws Exception {
+    for (var shard = 0; shard < 2; shard++) {
+      var created = vertx.eventBus()
+        .<Document>request("documents.create", new NewDocument(clientIds[shard], "Portfolio review " + shard,
+          "Quarterly portfolio review and rebalancing plan for shard " + shard, null))
+        .await(30, TimeUnit.SECONDS);
+      documentIds[shard] = created.body().id();
+
+      assertThat(count(shard, "documents")).isEqualTo(1);
+    }
+  }
+
+  @Test
+  @Order(4)
+  @DisplayName("search gathers clients and documents from every shard into one ranking")
+  void searches_all_shards(Vertx vertx) throws Exception {
+    var reply = vertx.eventBus()
+      .<SearchResults>request("search", new SearchQuery("portfolio", true))
+      .await(30, TimeUnit.SECONDS);
+    var hits = reply.body().hits();
+
+    assertThat(hits).filteredOn(hit -> hit instanceof SearchHit.ClientHit)
+      .extracting(hit -> ((SearchHit.ClientHit) hit).client().id())
+      .containsExactlyInAnyOrder(clientIds);
+    assertThat(hits).filteredOn(hit -> hit instanceof SearchHit.DocumentHit)
+      .extracting(hit -> ((SearchHit.DocumentHit) hit).document().clientId())
+      .containsExactlyInAnyOrder(clientIds);
+    assertThat(hits).extracting(SearchHit::rank).isSortedAccordingTo((a, b) -> Double.compare(b, a));
+    assertThat(hits).filteredOn(hit -> hit instanceof SearchHit.DocumentHit)
+      .extracting(hit -> hit.explanation().ftsPosition())
+      .containsExactlyInAnyOrder(1, 2);
+  }
+
+  @Test
+  @Order(5)
+  @DisplayName("similar documents are found on every shard, whichever shard holds the document")
+  void finds_similar_documents_on_all_shards(Vertx vertx) throws Exception {
+    var reply = vertx.eventBus()
+      .<SearchResults>request("documents.similar", new SimilarQuery(documentIds[1], null, null, null))
+      .await(30, TimeUnit.SECONDS);
+
+    assertThat(reply.body().hits())
+      .extracting(hit -> ((SearchHit.DocumentHit) hit).document().id())
+      .containsExactly(documentIds[0]);
+  }
+
+  private static JsonObject connectOptions(PostgreSQLContainer<?> postgres) {
+    return new JsonObject()
+      .put("host", postgres.getHost())
+      .put("port", postgres.getMappedPort(5432))
+      .put("database", postgres.getDatabaseName())
+      .put("user", postgres.getUsername())
+      .put("password", postgres.getPassword());
+  }
+
+  private static long count(int shard, String table) throws Exception {
+    var postgres = shard == 0 ? shard0 : shard1;
+    try (var connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+         var statement = connection.createStatement();
+         var rows = statement.executeQuery("SELECT count(*) FROM " + table)) {
+      rows.next();
+      return rows.getLong(1);
+    }
+  }
+
+  private static float[] embedding(String text) {
+    var random = new Random(text.toLowerCase(Locale.ROOT).hashCode());
+    var embedding = new float[EMBEDDING_DIMENSION];
+    var norm = 0.0;
+    for (var i = 0; i < embedding.length; i++) {
+      embedding[i] = (float) random.nextGaussian();
+      norm += embedding[i] * embedding[i];
+    }
+    for (var i = 0; i < embedding.length; i++) {
+      embedding[i] /= (float) Math.sqrt(norm);
+    }
+    return embedding;
+  }
+}
@@ -0,0 +1,91 @@
+package ssonin.nvstech.text;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ssonin.nvstech.model.Client;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class Bm25IndexTest {
+
+  private static final OffsetDateTime CREATED_AT = OffsetDateTime.of(2026, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+  @Test
+  @DisplayName("matches only the clients holding every lexeme")
+  void matches_all_lexemes() {
+    var index = new Bm25Index();
+    index.add(client(1), new String[] {"chandler", "bing", "joke"}, new String[] {"A", "A", "C"});
+    index.add(client(2), new String[] {"monica", "geller", "cook"}, new String[] {"A", "A", "C"});
+    index.add(client(3), new String[] {"chandler", "muriel"}, new String[] {"A", "A"});
+
+    assertThat(ids(index.search(List.of("chandler")))).containsExactlyInAnyOrder(1L, 3L);
+    assertThat(ids(index.search(List.of("chandler", "joke")))).containsExactly(1L);
+    assertThat(ids(index.search(List.of("chandler", "cook")))).isEmpty();
+    assertThat(ids(index.search(List.of("unknown")))).isEmpty();
+    assertThat(index.search(List.of())).isEmpty();
+  }
+
+  @Test
+  @DisplayName("ranks a name match above an email match above a description match")
+  void weighs_labels() {
+    var index = new Bm25Index();
+    index.add(client(1), new String[] {"wealth", "other"}, new String[] {"C", "A"});
+    index.add(client(2), new String[] {"wealth", "other"}, new String[] {"A", "C"});
+    index.add(client(3), new String[] {"wealth", "other"}, new String[] {"B", "B"});
+    index.add(client(4), new String[] {"unrelated"}, new String[] {"A"});
+
+    assertThat(ids(index.search(List.of("wealth")))).containsExactly(2L, 3L, 1L);
+  }
+
+  @Test
+  @DisplayName("ranks a client matching a rare lexeme above one matching a common lexeme")
+  void weighs_rare_lexemes_higher() {
+    var index = new Bm25Index();
+    index.add(client(1), new String[] {"common", "rare"}, new String[] {"C", "A"});
+    index.add(client(2), new String[] {"common", "frequent"}, new String[] {"A", "A"});
+    for (var i = 3; i < 20; i++) {
+      index.add(client(i), new String[] {"frequent"}, new String[] {"A"});
+    }
+
+    var matches = index.search(List.of("common"));
+    var rare = index.search(List.of("rare")).getFirst().score();
+    var frequent = index.search(List.of("frequent")).getFirst().score();
+
+    assertThat(ids(matches)).containsExactly(2L, 1L);
+    assertThat(rare).isGreaterThan(frequent);
+  }
+
+  @Test
+  @DisplayName("counts each position of a lexeme with its label's weight")
+  void sums_position_weights() {
+    assertThat(Bm25Index.frequency("A")).isEqualTo(1.0f);
+    assertThat(Bm25Index.frequency("AAC")).isCloseTo(2.2f, offset(1e-6f));
+    assertThat(Bm25Index.frequency("B")).isCloseTo(0.4f, offset(1e-6f));
+    assertThat(Bm25Index.frequency("")).isCloseTo(0.1f, offset(1e-6f));
+  }
+
+  @Test
+  @DisplayName("adds each client once")
+  void adds_clients_once() {
+    var index = new Bm25Index();
+    assertThat(index.add(client(1), new String[] {"chandler"}, new String[] {"A"})).isTrue();
+    assertThat(index.add(client(1), new String[] {"chandler"}, new String[] {"A"})).isFalse();
+
+    assertThat(index.size()).isEqualTo(1);
+    assertThat(index.search(List.of("chandler"))).hasSize(1);
+  }
+
+  private static Client client(long id) {
+    return new Client(new UUID(0, id), CREATED_AT.plusSeconds(id), "First", "Last", "client@example.com", null);
+  }
+
+  private static List<Long> ids(List<Bm25Index.Match> matches) {
+    return matches.stream().map(match -> match.client().id().getLeastSignificantBits()).toList();
+  }
+}
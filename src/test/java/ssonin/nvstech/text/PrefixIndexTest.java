@@ -0,0 +1,117 @@
+package ssonin.nvstech.text;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ssonin.nvstech.model.Suggestion;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.Comparator.comparingLong;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefixIndexTest {
+
+  @Test
+  @DisplayName("completes a prefix of any word, ignoring case and extra whitespace")
+  void completes_word_prefixes() {
+    var index = new PrefixIndex(100);
+    index.add("client", "Chandler Bing", 1);
+    index.add("document", "Quarterly  portfolio review", 1);
+    index.add("client", "Monica Geller", 1);
+
+    assertThat(texts(index.complete("cha", 10))).containsExactly("Chandler Bing");
+    assertThat(texts(index.complete("BI", 10))).containsExactly("Chandler Bing");
+    assertThat(texts(index.complete("chandler b", 10))).containsExactly("Chandler Bing");
+    assertThat(texts(index.complete("portfolio  rev", 10))).containsExactly("Quarterly  portfolio review");
+    assertThat(texts(index.complete("andler", 10))).isEmpty();
+    assertThat(texts(index.complete("chandler bingo", 10))).isEmpty();
+    assertThat(index.complete("  ", 10)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("ranks completions by popularity, then alphabetically")
+  void ranks_by_popularity() {
+    var index = new PrefixIndex(100);
+    index.add("document", "Tax return", 1);
+    index.add("document", "Tax planning", 3);
+    index.add("document", "Tax audit", 1);
+    index.add("client", "Taxi Driver", 2);
+
+    assertThat(index.complete("tax", 10)).containsExactly(
+      new Suggestion("Tax planning", "document", 3),
+      new Suggestion("Taxi Driver", "client", 2),
+      new Suggestion("Tax audit", "document", 1),
+      new Suggestion("Tax return", "document", 1));
+    assertThat(texts(index.complete("tax", 2))).containsExactly("Tax planning", "Taxi Driver");
+  }
+
+  @Test
+  @DisplayName("moves a completion up as it is added again and searched for")
+  void counts_uses() {
+    var index = new PrefixIndex(100);
+    index.add("document", "Tax planning", 3);
+    index.add("document", "Tax return", 1);
+
+    index.add("document", "tax RETURN", 1);
+    index.used("Tax Return");
+    index.used("tax  return ");
+    index.used("Tax");
+
+    assertThat(index.complete("ret", 10)).containsExactly(new Suggestion("Tax return", "document", 4));
+    assertThat(texts(index.complete("t", 10))).containsExactly("Tax return", "Tax planning");
+    assertThat(index.size()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("keeps the most popular completions of every prefix among many")
+  void matches_exhaustive_ranking() {
+    var random = new Random(42);
+    var index = new PrefixIndex(10_000);
+    var words = List.of("alpha", "alpine", "alps", "beta", "bet", "better", "gamma", "gam");
+    var popularity = new HashMap<String, Long>();
+    for (var i = 0; i < 2_000; i++) {
+      var text = words.get(random.nextInt(words.size())) + " " + words.get(random.nextInt(words.size())) + " " + i;
+      var uses = 1 + random.nextInt(50);
+      index.add("document", text, uses);
+      popularity.put(text, (long) uses);
+    }
+    for (var i = 0; i < 20_000; i++) {
+      var text = words.get(random.nextInt(words.size())) + " " + words.get(random.nextInt(words.size())) + " "
+        + random.nextInt(2_000);
+      index.used(text);
+      popularity.computeIfPresent(text, (__, uses) -> uses + 1);
+    }
+
+    for (var prefix : List.of("a", "alp", "alps", "be", "bett", "g", "gamma a", "1", "19")) {
+      var expected = popularity.entrySet().stream()
+        .filter(entry -> startsAWord(entry.getKey(), prefix))
+        .map(entry -> new Suggestion(entry.getKey(), "document", entry.getValue()))
+        .sorted(comparingLong(Suggestion::popularity).reversed().thenComparing(Suggestion::text))
+        .limit(PrefixIndex.MAX_RESULTS)
+        .toList();
+      assertThat(index.complete(prefix, PrefixIndex.MAX_RESULTS)).as(prefix).containsExactlyElementsOf(expected);
+    }
+  }
+
+  @Test
+  @DisplayName("ignores new completions once full")
+  void bounds_completions() {
+    var index = new PrefixIndex(2);
+    assertThat(index.add("client", "Chandler Bing", 1)).isTrue();
+    assertThat(index.add("client", "Monica Geller", 1)).isTrue();
+    assertThat(index.add("client", "Ross Geller", 1)).isFalse();
+    assertThat(index.add("client", "Monica Geller", 1)).isTrue();
+
+    assertThat(index.complete("geller", 10)).containsExactly(new Suggestion("Monica Geller", "client", 2));
+  }
+
+  private static boolean startsAWord(String text, String prefix) {
+    return text.startsWith(prefix) || text.contains(" " + prefix);
+  }
+
+  private static List<String> texts(List<Suggestion> suggestions) {
+    return suggestions.stream().map(Suggestion::text).toList();
+  }
+}
@@ -0,0 +1,43 @@
+package ssonin.nvstech.tracing;
+
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileSpanExporterTest {
+
+  @Test
+  @DisplayName("writes one JSON line per finished span, linked to its parent")
+  void writes_spans_as_json_lines(@TempDir Path dir) throws Exception {
+    var file = dir.resolve("spans.jsonl");
+
+    try (var openTelemetry = Tracing.openTelemetry(SimpleSpanProcessor.create(new FileSpanExporter(file)))) {
+      var tracer = openTelemetry.getTracer("test");
+      var parent = tracer.spanBuilder("search").startSpan();
+      try (var __ = parent.makeCurrent()) {
+        tracer.spanBuilder("embeddings.get")
+          .setAttribute("messaging.system", "vertx-eventbus")
+          .startSpan()
+          .end();
+      }
+      parent.end();
+    }
+
+    var lines = Files.readAllLines(file).stream().map(JsonObject::new).toList();
+    assertThat(lines).hasSize(2);
+    var child = lines.get(0);
+    var parent = lines.get(1);
+    assertThat(child.getString("name")).isEqualTo("embeddings.get");
+    assertThat(child.getString("trace_id")).isEqualTo(parent.getString("trace_id"));
+    assertThat(child.getString("parent_span_id")).isEqualTo(parent.getString("span_id"));
+    assertThat(child.getJsonObject("attributes").getString("messaging.system")).isEqualTo("vertx-eventbus");
+    assertThat(parent.getString("parent_span_id")).isNull();
+  }
+}
@@ -0,0 +1,170 @@
+package ssonin.nvstech.tracing;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.tracing.opentelemetry.OpenTelemetryOptions;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import ssonin.nvstech.api.ApiVerticle;
+import ssonin.nvstech.repository.EmbeddingVerticle;
+import ssonin.nvstech.repository.RepositoryVerticle;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+@ExtendWith(VertxExtension.class)
+@WireMockTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TracingTest {
+
+  private static final int HTTP_PORT = 18890;
+  private static final String EMBEDDINGS_ENDPOINT = "/embeddings";
+
+  @Container
+  private static final PostgreSQLContainer<?> postgres =
+    new PostgreSQLContainer<>(DockerImageName.parse("pgvector/pgvector:pg16"))
+      .withDatabaseName("nvs_tech_test")
+      .withUsername("test_user")
+      .withPassword("test_password");
+
+  private final InMemorySpanExporter spanExporter = InMemorySpanExporter.create();
+  private OpenTelemetrySdk openTelemetry;
+  private Vertx vertx;
+  private WebClient webClient;
+
+  @BeforeAll
+  void setup(Vertx clientVertx, VertxTestContext ctx, WireMockRuntimeInfo wmRuntimeInfo) {
+    Flyway.configure()
+      .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+      .schemas("public")
+      .locations("classpath:db/migration")
+      .validateMigrationNaming(true)
+      .load()
+      .migrate();
+
+    var config = new JsonObject()
+      .put("db", new JsonObject()
+        .put("host", postgres.getHost())
+        .put("port", postgres.getMappedPort(5432))
+        .put("database", postgres.getDatabaseName())
+        .put("user", postgres.getUsername())
+        .put("password", postgres.getPassword()))
+      .put("http.port", HTTP_PORT)
+      .put("services", new JsonObject()
+        .put("embedding", new JsonObject()
+          .put("host", "localhost")
+          .put("port", wmRuntimeInfo.getHttpPort())));
+    var options = new DeploymentOptions().setConfig(config);
+
+    openTelemetry = Tracing.openTelemetry(SimpleSpanProcessor.create(spanExporter));
+    vertx = Vertx.vertx(new VertxOptions().setTracingOptions(new OpenTelemetryOptions(openTelemetry)));
+    webClient = WebClient.create(clientVertx, new WebClientOptions()
+      .setDefaultHost("localhost")
+      .setDefaultPort(HTTP_PORT));
+
+    vertx.deployVerticle(new RepositoryVerticle(), options)
+      .compose(__ -> vertx.deployVerticle(new EmbeddingVerticle(), options))
+      .compose(__ -> vertx.deployVerticle(new ApiVerticle(), options))
+      .onComplete(ctx.succeedingThenComplete());
+  }
+
+  @BeforeEach
+  void stubEmbeddingService() {
+    spanExporter.reset();
+    stubFor(post(urlEqualTo(EMBEDDINGS_ENDPOINT))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withHeader("Content-Type", "application/json")
+        .withBody(new JsonObject()
+          .put("embeddings", new JsonArray().add(generateMockEmbedding()))
+          .encode())));
+  }
+
+  @AfterAll
+  void tearDown() throws Exception {
+    webClient.close();
+    vertx.close().await(10, TimeUnit.SECONDS);
+    openTelemetry.close();
+  }
+
+  private JsonArray generateMockEmbedding() {
+    var embedding = new JsonArray();
+    for (var i = 0; i < 384; i++) {
+      embedding.add(Math.sin(i * 0.1) * 0.5);
+    }
+    return embedding;
+  }
+
+  @Test
+  @DisplayName("GET /search: one trace spans HTTP, event bus, pg queries and the embedding call")
+  void traces_search_end_to_end(VertxTestContext ctx) {
+    webClient.get("/api/v1/search")
+      .addQueryParam("q", "portfolio")
+      .send()
+      .onComplete(ctx.succeeding(response -> vertx.setTimer(200, __ -> ctx.verify(() -> {
+        assertThat(response.statusCode()).isEqualTo(200);
+
+        var spans = spanExporter.getFinishedSpanItems();
+        var root = spans.stream()
+          .filter(span -> span.getKind() == SpanKind.SERVER && !span.getParentSpanContext().isValid())
+          .findFirst()
+          .orElseThrow();
+        var traceId = root.getTraceId();
+        assertThat(spans).allMatch(span -> span.getTraceId().equals(traceId));
+
+        assertThat(spans)
+          .filteredOn(span -> "vertx-eventbus".equals(attribute(span, "messaging.system")))
+          .extracting(span -> attribute(span, "messaging.destination.name"))
+          .contains("search", "embeddings.get");
+        assertThat(spans)
+          .filteredOn(span -> span.getKind() == SpanKind.CLIENT && hasAttributePrefix(span, "db."))
+          .hasSizeGreaterThanOrEqualTo(2);
+        var embeddingCall = spans.stream()
+          .filter(span -> span.getKind() == SpanKind.CLIENT && hasAttributePrefix(span, "http."))
+          .findFirst()
+          .orElseThrow();
+
+        var traceparent = findAll(postRequestedFor(urlEqualTo(EMBEDDINGS_ENDPOINT)))
+          .getFirst()
+          .getHeader("traceparent");
+        assertThat(traceparent).isEqualTo("00-%s-%s-01".formatted(traceId, embeddingCall.getSpanId()));
+
+        ctx.completeNow();
+      }))));
+  }
+
+  private static String attribute(SpanData span, String key) {
+    return span.getAttributes().asMap().entrySet().stream()
+      .filter(entry -> entry.getKey().getKey().equals(key))
+      .map(entry -> String.valueOf(entry.getValue()))
+      .findFirst()
+      .orElse(null);
+  }
+
+  private static boolean hasAttributePrefix(SpanData span, String prefix) {
+    return span.getAttributes().asMap().keySet().stream()
+      .anyMatch(key -> key.getKey().startsWith(prefix));
+  }
+}
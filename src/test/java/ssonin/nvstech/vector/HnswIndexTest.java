@@ -0,0 +1,221 @@
+package ssonin.nvstech.vector;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswIndexTest {
+
+  private static final int DIMENSION = 32;
+  private static final int SIZE = 2_000;
+  private static final int K = 10;
+
+  @Test
+  @DisplayName("finds most of the exact nearest neighbours")
+  void approximates_exact_search() {
+    var random = new Random(42);
+    var vectors = randomVectors(random, SIZE);
+    var ids = IntStream.range(0, SIZE).mapToObj(i -> new UUID(0, i)).toArray(UUID[]::new);
+    var index = new HnswIndex(DIMENSION);
+    for (var i = 0; i < SIZE; i++) {
+      assertThat(index.add(ids[i], i, vectors[i])).isTrue();
+    }
+
+    var expected = 0;
+    var found = 0;
+    for (var query : randomVectors(random, 50)) {
+      var exact = IntStream.range(0, SIZE).boxed()
+        .sorted(Comparator.comparingDouble(i -> cosineDistance(query, vectors[i])))
+        .limit(K)
+        .map(i -> ids[i])
+        .toList();
+      var approximate = new HashSet<UUID>();
+      index.search(query, K, VectorReplica.DEFAULT_EF_SEARCH).forEach(neighbour -> approximate.add(neighbour.id()));
+      expected += exact.size();
+      found += (int) exact.stream().filter(approximate::contains).count();
+    }
+
+    assertThat(index.size()).isEqualTo(SIZE);
+    assertThat((double) found / expected).isGreaterThan(0.9);
+  }
+
+  @Test
+  @DisplayName("returns neighbours nearest first, with their creation times")
+  void orders_neighbours_by_distance() {
+    var index = new HnswIndex(2);
+    index.add(new UUID(0, 1), 100, new float[] {1, 0});
+    index.add(new UUID(0, 2), 200, new float[] {1, 1});
+    index.add(new UUID(0, 3), 300, new float[] {0, 1});
+
+    var neighbours = index.search(new float[] {1, 0.1f}, 3, 10);
+
+    assertThat(neighbours).extracting(HnswIndex.Neighbour::id)
+      .containsExactly(new UUID(0, 1), new UUID(0, 2), new UUID(0, 3));
+    assertThat(neighbours).extracting(HnswIndex.Neighbour::createdAtMillis).containsExactly(100L, 200L, 300L);
+    assertThat(neighbours.getFirst().distance()).isLessThan(neighbours.getLast().distance());
+    assertThat(index.latestCreatedAtMillis()).isEqualTo(300);
+  }
+
+  @Test
+  @DisplayName("skips a document it already holds")
+  void skips_duplicates() {
+    var index = new HnswIndex(DIMENSION);
+    var vector = randomVectors(new Random(7), 1)[0];
+
+    assertThat(index.add(new UUID(0, 1), 0, vector)).isTrue();
+    assertThat(index.add(new UUID(0, 1), 0, vector)).isFalse();
+    assertThat(index.size()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("skips documents it already holds among more equal vectors than a graph search returns")
+  void skips_duplicates_among_equal_vectors(@TempDir Path dir) throws Exception {
+    var index = new HnswIndex(DIMENSION);
+    var vector = randomVectors(new Random(11), 1)[0];
+    var size = HnswIndex.EF_CONSTRUCTION * 4;
+    for (var i = 0; i < size; i++) {
+      assertThat(index.add(new UUID(i, i), i, vector)).isTrue();
+    }
+    var snapshot = dir.resolve("replica.hnsw");
+    index.save(snapshot);
+    var loaded = HnswIndex.load(snapshot);
+
+    for (var i = 0; i < size; i++) {
+      assertThat(index.add(new UUID(i, i), i, vector)).isFalse();
+      assertThat(loaded.add(new UUID(i, i), i, vector)).isFalse();
+    }
+    assertThat(index.size()).isEqualTo(size);
+    assertThat(loaded.size()).isEqualTo(size);
+  }
+
+  @Test
+  @DisplayName("finds nothing while empty")
+  void searches_empty_index() {
+    var index = new HnswIndex(DIMENSION);
+
+    assertThat(index.search(new float[DIMENSION], K, VectorReplica.DEFAULT_EF_SEARCH)).isEmpty();
+    assertThat(index.size()).isZero();
+  }
+
+  @Test
+  @DisplayName("loads a snapshot that answers like the index it was saved from")
+  void round_trips_snapshots(@TempDir Path dir) throws Exception {
+    var random = new Random(3);
+    var index = new HnswIndex(DIMENSION);
+    // Spans more than one chunk of nodes.
+    var size = (1 << 14) + 100;
+    for (var i = 0; i < size; i++) {
+      index.add(UUID.randomUUID(), i, randomVectors(random, 1)[0]);
+    }
+    var snapshot = dir.resolve("replica.hnsw");
+
+    index.save(snapshot);
+    var loaded = HnswIndex.load(snapshot);
+
+    assertThat(loaded.size()).isEqualTo(index.size());
+    assertThat(loaded.dimension()).isEqualTo(DIMENSION);
+    assertThat(loaded.latestCreatedAtMillis()).isEqualTo(index.latestCreatedAtMillis());
+    assertThat(loaded.id(size - 1)).isEqualTo(index.id(size - 1));
+    assertThat(loaded.vector(size - 1)).containsExactly(index.vector(size - 1));
+    for (var query : randomVectors(random, 10)) {
+      assertThat(loaded.search(query, K, VectorReplica.DEFAULT_EF_SEARCH))
+        .isEqualTo(index.search(query, K, VectorReplica.DEFAULT_EF_SEARCH));
+    }
+    assertThat(loaded.add(UUID.randomUUID(), size, randomVectors(random, 1)[0])).isTrue();
+  }
+
+  @Test
+  @DisplayName("answers searches while it is being filled and saved")
+  void searches_during_additions_and_saves(@TempDir Path dir) throws Exception {
+    var random = new Random(11);
+    var vectors = randomVectors(random, SIZE * 5);
+    var ids = IntStream.range(0, vectors.length).mapToObj(i -> new UUID(0, i)).toArray(UUID[]::new);
+    var known = Set.of(ids);
+    var index = new HnswIndex(DIMENSION);
+    var snapshot = dir.resolve("replica.hnsw");
+    var executor = Executors.newFixedThreadPool(2);
+    try {
+      var additions = executor.submit(() -> {
+        for (var i = 0; i < vectors.length; i++) {
+          index.add(ids[i], i, vectors[i]);
+        }
+      });
+      var saves = executor.submit(() -> {
+        var saved = 0;
+        while (!additions.isDone()) {
+          index.save(snapshot);
+          var loaded = HnswIndex.load(snapshot);
+          assertThat(loaded.size()).isLessThanOrEqualTo(index.size());
+          assertThat(loaded.search(vectors[0], K, VectorReplica.DEFAULT_EF_SEARCH)).hasSizeLessThanOrEqualTo(K);
+          saved++;
+        }
+        return saved;
+      });
+
+      var searches = 0;
+      while (!additions.isDone() || searches == 0) {
+        var neighbours = index.search(vectors[random.nextInt(vectors.length)], K, VectorReplica.DEFAULT_EF_SEARCH);
+        assertThat(neighbours).hasSizeLessThanOrEqualTo(K);
+        assertThat(neighbours).allSatisfy(neighbour -> assertThat(known).contains(neighbour.id()));
+        assertThat(neighbours).isSortedAccordingTo(Comparator.comparingDouble(HnswIndex.Neighbour::distance));
+        searches++;
+      }
+      additions.get(1, MINUTES);
+      assertThat(saves.get(1, MINUTES)).isPositive();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(index.size()).isEqualTo(vectors.length);
+    var found = 0;
+    for (var i = 0; i < vectors.length; i += 50) {
+      if (index.search(vectors[i], 1, VectorReplica.DEFAULT_EF_SEARCH).getFirst().id().equals(ids[i])) {
+        found++;
+      }
+    }
+    assertThat((double) found / (vectors.length / 50)).isGreaterThan(0.95);
+    index.save(snapshot);
+    assertThat(HnswIndex.load(snapshot).size()).isEqualTo(vectors.length);
+  }
+
+  @Test
+  @DisplayName("parses pgvector's text output")
+  void parses_vectors() {
+    assertThat(VectorReplica.parseVector("[1,-0.5,2.5e-3]")).containsExactly(1f, -0.5f, 0.0025f);
+    assertThat(VectorReplica.parseVector("[]")).isEmpty();
+  }
+
+  private static float[][] randomVectors(Random random, int count) {
+    var vectors = new float[count][DIMENSION];
+    for (var vector : vectors) {
+      for (var i = 0; i < DIMENSION; i++) {
+        vector[i] = (float) random.nextGaussian();
+      }
+    }
+    return vectors;
+  }
+
+  private static double cosineDistance(float[] a, float[] b) {
+    var dot = 0.0;
+    var normA = 0.0;
+    var normB = 0.0;
+    for (var i = 0; i < a.length; i++) {
+      dot += a[i] * b[i];
+      normA += a[i] * a[i];
+      normB += b[i] * b[i];
+    }
+    return 1 - dot / Math.sqrt(normA * normB);
+  }
+}
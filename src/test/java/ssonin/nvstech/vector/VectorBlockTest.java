@@ -0,0 +1,100 @@
+package ssonin.nvstech.vector;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class VectorBlockTest {
+
+  @Test
+  @DisplayName("SIMD and scalar kernels agree, including lengths that leave a tail")
+  void kernels_agree() {
+    var random = new Random(11);
+    var scalar = new ScalarCosineKernel();
+    var simd = new SimdCosineKernel();
+    for (var length : new int[] {1, 7, 16, 33, 384, 1536}) {
+      var block = randomVector(random, length + 5);
+      var query = randomVector(random, length);
+
+      assertThat(simd.dot(block, 5, query, length))
+        .as("length %d", length)
+        .isCloseTo(scalar.dot(block, 5, query, length), within(1e-3f));
+    }
+  }
+
+  @Test
+  @DisplayName("prefers the SIMD kernel when the Vector API module is present")
+  void prefers_simd_kernel() {
+    assertThat(CosineKernel.preferred()).isInstanceOf(SimdCosineKernel.class);
+  }
+
+  @Test
+  @DisplayName("returns the exact nearest documents within the creation time range, nearest first")
+  void scans_exactly() {
+    var block = VectorBlock.builder(2, 4)
+      .add(new UUID(0, 1), 100, new float[] {1, 0})
+      .add(new UUID(0, 2), 200, new float[] {2, 2})
+      .add(new UUID(0, 3), 300, new float[] {0, 3})
+      .add(new UUID(0, 4), 400, new float[] {-1, 0})
+      .add(new UUID(0, 5), 500, new float[] {1, 0, 0})
+      .build();
+
+    assertThat(block.size()).isEqualTo(4);
+    assertThat(block.nearest(new float[] {1, 0.1f}, 3, Long.MIN_VALUE, Long.MAX_VALUE))
+      .extracting(HnswIndex.Neighbour::id)
+      .containsExactly(new UUID(0, 1), new UUID(0, 2), new UUID(0, 3));
+    assertThat(block.nearest(new float[] {1, 0.1f}, 3, 200, 400))
+      .extracting(HnswIndex.Neighbour::id)
+      .containsExactly(new UUID(0, 2), new UUID(0, 3));
+    assertThat(block.nearest(new float[] {1, 0}, 1, Long.MIN_VALUE, Long.MAX_VALUE).getFirst().distance())
+      .isCloseTo(0f, within(1e-6f));
+  }
+
+  @Test
+  @DisplayName("evicts the least recently used blocks and skips blocks read before an invalidation")
+  void caches_blocks() {
+    var cache = new ClientVectorCache(3, Duration.ofMinutes(1));
+    var first = new UUID(1, 1);
+    var second = new UUID(1, 2);
+    var third = new UUID(1, 3);
+
+    cache.put(first, cache.generation(first), blockOf(2));
+    cache.put(second, cache.generation(second), blockOf(1));
+    assertThat(cache.get(first)).isNotNull();
+    cache.put(third, cache.generation(third), blockOf(1));
+
+    assertThat(cache.get(second)).isNull();
+    assertThat(cache.get(first)).isNotNull();
+    assertThat(cache.get(third)).isNotNull();
+    assertThat(cache.vectors()).isEqualTo(3);
+
+    var generation = cache.generation(first);
+    cache.invalidate(first);
+    cache.put(first, generation, blockOf(1));
+
+    assertThat(cache.get(first)).isNull();
+    assertThat(cache.vectors()).isEqualTo(1);
+  }
+
+  private static VectorBlock blockOf(int size) {
+    var builder = VectorBlock.builder(2, size);
+    for (var i = 0; i < size; i++) {
+      builder.add(UUID.randomUUID(), i, new float[] {1, i});
+    }
+    return builder.build();
+  }
+
+  private static float[] randomVector(Random random, int length) {
+    var vector = new float[length];
+    for (var i = 0; i < length; i++) {
+      vector[i] = (float) random.nextGaussian();
+    }
+    return vector;
+  }
+}